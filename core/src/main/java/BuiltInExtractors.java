@@ -0,0 +1,346 @@
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The extractor types that ship with CustomHeaderZ.
+ * <ul>
+ *   <li>{@code regex:PATTERN} - capture group 1, or the whole match</li>
+ *   <li>{@code after:TEXT} - the value following TEXT, up to whitespace or a JSON delimiter</li>
+ *   <li>{@code between:START...END} - the text between two literals</li>
+ *   <li>{@code json:PATH} - a JSON value by pointer ({@code /a/0/b}) or dotted path ({@code $.a[0].b})</li>
+ *   <li>{@code xpath:EXPR} - an XPath 1.0 string value from an XML document</li>
+ *   <li>{@code html:SELECTOR} - an attribute or the text of an HTML tag, e.g. {@code input[name=csrf]@value}</li>
+ *   <li>{@code jwt:CLAIM} - a claim (or dotted path) from a JWT's payload; the whole payload if empty</li>
+ *   <li>{@code b64} - Base64 or Base64url decoding, padding optional</li>
+ *   <li>{@code hash:ALGORITHM} - lower-case hex digest of the UTF-8 input; SHA-256 if empty</li>
+ *   <li>{@code format:TEXT} - TEXT with {@code %s} replaced by the input, e.g. {@code format:Bearer %s}</li>
+ * </ul>
+ */
+final class BuiltInExtractors {
+
+    private static final Pattern JWT = Pattern.compile("eyJ[A-Za-z0-9_-]*\\.([A-Za-z0-9_-]+)\\.[A-Za-z0-9_-]*");
+
+    private BuiltInExtractors() {
+    }
+
+    static List<TokenExtractorFactory> factories() {
+        return List.of(
+                factory("regex", BuiltInExtractors::regex),
+                factory("after", BuiltInExtractors::after),
+                factory("between", BuiltInExtractors::between),
+                factory("json", BuiltInExtractors::json),
+                factory("xpath", XPathExtractor::new),
+                factory("html", HtmlExtractor::new),
+                factory("jwt", BuiltInExtractors::jwt),
+                factory("b64", argument -> BuiltInExtractors::decodeBase64),
+                factory("hash", BuiltInExtractors::hash),
+                factory("format", BuiltInExtractors::format));
+    }
+
+    private static TokenExtractorFactory factory(String name, Function<String, TokenExtractor> create) {
+        return new TokenExtractorFactory() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public TokenExtractor create(String argument) {
+                return create.apply(argument);
+            }
+        };
+    }
+
+    private static TokenExtractor regex(String argument) {
+        Pattern pattern = TokenExtraction.compile(argument);
+        return new TokenExtractor() {
+            @Override
+            public String extract(CharSequence input) {
+                return TokenExtraction.extractWithRegex(pattern, input);
+            }
+
+            @Override
+            public StreamingTokenScanner.ChunkMatcher matcher() {
+                return TokenExtraction.regexMatcher(pattern);
+            }
+        };
+    }
+
+    private static TokenExtractor after(String argument) {
+        if (argument.isEmpty()) {
+            throw new IllegalArgumentException("after: needs the text that precedes the value");
+        }
+        return new TokenExtractor() {
+            @Override
+            public String extract(CharSequence input) {
+                return TokenExtraction.extractWithString(argument, input);
+            }
+
+            @Override
+            public StreamingTokenScanner.ChunkMatcher matcher() {
+                return TokenExtraction.literalMatcher(argument);
+            }
+        };
+    }
+
+    private static TokenExtractor between(String argument) {
+        int split = argument.indexOf("...");
+        if (split <= 0 || split + 3 >= argument.length()) {
+            throw new IllegalArgumentException("between: expects START...END, got '" + argument + "'");
+        }
+        String start = argument.substring(0, split);
+        String end = argument.substring(split + 3);
+        return new TokenExtractor() {
+            @Override
+            public String extract(CharSequence input) {
+                String value = matcher().match(input, true);
+                return value == StreamingTokenScanner.NEED_MORE ? null : value;
+            }
+
+            @Override
+            public StreamingTokenScanner.ChunkMatcher matcher() {
+                return (text, complete) -> {
+                    int from = TokenExtraction.indexOf(text, start);
+                    if (from == -1) {
+                        return null;
+                    }
+                    from += start.length();
+                    int to = TokenExtraction.indexOf(text.subSequence(from, text.length()), end);
+                    if (to == -1) {
+                        return complete ? null : StreamingTokenScanner.NEED_MORE;
+                    }
+                    return to > 0 ? text.subSequence(from, from + to).toString() : null;
+                };
+            }
+        };
+    }
+
+    private static TokenExtractor json(String argument) {
+        JsonValueReader reader = new JsonValueReader(argument.trim());
+        return input -> {
+            String value = reader.read(input);
+            return value != null && !value.isEmpty() ? value : null;
+        };
+    }
+
+    private static TokenExtractor hash(String argument) {
+        // Accept sha256 as well as SHA-256
+        String name = argument.trim().isEmpty() ? "SHA-256" :
+                argument.trim().toUpperCase(Locale.ROOT).replaceFirst("^SHA(1|224|256|384|512)$", "SHA-$1");
+        try {
+            MessageDigest.getInstance(name);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Unknown hash algorithm '" + argument.trim() + "'", e);
+        }
+        return input -> {
+            MessageDigest digest;
+            try {
+                // MessageDigest is not thread-safe, so each call gets its own
+                digest = MessageDigest.getInstance(name);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            return HexFormat.of().formatHex(digest.digest(input.toString().getBytes(StandardCharsets.UTF_8)));
+        };
+    }
+
+    private static TokenExtractor format(String argument) {
+        int slot = argument.indexOf("%s");
+        if (slot == -1) {
+            throw new IllegalArgumentException("format: needs %s where the value goes, got '" + argument + "'");
+        }
+        String prefix = argument.substring(0, slot);
+        String suffix = argument.substring(slot + 2);
+        return input -> prefix + input + suffix;
+    }
+
+    private static TokenExtractor jwt(String argument) {
+        JsonValueReader claim = argument.trim().isEmpty() ? null : new JsonValueReader(argument.trim());
+        return input -> {
+            String payload = jwtPayload(input);
+            if (payload == null) {
+                return null;
+            }
+            return claim != null ? claim.read(payload) : payload;
+        };
+    }
+
+    /**
+     * Finds the first {@code header.payload.signature} token in the input and decodes its payload.
+     */
+    private static String jwtPayload(CharSequence input) {
+        String text = input.toString().trim();
+        Matcher m = JWT.matcher(text);
+        if (!m.find()) {
+            return null;
+        }
+        return decodeBase64(m.group(1));
+    }
+
+    /**
+     * Decodes standard or URL-safe Base64, with or without padding.
+     *
+     * @param input The encoded text
+     * @return The decoded UTF-8 text, or null if the input is not Base64
+     */
+    static String decodeBase64(CharSequence input) {
+        StringBuilder sb = new StringBuilder(input.length() + 3);
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (c == '-') {
+                sb.append('+');
+            } else if (c == '_') {
+                sb.append('/');
+            } else if (c != '=' && !Character.isWhitespace(c)) {
+                sb.append(c);
+            }
+        }
+        while (sb.length() % 4 != 0) {
+            sb.append('=');
+        }
+        try {
+            return new String(Base64.getDecoder().decode(sb.toString()), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * XPath over an XML document. Parsing disallows DOCTYPEs, so macro responses
+     * cannot pull in external entities.
+     */
+    private static final class XPathExtractor implements TokenExtractor {
+        private final String expression;
+        // XPathExpression is not thread-safe; compile once per thread
+        private final ThreadLocal<XPathExpression> compiled;
+
+        XPathExtractor(String expression) {
+            this.expression = expression.trim();
+            this.compiled = ThreadLocal.withInitial(this::compile);
+            compile();
+        }
+
+        private XPathExpression compile() {
+            try {
+                return XPathFactory.newInstance().newXPath().compile(expression);
+            } catch (XPathExpressionException e) {
+                throw new IllegalArgumentException("Invalid XPath '" + expression + "': " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public String extract(CharSequence input) {
+            try {
+                DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+                factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+                factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+                factory.setNamespaceAware(false);
+                DocumentBuilder builder = factory.newDocumentBuilder();
+                // Report malformed documents through the exception only, not on stderr
+                builder.setErrorHandler(null);
+                Document document = builder.parse(new InputSource(new StringReader(input.toString())));
+                String value = compiled.get().evaluate(document);
+                return value != null && !value.isEmpty() ? value : null;
+            } catch (Exception e) {
+                // Not well-formed XML, or the expression does not apply to this document
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Minimal HTML tag selector: {@code tag}, {@code tag#id}, {@code tag[attr=value]},
+     * optionally followed by {@code @attr} to read an attribute instead of the tag's text.
+     * Matches tags with a scan rather than a DOM, which is enough for CSRF inputs and meta tags.
+     */
+    private static final class HtmlExtractor implements TokenExtractor {
+        private static final Pattern SELECTOR =
+                Pattern.compile("\\s*([A-Za-z][A-Za-z0-9-]*|\\*)?(?:#([\\w:-]+))?(?:\\[([\\w:-]+)(?:=['\"]?([^'\"\\]]*)['\"]?)?])?(?:@([\\w:-]+))?\\s*");
+        private static final Pattern ATTRIBUTE =
+                Pattern.compile("([\\w:-]+)\\s*(?:=\\s*(?:\"([^\"]*)\"|'([^']*)'|([^\\s>]+)))?");
+
+        private final Pattern tag;
+        private final String requiredAttribute;
+        private final String requiredValue;
+        private final String readAttribute;
+
+        HtmlExtractor(String selector) {
+            Matcher m = SELECTOR.matcher(selector);
+            if (!m.matches() || selector.trim().isEmpty()) {
+                throw new IllegalArgumentException("html: expects tag#id, tag[attr=value] or tag@attr, got '" +
+                        selector + "'");
+            }
+            String name = m.group(1) == null || m.group(1).equals("*") ? "[A-Za-z][A-Za-z0-9-]*" : Pattern.quote(m.group(1));
+            this.tag = Pattern.compile("<(" + name + ")(\\s[^>]*)?>", Pattern.CASE_INSENSITIVE);
+            if (m.group(2) != null) {
+                this.requiredAttribute = "id";
+                this.requiredValue = m.group(2);
+            } else {
+                this.requiredAttribute = m.group(3);
+                this.requiredValue = m.group(4);
+            }
+            this.readAttribute = m.group(5);
+        }
+
+        @Override
+        public String extract(CharSequence input) {
+            Matcher m = tag.matcher(input);
+            while (m.find()) {
+                String attributes = m.group(2) != null ? m.group(2) : "";
+                if (requiredAttribute != null) {
+                    String actual = attribute(attributes, requiredAttribute);
+                    if (actual == null || (requiredValue != null && !requiredValue.equals(actual))) {
+                        continue;
+                    }
+                }
+                String value;
+                if (readAttribute != null) {
+                    value = attribute(attributes, readAttribute);
+                } else {
+                    int close = TokenExtraction.indexOf(input.subSequence(m.end(), input.length()),
+                            "</" + m.group(1));
+                    value = close == -1 ? null : input.subSequence(m.end(), m.end() + close).toString().trim();
+                }
+                return value != null && !value.isEmpty() ? unescapeHtml(value) : null;
+            }
+            return null;
+        }
+
+        private static String attribute(String attributes, String name) {
+            Matcher m = ATTRIBUTE.matcher(attributes);
+            while (m.find()) {
+                if (m.group(1).equalsIgnoreCase(name)) {
+                    String value = m.group(2) != null ? m.group(2) : m.group(3) != null ? m.group(3) : m.group(4);
+                    return value != null ? value : "";
+                }
+            }
+            return null;
+        }
+
+        private static String unescapeHtml(String value) {
+            if (value.indexOf('&') == -1) {
+                return value;
+            }
+            return value.replace("&quot;", "\"").replace("&#39;", "'").replace("&#x27;", "'")
+                    .replace("&lt;", "<").replace("&gt;", ">").replace("&amp;", "&");
+        }
+    }
+}
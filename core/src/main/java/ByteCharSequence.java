@@ -0,0 +1,50 @@
+/**
+ * Zero-copy ISO-8859-1 {@link CharSequence} view over a byte array region.
+ * Lets regex and literal matching run directly on raw body bytes without
+ * decoding them into a String first.
+ */
+public final class ByteCharSequence implements CharSequence {
+
+    private final byte[] data;
+    private final int offset;
+    private final int length;
+
+    /**
+     * Creates a view over a byte array region. The array is not copied.
+     *
+     * @param data   The bytes
+     * @param offset The start of the region
+     * @param length The length of the region
+     */
+    public ByteCharSequence(byte[] data, int offset, int length) {
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+        }
+        return (char) (data[offset + index] & 0xff);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+        }
+        return new ByteCharSequence(data, offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return new String(data, offset, length, java.nio.charset.StandardCharsets.ISO_8859_1);
+    }
+}
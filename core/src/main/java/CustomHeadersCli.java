@@ -0,0 +1,406 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Command-line header rewriter for CI pipelines and load tests.
+ * Applies the same rules as the Burp extension to raw HTTP/1.x request files,
+ * or to a stream of back-to-back requests on stdin.
+ */
+public final class CustomHeadersCli {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private CustomHeadersCli() {
+    }
+
+    public static void main(String[] args) {
+        try {
+            System.exit(run(args, System.in, System.out));
+        } catch (IllegalArgumentException e) {
+            System.err.println("error: " + e.getMessage());
+            System.err.println();
+            printUsage();
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs the rewriter.
+     *
+     * @param args The command-line arguments
+     * @param in   The request stream used when no request files are given
+     * @param out  The output stream used when no output directory is given
+     * @return The process exit code
+     * @throws IOException if reading or writing fails
+     */
+    static int run(String[] args, InputStream in, OutputStream out) throws IOException {
+        List<CustomHeadersConfig.CustomHeader> rules = new ArrayList<>();
+        List<Path> responses = new ArrayList<>();
+        List<Path> requests = new ArrayList<>();
+        Path outputDir = null;
+        Path tokenFile = null;
+        HeaderPlacement placement = HeaderPlacement.END;
+        ScanWindow window = ScanWindow.WHOLE_BODY;
+        String group = "";
+        MatchAggregation aggregation = MatchAggregation.FIRST;
+        Map<String, List<String>> pools = new LinkedHashMap<>();
+        double poolRate = 0;
+        Map<String, RuleCondition> poolConditions = new LinkedHashMap<>();
+        String[] when = {"", "", "", ""};
+        RuleCondition condition = RuleCondition.ALWAYS;
+        Map<String, String> variables = new HashMap<>();
+        List<CustomHeadersConfig.CustomHeader> imported = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            int added = rules.size();
+            switch (arg) {
+                case "-h":
+                case "--help":
+                    printUsage();
+                    return 0;
+                case "-H":
+                case "--header": {
+                    String header = value(args, ++i, arg);
+                    int colon = header.indexOf(':');
+                    if (colon <= 0) {
+                        throw new IllegalArgumentException("expected 'Name: value' for " + arg);
+                    }
+                    rules.add(staticRule(header.substring(0, colon).trim(), header.substring(colon + 1).trim(),
+                            InjectionTarget.HEADER));
+                    break;
+                }
+                case "--pool": {
+                    String header = value(args, ++i, arg);
+                    int colon = header.indexOf(':');
+                    if (colon <= 0) {
+                        throw new IllegalArgumentException("expected 'Name: value' for " + arg);
+                    }
+                    pools.computeIfAbsent(header.substring(0, colon).trim(), k -> new ArrayList<>())
+                            .add(header.substring(colon + 1).trim());
+                    poolConditions.putIfAbsent(header.substring(0, colon).trim(), condition);
+                    break;
+                }
+                case "--pool-rate":
+                    try {
+                        poolRate = Double.parseDouble(value(args, ++i, arg));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("expected requests per second for " + arg);
+                    }
+                    break;
+                case "--derive": {
+                    String pair = value(args, ++i, arg);
+                    int eq = pair.indexOf('=');
+                    if (eq <= 0) {
+                        throw new IllegalArgumentException("expected 'Name=expression' for " + arg);
+                    }
+                    DerivationPlan.validate(pair.substring(eq + 1));
+                    rules.add(CustomHeadersConfig.CustomHeader.builder(pair.substring(0, eq).trim(), "")
+                            .derivation(pair.substring(eq + 1)).build());
+                    break;
+                }
+                case "--postman-env":
+                    variables = RuleImporter.postmanVariables(Files.readString(Paths.get(value(args, ++i, arg))));
+                    break;
+                case "--import":
+                    // Imported rules carry their own conditions, so --when-* does not apply to them
+                    imported.addAll(RuleImporter.importRules(Files.readString(Paths.get(value(args, ++i, arg))), variables));
+                    break;
+                case "--url-param":
+                    rules.add(pairRule(value(args, ++i, arg), InjectionTarget.URL_PARAMETER));
+                    break;
+                case "--body-param":
+                    rules.add(pairRule(value(args, ++i, arg), InjectionTarget.BODY_PARAMETER));
+                    break;
+                case "--cookie":
+                    rules.add(pairRule(value(args, ++i, arg), InjectionTarget.COOKIE));
+                    break;
+                case "--json":
+                    rules.add(pairRule(value(args, ++i, arg), InjectionTarget.JSON_POINTER));
+                    break;
+                case "--extract":
+                    rules.add(dynamicRule(value(args, ++i, arg), true, window).toBuilder()
+                            .captureGroup(group).aggregation(aggregation).build());
+                    break;
+                case "--group":
+                    group = value(args, ++i, arg);
+                    break;
+                case "--aggregate": {
+                    String mode = value(args, ++i, arg);
+                    aggregation = MatchAggregation.fromName(mode.toUpperCase(Locale.ROOT));
+                    if (!aggregation.name().equalsIgnoreCase(mode)) {
+                        throw new IllegalArgumentException("expected first, last or join for " + arg);
+                    }
+                    break;
+                }
+                case "--extract-after":
+                    rules.add(dynamicRule(value(args, ++i, arg), false, window));
+                    break;
+                case "--extract-with": {
+                    CustomHeadersConfig.CustomHeader rule = dynamicRule(value(args, ++i, arg), false, window);
+                    TokenExtractors.compile(rule.getPattern());
+                    rules.add(rule.toBuilder().pipeline(rule.getPattern()).build());
+                    break;
+                }
+                case "--scan-window":
+                    window = ScanWindow.parse(value(args, ++i, arg));
+                    break;
+                case "--when-method":
+                case "--when-type":
+                case "--when-url":
+                case "--when-body":
+                    when[Arrays.asList("--when-method", "--when-type", "--when-url", "--when-body").indexOf(arg)] =
+                            value(args, ++i, arg);
+                    condition = RuleCondition.of(when[0], when[1], when[2], when[3]);
+                    break;
+                case "--response":
+                    responses.add(Paths.get(value(args, ++i, arg)));
+                    break;
+                case "--placement":
+                    placement = HeaderPlacement.parse(value(args, ++i, arg));
+                    break;
+                case "--token-file":
+                    tokenFile = Paths.get(value(args, ++i, arg));
+                    break;
+                case "-o":
+                case "--output":
+                    outputDir = Paths.get(value(args, ++i, arg));
+                    break;
+                default:
+                    if (arg.startsWith("-")) {
+                        throw new IllegalArgumentException("unknown option " + arg);
+                    }
+                    requests.add(Paths.get(arg));
+            }
+            if (!condition.isAlways()) {
+                for (int r = added; r < rules.size(); r++) {
+                    rules.set(r, rules.get(r).toBuilder().condition(condition).build());
+                }
+            }
+        }
+
+        for (Map.Entry<String, List<String>> pool : pools.entrySet()) {
+            rules.add(CustomHeadersConfig.CustomHeader.builder(pool.getKey(), pool.getValue().get(0))
+                    .pool(new ValuePool(pool.getValue(), null, ValuePool.Selection.ROUND_ROBIN, poolRate, 1,
+                            ValuePool.DEFAULT_MAX_WAIT_MILLIS))
+                    .condition(poolConditions.get(pool.getKey()))
+                    .build());
+        }
+
+        rules.addAll(imported);
+
+        CustomHeadersConfig config = new CustomHeadersConfig();
+        config.replaceHeaders(rules);
+        config.setHeaderPlacement(placement);
+        if (!config.getDerivationPlan().getCycle().isEmpty()) {
+            throw new IllegalArgumentException("--derive rules reference each other in a cycle: " +
+                    String.join(" -> ", config.getDerivationPlan().getCycle()));
+        }
+        // Null resources are skipped, so the shared file is only opened and closed when given
+        try (SharedTokenFile shared = tokenFile != null ? new SharedTokenFile(tokenFile, SharedTokenFile.DEFAULT_SIZE) : null) {
+            TokenStore tokens = new TokenStore();
+            if (shared != null) {
+                tokens.share(shared);
+            }
+            CustomHeadersEngine engine = new CustomHeadersEngine(config, tokens);
+            for (Path response : responses) {
+                engine.extractTokens(Files.readAllBytes(response));
+            }
+            rewrite(engine, requests, outputDir, in, out);
+        }
+        return 0;
+    }
+
+    /**
+     * Rewrites the request files, or the request stream when no files are given.
+     */
+    private static void rewrite(CustomHeadersEngine engine, List<Path> requests, Path outputDir,
+                                InputStream in, OutputStream out) throws IOException {
+        if (requests.isEmpty()) {
+            rewriteStream(engine, new BufferedInputStream(in, BUFFER_SIZE), new BufferedOutputStream(out, BUFFER_SIZE));
+            return;
+        }
+
+        if (outputDir != null) {
+            Files.createDirectories(outputDir);
+        }
+        OutputStream stdout = new BufferedOutputStream(out, BUFFER_SIZE);
+        for (Path request : requests) {
+            byte[] rewritten = engine.rewrite(Files.readAllBytes(request));
+            if (outputDir != null) {
+                Files.write(outputDir.resolve(request.getFileName()), rewritten);
+            } else {
+                stdout.write(rewritten);
+            }
+        }
+        stdout.flush();
+    }
+
+    /**
+     * Rewrites back-to-back requests from a stream. Each request's body length is
+     * taken from its Content-Length header; chunked request bodies are not supported.
+     */
+    private static void rewriteStream(CustomHeadersEngine engine, InputStream in, OutputStream out) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(BUFFER_SIZE);
+        while (true) {
+            buffer.reset();
+            int headerLength = readHeaders(in, buffer);
+            if (headerLength == 0) {
+                break;
+            }
+
+            int contentLength = contentLength(buffer.toByteArray(), headerLength);
+            byte[] body = in.readNBytes(contentLength);
+            if (body.length < contentLength) {
+                throw new IOException("stream ended inside a request body");
+            }
+            buffer.write(body);
+
+            byte[] request = buffer.toByteArray();
+            byte[] rewritten = engine.rewrite(request, 0, request.length);
+            out.write(rewritten != null ? rewritten : request);
+        }
+        out.flush();
+    }
+
+    /**
+     * Copies one request's header block, including the blank line, into the buffer.
+     *
+     * @return The number of bytes copied, or 0 at end of stream
+     */
+    private static int readHeaders(InputStream in, ByteArrayOutputStream buffer) throws IOException {
+        int count = 0;
+        int recent = 0;
+        int b;
+        while ((b = in.read()) != -1) {
+            // Skip blank lines between requests
+            if (count == 0 && (b == '\r' || b == '\n')) {
+                continue;
+            }
+            buffer.write(b);
+            count++;
+
+            // Track the last four bytes to spot "\r\n\r\n" or "\n\n"
+            recent = (recent << 8) | b;
+            if (recent == 0x0d0a0d0a || (recent & 0xffff) == 0x0a0a) {
+                return count;
+            }
+        }
+        if (count > 0) {
+            throw new IOException("stream ended inside a request header");
+        }
+        return 0;
+    }
+
+    /**
+     * Reads a request's Content-Length header.
+     *
+     * @return The body length, or 0 if there is no Content-Length header
+     * @throws IOException if the header is not all digits or does not fit in an int
+     */
+    private static int contentLength(byte[] headers, int length) throws IOException {
+        String block = new String(headers, 0, length, StandardCharsets.ISO_8859_1);
+        for (String line : block.split("\r?\n")) {
+            int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Content-Length")) {
+                String value = line.substring(colon + 1).trim();
+                // Malformed input, not a usage error: report it like a truncated stream
+                if (value.isEmpty() || !value.chars().allMatch(c -> c >= '0' && c <= '9')) {
+                    throw new IOException("invalid Content-Length '" + value + "'");
+                }
+                try {
+                    return Integer.parseInt(value);
+                } catch (NumberFormatException e) {
+                    throw new IOException("invalid Content-Length '" + value + "'", e);
+                }
+            }
+        }
+        return 0;
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("missing value for " + option);
+        }
+        return args[index];
+    }
+
+    private static CustomHeadersConfig.CustomHeader staticRule(String name, String value, InjectionTarget target) {
+        return CustomHeadersConfig.CustomHeader.builder(name, value).target(target).build();
+    }
+
+    private static CustomHeadersConfig.CustomHeader pairRule(String pair, InjectionTarget target) {
+        int eq = pair.indexOf('=');
+        if (eq <= 0) {
+            throw new IllegalArgumentException("expected 'name=value', got '" + pair + "'");
+        }
+        return staticRule(pair.substring(0, eq), pair.substring(eq + 1), target);
+    }
+
+    private static CustomHeadersConfig.CustomHeader dynamicRule(String pair, boolean isRegex, ScanWindow window) {
+        int eq = pair.indexOf('=');
+        if (eq <= 0) {
+            throw new IllegalArgumentException("expected 'Header=pattern', got '" + pair + "'");
+        }
+        return CustomHeadersConfig.CustomHeader.builder(pair.substring(0, eq), "")
+                .dynamic(true)
+                .pattern(pair.substring(eq + 1), isRegex)
+                .scanWindow(window)
+                .build();
+    }
+
+    private static void printUsage() {
+        System.err.println("Usage: java -jar customheaderz-core.jar [options] [request-file ...]");
+        System.err.println();
+        System.err.println("Rewrites raw HTTP/1.x requests. With no request files, reads back-to-back");
+        System.err.println("requests from stdin and writes them to stdout.");
+        System.err.println();
+        System.err.println("  -H, --header 'Name: value'   set a request header");
+        System.err.println("  --pool 'Name: value'         rotate a request header through each value given for Name");
+        System.err.println("  --pool-rate N                send each pooled value at most N times per second");
+        System.err.println("  --derive 'Name=expression'   set header Name from other rules, e.g.");
+        System.err.println("                               'X-Session-Hash={{Authorization}} | hash:sha256'");
+        System.err.println("  --import FILE                add scoped rules from curl commands, a Postman collection or");
+        System.err.println("                               an OpenAPI/Swagger spec (JSON or YAML)");
+        System.err.println("  --postman-env FILE           resolve variables in the Postman collections imported after it");
+        System.err.println("  --url-param name=value       set a URL query parameter");
+        System.err.println("  --body-param name=value      set a form body parameter");
+        System.err.println("  --cookie name=value          set a cookie");
+        System.err.println("  --json /pointer=value        set a string at a JSON Pointer in the body");
+        System.err.println("  --extract 'Name=regex'       set header Name from capture group 1 in --response files");
+        System.err.println("  --extract-after 'Name=text'  set header Name from the value after text in --response files");
+        System.err.println("  --extract-with 'Name=spec'   set header Name with an extractor pipeline, e.g.");
+        System.err.println("                               'Authorization=json:/data/id_token | jwt:sub'");
+        System.err.println("  --group NAME|N               read --extract values that follow from this capture group;");
+        System.err.println("                               --extract rules with the same regex share one scan");
+        System.err.println("  --aggregate first|last|join  combine matches for the --extract options that follow");
+        System.err.println("  --scan-window head:N|tail:N  scan only N body bytes for the extract options that follow");
+        System.err.println("  --when-method 'POST,PUT'     apply the rules that follow only to these methods;");
+        System.err.println("  --when-type TEXT             ... whose Content-Type contains TEXT,");
+        System.err.println("  --when-url REGEX             ... whose request target matches REGEX,");
+        System.err.println("  --when-body TEXT             ... and whose body contains TEXT (empty clears a condition)");
+        System.err.println("  --placement start|end|after:Name|before:Name");
+        System.err.println("                               where headers a request lacks are inserted (default end)");
+        System.err.println("  --response FILE              raw HTTP response to extract dynamic values from");
+        System.err.println("  --token-file FILE            read and update dynamic values in a token file shared with Burp");
+        System.err.println("  -o, --output DIR             write rewritten request files to DIR instead of stdout");
+    }
+}
@@ -0,0 +1,652 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Thread-safe custom header rule repository.
+ * Holds the rules that request threads read as an immutable snapshot, published
+ * by the configuration editor through {@link #replaceHeaders} or {@link #apply},
+ * {@link #setEnabled} and {@link #setHeaderPlacement}, and by the token flows through
+ * {@link #setFlowRules}.
+ * Contains no Swing or persistence code, so the request path never touches the UI.
+ */
+public class CustomHeadersConfig {
+
+    // Constants
+    public static final String DEFAULT_REGEX = "Authorization:\\s*Bearer\\s+([A-Za-z0-9._-]+)";
+    public static final int ALL_TOOLS = -1;
+
+    // Current published state; replaced wholesale, never mutated
+    private volatile Snapshot snapshot = new Snapshot(true, RuleSet.EMPTY, HeaderPlacement.MOVE_TO_END,
+            Collections.emptySet());
+
+    /**
+     * Checks if custom headers are enabled.
+     *
+     * @return true if enabled, false otherwise
+     */
+    public boolean isEnabled() {
+        return snapshot.enabled;
+    }
+
+    /**
+     * Gets the list of all enabled, named headers.
+     *
+     * @return Immutable list of CustomHeader objects
+     */
+    public List<CustomHeader> getHeaders() {
+        return snapshot.rules.headers;
+    }
+
+    /**
+     * Gets the union of tool masks over all enabled static headers and the dynamic
+     * headers filled by token flows. Zero when custom headers are disabled, so the
+     * HTTP handler can reject traffic with a single AND before touching the header list.
+     *
+     * @return The combined tool mask
+     */
+    public int getActiveToolMask() {
+        return snapshot.enabled ? snapshot.requestToolMask : 0;
+    }
+
+    /**
+     * Gets the names of the dynamic headers whose values token flows acquire.
+     *
+     * @return Immutable set of rule names
+     */
+    public Set<String> getFlowRules() {
+        return snapshot.flowRules;
+    }
+
+    /**
+     * Gets the union of tool masks over all enabled WebSocket message rules.
+     * Zero when custom headers are disabled or no rule targets WebSocket messages.
+     *
+     * @return The combined tool mask
+     */
+    public int getWebSocketToolMask() {
+        return snapshot.enabled ? snapshot.rules.webSocketToolMask : 0;
+    }
+
+    /**
+     * Gets the union of tool masks over all enabled response rules.
+     * Zero when custom headers are disabled or no rule targets responses, so
+     * responses pass through with a single AND.
+     *
+     * @return The combined tool mask
+     */
+    public int getResponseToolMask() {
+        return snapshot.enabled ? snapshot.rules.responseToolMask : 0;
+    }
+
+    /**
+     * Checks if any enabled dynamic header exists while custom headers are enabled.
+     *
+     * @return true if the session action has work to do
+     */
+    public boolean hasActiveDynamicRules() {
+        return snapshot.enabled && snapshot.rules.dynamicRulesActive;
+    }
+
+    /**
+     * Gets the evaluation plan for the derived rules of the current snapshot.
+     *
+     * @return The plan, built once per published rule list
+     */
+    public DerivationPlan getDerivationPlan() {
+        return snapshot.rules.derivations;
+    }
+
+    /**
+     * Gets the scan passes for the dynamic rules of the current snapshot.
+     *
+     * @return The plan, built once per published rule list with its patterns already compiled
+     */
+    public ExtractionPlan getExtractionPlan() {
+        return snapshot.rules.extractions;
+    }
+
+    /**
+     * Gets how header rules are written into the header block.
+     *
+     * @return The placement, {@link HeaderPlacement#MOVE_TO_END} unless set
+     */
+    public HeaderPlacement getHeaderPlacement() {
+        return snapshot.placement;
+    }
+
+    /**
+     * Enables or disables all custom headers.
+     *
+     * @param enabled Whether custom headers are applied
+     */
+    public synchronized void setEnabled(boolean enabled) {
+        snapshot = new Snapshot(enabled, snapshot.rules, snapshot.placement, snapshot.flowRules);
+    }
+
+    /**
+     * Sets how header rules are written into the header block.
+     *
+     * @param placement Whether existing headers are patched in place, and where new ones go
+     */
+    public synchronized void setHeaderPlacement(HeaderPlacement placement) {
+        snapshot = new Snapshot(snapshot.enabled, snapshot.rules, placement, snapshot.flowRules);
+    }
+
+    /**
+     * Sets which dynamic headers token flows fill, so their tools pass the HTTP
+     * handler's fast reject. Called whenever the flows are reconfigured.
+     *
+     * @param flowRules The names of the rules filled by enabled flows
+     */
+    public synchronized void setFlowRules(Set<String> flowRules) {
+        snapshot = new Snapshot(snapshot.enabled, snapshot.rules, snapshot.placement,
+                Collections.unmodifiableSet(flowRules));
+    }
+
+    /**
+     * Replaces the full header list. Disabled and unnamed rows are dropped,
+     * so readers only ever see headers that apply.
+     *
+     * @param headers The headers as configured, in order
+     */
+    public void replaceHeaders(List<CustomHeader> headers) {
+        apply(RuleSet.of(headers));
+    }
+
+    /**
+     * Publishes a rule set prepared in advance. Only a reference is swapped, so
+     * switching between prepared sets costs nothing on the request path and takes
+     * effect on the next request.
+     *
+     * @param rules The prepared rule set
+     */
+    public synchronized void apply(RuleSet rules) {
+        snapshot = new Snapshot(snapshot.enabled, rules, snapshot.placement, snapshot.flowRules);
+    }
+
+    /**
+     * Gets the published rule set, so it can be kept and applied again later.
+     *
+     * @return The current rule set
+     */
+    public RuleSet getRuleSet() {
+        return snapshot.rules;
+    }
+
+    /**
+     * Immutable view of the configuration: the published rule set plus the global settings.
+     * The request tool mask is computed here, once per publish of either the rules or the flows.
+     */
+    private static final class Snapshot {
+        final boolean enabled;
+        final RuleSet rules;
+        final HeaderPlacement placement;
+        final Set<String> flowRules;
+        final int requestToolMask;
+
+        Snapshot(boolean enabled, RuleSet rules, HeaderPlacement placement, Set<String> flowRules) {
+            this.enabled = enabled;
+            this.rules = rules;
+            this.placement = placement;
+            this.flowRules = flowRules;
+            this.requestToolMask = rules.activeToolMask | rules.flowToolMask(flowRules);
+        }
+    }
+
+    /**
+     * A complete rule list with every request-path summary precomputed: tool masks,
+     * the derivation order and the extraction passes with their patterns compiled.
+     * Building one is the expensive part of publishing rules, so rule set profiles
+     * are prepared off the EDT and only {@link #apply applied} when switched to.
+     * Immutable and thread-safe.
+     */
+    public static final class RuleSet {
+
+        /** The rule set with no rules. */
+        public static final RuleSet EMPTY = of(Collections.emptyList());
+
+        final List<CustomHeader> headers;
+        final int activeToolMask;
+        final int webSocketToolMask;
+        final int responseToolMask;
+        final boolean dynamicRulesActive;
+        final DerivationPlan derivations;
+        final ExtractionPlan extractions;
+
+        private RuleSet(List<CustomHeader> headers) {
+            this.headers = headers;
+            this.derivations = DerivationPlan.forRules(headers);
+            this.extractions = ExtractionPlan.forRules(headers);
+
+            int toolMask = 0;
+            int webSocketMask = 0;
+            int responseMask = 0;
+            boolean dynamic = false;
+            for (CustomHeader header : headers) {
+                if (header.getTarget().isWebSocket()) {
+                    webSocketMask |= header.getToolMask();
+                } else if (header.getTarget().isResponse()) {
+                    responseMask |= header.getToolMask();
+                } else if (!header.isDynamic()) {
+                    toolMask |= header.getToolMask();
+                }
+                dynamic |= header.isDynamic();
+            }
+            this.activeToolMask = toolMask;
+            this.webSocketToolMask = webSocketMask;
+            this.responseToolMask = responseMask;
+            this.dynamicRulesActive = dynamic;
+        }
+
+        /**
+         * Prepares a rule set. Disabled and unnamed rows are dropped, and every
+         * extraction pattern and pipeline is compiled into the shared caches now
+         * rather than on the first macro response after a switch.
+         *
+         * @param headers The headers as configured, in order
+         * @return The prepared rule set
+         */
+        public static RuleSet of(List<CustomHeader> headers) {
+            List<CustomHeader> active = new ArrayList<>();
+            for (CustomHeader header : headers) {
+                if (header.isEnabled() && header.getName() != null && !header.getName().trim().isEmpty()) {
+                    active.add(header);
+                }
+            }
+            RuleSet rules = new RuleSet(Collections.unmodifiableList(active));
+            for (ExtractionPlan.Pass pass : rules.extractions.getPasses()) {
+                try {
+                    pass.matcher(new HashMap<>());
+                } catch (IllegalArgumentException e) {
+                    // Reported by the session action when the rule is used, like any invalid pattern
+                }
+            }
+            return rules;
+        }
+
+        /**
+         * Gets the union of tool masks over the dynamic request headers that token flows fill.
+         *
+         * @param flowRules The names of the rules filled by enabled flows
+         * @return The combined tool mask; zero if no flow fills a rule of this set
+         */
+        int flowToolMask(Set<String> flowRules) {
+            int toolMask = 0;
+            if (!flowRules.isEmpty()) {
+                for (CustomHeader header : headers) {
+                    if (header.isDynamic() && !header.getTarget().isWebSocket() && !header.getTarget().isResponse() &&
+                            flowRules.contains(header.getName())) {
+                        toolMask |= header.getToolMask();
+                    }
+                }
+            }
+            return toolMask;
+        }
+
+        /**
+         * Gets the rules that apply.
+         *
+         * @return Immutable list of the enabled, named headers
+         */
+        public List<CustomHeader> getHeaders() {
+            return headers;
+        }
+    }
+
+    /**
+     * Inner class to represent a custom header.
+     */
+    public static class CustomHeader {
+        private final String name;
+        private final String value;
+        private final boolean enabled;
+        private final boolean dynamic;
+        private final String colorName;
+        private final String pattern;
+        private final boolean isRegex;
+        private final boolean pipeline;
+        private final InjectionTarget target;
+        private final int toolMask;
+        private final ScanWindow scanWindow;
+        private final String captureGroup;
+        private final MatchAggregation aggregation;
+        private final ValuePool pool;
+        private final RuleCondition condition;
+        private final String derivation;
+
+        /**
+         * Creates a basic custom header without dynamic features.
+         *
+         * @param name    The header name
+         * @param value   The header value
+         * @param enabled Whether the header is enabled
+         */
+        public CustomHeader(String name, String value, boolean enabled) {
+            this(name, value, enabled, false, "None", "", true);
+        }
+
+        /**
+         * Creates a custom header with all options.
+         *
+         * @param name      The header name
+         * @param value     The header value
+         * @param enabled   Whether the header is enabled
+         * @param dynamic   Whether the header value is dynamically extracted
+         * @param colorName The color name for UI display
+         * @param pattern   The extraction pattern for dynamic headers
+         * @param isRegex   Whether the pattern is a regex or simple string
+         */
+        public CustomHeader(String name, String value, boolean enabled, boolean dynamic,
+                            String colorName, String pattern, boolean isRegex) {
+            this(builder(name, value).enabled(enabled).dynamic(dynamic).colorName(colorName)
+                    .pattern(pattern, isRegex));
+        }
+
+        private CustomHeader(Builder builder) {
+            this.name = builder.name;
+            this.value = builder.value;
+            this.enabled = builder.enabled;
+            this.dynamic = builder.dynamic;
+            this.colorName = builder.colorName;
+            this.pattern = builder.pattern;
+            this.isRegex = builder.isRegex;
+            this.pipeline = builder.pipeline;
+            this.target = builder.target;
+            this.toolMask = builder.toolMask;
+            this.scanWindow = builder.scanWindow;
+            this.captureGroup = builder.captureGroup;
+            this.aggregation = builder.aggregation;
+            this.pool = builder.pool;
+            this.condition = builder.condition;
+            this.derivation = builder.derivation;
+        }
+
+        /**
+         * Starts building an enabled static header with default settings.
+         *
+         * @param name  The header, parameter or cookie name, or JSON Pointer
+         * @param value The header value
+         * @return A new builder
+         */
+        public static Builder builder(String name, String value) {
+            return new Builder(name, value);
+        }
+
+        /**
+         * Starts building a copy of this header.
+         *
+         * @return A builder initialized with this header's settings
+         */
+        public Builder toBuilder() {
+            Builder builder = new Builder(name, value).enabled(enabled).dynamic(dynamic).colorName(colorName)
+                    .pattern(pattern, isRegex).target(target).toolMask(toolMask).scanWindow(scanWindow)
+                    .captureGroup(captureGroup).aggregation(aggregation).pool(pool)
+                    .condition(condition).derivation(derivation);
+            return pipeline ? builder.pipeline(pattern) : builder;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public boolean isDynamic() {
+            return dynamic;
+        }
+
+        public String getColorName() {
+            return colorName;
+        }
+
+        public String getPattern() {
+            return pattern;
+        }
+
+        public boolean isRegex() {
+            return isRegex;
+        }
+
+        /**
+         * Checks if the pattern is an extractor pipeline spec rather than a regex or simple string.
+         *
+         * @return true if the pattern is compiled with {@link TokenExtractors#compile}
+         */
+        public boolean isPipeline() {
+            return pipeline;
+        }
+
+        public InjectionTarget getTarget() {
+            return target;
+        }
+
+        public int getToolMask() {
+            return toolMask;
+        }
+
+        public ScanWindow getScanWindow() {
+            return scanWindow;
+        }
+
+        /**
+         * Gets the regex capture group the value is read from: a group name, a group
+         * number, or empty for group 1 (the whole match if the pattern has no groups).
+         *
+         * @return The capture group
+         */
+        public String getCaptureGroup() {
+            return captureGroup;
+        }
+
+        public MatchAggregation getAggregation() {
+            return aggregation;
+        }
+
+        /**
+         * Gets the pool a static header rotates its value through.
+         *
+         * @return The value pool, or null if the header always sends {@link #getValue()}
+         */
+        public ValuePool getPool() {
+            return pool;
+        }
+
+        /**
+         * Gets the conditions a request must meet for this header to be applied.
+         *
+         * @return The condition, {@link RuleCondition#ALWAYS} by default
+         */
+        public RuleCondition getCondition() {
+            return condition;
+        }
+
+        /**
+         * Gets the expression a derived header computes its value from, such as
+         * {@code {{Authorization}} | hash:sha256}.
+         *
+         * @return The derivation, or empty if the header is not derived
+         */
+        public String getDerivation() {
+            return derivation;
+        }
+
+        /**
+         * Checks if the value is computed from other rules by a {@link DerivationPlan}.
+         *
+         * @return true if the header has a derivation
+         */
+        public boolean isDerived() {
+            return !derivation.isEmpty();
+        }
+
+        /**
+         * Gets the value to send with the next request: the next value from the pool if
+         * the header has one (which may wait for a rate-limited value to free up), or
+         * the fixed value otherwise.
+         *
+         * @return The value to send, or null if every pooled value is at its rate limit
+         */
+        public String nextValue() {
+            return pool != null ? pool.next() : value;
+        }
+
+        /**
+         * Gets the value to send with a request, drawing from the pool at most once per
+         * request, so derived rules that read this rule hash the value the request carries.
+         *
+         * @param drawn The pooled values drawn for the request so far, by rule name; updated
+         * @return The value to send, or null if every pooled value is at its rate limit
+         */
+        public String nextValue(Map<String, String> drawn) {
+            if (pool == null) {
+                return value;
+            }
+            if (drawn.containsKey(name)) {
+                return drawn.get(name);
+            }
+            String next = pool.next();
+            drawn.put(name, next);
+            return next;
+        }
+
+        /**
+         * Builder for headers with the less common options.
+         */
+        public static final class Builder {
+            private final String name;
+            private final String value;
+            private boolean enabled = true;
+            private boolean dynamic;
+            private String colorName = "None";
+            private String pattern = "";
+            private boolean isRegex = true;
+            private boolean pipeline;
+            private InjectionTarget target = InjectionTarget.HEADER;
+            private int toolMask = ALL_TOOLS;
+            private ScanWindow scanWindow = ScanWindow.WHOLE_BODY;
+            private String captureGroup = "";
+            private MatchAggregation aggregation = MatchAggregation.FIRST;
+            private ValuePool pool;
+            private RuleCondition condition = RuleCondition.ALWAYS;
+            private String derivation = "";
+
+            private Builder(String name, String value) {
+                this.name = name;
+                this.value = value;
+            }
+
+            public Builder enabled(boolean enabled) {
+                this.enabled = enabled;
+                return this;
+            }
+
+            public Builder dynamic(boolean dynamic) {
+                this.dynamic = dynamic;
+                return this;
+            }
+
+            public Builder colorName(String colorName) {
+                this.colorName = colorName;
+                return this;
+            }
+
+            public Builder pattern(String pattern, boolean isRegex) {
+                this.pattern = pattern;
+                this.isRegex = isRegex;
+                this.pipeline = false;
+                return this;
+            }
+
+            /**
+             * Sets an extractor pipeline spec, such as {@code json:/data/token | jwt:sub}, as the pattern.
+             */
+            public Builder pipeline(String spec) {
+                this.pattern = spec;
+                this.isRegex = false;
+                this.pipeline = true;
+                return this;
+            }
+
+            /**
+             * Sets where the value is injected in the request.
+             */
+            public Builder target(InjectionTarget target) {
+                this.target = target;
+                return this;
+            }
+
+            /**
+             * Sets the mask of tools the header applies to (one bit per Burp tool).
+             */
+            public Builder toolMask(int toolMask) {
+                this.toolMask = toolMask;
+                return this;
+            }
+
+            /**
+             * Sets the part of each macro response body the pattern is matched against.
+             */
+            public Builder scanWindow(ScanWindow scanWindow) {
+                this.scanWindow = scanWindow;
+                return this;
+            }
+
+            /**
+             * Sets the regex capture group, by name or number, that the value is read from.
+             * Rules with the same regex and scan window share one pass over each response.
+             */
+            public Builder captureGroup(String captureGroup) {
+                this.captureGroup = captureGroup != null ? captureGroup.trim() : "";
+                return this;
+            }
+
+            /**
+             * Sets how values from several regex matches are combined.
+             */
+            public Builder aggregation(MatchAggregation aggregation) {
+                this.aggregation = aggregation;
+                return this;
+            }
+
+            /**
+             * Sets a pool of values to rotate through instead of the fixed value, or null for none.
+             * The pool keeps its rotation and rate-limit state, so copies of a header share it.
+             */
+            public Builder pool(ValuePool pool) {
+                this.pool = pool;
+                return this;
+            }
+
+            /**
+             * Sets the method, content-type, URL and body conditions a request must meet.
+             */
+            public Builder condition(RuleCondition condition) {
+                this.condition = condition != null ? condition : RuleCondition.ALWAYS;
+                return this;
+            }
+
+            /**
+             * Sets an expression computing the value from other rules, such as
+             * {@code {{Authorization}} | hash:sha256}, or empty for none.
+             */
+            public Builder derivation(String derivation) {
+                this.derivation = derivation != null ? derivation.trim() : "";
+                return this;
+            }
+
+            public CustomHeader build() {
+                return new CustomHeader(this);
+            }
+        }
+    }
+}
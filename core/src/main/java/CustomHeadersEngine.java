@@ -0,0 +1,211 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Burp-independent entry point to the header rule engine.
+ * Applies the rules of a {@link CustomHeadersConfig} to raw HTTP/1.x requests and
+ * extracts dynamic values from raw responses, for use in load tests, CI scans and
+ * the command-line rewriter. Thread-safe; a single engine can serve many threads.
+ *
+ * <pre>
+ * CustomHeadersConfig config = new CustomHeadersConfig();
+ * config.replaceHeaders(rules);
+ * CustomHeadersEngine engine = new CustomHeadersEngine(config);
+ * engine.extractTokens(loginResponseBytes);
+ * byte[] rewritten = engine.rewrite(requestBytes);
+ * </pre>
+ */
+public class CustomHeadersEngine {
+
+    private final CustomHeadersConfig config;
+    private final TokenStore tokens;
+
+    /**
+     * Constructs a new CustomHeadersEngine with its own token store.
+     *
+     * @param config The rule repository to apply
+     */
+    public CustomHeadersEngine(CustomHeadersConfig config) {
+        this(config, new TokenStore());
+    }
+
+    /**
+     * Constructs a new CustomHeadersEngine.
+     *
+     * @param config The rule repository to apply
+     * @param tokens The store holding the current dynamic values, possibly shared with other engines
+     */
+    public CustomHeadersEngine(CustomHeadersConfig config, TokenStore tokens) {
+        this.config = config;
+        this.tokens = tokens;
+    }
+
+    public CustomHeadersConfig getConfig() {
+        return config;
+    }
+
+    public TokenStore getTokenStore() {
+        return tokens;
+    }
+
+    /**
+     * Sets the current value of a dynamic header directly.
+     *
+     * @param name  The dynamic header's name
+     * @param value The value to inject
+     */
+    public void setToken(String name, String value) {
+        tokens.put(name, value);
+    }
+
+    /**
+     * Gets the current values of all dynamic headers.
+     *
+     * @return Immutable map of the values by header name
+     */
+    public Map<String, String> getTokens() {
+        return tokens.snapshot();
+    }
+
+    /**
+     * Extracts values for every enabled dynamic header from a response and
+     * remembers them for subsequent rewrites. Each rule scans only its own window
+     * of the body and stops at its first match; gzip/deflate bodies are inflated
+     * incrementally. Regex rules sharing a pattern and window are matched in one pass.
+     *
+     * @param response A raw HTTP response (status line, headers and body) or a bare body
+     * @return The values found in this response, by header name
+     * @throws IllegalArgumentException if a dynamic header has an invalid regex or extractor spec
+     * @throws UncheckedIOException if the body is compressed and corrupt
+     */
+    public Map<String, String> extractTokens(byte[] response) {
+        Map<String, String> found = new LinkedHashMap<>();
+        if (!config.isEnabled() || !config.hasActiveDynamicRules()) {
+            return found;
+        }
+
+        int bodyOffset = bodyOffset(response);
+        String encoding = bodyOffset > 0 ? headerValue(response, bodyOffset, "Content-Encoding") : null;
+        for (ExtractionPlan.Pass pass : config.getExtractionPlan().getPasses()) {
+            try {
+                StreamingTokenScanner.scan(response, bodyOffset, response.length - bodyOffset,
+                        encoding, pass.getWindow(), pass.matcher(found));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        tokens.putAll(found);
+        return found;
+    }
+
+    /**
+     * Applies all enabled rules to a request.
+     *
+     * @param request The raw request
+     * @return The rewritten request, or the same array if no rule changed it
+     */
+    public byte[] rewrite(byte[] request) {
+        byte[] rewritten = rewrite(request, 0, request.length);
+        return rewritten != null ? rewritten : request;
+    }
+
+    /**
+     * Applies all enabled rules to a request held in a buffer region, without copying it.
+     *
+     * @param buffer The buffer holding the request
+     * @param offset The request's start offset
+     * @param length The request's length in bytes
+     * @return A new array with the rewritten request, or null if no rule changed it
+     * @throws IllegalArgumentException if the request has no header terminator
+     */
+    public byte[] rewrite(byte[] buffer, int offset, int length) {
+        if (!config.isEnabled() || config.getHeaders().isEmpty()) {
+            return null;
+        }
+
+        HttpRequestRewriter rewriter = new HttpRequestRewriter(buffer, offset, length);
+        rewriter.setPlacement(config.getHeaderPlacement());
+        TokenSet current = tokens.current();
+        Map<String, String> drawn = new HashMap<>();
+        for (CustomHeadersConfig.CustomHeader header : config.getHeaders()) {
+            if (header.getTarget().isResponse() ||
+                    (!header.getCondition().isAlways() && !header.getCondition().matches(rewriter))) {
+                continue;
+            }
+            String value = header.isDerived() ?
+                    config.getDerivationPlan().resolve(current, drawn).get(header.getName()) :
+                    header.isDynamic() ? current.get(header.getName()) : header.nextValue(drawn);
+            if (value != null) {
+                rewriter.inject(header.getTarget(), header.getName(), value);
+            }
+        }
+        return rewriter.toByteArray();
+    }
+
+    /**
+     * Applies all enabled rules to a request in a byte buffer. Heap buffers are read
+     * in place; the buffer's position and limit are not changed.
+     *
+     * @param request The buffer holding the request between position and limit
+     * @return A new buffer with the rewritten request, or the same buffer if no rule changed it
+     */
+    public ByteBuffer rewrite(ByteBuffer request) {
+        byte[] rewritten;
+        if (request.hasArray()) {
+            rewritten = rewrite(request.array(), request.arrayOffset() + request.position(), request.remaining());
+        } else {
+            byte[] copy = new byte[request.remaining()];
+            request.duplicate().get(copy);
+            rewritten = rewrite(copy, 0, copy.length);
+        }
+        return rewritten != null ? ByteBuffer.wrap(rewritten) : request;
+    }
+
+    /**
+     * Finds where the body starts in a raw HTTP message.
+     *
+     * @param message The raw message, or a bare body
+     * @return The body offset, or 0 if the message has no status line
+     */
+    static int bodyOffset(byte[] message) {
+        if (message.length < 5 || message[0] != 'H' || message[1] != 'T' || message[2] != 'T' ||
+                message[3] != 'P' || message[4] != '/') {
+            return 0;
+        }
+        for (int i = 0; i + 1 < message.length; i++) {
+            if (message[i] == '\n') {
+                if (message[i + 1] == '\n') {
+                    return i + 2;
+                }
+                if (message[i + 1] == '\r' && i + 2 < message.length && message[i + 2] == '\n') {
+                    return i + 3;
+                }
+            }
+        }
+        return message.length;
+    }
+
+    /**
+     * Finds a header value in a raw message's header block.
+     *
+     * @param message    The raw message
+     * @param headersEnd The offset just past the header block
+     * @param name       The header name, case-insensitive
+     * @return The trimmed value, or null if the header is absent
+     */
+    static String headerValue(byte[] message, int headersEnd, String name) {
+        String block = new String(message, 0, headersEnd, StandardCharsets.ISO_8859_1);
+        for (String line : block.split("\r?\n")) {
+            int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase(name)) {
+                return line.substring(colon + 1).trim();
+            }
+        }
+        return null;
+    }
+}
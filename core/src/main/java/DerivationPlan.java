@@ -0,0 +1,324 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Evaluation plan for derived rules, whose value is computed from other rules.
+ * A derivation is a template referencing other rules as {@code {{Rule Name}}},
+ * optionally followed by extractor stages, for example
+ * {@code {{Authorization}} | hash:sha256} or {@code {{Authorization}} | jwt:tenant}.
+ *
+ * <p>The plan is built once per published configuration: references are resolved and
+ * derived rules are sorted so each one is evaluated after the rules it reads. Rules on
+ * a reference cycle, or depending on one, are left out and the cycle is reported.
+ * {@link #resolve} evaluates every derived value once and memoizes the results for
+ * the token set instance, so a hash is only recomputed when a token it reads changes.
+ * Sets are compared by reference rather than version, since engines sharing one
+ * configuration keep their own stores whose versions overlap. Derived rules that read
+ * a pooled rule, directly or through another derived rule, are evaluated per request
+ * from the pooled values that request carries instead.
+ * Thread-safe.
+ */
+public final class DerivationPlan {
+
+    private static final Pattern REFERENCE = Pattern.compile("\\{\\{([^{}]+)}}");
+
+    private final List<CustomHeadersConfig.CustomHeader> source;
+    private final List<Step> steps;
+    private final List<Step> pooledSteps;
+    private final List<String> cycle;
+    private final Map<String, CustomHeadersConfig.CustomHeader> byName;
+    private volatile Memo memo;
+
+    private DerivationPlan(List<CustomHeadersConfig.CustomHeader> source, List<Step> steps, List<Step> pooledSteps,
+                           List<String> cycle, Map<String, CustomHeadersConfig.CustomHeader> byName) {
+        this.source = source;
+        this.steps = steps;
+        this.pooledSteps = pooledSteps;
+        this.cycle = cycle;
+        this.byName = byName;
+    }
+
+    /**
+     * Builds the plan for a rule list.
+     *
+     * @param headers The active rules, in order; the first rule of each name is the one referenced
+     * @return The plan
+     */
+    public static DerivationPlan forRules(List<CustomHeadersConfig.CustomHeader> headers) {
+        Map<String, CustomHeadersConfig.CustomHeader> byName = new HashMap<>();
+        Map<String, Step> derived = new LinkedHashMap<>();
+        for (CustomHeadersConfig.CustomHeader header : headers) {
+            if (byName.putIfAbsent(header.getName(), header) == null && header.isDerived()) {
+                try {
+                    derived.put(header.getName(), Step.parse(header));
+                } catch (IllegalArgumentException e) {
+                    // Invalid stages were rejected by the editor; a rule saved before a type was removed is skipped
+                }
+            }
+        }
+
+        // Kahn's algorithm over the references between derived rules
+        Map<String, Integer> pending = new HashMap<>();
+        Map<String, List<String>> readers = new HashMap<>();
+        Deque<String> ready = new ArrayDeque<>();
+        for (Step step : derived.values()) {
+            int count = 0;
+            for (String reference : step.references) {
+                if (derived.containsKey(reference)) {
+                    readers.computeIfAbsent(reference, k -> new ArrayList<>()).add(step.header.getName());
+                    count++;
+                }
+            }
+            pending.put(step.header.getName(), count);
+            if (count == 0) {
+                ready.add(step.header.getName());
+            }
+        }
+        List<Step> order = new ArrayList<>();
+        while (!ready.isEmpty()) {
+            String name = ready.poll();
+            order.add(derived.get(name));
+            for (String reader : readers.getOrDefault(name, Collections.emptyList())) {
+                if (pending.merge(reader, -1, Integer::sum) == 0) {
+                    ready.add(reader);
+                }
+            }
+        }
+
+        List<String> cycle = Collections.emptyList();
+        if (order.size() < derived.size()) {
+            cycle = findCycle(derived, pending);
+        }
+
+        // Steps that read a pooled value cannot be shared between requests; order is kept within both lists
+        List<Step> shared = new ArrayList<>();
+        List<Step> pooled = new ArrayList<>();
+        Set<String> pooledNames = new HashSet<>();
+        for (Step step : order) {
+            boolean readsPool = false;
+            for (String reference : step.references) {
+                CustomHeadersConfig.CustomHeader referenced = byName.get(reference);
+                readsPool |= pooledNames.contains(reference) || (referenced != null && !referenced.isDerived() &&
+                        !referenced.isDynamic() && referenced.getPool() != null);
+            }
+            if (readsPool) {
+                pooled.add(step);
+                pooledNames.add(step.header.getName());
+            } else {
+                shared.add(step);
+            }
+        }
+        return new DerivationPlan(headers, Collections.unmodifiableList(shared), Collections.unmodifiableList(pooled),
+                cycle, byName);
+    }
+
+    /**
+     * Walks references among the rules Kahn's algorithm could not order until one repeats.
+     */
+    private static List<String> findCycle(Map<String, Step> derived, Map<String, Integer> pending) {
+        String current = null;
+        for (Map.Entry<String, Integer> entry : pending.entrySet()) {
+            if (entry.getValue() > 0) {
+                current = entry.getKey();
+                break;
+            }
+        }
+        Set<String> path = new LinkedHashSet<>();
+        while (current != null && path.add(current)) {
+            String next = null;
+            for (String reference : derived.get(current).references) {
+                if (pending.getOrDefault(reference, 0) > 0) {
+                    next = reference;
+                    break;
+                }
+            }
+            current = next;
+        }
+        List<String> cycle = new ArrayList<>();
+        boolean inCycle = false;
+        for (String name : path) {
+            inCycle |= name.equals(current);
+            if (inCycle) {
+                cycle.add(name);
+            }
+        }
+        cycle.add(current);
+        // Path order follows references backwards (reader to read); report it in data-flow order
+        Collections.reverse(cycle);
+        return Collections.unmodifiableList(cycle);
+    }
+
+    /**
+     * Checks the syntax of a derivation.
+     *
+     * @param derivation The derivation
+     * @throws IllegalArgumentException if it references no rule or has an invalid extractor stage
+     */
+    public static void validate(String derivation) {
+        Step.parse(CustomHeadersConfig.CustomHeader.builder("", "").derivation(derivation).build());
+    }
+
+    /**
+     * Gets the rule list the plan was built from, so callers can tell when to rebuild it.
+     *
+     * @return The source rule list
+     */
+    public List<CustomHeadersConfig.CustomHeader> getSource() {
+        return source;
+    }
+
+    /**
+     * Gets a reference cycle among the derived rules.
+     *
+     * @return The rule names along the cycle, first name repeated at the end, or empty if there is none
+     */
+    public List<String> getCycle() {
+        return cycle;
+    }
+
+    /**
+     * Computes every derived value for a request. Values that read no pooled rule are
+     * returned from the memo when the token set is the same.
+     *
+     * @param tokens The token set the request reads its dynamic values from
+     * @param drawn  The pooled values drawn for the request so far, by rule name, as kept by
+     *               {@link CustomHeadersConfig.CustomHeader#nextValue(Map)}; pooled rules the request
+     *               has not drawn yet are drawn into it
+     * @return Immutable map of derived values by rule name; rules whose references have no value are absent
+     */
+    public Map<String, String> resolve(TokenSet tokens, Map<String, String> drawn) {
+        Map<String, String> shared = resolveShared(tokens);
+        if (pooledSteps.isEmpty()) {
+            return shared;
+        }
+        Map<String, String> values = new HashMap<>(shared);
+        for (Step step : pooledSteps) {
+            String value = step.evaluate(values, byName, tokens, drawn);
+            if (value != null) {
+                values.put(step.header.getName(), value);
+            }
+        }
+        return Collections.unmodifiableMap(values);
+    }
+
+    private Map<String, String> resolveShared(TokenSet tokens) {
+        if (steps.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Memo current = memo;
+        if (current != null && current.tokens == tokens) {
+            return current.values;
+        }
+
+        // Derived values are pure functions of the rules and tokens, so racing threads compute the same map
+        Map<String, String> values = new HashMap<>();
+        for (Step step : steps) {
+            String value = step.evaluate(values, byName, tokens, null);
+            if (value != null) {
+                values.put(step.header.getName(), value);
+            }
+        }
+        Map<String, String> result = Collections.unmodifiableMap(values);
+        memo = new Memo(tokens, result);
+        return result;
+    }
+
+    private static final class Step {
+        final CustomHeadersConfig.CustomHeader header;
+        final String template;
+        final List<String> references;
+        final TokenExtractor extractor;
+
+        private Step(CustomHeadersConfig.CustomHeader header, String template, List<String> references,
+                     TokenExtractor extractor) {
+            this.header = header;
+            this.template = template;
+            this.references = references;
+            this.extractor = extractor;
+        }
+
+        static Step parse(CustomHeadersConfig.CustomHeader header) {
+            String derivation = header.getDerivation();
+            // The template ends at the first | outside a {{reference}}
+            int split = -1;
+            int depth = 0;
+            for (int i = 0; i < derivation.length() && split == -1; i++) {
+                if (derivation.startsWith("{{", i)) {
+                    depth++;
+                    i++;
+                } else if (derivation.startsWith("}}", i) && depth > 0) {
+                    depth--;
+                    i++;
+                } else if (derivation.charAt(i) == '|' && depth == 0) {
+                    split = i;
+                }
+            }
+            String template = (split == -1 ? derivation : derivation.substring(0, split)).trim();
+            String stages = split == -1 ? "" : derivation.substring(split + 1).trim();
+
+            List<String> references = new ArrayList<>();
+            Matcher m = REFERENCE.matcher(template);
+            while (m.find()) {
+                references.add(m.group(1).trim());
+            }
+            if (references.isEmpty()) {
+                throw new IllegalArgumentException("A derived value must reference a rule as {{Rule Name}}");
+            }
+            TokenExtractor extractor = stages.isEmpty() ? null : TokenExtractors.compile(stages);
+            return new Step(header, template, references, extractor);
+        }
+
+        String evaluate(Map<String, String> derived, Map<String, CustomHeadersConfig.CustomHeader> byName,
+                        TokenSet tokens, Map<String, String> drawn) {
+            Matcher m = REFERENCE.matcher(template);
+            StringBuilder sb = new StringBuilder(template.length() + 64);
+            while (m.find()) {
+                String value = lookup(m.group(1).trim(), derived, byName, tokens, drawn);
+                if (value == null) {
+                    return null;
+                }
+                m.appendReplacement(sb, Matcher.quoteReplacement(value));
+            }
+            m.appendTail(sb);
+            return extractor != null ? extractor.extract(sb) : sb.toString();
+        }
+
+        private static String lookup(String name, Map<String, String> derived,
+                                     Map<String, CustomHeadersConfig.CustomHeader> byName, TokenSet tokens,
+                                     Map<String, String> drawn) {
+            CustomHeadersConfig.CustomHeader referenced = byName.get(name);
+            if (referenced == null) {
+                return null;
+            }
+            if (referenced.isDerived()) {
+                return derived.get(name);
+            }
+            if (referenced.isDynamic()) {
+                return tokens.get(name);
+            }
+            // Only pooled steps are given the request's drawn values; shared steps never read a pool
+            return drawn != null ? referenced.nextValue(drawn) : referenced.getValue();
+        }
+    }
+
+    private static final class Memo {
+        final TokenSet tokens;
+        final Map<String, String> values;
+
+        Memo(TokenSet tokens, Map<String, String> values) {
+            this.tokens = tokens;
+            this.values = values;
+        }
+    }
+}
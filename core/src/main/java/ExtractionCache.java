@@ -0,0 +1,137 @@
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Content-addressed cache of extraction results.
+ * Maps the XXH64 hash of the bytes an {@link ExtractionPlan.Pass} would scan to the
+ * values that pass extracted from them, so a macro response that is byte-identical
+ * to an earlier one (a static config endpoint returning an API key, say) skips
+ * decoding and matching entirely. Misses are cached too, as empty results.
+ *
+ * <p>Entries are keyed by pass identity, and passes are rebuilt whenever the rules
+ * change, so results from older rules are never returned; they age out through
+ * LRU eviction. Thread-safe.
+ */
+public final class ExtractionCache {
+
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private final Map<Key, Map<String, String>> entries;
+    private long hits;
+    private long misses;
+
+    /**
+     * Constructs a new ExtractionCache.
+     *
+     * @param capacity The maximum number of results kept; least recently used entries are evicted
+     */
+    public ExtractionCache(int capacity) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Map<String, String>> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Fingerprints the bytes a pass scans. The content encoding is part of the key,
+     * since the same bytes decode differently with and without it.
+     *
+     * @param bytes           The bytes handed to the scanner
+     * @param contentEncoding The content encoding the scanner will apply, or null
+     * @return The fingerprint
+     */
+    public static long fingerprint(byte[] bytes, String contentEncoding) {
+        return XxHash64.hash(bytes, 0, bytes.length, seed(contentEncoding));
+    }
+
+    /**
+     * Starts fingerprinting bytes that are read in pieces, such as a body that
+     * should not be copied out of its container whole. The digest equals
+     * {@link #fingerprint} of the same bytes.
+     *
+     * @param contentEncoding The content encoding the scanner will apply, or null
+     * @return A hasher to feed the bytes to
+     */
+    public static XxHash64.Hasher fingerprinter(String contentEncoding) {
+        return new XxHash64.Hasher(seed(contentEncoding));
+    }
+
+    private static long seed(String contentEncoding) {
+        return contentEncoding != null ? contentEncoding.hashCode() : 0;
+    }
+
+    /**
+     * Gets the values a pass extracted from identical bytes.
+     *
+     * @param pass        The extraction pass
+     * @param fingerprint The fingerprint of the scanned bytes
+     * @param length      The number of scanned bytes, as a second check against collisions
+     * @return The values by rule name (empty if nothing matched), or null if not cached
+     */
+    public synchronized Map<String, String> get(ExtractionPlan.Pass pass, long fingerprint, int length) {
+        Map<String, String> values = entries.get(new Key(pass, fingerprint, length));
+        if (values != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return values;
+    }
+
+    /**
+     * Caches the values a pass extracted.
+     *
+     * @param pass        The extraction pass
+     * @param fingerprint The fingerprint of the scanned bytes
+     * @param length      The number of scanned bytes
+     * @param values      The values by rule name, possibly empty
+     */
+    public synchronized void put(ExtractionPlan.Pass pass, long fingerprint, int length, Map<String, String> values) {
+        entries.put(new Key(pass, fingerprint, length), Collections.unmodifiableMap(new LinkedHashMap<>(values)));
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private static final class Key {
+        private final ExtractionPlan.Pass pass;
+        private final long fingerprint;
+        private final int length;
+
+        Key(ExtractionPlan.Pass pass, long fingerprint, int length) {
+            this.pass = pass;
+            this.fingerprint = fingerprint;
+            this.length = length;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return pass == other.pass && fingerprint == other.fingerprint && length == other.length;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(pass) * 31 + Long.hashCode(fingerprint);
+        }
+    }
+}
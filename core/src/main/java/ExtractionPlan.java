@@ -0,0 +1,188 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Groups the enabled dynamic rules of a configuration into scan passes.
+ * Regex rules with the same pattern and scan window share a single pass over each
+ * macro response, each reading its own capture group, so a login response that
+ * carries both an access token and a CSRF token is matched once rather than once
+ * per header. Every other rule gets a pass of its own.
+ *
+ * <p>Plans are immutable; the configuration builds one for each rule set it
+ * publishes, so the plan always matches the header list requests see.
+ */
+public final class ExtractionPlan {
+
+    // Returned by shared matchers to stop the scanner; values are delivered through the map
+    private static final String DONE = new String("<done>");
+
+    private final List<CustomHeadersConfig.CustomHeader> source;
+    private final List<Pass> passes;
+
+    private ExtractionPlan(List<CustomHeadersConfig.CustomHeader> source, List<Pass> passes) {
+        this.source = source;
+        this.passes = passes;
+    }
+
+    /**
+     * Builds the passes for the enabled dynamic rules in a header list.
+     * Patterns are compiled lazily by {@link Pass#matcher}, so one invalid rule
+     * does not stop the others from extracting.
+     *
+     * @param headers The configured header rules
+     * @return The plan
+     */
+    public static ExtractionPlan forRules(List<CustomHeadersConfig.CustomHeader> headers) {
+        Map<String, List<CustomHeadersConfig.CustomHeader>> groups = new LinkedHashMap<>();
+        for (CustomHeadersConfig.CustomHeader header : headers) {
+            if (!header.isEnabled() || !header.isDynamic()) {
+                continue;
+            }
+            // The NUL separator cannot occur in a saved pattern, so keys never collide
+            String key = header.isRegex() && !header.isPipeline() ?
+                    header.getPattern() + '\0' + header.getScanWindow().format() :
+                    "\0" + groups.size();
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(header);
+        }
+        List<Pass> passes = new ArrayList<>(groups.size());
+        for (List<CustomHeadersConfig.CustomHeader> rules : groups.values()) {
+            passes.add(new Pass(Collections.unmodifiableList(rules)));
+        }
+        return new ExtractionPlan(headers, Collections.unmodifiableList(passes));
+    }
+
+    /**
+     * Gets the header list this plan was built from, compared by identity to detect
+     * a newly published configuration.
+     *
+     * @return The source header list
+     */
+    public List<CustomHeadersConfig.CustomHeader> getSource() {
+        return source;
+    }
+
+    public List<Pass> getPasses() {
+        return passes;
+    }
+
+    /**
+     * The rules matched together in one scan of a response.
+     */
+    public static final class Pass {
+        private final List<CustomHeadersConfig.CustomHeader> rules;
+
+        Pass(List<CustomHeadersConfig.CustomHeader> rules) {
+            this.rules = rules;
+        }
+
+        public List<CustomHeadersConfig.CustomHeader> getRules() {
+            return rules;
+        }
+
+        public ScanWindow getWindow() {
+            return rules.get(0).getScanWindow();
+        }
+
+        /**
+         * Checks if the pass reads several rules from one regex.
+         *
+         * @return true if more than one rule shares the pass
+         */
+        public boolean isShared() {
+            return rules.size() > 1;
+        }
+
+        /**
+         * Creates a matcher for {@link StreamingTokenScanner} that puts each rule's
+         * value into {@code found}, by rule name, once the scan settles.
+         *
+         * @param found Receives the extracted values
+         * @return The matcher
+         * @throws IllegalArgumentException if a pattern, spec or capture group is invalid
+         */
+        public StreamingTokenScanner.ChunkMatcher matcher(Map<String, String> found) {
+            CustomHeadersConfig.CustomHeader first = rules.get(0);
+            if (first.isRegex() && !first.isPipeline()) {
+                return regexMatcher(found);
+            }
+            StreamingTokenScanner.ChunkMatcher matcher = TokenExtractors.forRule(first).matcher();
+            return (text, complete) -> {
+                String value = matcher.match(text, complete);
+                if (value != null && value != StreamingTokenScanner.NEED_MORE) {
+                    found.put(first.getName(), value);
+                }
+                return value;
+            };
+        }
+
+        /**
+         * Matches the shared regex once per chunk, feeding every rule's capture group.
+         * Stops at the first match when all rules take their first value; rules that
+         * aggregate LAST or JOIN need the whole window.
+         */
+        private StreamingTokenScanner.ChunkMatcher regexMatcher(Map<String, String> found) {
+            Pattern pattern = TokenExtraction.compile(rules.get(0).getPattern());
+            int count = rules.size();
+            int[] groups = new int[count];
+            boolean needsAll = false;
+            for (int i = 0; i < count; i++) {
+                groups[i] = TokenExtraction.groupIndex(pattern, rules.get(i).getCaptureGroup());
+                needsAll |= rules.get(i).getAggregation() != MatchAggregation.FIRST;
+            }
+            boolean scanAll = needsAll;
+
+            return (text, complete) -> {
+                if (scanAll && !complete) {
+                    return null;
+                }
+                String[] values = new String[count];
+                int missing = count;
+                Matcher m = pattern.matcher(text);
+                while (missing > 0 || scanAll) {
+                    if (!m.find()) {
+                        break;
+                    }
+                    if (m.hitEnd() && !complete) {
+                        return StreamingTokenScanner.NEED_MORE;
+                    }
+                    for (int i = 0; i < count; i++) {
+                        String value = m.group(groups[i]);
+                        if (value == null || value.isEmpty()) {
+                            continue;
+                        }
+                        String previous = values[i];
+                        switch (rules.get(i).getAggregation()) {
+                            case LAST:
+                                values[i] = value;
+                                break;
+                            case JOIN:
+                                values[i] = previous == null ? value : previous + MatchAggregation.JOIN_SEPARATOR + value;
+                                break;
+                            default:
+                                if (previous == null) {
+                                    values[i] = value;
+                                }
+                        }
+                        if (previous == null) {
+                            missing--;
+                        }
+                    }
+                }
+                if (missing > 0 && !complete) {
+                    return null;
+                }
+                for (int i = 0; i < count; i++) {
+                    if (values[i] != null) {
+                        found.put(rules.get(i).getName(), values[i]);
+                    }
+                }
+                return missing < count ? DONE : null;
+            };
+        }
+    }
+}
@@ -0,0 +1,42 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event for one rule written into one request.
+ * Disabled by default; while disabled, {@code begin()} and {@code shouldCommit()} are
+ * no-ops the JIT removes along with the event allocation, so the request path pays
+ * nothing. Enable {@code customheaderz.HeaderInjection} in a recording's settings to
+ * see where extension time goes next to GC and CPU samples.
+ */
+@Name("customheaderz.HeaderInjection")
+@Label("Header Injection")
+@Category({"CustomHeaderZ"})
+@Description("A custom header rule written into an outgoing request")
+@Enabled(false)
+@StackTrace(false)
+public class HeaderInjectionEvent extends Event {
+
+    @Label("Rule")
+    public String rule;
+
+    @Label("Tool")
+    public String tool;
+
+    @Label("Target")
+    public String target;
+
+    @Label("Bytes Copied")
+    @Description("Size of the rewritten request, which is copied once per injection; zero when headers are patched in place")
+    @DataAmount
+    public long bytesCopied;
+
+    @Label("Token Version")
+    @Description("Version of the token set every dynamic value in the request was read from")
+    public long tokenVersion;
+}
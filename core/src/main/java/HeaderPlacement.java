@@ -0,0 +1,178 @@
+import java.util.Locale;
+
+/**
+ * How header rules are written into a request's header block.
+ * {@link #MOVE_TO_END} is Burp's own behaviour: a replaced header is removed and
+ * added again at the end, and every change re-serializes the request. The other
+ * placements patch existing headers in place at their original position, rebuild the
+ * request once and only if a value actually changed, and insert headers the request
+ * lacks at the start, at the end, or next to a named anchor header. Targets that
+ * fingerprint header order then see the client's order unchanged. Immutable.
+ */
+public final class HeaderPlacement {
+
+    private enum Kind {
+        MOVE, END, START, AFTER, BEFORE
+    }
+
+    /** Replaced headers are moved to the end, as Burp's message editing does. */
+    public static final HeaderPlacement MOVE_TO_END = new HeaderPlacement(Kind.MOVE, "");
+
+    /** Existing headers keep their position; new headers are appended. */
+    public static final HeaderPlacement END = new HeaderPlacement(Kind.END, "");
+
+    /** Existing headers keep their position; new headers come first. */
+    public static final HeaderPlacement START = new HeaderPlacement(Kind.START, "");
+
+    private final Kind kind;
+    private final String anchor;
+
+    private HeaderPlacement(Kind kind, String anchor) {
+        this.kind = kind;
+        this.anchor = anchor;
+    }
+
+    /**
+     * Keeps existing headers in place and inserts new ones after the last occurrence
+     * of a header, or at the end if the request lacks it.
+     *
+     * @param anchor The header name, such as {@code Host}
+     * @return The placement
+     */
+    public static HeaderPlacement after(String anchor) {
+        return new HeaderPlacement(Kind.AFTER, requireAnchor(anchor));
+    }
+
+    /**
+     * Keeps existing headers in place and inserts new ones before the first occurrence
+     * of a header, or at the end if the request lacks it.
+     *
+     * @param anchor The header name, such as {@code Content-Type}
+     * @return The placement
+     */
+    public static HeaderPlacement before(String anchor) {
+        return new HeaderPlacement(Kind.BEFORE, requireAnchor(anchor));
+    }
+
+    /**
+     * Parses a persisted or command-line placement.
+     *
+     * @param spec {@code move}, {@code end}, {@code start}, {@code after:Name} or {@code before:Name};
+     *             null or empty is {@link #MOVE_TO_END}
+     * @return The placement
+     * @throws IllegalArgumentException if the spec is not recognized
+     */
+    public static HeaderPlacement parse(String spec) {
+        String trimmed = spec != null ? spec.trim() : "";
+        int colon = trimmed.indexOf(':');
+        String kind = (colon == -1 ? trimmed : trimmed.substring(0, colon)).toLowerCase(Locale.ROOT);
+        String anchor = colon == -1 ? "" : trimmed.substring(colon + 1);
+        switch (kind) {
+            case "":
+            case "move":
+                return MOVE_TO_END;
+            case "end":
+                return END;
+            case "start":
+                return START;
+            case "after":
+                return after(anchor);
+            case "before":
+                return before(anchor);
+            default:
+                throw new IllegalArgumentException("Header placement must be move, end, start, after:Name or " +
+                        "before:Name, not '" + spec + "'");
+        }
+    }
+
+    private static String requireAnchor(String anchor) {
+        String name = anchor != null ? anchor.trim() : "";
+        if (name.isEmpty() || name.indexOf(':') != -1 || name.indexOf(' ') != -1) {
+            throw new IllegalArgumentException("Header placement needs a header name to insert next to");
+        }
+        return name;
+    }
+
+    /**
+     * Checks if existing headers are patched in place rather than moved to the end.
+     *
+     * @return false only for {@link #MOVE_TO_END}
+     */
+    public boolean isInPlace() {
+        return kind != Kind.MOVE;
+    }
+
+    /**
+     * Finds where new headers are inserted among a request's header lines.
+     *
+     * @param count   The number of header lines
+     * @param matcher Tells whether the line at an index has a given name, case-insensitively
+     * @return The index of the line new headers go before; {@code count} to append
+     */
+    int insertionIndex(int count, NameMatcher matcher) {
+        switch (kind) {
+            case START:
+                return 0;
+            case AFTER:
+                for (int i = count - 1; i >= 0; i--) {
+                    if (matcher.matches(i, anchor)) {
+                        return i + 1;
+                    }
+                }
+                return count;
+            case BEFORE:
+                for (int i = 0; i < count; i++) {
+                    if (matcher.matches(i, anchor)) {
+                        return i;
+                    }
+                }
+                return count;
+            default:
+                return count;
+        }
+    }
+
+    /**
+     * Gets the persisted form.
+     *
+     * @return The spec accepted by {@link #parse}
+     */
+    public String toSpec() {
+        switch (kind) {
+            case AFTER:
+                return "after:" + anchor;
+            case BEFORE:
+                return "before:" + anchor;
+            default:
+                return kind.name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Describes the placement for display.
+     *
+     * @return A short description, such as {@code Keep order, add new headers after Host}
+     */
+    @Override
+    public String toString() {
+        switch (kind) {
+            case MOVE:
+                return "Move replaced headers to the end";
+            case START:
+                return "Keep order, add new headers first";
+            case AFTER:
+                return "Keep order, add new headers after " + anchor;
+            case BEFORE:
+                return "Keep order, add new headers before " + anchor;
+            default:
+                return "Keep order, add new headers last";
+        }
+    }
+
+    /**
+     * Name test over a request's header lines, so the rewriter can locate an anchor without decoding names.
+     */
+    interface NameMatcher {
+        boolean matches(int index, String name);
+    }
+}
@@ -0,0 +1,612 @@
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Applies header rule injections to a raw HTTP/1.x request in one pass.
+ * Untouched header lines, the request line and the body are copied as byte
+ * ranges; only the lines that change are re-encoded. Headers that already exist
+ * keep their position, new headers are inserted where the {@link HeaderPlacement}
+ * puts them, and Content-Length is updated whenever the body changes. A body framed
+ * by Transfer-Encoding, such as a chunked upload, is never rewritten: body targets do
+ * not apply to it, and Content-Length is never added next to Transfer-Encoding. In
+ * Burp's text form of an HTTP/2 request, whose request line ends in {@code HTTP/2},
+ * new header names are written in lowercase as HTTP/2 requires. As a
+ * {@link RuleCondition.Request} it describes the request as parsed, before any
+ * pending change. Response header blocks are rewritten the same way, with the
+ * status line copied as-is.
+ */
+public final class HttpRequestRewriter implements RuleCondition.Request {
+
+    private static final byte[] COLON_SPACE = {':', ' '};
+    private static final byte[] HTTP2 = {'H', 'T', 'T', 'P', '/', '2'};
+
+    private final byte[] data;
+    private final int offset;
+    private final int end;
+
+    // Parsed layout
+    private int requestLineEnd;
+    private int requestLineNext;
+    private final List<HeaderLine> headers = new ArrayList<>();
+    private int headersEnd;
+    private int bodyStart;
+    private byte[] eol;
+    private boolean http2;
+
+    // Pending changes
+    private byte[] newRequestLine;
+    private byte[] newBody;
+    private final List<String[]> addedHeaders = new ArrayList<>();
+    private boolean modified;
+    private HeaderPlacement placement = HeaderPlacement.END;
+
+    /**
+     * Parses a raw request. The buffer is not copied or modified.
+     *
+     * @param data   The buffer holding the request
+     * @param offset The request's start offset
+     * @param length The request's length in bytes
+     * @throws IllegalArgumentException if the request has no header terminator
+     */
+    public HttpRequestRewriter(byte[] data, int offset, int length) {
+        this.data = data;
+        this.offset = offset;
+        this.end = offset + length;
+        parse();
+    }
+
+    /**
+     * Sets where headers the request lacks are inserted. {@link HeaderPlacement#MOVE_TO_END}
+     * appends them like {@link HeaderPlacement#END}, since existing headers are always
+     * patched in place here.
+     *
+     * @param placement The placement of new headers
+     */
+    public void setPlacement(HeaderPlacement placement) {
+        this.placement = placement;
+    }
+
+    /**
+     * Checks if the request line names HTTP/2, as in Burp's text form of HTTP/2 requests.
+     *
+     * @return true if new header names are written in lowercase
+     */
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    /**
+     * Applies one injection to the request.
+     *
+     * @param target Where the value is written
+     * @param name   The header, parameter or cookie name, or JSON Pointer
+     * @param value  The value to write
+     * @return true if the target could be written; always false for WebSocket targets
+     */
+    public boolean inject(InjectionTarget target, String name, String value) {
+        switch (target) {
+            case WEBSOCKET_JSON:
+                return false;
+            case URL_PARAMETER:
+                return setUrlParameter(name, value);
+            case BODY_PARAMETER:
+                return setBodyParameter(name, value);
+            case COOKIE:
+                return setCookie(name, value);
+            case JSON_POINTER:
+                return patchJson(name, value);
+            case STRIP_RESPONSE_HEADER:
+                return removeHeaders(name, value);
+            case RESPONSE_HEADER:
+            case HEADER:
+            default:
+                setHeader(name, value);
+                return true;
+        }
+    }
+
+    /**
+     * Sets a header, replacing the first existing occurrence in place and removing any duplicates.
+     * Control characters in the name and value are dropped.
+     *
+     * @param name  The header name
+     * @param value The header value
+     */
+    public void setHeader(String name, String value) {
+        String headerName = stripControls(name);
+        String headerValue = stripControls(value);
+        byte[] valueBytes = headerValue.getBytes(StandardCharsets.ISO_8859_1);
+        HeaderLine existing = null;
+        boolean duplicates = false;
+        for (HeaderLine line : headers) {
+            if (line.nameEquals(headerName)) {
+                if (existing == null) {
+                    existing = line;
+                } else if (line.replacement == null || line.replacementValue != null) {
+                    line.replacement = new byte[0];
+                    line.replacementValue = null;
+                    duplicates = true;
+                }
+            }
+        }
+
+        if (existing != null) {
+            if (existing.replacement == null && existing.valueEquals(valueBytes)) {
+                // The value is already there, but removed duplicates still change the request
+                modified |= duplicates;
+                return;
+            }
+            existing.replacement = headerLine(data, existing.start, existing.nameEnd, valueBytes);
+            existing.replacementValue = headerValue;
+        } else {
+            String[] added = findAddedHeader(headerName);
+            if (added != null) {
+                added[1] = headerValue;
+            } else {
+                addedHeaders.add(new String[]{headerName, headerValue});
+            }
+        }
+        modified = true;
+    }
+
+    /**
+     * Drops CR, LF and the other control characters except tab, so a value taken from a
+     * token or a multi-line match can never end the header line and start another.
+     */
+    private static String stripControls(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if ((c < 0x20 && c != '\t') || c == 0x7f) {
+                StringBuilder sb = new StringBuilder(text.length());
+                for (int j = 0; j < text.length(); j++) {
+                    char d = text.charAt(j);
+                    if ((d >= 0x20 || d == '\t') && d != 0x7f) {
+                        sb.append(d);
+                    }
+                }
+                return sb.toString();
+            }
+        }
+        return text;
+    }
+
+    /**
+     * Removes every occurrence of a header whose value contains the given text.
+     *
+     * @param name       The header name
+     * @param containing Text the value must contain, or empty to remove every occurrence
+     * @return true if a header was removed
+     */
+    public boolean removeHeaders(String name, String containing) {
+        boolean removed = false;
+        for (HeaderLine line : headers) {
+            if (line.nameEquals(name) && (line.replacement == null || line.replacementValue != null)) {
+                String value = line.replacementValue != null ? line.replacementValue :
+                        new String(data, line.valueStart, line.valueEnd - line.valueStart, StandardCharsets.ISO_8859_1);
+                if (containing.isEmpty() || value.contains(containing)) {
+                    line.replacement = new byte[0];
+                    line.replacementValue = null;
+                    removed = true;
+                }
+            }
+        }
+        if (containing.isEmpty()) {
+            removed |= addedHeaders.removeIf(header -> header[0].equalsIgnoreCase(name));
+        }
+        modified |= removed;
+        return removed;
+    }
+
+    /**
+     * Returns the rewritten request.
+     *
+     * @return A new array with the changes applied, or null if nothing changed
+     */
+    public byte[] toByteArray() {
+        if (!modified) {
+            return null;
+        }
+
+        int bodyEnd = end;
+        byte[] body = newBody;
+        if (body != null && !isTransferCoded()) {
+            setHeader("Content-Length", Integer.toString(body.length));
+        }
+
+        ByteBuilder out = new ByteBuilder(end - offset + 256);
+        if (newRequestLine != null) {
+            out.write(newRequestLine, 0, newRequestLine.length);
+            out.write(eol, 0, eol.length);
+        } else {
+            out.write(data, offset, requestLineNext - offset);
+        }
+        int insertAt = addedHeaders.isEmpty() ? headers.size() :
+                placement.insertionIndex(headers.size(), (index, name) -> headers.get(index).nameEquals(name));
+        for (int i = 0; i <= headers.size(); i++) {
+            if (i == insertAt) {
+                writeAddedHeaders(out);
+            }
+            if (i == headers.size()) {
+                break;
+            }
+            HeaderLine line = headers.get(i);
+            if (line.replacement != null) {
+                out.write(line.replacement, 0, line.replacement.length);
+            } else {
+                out.write(data, line.start, line.next - line.start);
+            }
+        }
+        out.write(data, headersEnd, bodyStart - headersEnd);
+        if (body != null) {
+            out.write(body, 0, body.length);
+        } else {
+            out.write(data, bodyStart, bodyEnd - bodyStart);
+        }
+        return out.toByteArray();
+    }
+
+    private void writeAddedHeaders(ByteBuilder out) {
+        for (String[] header : addedHeaders) {
+            // HTTP/2 forbids uppercase field names; an existing header keeps the name it was sent with
+            byte[] nameBytes = ascii(http2 ? header[0].toLowerCase(Locale.ROOT) : header[0]);
+            byte[] line = headerLine(nameBytes, 0, nameBytes.length, ascii(header[1]));
+            out.write(line, 0, line.length);
+        }
+    }
+
+    private boolean setUrlParameter(String name, String value) {
+        // Request line: METHOD SP target SP version
+        byte[] line = newRequestLine != null ? newRequestLine : slice(data, offset, requestLineEnd);
+        int firstSpace = indexOf(line, 0, line.length, (byte) ' ');
+        int lastSpace = lastIndexOf(line, 0, line.length, (byte) ' ');
+        if (firstSpace == -1 || lastSpace <= firstSpace) {
+            return false;
+        }
+
+        int query = indexOf(line, firstSpace + 1, lastSpace, (byte) '?');
+        if (query == -1) {
+            newRequestLine = concat(slice(line, 0, lastSpace),
+                    ascii("?" + name + "=" + urlEncode(value)),
+                    slice(line, lastSpace, line.length));
+        } else {
+            byte[] params = setParameter(line, query + 1, lastSpace, name, urlEncode(value));
+            newRequestLine = concat(slice(line, 0, query + 1), params, slice(line, lastSpace, line.length));
+        }
+        modified = true;
+        return true;
+    }
+
+    private boolean setBodyParameter(String name, String value) {
+        if (isTransferCoded()) {
+            return false;
+        }
+        byte[] body = currentBody();
+        newBody = setParameter(body, 0, body.length, name, urlEncode(value));
+        modified = true;
+        return true;
+    }
+
+    private boolean setCookie(String name, String value) {
+        String current = headerValue("Cookie");
+        if (current == null) {
+            setHeader("Cookie", name + "=" + value);
+            return true;
+        }
+
+        StringBuilder sb = new StringBuilder(current.length() + value.length() + 8);
+        boolean found = false;
+        for (String pair : current.split(";")) {
+            String trimmed = pair.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append("; ");
+            }
+            int eq = trimmed.indexOf('=');
+            if (!found && eq != -1 && trimmed.substring(0, eq).equals(name)) {
+                sb.append(name).append('=').append(value);
+                found = true;
+            } else {
+                sb.append(trimmed);
+            }
+        }
+        if (!found) {
+            sb.append(sb.length() > 0 ? "; " : "").append(name).append('=').append(value);
+        }
+        setHeader("Cookie", sb.toString());
+        return true;
+    }
+
+    private boolean patchJson(String pointer, String value) {
+        if (isTransferCoded()) {
+            return false;
+        }
+        byte[] patched = new JsonPointerPatcher(pointer).apply(currentBody(), value);
+        if (patched == null) {
+            return false;
+        }
+        newBody = patched;
+        modified = true;
+        return true;
+    }
+
+    /**
+     * Checks if the body is framed by Transfer-Encoding rather than Content-Length.
+     * Its bytes are then chunk sizes and data interleaved, which body targets must not edit.
+     */
+    private boolean isTransferCoded() {
+        return headerValue("Transfer-Encoding") != null;
+    }
+
+    /**
+     * Gets the current value of a header, including pending changes.
+     *
+     * @param name The header name
+     * @return The value, or null if the header is absent
+     */
+    public String headerValue(String name) {
+        for (HeaderLine line : headers) {
+            if (line.nameEquals(name) && (line.replacement == null || line.replacementValue != null)) {
+                return line.replacement != null ? line.replacementValue :
+                        new String(data, line.valueStart, line.valueEnd - line.valueStart, StandardCharsets.ISO_8859_1);
+            }
+        }
+        String[] added = findAddedHeader(name);
+        return added != null ? added[1] : null;
+    }
+
+    @Override
+    public String method() {
+        int space = indexOf(data, offset, requestLineEnd, (byte) ' ');
+        return new String(data, offset, (space == -1 ? requestLineEnd : space) - offset, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Gets the request target from the request line, such as {@code /api/users?id=1}.
+     *
+     * @return The request target; the CLI has no scheme or host to build a full URL from
+     */
+    @Override
+    public String url() {
+        int first = indexOf(data, offset, requestLineEnd, (byte) ' ');
+        if (first == -1) {
+            return "";
+        }
+        int second = indexOf(data, first + 1, requestLineEnd, (byte) ' ');
+        return new String(data, first + 1, (second == -1 ? requestLineEnd : second) - first - 1,
+                StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public String contentType() {
+        for (HeaderLine line : headers) {
+            if (line.nameEquals("Content-Type")) {
+                return new String(data, line.valueStart, line.valueEnd - line.valueStart, StandardCharsets.ISO_8859_1);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean bodyContains(byte[] literal) {
+        return RuleCondition.indexOf(data, bodyStart, end, literal) >= 0;
+    }
+
+    private String[] findAddedHeader(String name) {
+        for (String[] header : addedHeaders) {
+            if (header[0].equalsIgnoreCase(name)) {
+                return header;
+            }
+        }
+        return null;
+    }
+
+    private byte[] currentBody() {
+        return newBody != null ? newBody : slice(data, bodyStart, end);
+    }
+
+    /**
+     * Replaces the value of the first {@code name=} pair in an {@code &}-separated
+     * parameter string, or appends the pair.
+     */
+    private static byte[] setParameter(byte[] buf, int start, int stop, String name, String encodedValue) {
+        byte[] nameBytes = ascii(name);
+        int i = start;
+        while (i < stop) {
+            int amp = indexOf(buf, i, stop, (byte) '&');
+            int pairEnd = amp == -1 ? stop : amp;
+            int eq = indexOf(buf, i, pairEnd, (byte) '=');
+            int nameEnd = eq == -1 ? pairEnd : eq;
+            if (rangeEquals(buf, i, nameEnd, nameBytes)) {
+                return concat(slice(buf, start, i), ascii(name + "=" + encodedValue), slice(buf, pairEnd, stop));
+            }
+            i = pairEnd + 1;
+        }
+        String separator = stop > start ? "&" : "";
+        return concat(slice(buf, start, stop), ascii(separator + name + "=" + encodedValue));
+    }
+
+    private void parse() {
+        int lineEnd = indexOf(data, offset, end, (byte) '\n');
+        if (lineEnd == -1) {
+            throw new IllegalArgumentException("Request has no header terminator");
+        }
+        boolean crlf = lineEnd > offset && data[lineEnd - 1] == '\r';
+        eol = crlf ? new byte[]{'\r', '\n'} : new byte[]{'\n'};
+        requestLineEnd = crlf ? lineEnd - 1 : lineEnd;
+        requestLineNext = lineEnd + 1;
+        // A request line ends in its version and a status line starts with it
+        int lastSpace = lastIndexOf(data, offset, requestLineEnd, (byte) ' ');
+        http2 = startsWith(data, offset, requestLineEnd, HTTP2) ||
+                (lastSpace != -1 && startsWith(data, lastSpace + 1, requestLineEnd, HTTP2));
+
+        int pos = requestLineNext;
+        while (true) {
+            int nl = indexOf(data, pos, end, (byte) '\n');
+            if (nl == -1) {
+                throw new IllegalArgumentException("Request has no header terminator");
+            }
+            int contentEnd = nl > pos && data[nl - 1] == '\r' ? nl - 1 : nl;
+            if (contentEnd == pos) {
+                headersEnd = pos;
+                bodyStart = nl + 1;
+                return;
+            }
+
+            HeaderLine line = new HeaderLine();
+            line.start = pos;
+            line.next = nl + 1;
+            int colon = indexOf(data, pos, contentEnd, (byte) ':');
+            line.nameEnd = colon == -1 ? contentEnd : colon;
+            int valueStart = colon == -1 ? contentEnd : colon + 1;
+            while (valueStart < contentEnd && (data[valueStart] == ' ' || data[valueStart] == '\t')) {
+                valueStart++;
+            }
+            line.valueStart = valueStart;
+            line.valueEnd = contentEnd;
+            headers.add(line);
+            pos = nl + 1;
+        }
+    }
+
+    private byte[] headerLine(byte[] nameSource, int nameStart, int nameEnd, byte[] value) {
+        byte[] line = new byte[(nameEnd - nameStart) + COLON_SPACE.length + value.length + eol.length];
+        int p = 0;
+        System.arraycopy(nameSource, nameStart, line, p, nameEnd - nameStart);
+        p += nameEnd - nameStart;
+        System.arraycopy(COLON_SPACE, 0, line, p, COLON_SPACE.length);
+        p += COLON_SPACE.length;
+        System.arraycopy(value, 0, line, p, value.length);
+        p += value.length;
+        System.arraycopy(eol, 0, line, p, eol.length);
+        return line;
+    }
+
+    private static int indexOf(byte[] buf, int from, int to, byte b) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int lastIndexOf(byte[] buf, int from, int to, byte b) {
+        for (int i = to - 1; i >= from; i--) {
+            if (buf[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(byte[] buf, int from, int to, byte[] prefix) {
+        return to - from >= prefix.length && rangeEquals(buf, from, from + prefix.length, prefix);
+    }
+
+    private static boolean rangeEquals(byte[] buf, int from, int to, byte[] expected) {
+        if (to - from != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (buf[from + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] slice(byte[] buf, int from, int to) {
+        byte[] result = new byte[to - from];
+        System.arraycopy(buf, from, result, 0, result.length);
+        return result;
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        int length = 0;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        byte[] result = new byte[length];
+        int p = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, result, p, part.length);
+            p += part.length;
+        }
+        return result;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static String urlEncode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Byte offsets of one header line.
+     */
+    private final class HeaderLine {
+        int start;
+        int nameEnd;
+        int valueStart;
+        int valueEnd;
+        int next;
+        byte[] replacement;
+        String replacementValue;
+
+        boolean nameEquals(String name) {
+            if (nameEnd - start != name.length()) {
+                return false;
+            }
+            for (int i = 0; i < name.length(); i++) {
+                char a = (char) (data[start + i] & 0xff);
+                char b = name.charAt(i);
+                if (a != b && Character.toLowerCase(a) != Character.toLowerCase(b)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean valueEquals(byte[] value) {
+            return rangeEquals(data, valueStart, valueEnd, value);
+        }
+    }
+
+    /**
+     * Minimal growable byte buffer that hands out its array without a final copy when full.
+     */
+    private static final class ByteBuilder {
+        private byte[] buf;
+        private int count;
+
+        ByteBuilder(int capacity) {
+            buf = new byte[capacity];
+        }
+
+        void write(byte[] src, int from, int length) {
+            if (count + length > buf.length) {
+                byte[] grown = new byte[Math.max(buf.length * 2, count + length)];
+                System.arraycopy(buf, 0, grown, 0, count);
+                buf = grown;
+            }
+            System.arraycopy(src, from, buf, count, length);
+            count += length;
+        }
+
+        byte[] toByteArray() {
+            if (count == buf.length) {
+                return buf;
+            }
+            byte[] result = new byte[count];
+            System.arraycopy(buf, 0, result, 0, count);
+            return result;
+        }
+    }
+}
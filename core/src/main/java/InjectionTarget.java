@@ -0,0 +1,69 @@
+/**
+ * Where a header rule's value is written in the outgoing request, WebSocket message
+ * or incoming response. For every target other than {@link #HEADER} and the
+ * response targets the rule's name column holds the parameter name, cookie name or
+ * JSON Pointer to write to.
+ */
+public enum InjectionTarget {
+    HEADER("Header"),
+    URL_PARAMETER("URL Parameter"),
+    BODY_PARAMETER("Body Parameter"),
+    COOKIE("Cookie"),
+    JSON_POINTER("JSON Body (Pointer)"),
+    WEBSOCKET_JSON("WebSocket Message (Pointer)"),
+    RESPONSE_HEADER("Response Header"),
+    STRIP_RESPONSE_HEADER("Strip Response Header");
+
+    private final String displayName;
+
+    InjectionTarget(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * Checks if the target is written to outgoing WebSocket text messages rather than HTTP requests.
+     *
+     * @return true for WebSocket targets
+     */
+    public boolean isWebSocket() {
+        return this == WEBSOCKET_JSON;
+    }
+
+    /**
+     * Checks if the target is applied to responses before they reach the browser and
+     * Burp's history, rather than to requests. {@link #STRIP_RESPONSE_HEADER} removes
+     * the named headers whose value contains the rule's value (every one if it is empty).
+     *
+     * @return true for response targets
+     */
+    public boolean isResponse() {
+        return this == RESPONSE_HEADER || this == STRIP_RESPONSE_HEADER;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+
+    /**
+     * Resolves a persisted target name, falling back to {@link #HEADER}
+     * for missing or unknown values.
+     *
+     * @param name The persisted enum name
+     * @return The matching target, or HEADER
+     */
+    public static InjectionTarget fromName(String name) {
+        if (name != null) {
+            for (InjectionTarget target : values()) {
+                if (target.name().equals(name)) {
+                    return target;
+                }
+            }
+        }
+        return HEADER;
+    }
+}
@@ -0,0 +1,683 @@
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Byte-level JSON Pointer (RFC 6901) patcher.
+ * Locates the value addressed by a pointer in a single forward scan over the raw
+ * body bytes and splices a new string value in its place, so large JSON bodies are
+ * never parsed into a tree or reserialized. If the last pointer segment names a
+ * member that does not exist yet, it is inserted into the parent object.
+ * {@link Batch} resolves several pointers in one scan.
+ */
+public final class JsonPointerPatcher {
+
+    private final String pointer;
+    private final String[] segments;
+    private final byte[][] segmentBytes;
+
+    /**
+     * Compiles a JSON Pointer such as {@code /data/csrf} or {@code /items/0/token}.
+     *
+     * @param pointer The JSON Pointer expression
+     * @throws IllegalArgumentException if the pointer does not start with '/'
+     */
+    public JsonPointerPatcher(String pointer) {
+        if (pointer == null) {
+            throw new IllegalArgumentException("JSON Pointer must not be null");
+        }
+        if (!pointer.isEmpty() && pointer.charAt(0) != '/') {
+            throw new IllegalArgumentException("JSON Pointer must start with '/': " + pointer);
+        }
+        this.pointer = pointer;
+        this.segments = parseSegments(pointer);
+        this.segmentBytes = new byte[segments.length][];
+        for (int i = 0; i < segments.length; i++) {
+            segmentBytes[i] = segments[i].getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Convenience method that compiles the pointer and applies it once.
+     *
+     * @param json    The JSON document bytes
+     * @param pointer The JSON Pointer expression
+     * @param value   The string value to write
+     * @return The patched document, or null if the pointer could not be resolved
+     */
+    public static byte[] patch(byte[] json, String pointer, String value) {
+        return new JsonPointerPatcher(pointer).apply(json, value);
+    }
+
+    public String getPointer() {
+        return pointer;
+    }
+
+    /**
+     * Writes a string value at the compiled pointer.
+     *
+     * @param json  The JSON document bytes (not modified)
+     * @param value The string value to write
+     * @return A new patched document, or null if the pointer could not be resolved
+     *         or the document is malformed along the pointer's path
+     */
+    public byte[] apply(byte[] json, String value) {
+        int len = json.length;
+        int pos = skipWhitespace(json, 0);
+        if (pos >= len) {
+            return null;
+        }
+        if (segments.length == 0) {
+            return splice(json, pos, skipValue(json, pos), quote(value));
+        }
+
+        for (int s = 0; s < segments.length; s++) {
+            boolean last = s == segments.length - 1;
+            if (pos >= len) {
+                return null;
+            }
+
+            byte c = json[pos];
+            int valueStart;
+            if (c == '{') {
+                valueStart = findMember(json, pos, s);
+                if (valueStart == -1) {
+                    if (!last) {
+                        return null;
+                    }
+                    // Insert the missing member right after the opening brace
+                    int first = skipWhitespace(json, pos + 1);
+                    boolean empty = first < len && json[first] == '}';
+                    String member = new String(quote(segments[s]), StandardCharsets.UTF_8) + ":" +
+                            new String(quote(value), StandardCharsets.UTF_8) + (empty ? "" : ",");
+                    return splice(json, pos + 1, pos + 1, member.getBytes(StandardCharsets.UTF_8));
+                }
+            } else if (c == '[') {
+                if (last && "-".equals(segments[s])) {
+                    int end = skipValue(json, pos) - 1;
+                    if (end >= len || json[end] != ']') {
+                        return null;
+                    }
+                    int first = skipWhitespace(json, pos + 1);
+                    byte[] quoted = quote(value);
+                    return splice(json, end, end, first == end ? quoted : concat(new byte[]{','}, quoted));
+                }
+                valueStart = findElement(json, pos, segments[s]);
+            } else {
+                return null;
+            }
+
+            if (valueStart < 0 || valueStart >= len) {
+                return null;
+            }
+            if (last) {
+                return splice(json, valueStart, skipValue(json, valueStart), quote(value));
+            }
+            pos = valueStart;
+        }
+        return null;
+    }
+
+    /**
+     * Finds the value start of the member named by segment {@code s} in the object at {@code objStart}.
+     *
+     * @return The value's start index, -1 if the member is absent, or -2 if the object is malformed
+     */
+    private int findMember(byte[] json, int objStart, int s) {
+        int len = json.length;
+        int i = skipWhitespace(json, objStart + 1);
+        while (i < len && json[i] == '"') {
+            int keyEnd = skipString(json, i);
+            boolean match = keyEquals(json, i + 1, keyEnd - 1, s);
+            i = skipWhitespace(json, keyEnd);
+            if (i >= len || json[i] != ':') {
+                return -2;
+            }
+            i = skipWhitespace(json, i + 1);
+            if (match) {
+                return i;
+            }
+            i = skipWhitespace(json, skipValue(json, i));
+            if (i < len && json[i] == ',') {
+                i = skipWhitespace(json, i + 1);
+            } else {
+                break;
+            }
+        }
+        return i < len && json[i] == '}' ? -1 : -2;
+    }
+
+    /**
+     * Finds the start of the array element addressed by an index segment.
+     *
+     * @return The element's start index, or a negative value if it does not exist
+     */
+    private static int findElement(byte[] json, int arrStart, String segment) {
+        int index;
+        try {
+            index = Integer.parseInt(segment);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        if (index < 0) {
+            return -1;
+        }
+
+        int len = json.length;
+        int i = skipWhitespace(json, arrStart + 1);
+        for (int n = 0; i < len && json[i] != ']'; n++) {
+            if (n == index) {
+                return i;
+            }
+            i = skipWhitespace(json, skipValue(json, i));
+            if (i < len && json[i] == ',') {
+                i = skipWhitespace(json, i + 1);
+            } else {
+                break;
+            }
+        }
+        return -1;
+    }
+
+    private boolean keyEquals(byte[] json, int start, int end, int s) {
+        return keyEquals(json, start, end, segments[s], segmentBytes[s]);
+    }
+
+    private static boolean keyEquals(byte[] json, int start, int end, String segment, byte[] expected) {
+        boolean escaped = false;
+        for (int i = start; i < end; i++) {
+            if (json[i] == '\\') {
+                escaped = true;
+                break;
+            }
+        }
+        if (escaped) {
+            return segment.equals(unescape(json, start, end));
+        }
+        if (end - start != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (json[start + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipWhitespace(byte[] json, int i) {
+        while (i < json.length) {
+            byte b = json[i];
+            if (b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the index just past the closing quote of the string starting at {@code i}.
+     */
+    private static int skipString(byte[] json, int i) {
+        for (int j = i + 1; j < json.length; j++) {
+            byte b = json[j];
+            if (b == '\\') {
+                j++;
+            } else if (b == '"') {
+                return j + 1;
+            }
+        }
+        return json.length;
+    }
+
+    /**
+     * Returns the index just past the value starting at {@code i}.
+     */
+    private static int skipValue(byte[] json, int i) {
+        int len = json.length;
+        if (i >= len) {
+            return len;
+        }
+
+        byte c = json[i];
+        if (c == '"') {
+            return skipString(json, i);
+        }
+        if (c == '{' || c == '[') {
+            int depth = 0;
+            for (int j = i; j < len; j++) {
+                byte b = json[j];
+                if (b == '"') {
+                    j = skipString(json, j) - 1;
+                } else if (b == '{' || b == '[') {
+                    depth++;
+                } else if ((b == '}' || b == ']') && --depth == 0) {
+                    return j + 1;
+                }
+            }
+            return len;
+        }
+
+        // Number, true, false or null
+        int j = i;
+        while (j < len) {
+            byte b = json[j];
+            if (b == ',' || b == '}' || b == ']' || b == ' ' || b == '\t' || b == '\n' || b == '\r') {
+                break;
+            }
+            j++;
+        }
+        return j;
+    }
+
+    private static byte[] splice(byte[] json, int start, int end, byte[] replacement) {
+        byte[] result = new byte[json.length - (end - start) + replacement.length];
+        System.arraycopy(json, 0, result, 0, start);
+        System.arraycopy(replacement, 0, result, start, replacement.length);
+        System.arraycopy(json, end, result, start + replacement.length, json.length - end);
+        return result;
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] result = new byte[a.length + b.length];
+        System.arraycopy(a, 0, result, 0, a.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    /**
+     * Encodes a Java string as a quoted JSON string literal.
+     *
+     * @param value The raw value
+     * @return The UTF-8 bytes of the JSON string literal
+     */
+    static byte[] quote(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 2);
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                case '\b': sb.append("\\b"); break;
+                case '\f': sb.append("\\f"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes the escape sequences of a JSON string body. Consecutive unicode
+     * escapes are encoded together, so a surrogate pair becomes one UTF-8 character.
+     *
+     * @return The decoded string, or null if the body holds an invalid unicode escape
+     */
+    static String unescape(byte[] json, int start, int end) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(end - start);
+        StringBuilder pending = new StringBuilder();
+        for (int i = start; i < end; i++) {
+            byte b = json[i];
+            if (b == '\\' && i + 1 < end && json[i + 1] == 'u') {
+                int code = hexValue(json, i + 2, end);
+                if (code < 0) {
+                    return null;
+                }
+                pending.append((char) code);
+                i += 5;
+                continue;
+            }
+            flush(pending, out);
+            if (b != '\\' || i + 1 >= end) {
+                out.write(b);
+                continue;
+            }
+            byte e = json[++i];
+            switch (e) {
+                case 'n': out.write('\n'); break;
+                case 'r': out.write('\r'); break;
+                case 't': out.write('\t'); break;
+                case 'b': out.write('\b'); break;
+                case 'f': out.write('\f'); break;
+                default: out.write(e);
+            }
+        }
+        flush(pending, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static void flush(StringBuilder pending, ByteArrayOutputStream out) {
+        if (pending.length() > 0) {
+            byte[] encoded = pending.toString().getBytes(StandardCharsets.UTF_8);
+            out.write(encoded, 0, encoded.length);
+            pending.setLength(0);
+        }
+    }
+
+    /**
+     * Reads the four hex digits of a unicode escape.
+     *
+     * @return The code unit, or -1 if the digits are missing or not hex
+     */
+    private static int hexValue(byte[] json, int from, int end) {
+        if (from + 4 > end) {
+            return -1;
+        }
+        int code = 0;
+        for (int i = from; i < from + 4; i++) {
+            int digit = Character.digit(json[i], 16);
+            if (digit < 0) {
+                return -1;
+            }
+            code = code * 16 + digit;
+        }
+        return code;
+    }
+
+    /**
+     * Writes values at several pointers in one forward scan. Pointers sharing a path
+     * prefix walk it once, and the patched document is assembled once, so a message
+     * patched by many rules costs one pass over its bytes rather than one per rule.
+     * The result is the same as applying the pointers one by one in order: a later
+     * pointer wins over an earlier identical one, appends to an array keep their
+     * order, and a pointer inside a value that another pointer replaces is dropped.
+     * The one difference: an index pointer never addresses an element appended by
+     * another pointer in the same call. Immutable and thread-safe.
+     */
+    public static final class Batch {
+
+        private final Node root = new Node("");
+
+        /**
+         * Constructs a new Batch.
+         *
+         * @param patchers The compiled pointers, in the order they apply
+         */
+        public Batch(List<JsonPointerPatcher> patchers) {
+            for (int i = 0; i < patchers.size(); i++) {
+                Node node = root;
+                for (String segment : patchers.get(i).segments) {
+                    node = node.children.computeIfAbsent(segment, Node::new);
+                }
+                node.leaves.add(i);
+            }
+            root.index();
+        }
+
+        /**
+         * Writes a string value at each pointer that has one.
+         *
+         * @param json   The JSON document bytes (not modified)
+         * @param values The value for each pointer, in construction order; null skips the pointer
+         * @return A new patched document, or null if no pointer could be resolved
+         */
+        public byte[] apply(byte[] json, String[] values) {
+            int pos = skipWhitespace(json, 0);
+            if (pos >= json.length) {
+                return null;
+            }
+            List<Edit> edits = new ArrayList<>();
+            walk(root, json, pos, values, edits);
+            if (edits.isEmpty()) {
+                return null;
+            }
+
+            // Edits never overlap; apply them in document order
+            edits.sort(Comparator.comparingInt(edit -> edit.start));
+            int grown = 0;
+            for (Edit edit : edits) {
+                grown += edit.replacement.length - (edit.end - edit.start);
+            }
+            byte[] result = new byte[json.length + grown];
+            int from = 0;
+            int to = 0;
+            for (Edit edit : edits) {
+                System.arraycopy(json, from, result, to, edit.start - from);
+                to += edit.start - from;
+                System.arraycopy(edit.replacement, 0, result, to, edit.replacement.length);
+                to += edit.replacement.length;
+                from = edit.end;
+            }
+            System.arraycopy(json, from, result, to, json.length - from);
+            return result;
+        }
+
+        /**
+         * Collects the edits for the value at {@code pos}, addressed by {@code node}.
+         */
+        private static void walk(Node node, byte[] json, int pos, String[] values, List<Edit> edits) {
+            int leaf = node.lastLeaf(values);
+            if (leaf >= 0) {
+                // Replaced whole: pointers below it would patch a value that is gone
+                edits.add(new Edit(pos, skipValue(json, pos), quote(values[leaf])));
+                return;
+            }
+            if (pos >= json.length || !node.isActive(values)) {
+                return;
+            }
+            if (json[pos] == '{') {
+                walkObject(node, json, pos, values, edits);
+            } else if (json[pos] == '[') {
+                walkArray(node, json, pos, values, edits);
+            }
+        }
+
+        private static void walkObject(Node node, byte[] json, int objStart, String[] values, List<Edit> edits) {
+            List<Node> wanted = new ArrayList<>();
+            for (Node child : node.children.values()) {
+                if (child.isActive(values)) {
+                    wanted.add(child);
+                }
+            }
+
+            int len = json.length;
+            int i = skipWhitespace(json, objStart + 1);
+            boolean empty = i < len && json[i] == '}';
+            while (i < len && json[i] == '"' && !wanted.isEmpty()) {
+                int keyEnd = skipString(json, i);
+                Node child = null;
+                for (Node candidate : wanted) {
+                    if (keyEquals(json, i + 1, keyEnd - 1, candidate.segment, candidate.segmentBytes)) {
+                        child = candidate;
+                        break;
+                    }
+                }
+                i = skipWhitespace(json, keyEnd);
+                if (i >= len || json[i] != ':') {
+                    return;
+                }
+                i = skipWhitespace(json, i + 1);
+                if (child != null) {
+                    // Only the first of duplicate members is patched
+                    wanted.remove(child);
+                    walk(child, json, i, values, edits);
+                }
+                i = skipWhitespace(json, skipValue(json, i));
+                if (i < len && json[i] == ',') {
+                    i = skipWhitespace(json, i + 1);
+                } else {
+                    break;
+                }
+            }
+            if (wanted.isEmpty() || i >= len || json[i] != '}') {
+                return;
+            }
+
+            // Insert the missing members after the opening brace, the latest inserted first
+            wanted.removeIf(child -> child.lastLeaf(values) < 0);
+            wanted.sort(Comparator.comparingInt((Node child) -> child.firstLeaf(values)).reversed());
+            ByteArrayOutputStream members = new ByteArrayOutputStream();
+            for (int m = 0; m < wanted.size(); m++) {
+                Node child = wanted.get(m);
+                byte[] name = quote(child.segment);
+                byte[] value = quote(values[child.lastLeaf(values)]);
+                members.write(name, 0, name.length);
+                members.write(':');
+                members.write(value, 0, value.length);
+                if (m < wanted.size() - 1 || !empty) {
+                    members.write(',');
+                }
+            }
+            if (members.size() > 0) {
+                edits.add(new Edit(objStart + 1, objStart + 1, members.toByteArray()));
+            }
+        }
+
+        private static void walkArray(Node node, byte[] json, int arrStart, String[] values, List<Edit> edits) {
+            Node append = node.children.get("-");
+            boolean appending = append != null && append.lastLeaf(values) >= 0;
+
+            int len = json.length;
+            int first = skipWhitespace(json, arrStart + 1);
+            int i = first;
+            for (int n = 0; i < len && json[i] != ']' && (appending || n <= node.maxElement); n++) {
+                Node child = node.elements.get(n);
+                if (child != null) {
+                    walk(child, json, i, values, edits);
+                }
+                i = skipWhitespace(json, skipValue(json, i));
+                if (i < len && json[i] == ',') {
+                    i = skipWhitespace(json, i + 1);
+                } else {
+                    break;
+                }
+            }
+            if (!appending || i >= len || json[i] != ']') {
+                return;
+            }
+
+            // Every pointer ending in '-' appends, in order
+            ByteArrayOutputStream appended = new ByteArrayOutputStream();
+            boolean comma = i != first;
+            for (int leaf : append.leaves) {
+                if (values[leaf] != null) {
+                    if (comma) {
+                        appended.write(',');
+                    }
+                    byte[] value = quote(values[leaf]);
+                    appended.write(value, 0, value.length);
+                    comma = true;
+                }
+            }
+            edits.add(new Edit(i, i, appended.toByteArray()));
+        }
+
+        /**
+         * A pointer segment shared by every pointer with the same path up to it.
+         */
+        private static final class Node {
+            final String segment;
+            final byte[] segmentBytes;
+            final Map<String, Node> children = new LinkedHashMap<>();
+            // Indexes of the pointers that end here, ascending
+            final List<Integer> leaves = new ArrayList<>();
+            // Children by array index, for segments that are numbers
+            final Map<Integer, Node> elements = new HashMap<>();
+            int maxElement = -1;
+
+            Node(String segment) {
+                this.segment = segment;
+                this.segmentBytes = segment.getBytes(StandardCharsets.UTF_8);
+            }
+
+            void index() {
+                for (Node child : children.values()) {
+                    try {
+                        int element = Integer.parseInt(child.segment);
+                        if (element >= 0) {
+                            elements.putIfAbsent(element, child);
+                            maxElement = Math.max(maxElement, element);
+                        }
+                    } catch (NumberFormatException e) {
+                        // A member name only
+                    }
+                    child.index();
+                }
+            }
+
+            /**
+             * @return The last pointer ending here that has a value, or -1
+             */
+            int lastLeaf(String[] values) {
+                for (int i = leaves.size() - 1; i >= 0; i--) {
+                    if (values[leaves.get(i)] != null) {
+                        return leaves.get(i);
+                    }
+                }
+                return -1;
+            }
+
+            /**
+             * @return The first pointer ending here that has a value, or -1
+             */
+            int firstLeaf(String[] values) {
+                for (int leaf : leaves) {
+                    if (values[leaf] != null) {
+                        return leaf;
+                    }
+                }
+                return -1;
+            }
+
+            /**
+             * @return Whether a pointer with a value ends here or below
+             */
+            boolean isActive(String[] values) {
+                if (lastLeaf(values) >= 0) {
+                    return true;
+                }
+                for (Node child : children.values()) {
+                    if (child.isActive(values)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        }
+
+        private static final class Edit {
+            final int start;
+            final int end;
+            final byte[] replacement;
+
+            Edit(int start, int end, byte[] replacement) {
+                this.start = start;
+                this.end = end;
+                this.replacement = replacement;
+            }
+        }
+    }
+
+    private static String[] parseSegments(String pointer) {
+        if (pointer.isEmpty()) {
+            return new String[0];
+        }
+        List<String> parts = new ArrayList<>();
+        int start = 1;
+        while (true) {
+            int slash = pointer.indexOf('/', start);
+            String raw = slash == -1 ? pointer.substring(start) : pointer.substring(start, slash);
+            parts.add(raw.replace("~1", "/").replace("~0", "~"));
+            if (slash == -1) {
+                break;
+            }
+            start = slash + 1;
+        }
+        return parts.toArray(new String[0]);
+    }
+}
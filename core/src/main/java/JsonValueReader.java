@@ -0,0 +1,368 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming JSON value lookup over a character sequence.
+ * Walks straight to the value addressed by a path in a single forward scan,
+ * skipping unrelated members without building a tree, in the same spirit as
+ * {@link JsonPointerPatcher} on the write side.
+ */
+public final class JsonValueReader {
+
+    private final String path;
+    private final String[] segments;
+
+    /**
+     * Compiles a path. Accepts a JSON Pointer ({@code /data/items/0/token}) or a
+     * dotted path ({@code $.data.items[0].token} or {@code data.items[0].token}).
+     *
+     * @param path The path expression
+     */
+    public JsonValueReader(String path) {
+        this.path = path;
+        this.segments = path.startsWith("/") ? pointerSegments(path) : dottedSegments(path);
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Reads the value at the compiled path.
+     *
+     * @param json The JSON text
+     * @return The decoded string for string values, the raw text for numbers, booleans,
+     *         objects and arrays, or null if the path does not resolve, the value is null or a string value
+     *         holds an invalid escape
+     */
+    public String read(CharSequence json) {
+        int pos = skipWhitespace(json, 0);
+        for (String segment : segments) {
+            if (pos >= json.length()) {
+                return null;
+            }
+            char c = json.charAt(pos);
+            if (c == '{') {
+                pos = findMember(json, pos, segment);
+            } else if (c == '[') {
+                pos = findElement(json, pos, segment);
+            } else {
+                return null;
+            }
+            if (pos < 0) {
+                return null;
+            }
+        }
+
+        if (pos >= json.length()) {
+            return null;
+        }
+        int end = skipValue(json, pos);
+        if (json.charAt(pos) == '"') {
+            return unescape(json, pos + 1, Math.max(pos + 1, end - 1));
+        }
+        String raw = json.subSequence(pos, end).toString();
+        return raw.equals("null") ? null : raw;
+    }
+
+    /**
+     * Lists the members of an object in a single scan. Values are returned as raw
+     * sub-sequences, so nested objects are only walked if the caller descends into them;
+     * with a {@link java.nio.CharBuffer} input they are views rather than copies.
+     *
+     * @param json The JSON text of an object
+     * @return Raw value text by member name, in document order; empty if the text is not an object
+     */
+    public static Map<String, CharSequence> members(CharSequence json) {
+        Map<String, CharSequence> members = new LinkedHashMap<>();
+        int len = json.length();
+        int pos = skipWhitespace(json, 0);
+        if (pos >= len || json.charAt(pos) != '{') {
+            return members;
+        }
+        pos = skipWhitespace(json, pos + 1);
+        while (pos < len && json.charAt(pos) == '"') {
+            int keyEnd = skipString(json, pos);
+            String name = unescape(json, pos + 1, Math.max(pos + 1, keyEnd - 1));
+            pos = skipWhitespace(json, keyEnd);
+            if (pos >= len || json.charAt(pos) != ':') {
+                break;
+            }
+            pos = skipWhitespace(json, pos + 1);
+            int end = skipValue(json, pos);
+            if (name != null) {
+                members.putIfAbsent(name, json.subSequence(pos, end));
+            }
+            pos = skipWhitespace(json, end);
+            if (pos < len && json.charAt(pos) == ',') {
+                pos = skipWhitespace(json, pos + 1);
+            }
+        }
+        return members;
+    }
+
+    /**
+     * Lists the elements of an array in a single scan, as raw sub-sequences.
+     *
+     * @param json The JSON text of an array
+     * @return Raw element text in order; empty if the text is not an array
+     */
+    public static List<CharSequence> elements(CharSequence json) {
+        List<CharSequence> elements = new ArrayList<>();
+        int len = json.length();
+        int pos = skipWhitespace(json, 0);
+        if (pos >= len || json.charAt(pos) != '[') {
+            return elements;
+        }
+        pos = skipWhitespace(json, pos + 1);
+        while (pos < len && json.charAt(pos) != ']') {
+            int end = skipValue(json, pos);
+            if (end == pos) {
+                break;
+            }
+            elements.add(json.subSequence(pos, end));
+            pos = skipWhitespace(json, end);
+            if (pos < len && json.charAt(pos) == ',') {
+                pos = skipWhitespace(json, pos + 1);
+            }
+        }
+        return elements;
+    }
+
+    /**
+     * Decodes a raw value returned by {@link #members} or {@link #elements}.
+     *
+     * @param value The raw value text, or null
+     * @return The decoded string for string values, the raw text for other values, or null for null
+     *         and for strings holding an invalid escape
+     */
+    public static String decode(CharSequence value) {
+        if (value == null || value.length() == 0) {
+            return null;
+        }
+        if (value.charAt(0) == '"') {
+            return unescape(value, 1, Math.max(1, value.length() - 1));
+        }
+        String raw = value.toString();
+        return raw.equals("null") ? null : raw;
+    }
+
+    /**
+     * Returns the start of the named member's value in the object at {@code pos}, or -1.
+     */
+    private static int findMember(CharSequence json, int pos, String name) {
+        int len = json.length();
+        pos = skipWhitespace(json, pos + 1);
+        while (pos < len && json.charAt(pos) != '}') {
+            if (json.charAt(pos) != '"') {
+                return -1;
+            }
+            int keyEnd = skipString(json, pos);
+            boolean match = keyEquals(json, pos + 1, keyEnd - 1, name);
+            pos = skipWhitespace(json, keyEnd);
+            if (pos >= len || json.charAt(pos) != ':') {
+                return -1;
+            }
+            pos = skipWhitespace(json, pos + 1);
+            if (match) {
+                return pos;
+            }
+            pos = skipWhitespace(json, skipValue(json, pos));
+            if (pos < len && json.charAt(pos) == ',') {
+                pos = skipWhitespace(json, pos + 1);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the start of the indexed element in the array at {@code pos}, or -1.
+     */
+    private static int findElement(CharSequence json, int pos, String segment) {
+        int index;
+        try {
+            index = Integer.parseInt(segment);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        int len = json.length();
+        pos = skipWhitespace(json, pos + 1);
+        for (int i = 0; pos < len && json.charAt(pos) != ']'; i++) {
+            if (i == index) {
+                return pos;
+            }
+            pos = skipWhitespace(json, skipValue(json, pos));
+            if (pos < len && json.charAt(pos) == ',') {
+                pos = skipWhitespace(json, pos + 1);
+            }
+        }
+        return -1;
+    }
+
+    private static boolean keyEquals(CharSequence json, int start, int end, String name) {
+        for (int i = start; i < end; i++) {
+            if (json.charAt(i) == '\\') {
+                return name.equals(unescape(json, start, end));
+            }
+        }
+        if (end - start != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (json.charAt(start + i) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipWhitespace(CharSequence json, int i) {
+        while (i < json.length()) {
+            char c = json.charAt(i);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipString(CharSequence json, int i) {
+        for (int j = i + 1; j < json.length(); j++) {
+            char c = json.charAt(j);
+            if (c == '\\') {
+                j++;
+            } else if (c == '"') {
+                return j + 1;
+            }
+        }
+        return json.length();
+    }
+
+    private static int skipValue(CharSequence json, int i) {
+        int len = json.length();
+        if (i >= len) {
+            return len;
+        }
+
+        char c = json.charAt(i);
+        if (c == '"') {
+            return skipString(json, i);
+        }
+        if (c == '{' || c == '[') {
+            int depth = 0;
+            for (int j = i; j < len; j++) {
+                char b = json.charAt(j);
+                if (b == '"') {
+                    j = skipString(json, j) - 1;
+                } else if (b == '{' || b == '[') {
+                    depth++;
+                } else if ((b == '}' || b == ']') && --depth == 0) {
+                    return j + 1;
+                }
+            }
+            return len;
+        }
+
+        // Number, true, false or null
+        int j = i;
+        while (j < len) {
+            char b = json.charAt(j);
+            if (b == ',' || b == '}' || b == ']' || b == ' ' || b == '\t' || b == '\n' || b == '\r') {
+                break;
+            }
+            j++;
+        }
+        return j;
+    }
+
+    /**
+     * Decodes the escape sequences of a JSON string body, or returns null if it holds
+     * an invalid unicode escape.
+     */
+    private static String unescape(CharSequence json, int start, int end) {
+        StringBuilder sb = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = json.charAt(i);
+            if (c != '\\' || i + 1 >= end) {
+                sb.append(c);
+                continue;
+            }
+            char e = json.charAt(++i);
+            switch (e) {
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'u':
+                    int code = hexValue(json, i + 1, end);
+                    if (code < 0) {
+                        return null;
+                    }
+                    sb.append((char) code);
+                    i += 4;
+                    break;
+                default: sb.append(e);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Reads the four hex digits of a unicode escape, or returns -1 if they are missing or not hex.
+     */
+    private static int hexValue(CharSequence json, int from, int end) {
+        if (from + 4 > end) {
+            return -1;
+        }
+        int code = 0;
+        for (int i = from; i < from + 4; i++) {
+            int digit = Character.digit(json.charAt(i), 16);
+            if (digit < 0) {
+                return -1;
+            }
+            code = code * 16 + digit;
+        }
+        return code;
+    }
+
+    private static String[] pointerSegments(String pointer) {
+        List<String> parts = new ArrayList<>();
+        for (String raw : pointer.substring(1).split("/", -1)) {
+            parts.add(raw.replace("~1", "/").replace("~0", "~"));
+        }
+        return parts.toArray(new String[0]);
+    }
+
+    private static String[] dottedSegments(String path) {
+        String p = path.startsWith("$") ? path.substring(1) : path;
+        List<String> parts = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < p.length(); i++) {
+            char c = p.charAt(i);
+            if (c == '.' || c == '[' || c == ']') {
+                if (current.length() > 0) {
+                    parts.add(current.toString());
+                    current.setLength(0);
+                }
+            } else if ((c == '\'' || c == '"') && i > 0 && p.charAt(i - 1) == '[') {
+                // Quoted member name: ['some.key']
+                int close = p.indexOf(c, i + 1);
+                if (close == -1) {
+                    throw new IllegalArgumentException("Unterminated quote in JSON path: " + path);
+                }
+                parts.add(p.substring(i + 1, close));
+                i = close;
+            } else {
+                current.append(c);
+            }
+        }
+        if (current.length() > 0) {
+            parts.add(current.toString());
+        }
+        return parts.toArray(new String[0]);
+    }
+}
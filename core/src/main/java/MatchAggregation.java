@@ -0,0 +1,44 @@
+/**
+ * How a regex rule combines its capture group across the matches in a macro response.
+ */
+public enum MatchAggregation {
+    FIRST("First match"),
+    LAST("Last match"),
+    JOIN("All matches, comma-joined");
+
+    /** Separator between values aggregated with {@link #JOIN}. */
+    public static final String JOIN_SEPARATOR = ",";
+
+    private final String displayName;
+
+    MatchAggregation(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+
+    /**
+     * Resolves a persisted aggregation name, falling back to {@link #FIRST}
+     * for missing or unknown values.
+     *
+     * @param name The persisted enum name
+     * @return The matching aggregation, or FIRST
+     */
+    public static MatchAggregation fromName(String name) {
+        if (name != null) {
+            for (MatchAggregation aggregation : values()) {
+                if (aggregation.name().equals(name)) {
+                    return aggregation;
+                }
+            }
+        }
+        return FIRST;
+    }
+}
@@ -0,0 +1,182 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free journal of the last N requests processed by the rules.
+ * Writers claim a slot with one atomic increment and overwrite the oldest entry,
+ * so request threads never block each other or the viewer. When disabled, callers
+ * skip building entries entirely after a single volatile read.
+ */
+public class RequestJournal {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+    private final AtomicLong next = new AtomicLong();
+    private volatile boolean enabled;
+
+    /**
+     * Constructs a new RequestJournal.
+     *
+     * @param capacity The number of entries kept, rounded up to a power of two
+     */
+    public RequestJournal(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Checks if the journal is recording. Callers check this before building an entry.
+     *
+     * @return true if entries are recorded
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getCapacity() {
+        return slots.length();
+    }
+
+    /**
+     * Gets the recorded entries, newest first. Entries written concurrently with
+     * this call may or may not be included; slots overwritten while reading are skipped.
+     *
+     * @return The entries currently in the journal
+     */
+    public List<Entry> snapshot() {
+        long end = next.get();
+        long start = Math.max(0, end - slots.length());
+        List<Entry> entries = new ArrayList<>((int) (end - start));
+        for (long i = end - 1; i >= start; i--) {
+            Entry entry = slots.get((int) (i & mask));
+            if (entry != null && entry.sequence == i) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, null);
+        }
+    }
+
+    /**
+     * Records one processed request, overwriting the oldest entry when the journal is full.
+     *
+     * @param source       The tool or component that processed the request
+     * @param url          The request URL
+     * @param rules        The names of the rules that matched
+     * @param changes      What each matching rule changed
+     * @param nanos        The time spent applying the rules
+     * @param tokenVersion The version of the token set the values were read from
+     */
+    public void record(String source, String url, List<String> rules, List<String> changes,
+                       long nanos, long tokenVersion) {
+        if (!enabled) {
+            return;
+        }
+        long sequence = next.getAndIncrement();
+        slots.set((int) (sequence & mask), new Entry(sequence, System.currentTimeMillis(), source, url,
+                rules, changes, nanos, tokenVersion));
+    }
+
+    /**
+     * One journal entry. Immutable.
+     */
+    public static final class Entry {
+        private final long sequence;
+        private final long timestamp;
+        private final String source;
+        private final String url;
+        private final List<String> rules;
+        private final List<String> changes;
+        private final long nanos;
+        private final long tokenVersion;
+
+        Entry(long sequence, long timestamp, String source, String url, List<String> rules,
+              List<String> changes, long nanos, long tokenVersion) {
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+            this.source = source;
+            this.url = url;
+            this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+            this.changes = Collections.unmodifiableList(new ArrayList<>(changes));
+            this.nanos = nanos;
+            this.tokenVersion = tokenVersion;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public List<String> getRules() {
+            return rules;
+        }
+
+        public List<String> getChanges() {
+            return changes;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public long getTokenVersion() {
+            return tokenVersion;
+        }
+
+        /**
+         * Checks if any field contains the filter text, ignoring case.
+         *
+         * @param filter The lower-case filter text
+         * @return true if the entry matches
+         */
+        public boolean matches(String filter) {
+            if (filter.isEmpty()) {
+                return true;
+            }
+            if (contains(source, filter) || contains(url, filter)) {
+                return true;
+            }
+            for (String rule : rules) {
+                if (contains(rule, filter)) {
+                    return true;
+                }
+            }
+            for (String change : changes) {
+                if (contains(change, filter)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean contains(String text, String filter) {
+            return text != null && text.toLowerCase(Locale.ROOT).contains(filter);
+        }
+    }
+}
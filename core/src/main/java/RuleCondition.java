@@ -0,0 +1,191 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Request conditions a rule must meet to be applied: HTTP method, content type,
+ * URL regex and a literal in the body. Immutable and thread-safe.
+ * Checks run from cheapest to most expensive and stop at the first failure, so a
+ * rule limited to POST never looks at the body of a GET, and the body check is a
+ * plain byte search rather than a decode.
+ */
+public final class RuleCondition {
+
+    /** The condition of rules that apply to every request. */
+    public static final RuleCondition ALWAYS = new RuleCondition(Collections.emptySet(), "", null, null);
+
+    /**
+     * The parts of a request a condition looks at. Implementations may compute each
+     * part lazily, since most checks stop before reaching the later ones.
+     */
+    public interface Request {
+        String method();
+
+        /**
+         * @return The Content-Type header value, or null if absent
+         */
+        String contentType();
+
+        String url();
+
+        /**
+         * Searches the request body for a literal, byte for byte.
+         *
+         * @param literal The bytes to find
+         * @return true if the body contains them
+         */
+        boolean bodyContains(byte[] literal);
+    }
+
+    private final Set<String> methods;
+    private final String contentType;
+    private final Pattern urlPattern;
+    private final byte[] bodyLiteral;
+
+    private RuleCondition(Set<String> methods, String contentType, Pattern urlPattern, byte[] bodyLiteral) {
+        this.methods = methods;
+        this.contentType = contentType;
+        this.urlPattern = urlPattern;
+        this.bodyLiteral = bodyLiteral;
+    }
+
+    /**
+     * Builds a condition from its settings; empty settings match any request.
+     *
+     * @param methods     Comma or space separated methods, such as {@code POST, PUT, DELETE}
+     * @param contentType Text the Content-Type must contain, case-insensitive, such as {@code json}
+     * @param urlRegex    A regex found anywhere in the URL
+     * @param bodyLiteral Text the body must contain, compared as UTF-8 bytes
+     * @return The condition, or {@link #ALWAYS} if every setting is empty
+     * @throws IllegalArgumentException if the URL regex is invalid
+     */
+    public static RuleCondition of(String methods, String contentType, String urlRegex, String bodyLiteral) {
+        Set<String> methodSet = new LinkedHashSet<>();
+        if (methods != null) {
+            for (String method : methods.split("[,\\s]+")) {
+                if (!method.isEmpty()) {
+                    methodSet.add(method.toUpperCase(Locale.ROOT));
+                }
+            }
+        }
+        String type = contentType != null ? contentType.trim().toLowerCase(Locale.ROOT) : "";
+        Pattern url = urlRegex != null && !urlRegex.isEmpty() ? Pattern.compile(urlRegex) : null;
+        byte[] literal = bodyLiteral != null && !bodyLiteral.isEmpty() ? bodyLiteral.getBytes(StandardCharsets.UTF_8) : null;
+        if (methodSet.isEmpty() && type.isEmpty() && url == null && literal == null) {
+            return ALWAYS;
+        }
+        return new RuleCondition(Collections.unmodifiableSet(methodSet), type, url, literal);
+    }
+
+    /**
+     * Checks if the condition matches every request.
+     *
+     * @return true if no setting is restricted
+     */
+    public boolean isAlways() {
+        return this == ALWAYS;
+    }
+
+    /**
+     * Checks a request against the condition.
+     *
+     * @param request The request
+     * @return true if the rule applies to it
+     */
+    public boolean matches(Request request) {
+        if (!methods.isEmpty() && !methods.contains(request.method())) {
+            return false;
+        }
+        if (!contentType.isEmpty()) {
+            String actual = request.contentType();
+            if (actual == null || !actual.toLowerCase(Locale.ROOT).contains(contentType)) {
+                return false;
+            }
+        }
+        if (urlPattern != null && !urlPattern.matcher(request.url()).find()) {
+            return false;
+        }
+        return bodyLiteral == null || request.bodyContains(bodyLiteral);
+    }
+
+    /**
+     * Gets the methods for display and persistence.
+     *
+     * @return The methods separated by ", ", or empty for any method
+     */
+    public String getMethods() {
+        return String.join(", ", methods);
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getUrlRegex() {
+        return urlPattern != null ? urlPattern.pattern() : "";
+    }
+
+    public String getBodyLiteral() {
+        return bodyLiteral != null ? new String(bodyLiteral, StandardCharsets.UTF_8) : "";
+    }
+
+    /**
+     * Summarizes the condition for display.
+     *
+     * @return A short description, such as {@code POST, PUT; type json}
+     */
+    @Override
+    public String toString() {
+        if (isAlways()) {
+            return "Always";
+        }
+        StringBuilder sb = new StringBuilder();
+        if (!methods.isEmpty()) {
+            sb.append(getMethods());
+        }
+        if (!contentType.isEmpty()) {
+            sb.append(sb.length() > 0 ? "; " : "").append("type ").append(contentType);
+        }
+        if (urlPattern != null) {
+            sb.append(sb.length() > 0 ? "; " : "").append("URL /").append(urlPattern.pattern()).append('/');
+        }
+        if (bodyLiteral != null) {
+            sb.append(sb.length() > 0 ? "; " : "").append("body has \"").append(getBodyLiteral()).append('"');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Finds a literal in a byte range. Scans for the first byte and only compares the
+     * rest on a hit, which keeps typical bodies to one pass with no allocation.
+     *
+     * @param haystack The bytes to search
+     * @param from     The first offset searched, inclusive
+     * @param to       The end of the range, exclusive
+     * @param needle   The literal
+     * @return The offset of the first occurrence, or -1
+     */
+    public static int indexOf(byte[] haystack, int from, int to, byte[] needle) {
+        if (needle.length == 0) {
+            return from;
+        }
+        byte first = needle[0];
+        int last = to - needle.length;
+        for (int i = from; i <= last; i++) {
+            if (haystack[i] != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < needle.length && haystack[i + j] == needle[j]) {
+                j++;
+            }
+            if (j == needle.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,990 @@
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Bulk rule import from Postman collections, OpenAPI and Swagger security schemes,
+ * and curl commands.
+ * Every source is reduced to the requests it describes and the values each one sends.
+ * A value sent by every request becomes an unconditional rule; one sent by only some
+ * becomes a rule with a {@link RuleCondition} on their methods and paths. Tokens that
+ * come from a login response (Postman test scripts, bearer and OAuth 2 schemes) become
+ * dynamic extraction rules, and values that still need a secret are imported disabled.
+ *
+ * <p>JSON is scanned with {@link JsonValueReader} without building a tree, skipping
+ * request and response schemas, and YAML is read line by line, so multi-megabyte specs
+ * import in one pass over the text. Host, Content-Length and Content-Type headers are
+ * left out, since they belong to each request rather than to a rule.
+ */
+public final class RuleImporter {
+
+    private static final Set<String> SKIPPED_HEADERS =
+            Set.of("host", "content-length", "content-type", "connection", "transfer-encoding");
+    private static final Set<String> METHODS =
+            Set.of("get", "put", "post", "delete", "options", "head", "patch", "trace");
+    private static final String BEARER_EXTRACTION = "json:access_token | format:Bearer %s";
+
+    // pm.environment.set("token", pm.response.json().data.token) and the older postman.setEnvironmentVariable
+    private static final Pattern POSTMAN_SET = Pattern.compile(
+            "(?:pm\\.(?:environment|collectionVariables|globals|variables)\\.set|postman\\.set(?:Environment|Global)Variable)" +
+                    "\\(\\s*[\"']([^\"']+)[\"']\\s*,\\s*(?:pm\\.response\\.json\\(\\)|[A-Za-z_$][\\w$]*)" +
+                    "((?:\\.[A-Za-z_$][\\w$]*|\\[\\d+])+)\\s*\\)");
+    private static final Pattern VARIABLE = Pattern.compile("\\{\\{([^{}]+)}}");
+    private static final Pattern FLOW_KEY = Pattern.compile("([A-Za-z0-9_.-]+)\\s*:");
+    private static final Pattern YAML_SPEC = Pattern.compile("^[\"']?(openapi|swagger)[\"']?\\s*:", Pattern.MULTILINE);
+
+    // curl options read as rule values
+    private static final Set<String> CURL_VALUE_OPTIONS = Set.of("-H", "--header", "-b", "--cookie", "-u", "--user",
+            "-X", "--request", "-A", "--user-agent", "-e", "--referer", "--url", "--oauth2-bearer");
+
+    // curl options whose argument is not a rule value, so it must not be taken for the URL
+    private static final Set<String> CURL_OPTIONS_WITH_ARGUMENT = Set.of(
+            "-o", "--output", "-m", "--max-time", "--connect-timeout", "-x", "--proxy", "-U", "--proxy-user",
+            "-w", "--write-out", "--retry", "-K", "--config", "--cacert", "--cert", "-E", "--key", "-T",
+            "--upload-file", "-r", "--range", "--resolve", "--connect-to", "-c", "--cookie-jar", "--limit-rate",
+            "--max-redirs", "--interface", "-F", "--form", "--form-string", "-d", "--data", "--data-raw",
+            "--data-binary", "--data-urlencode", "--data-ascii", "--json", "-Y", "--speed-limit", "-y", "--speed-time");
+
+    private RuleImporter() {
+    }
+
+    /**
+     * Source formats the importer understands.
+     */
+    public enum Format {
+        POSTMAN("Postman collection"),
+        POSTMAN_ENVIRONMENT("Postman environment"),
+        OPENAPI("OpenAPI / Swagger"),
+        CURL("curl commands");
+
+        private final String displayName;
+
+        Format(String displayName) {
+            this.displayName = displayName;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+
+        /**
+         * Tells the format of a source from its first significant content.
+         *
+         * @param text The source text
+         * @return The format
+         * @throws IllegalArgumentException if the text is none of the supported formats
+         */
+        public static Format detect(String text) {
+            String trimmed = text.strip();
+            if (trimmed.startsWith("curl ") || trimmed.startsWith("$ curl ") || trimmed.contains("\ncurl ")) {
+                return CURL;
+            }
+            if (trimmed.startsWith("{")) {
+                Map<String, CharSequence> root = JsonValueReader.members(CharBuffer.wrap(trimmed));
+                if (root.containsKey("openapi") || root.containsKey("swagger")) {
+                    return OPENAPI;
+                }
+                if (root.containsKey("item")) {
+                    return POSTMAN;
+                }
+                if (root.containsKey("values")) {
+                    return POSTMAN_ENVIRONMENT;
+                }
+            } else if (YAML_SPEC.matcher(trimmed).find()) {
+                return OPENAPI;
+            }
+            throw new IllegalArgumentException("Expected a Postman collection, an OpenAPI or Swagger spec, " +
+                    "or curl commands");
+        }
+    }
+
+    /**
+     * Imports rules from a source of any supported format.
+     *
+     * @param text      The source text
+     * @param variables Values for {{variables}} in a Postman collection, such as from {@link #postmanVariables}
+     * @return The rules, in order of first use
+     * @throws IllegalArgumentException if the format is not recognized or the source is only an environment
+     */
+    public static List<CustomHeadersConfig.CustomHeader> importRules(String text, Map<String, String> variables) {
+        switch (Format.detect(text)) {
+            case POSTMAN:
+                return fromPostman(text, variables);
+            case OPENAPI:
+                return fromOpenApi(text);
+            case CURL:
+                return fromCurl(text);
+            default:
+                throw new IllegalArgumentException("A Postman environment only holds variables; " +
+                        "import it together with its collection");
+        }
+    }
+
+    /**
+     * Reads the enabled values of a Postman environment.
+     *
+     * @param environment The environment JSON
+     * @return Values by variable name
+     */
+    public static Map<String, String> postmanVariables(String environment) {
+        Map<String, String> variables = new HashMap<>();
+        Map<String, CharSequence> root = JsonValueReader.members(CharBuffer.wrap(environment));
+        for (CharSequence entry : JsonValueReader.elements(orEmpty(root.get("values")))) {
+            Map<String, CharSequence> members = JsonValueReader.members(entry);
+            String key = JsonValueReader.decode(members.get("key"));
+            if (key != null && !"false".equals(JsonValueReader.decode(members.get("enabled")))) {
+                String value = JsonValueReader.decode(members.get("value"));
+                variables.put(key, value != null ? value : "");
+            }
+        }
+        return variables;
+    }
+
+    /**
+     * Imports the headers and auth blocks of a Postman collection (format v2.x).
+     * Collection variables are resolved, overridden by {@code variables}; a value that
+     * still references a variable set from a response in a test script becomes a
+     * dynamic rule extracting that response field.
+     *
+     * @param collection The collection JSON
+     * @param variables  Environment values, or an empty map
+     * @return The rules
+     * @throws IllegalArgumentException if the text is not a Postman collection
+     */
+    public static List<CustomHeadersConfig.CustomHeader> fromPostman(String collection, Map<String, String> variables) {
+        Map<String, CharSequence> root = JsonValueReader.members(CharBuffer.wrap(collection));
+        if (!root.containsKey("item")) {
+            throw new IllegalArgumentException("Not a Postman collection: it has no item list");
+        }
+        Map<String, String> resolved = new HashMap<>();
+        for (CharSequence entry : JsonValueReader.elements(orEmpty(root.get("variable")))) {
+            Map<String, CharSequence> members = JsonValueReader.members(entry);
+            String key = JsonValueReader.decode(members.get("key"));
+            if (key != null) {
+                String value = JsonValueReader.decode(members.get("value"));
+                resolved.put(key, value != null ? value : "");
+            }
+        }
+        resolved.putAll(variables);
+
+        // Scripts can set a variable after the requests that use it, so values are resolved once all are read
+        Map<String, String> extractions = new HashMap<>();
+        List<Request> requests = new ArrayList<>();
+        walkPostman(root, null, resolved, extractions, requests);
+        for (Request request : requests) {
+            for (int i = 0; i < request.values.size(); i++) {
+                request.values.set(i, resolve(request.values.get(i), resolved, extractions));
+            }
+        }
+        return scopedRules(requests);
+    }
+
+    private static void walkPostman(Map<String, CharSequence> item, Map<String, CharSequence> inheritedAuth,
+                                    Map<String, String> variables, Map<String, String> extractions,
+                                    List<Request> requests) {
+        Map<String, CharSequence> auth = effectiveAuth(item.get("auth"), inheritedAuth);
+        for (CharSequence event : JsonValueReader.elements(orEmpty(item.get("event")))) {
+            Map<String, CharSequence> members = JsonValueReader.members(event);
+            Map<String, CharSequence> script = JsonValueReader.members(orEmpty(members.get("script")));
+            for (CharSequence line : JsonValueReader.elements(orEmpty(script.get("exec")))) {
+                Matcher m = POSTMAN_SET.matcher(nullToEmpty(JsonValueReader.decode(line)));
+                while (m.find()) {
+                    extractions.putIfAbsent(m.group(1), m.group(2).substring(m.group(2).startsWith(".") ? 1 : 0));
+                }
+            }
+        }
+
+        CharSequence rawRequest = item.get("request");
+        if (rawRequest != null) {
+            requests.add(postmanRequest(rawRequest, auth, variables));
+        }
+        for (CharSequence child : JsonValueReader.elements(orEmpty(item.get("item")))) {
+            walkPostman(JsonValueReader.members(child), auth, variables, extractions, requests);
+        }
+    }
+
+    private static Request postmanRequest(CharSequence raw, Map<String, CharSequence> auth, Map<String, String> variables) {
+        Map<String, CharSequence> request = JsonValueReader.members(raw);
+        String method = "GET";
+        String url;
+        if (request.isEmpty()) {
+            // A request given as just its URL
+            url = JsonValueReader.decode(raw);
+        } else {
+            String declared = JsonValueReader.decode(request.get("method"));
+            method = declared != null ? declared.toUpperCase(Locale.ROOT) : method;
+            CharSequence rawUrl = request.get("url");
+            Map<String, CharSequence> urlObject = JsonValueReader.members(orEmpty(rawUrl));
+            url = urlObject.isEmpty() ? JsonValueReader.decode(rawUrl) : JsonValueReader.decode(urlObject.get("raw"));
+            auth = effectiveAuth(request.get("auth"), auth);
+        }
+
+        Request result = new Request(method, url != null ? pathOf(url) : null);
+        for (CharSequence header : JsonValueReader.elements(orEmpty(request.get("header")))) {
+            Map<String, CharSequence> members = JsonValueReader.members(header);
+            if (!"true".equals(JsonValueReader.decode(members.get("disabled")))) {
+                result.header(JsonValueReader.decode(members.get("key")), JsonValueReader.decode(members.get("value")));
+            }
+        }
+        if (auth != null) {
+            postmanAuth(auth, variables, result);
+        }
+        return result;
+    }
+
+    /**
+     * Resolves the auth block that applies to an item: its own, none for "noauth",
+     * or the enclosing folder's for "inherit" or no block.
+     */
+    private static Map<String, CharSequence> effectiveAuth(CharSequence raw, Map<String, CharSequence> inherited) {
+        if (raw == null) {
+            return inherited;
+        }
+        Map<String, CharSequence> auth = JsonValueReader.members(raw);
+        String type = JsonValueReader.decode(auth.get("type"));
+        if (type == null || type.equals("inherit")) {
+            return inherited;
+        }
+        return type.equals("noauth") ? null : auth;
+    }
+
+    private static void postmanAuth(Map<String, CharSequence> auth, Map<String, String> variables, Request request) {
+        String type = JsonValueReader.decode(auth.get("type"));
+        // Settings are a list of {key, value} pairs named after the type
+        Map<String, String> settings = new HashMap<>();
+        for (CharSequence entry : JsonValueReader.elements(orEmpty(auth.get(type)))) {
+            Map<String, CharSequence> members = JsonValueReader.members(entry);
+            String key = JsonValueReader.decode(members.get("key"));
+            if (key != null) {
+                settings.put(key, nullToEmpty(JsonValueReader.decode(members.get("value"))));
+            }
+        }
+        switch (type) {
+            case "bearer":
+                request.values.add(new Sent(InjectionTarget.HEADER, "Authorization",
+                        "Bearer " + settings.getOrDefault("token", ""), null));
+                break;
+            case "basic": {
+                String credentials = substitute(settings.getOrDefault("username", ""), variables) + ":" +
+                        substitute(settings.getOrDefault("password", ""), variables);
+                request.values.add(new Sent(InjectionTarget.HEADER, "Authorization", "Basic " +
+                        Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)), null));
+                break;
+            }
+            case "apikey":
+                request.values.add(new Sent("query".equals(settings.get("in")) ? InjectionTarget.URL_PARAMETER :
+                        InjectionTarget.HEADER, settings.getOrDefault("key", ""), settings.getOrDefault("value", ""), null));
+                break;
+            default:
+                // OAuth 1, Digest, NTLM and the like are computed per request and have no fixed value
+        }
+    }
+
+    /**
+     * Substitutes known variables into a value, turning a remaining variable that a test
+     * script extracts from a response into a dynamic rule.
+     */
+    private static Sent resolve(Sent sent, Map<String, String> variables, Map<String, String> extractions) {
+        String value = substitute(sent.value, variables);
+        Matcher m = VARIABLE.matcher(value);
+        if (m.find()) {
+            String path = extractions.get(m.group(1).trim());
+            if (path != null && !m.find()) {
+                m.reset().find();
+                String prefix = value.substring(0, m.start());
+                String suffix = value.substring(m.end());
+                String spec = "json:" + path;
+                if (!prefix.isEmpty() || !suffix.isEmpty()) {
+                    spec += " | format:" + (prefix + "%s" + suffix).replace("|", "\\|");
+                }
+                return new Sent(sent.target, sent.name, "", spec);
+            }
+        }
+        return new Sent(sent.target, sent.name, value, null);
+    }
+
+    private static String substitute(String value, Map<String, String> variables) {
+        // Two rounds, so a variable may be defined in terms of another
+        for (int round = 0; round < 2 && value.contains("{{"); round++) {
+            Matcher m = VARIABLE.matcher(value);
+            StringBuilder sb = new StringBuilder();
+            while (m.find()) {
+                String replacement = variables.get(m.group(1).trim());
+                m.appendReplacement(sb, Matcher.quoteReplacement(replacement != null ? replacement : m.group()));
+            }
+            m.appendTail(sb);
+            value = sb.toString();
+        }
+        return value;
+    }
+
+    /**
+     * Imports the security schemes of an OpenAPI 3 or Swagger 2 spec, in JSON or YAML.
+     * Each scheme is scoped to the operations that require it, unless it is required
+     * globally or by every operation.
+     *
+     * @param spec The spec text
+     * @return The rules
+     * @throws IllegalArgumentException if the spec declares no security schemes
+     */
+    public static List<CustomHeadersConfig.CustomHeader> fromOpenApi(String spec) {
+        SecurityCollector collector = new SecurityCollector();
+        if (spec.strip().startsWith("{")) {
+            scanJson(CharBuffer.wrap(spec), collector);
+        } else {
+            scanYaml(spec, collector);
+        }
+        if (collector.schemes.isEmpty()) {
+            throw new IllegalArgumentException("The spec declares no security schemes");
+        }
+        return scopedRules(collector.requests());
+    }
+
+    private static void scanJson(CharSequence json, SecurityCollector collector) {
+        Map<String, CharSequence> root = JsonValueReader.members(json);
+        Map<String, CharSequence> components = JsonValueReader.members(orEmpty(root.get("components")));
+        CharSequence schemes = components.containsKey("securitySchemes") ? components.get("securitySchemes") :
+                root.get("securityDefinitions");
+        for (Map.Entry<String, CharSequence> scheme : JsonValueReader.members(orEmpty(schemes)).entrySet()) {
+            for (Map.Entry<String, CharSequence> property : JsonValueReader.members(scheme.getValue()).entrySet()) {
+                collector.scheme(scheme.getKey(), property.getKey(), JsonValueReader.decode(property.getValue()));
+            }
+        }
+        if (root.containsKey("security")) {
+            collector.globalSecurity(requirementNames(root.get("security")));
+        }
+        // Operations are only walked to their top-level members; schemas are skipped in the same scan
+        for (Map.Entry<String, CharSequence> path : JsonValueReader.members(orEmpty(root.get("paths"))).entrySet()) {
+            for (Map.Entry<String, CharSequence> operation : JsonValueReader.members(path.getValue()).entrySet()) {
+                if (METHODS.contains(operation.getKey())) {
+                    collector.operation(path.getKey(), operation.getKey());
+                    CharSequence security = JsonValueReader.members(operation.getValue()).get("security");
+                    if (security != null) {
+                        collector.operationSecurity(path.getKey(), operation.getKey(), requirementNames(security));
+                    }
+                }
+            }
+        }
+    }
+
+    private static Set<String> requirementNames(CharSequence security) {
+        Set<String> names = new LinkedHashSet<>();
+        for (CharSequence requirement : JsonValueReader.elements(security)) {
+            names.addAll(JsonValueReader.members(requirement).keySet());
+        }
+        return names;
+    }
+
+    /**
+     * Reads the block-style YAML a spec is written in, one line at a time, keeping only
+     * the path of keys above the current line. Block scalars (descriptions) are skipped.
+     */
+    private static void scanYaml(String spec, SecurityCollector collector) {
+        List<String> keys = new ArrayList<>();
+        List<Integer> indents = new ArrayList<>();
+        int blockIndent = -1;
+        for (String line : (Iterable<String>) spec.lines()::iterator) {
+            int indent = 0;
+            while (indent < line.length() && line.charAt(indent) == ' ') {
+                indent++;
+            }
+            String content = line.substring(indent).stripTrailing();
+            if (blockIndent >= 0) {
+                if (content.isEmpty() || indent > blockIndent) {
+                    continue;
+                }
+                blockIndent = -1;
+            }
+            if (content.isEmpty() || content.startsWith("#") || content.startsWith("---")) {
+                continue;
+            }
+
+            // "- key: value" opens a list item holding a mapping that starts on the same line
+            while (content.equals("-") || content.startsWith("- ")) {
+                pop(keys, indents, indent);
+                keys.add("-");
+                indents.add(indent);
+                int skip = 1;
+                while (skip < content.length() && content.charAt(skip) == ' ') {
+                    skip++;
+                }
+                indent += skip;
+                content = content.substring(skip);
+            }
+            if (content.isEmpty()) {
+                continue;
+            }
+            pop(keys, indents, indent);
+
+            int colon = keyEnd(content);
+            if (colon == -1) {
+                continue;
+            }
+            String key = unquote(content.substring(0, colon).trim());
+            String value = stripComment(content.substring(colon + 1)).trim();
+            keys.add(key);
+            indents.add(indent);
+            if (value.startsWith("|") || value.startsWith(">")) {
+                blockIndent = indent;
+            } else if (!value.isEmpty()) {
+                yamlValue(keys, unquote(value), collector);
+            } else {
+                yamlValue(keys, null, collector);
+            }
+        }
+    }
+
+    private static void yamlValue(List<String> keys, String value, SecurityCollector collector) {
+        int depth = keys.size();
+        String first = keys.get(0);
+        if (first.equals("components") && depth == 4 && keys.get(1).equals("securitySchemes")) {
+            collector.scheme(keys.get(2), keys.get(3), value);
+        } else if (first.equals("securityDefinitions") && depth == 3) {
+            collector.scheme(keys.get(1), keys.get(2), value);
+        } else if (first.equals("security")) {
+            if (depth == 1 && value != null) {
+                collector.globalSecurity(flowKeys(value));
+            } else if (depth == 3) {
+                collector.globalSecurity(Set.of(keys.get(2)));
+            }
+        } else if (first.equals("paths") && depth >= 3 && METHODS.contains(keys.get(2))) {
+            String path = keys.get(1);
+            String method = keys.get(2);
+            collector.operation(path, method);
+            if (depth == 4 && keys.get(3).equals("security") && value != null) {
+                collector.operationSecurity(path, method, flowKeys(value));
+            } else if (depth == 6 && keys.get(3).equals("security")) {
+                collector.operationSecurity(path, method, Set.of(keys.get(5)));
+            }
+        }
+    }
+
+    private static void pop(List<String> keys, List<Integer> indents, int indent) {
+        while (!indents.isEmpty() && indents.get(indents.size() - 1) >= indent) {
+            keys.remove(keys.size() - 1);
+            indents.remove(indents.size() - 1);
+        }
+    }
+
+    /**
+     * Finds the colon ending a mapping key: the first one followed by a space or the end
+     * of the line, outside a quoted key.
+     */
+    private static int keyEnd(String content) {
+        int from = 0;
+        char quote = content.charAt(0);
+        if (quote == '"' || quote == '\'') {
+            from = content.indexOf(quote, 1);
+            if (from == -1) {
+                return -1;
+            }
+        }
+        for (int i = from; i < content.length(); i++) {
+            if (content.charAt(i) == ':' && (i + 1 == content.length() || content.charAt(i + 1) == ' ')) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String stripComment(String value) {
+        int hash = value.indexOf(" #");
+        return hash == -1 || value.trim().startsWith("\"") || value.trim().startsWith("'") ? value : value.substring(0, hash);
+    }
+
+    private static String unquote(String text) {
+        if (text.length() >= 2 && (text.startsWith("\"") && text.endsWith("\"") || text.startsWith("'") && text.endsWith("'"))) {
+            return text.substring(1, text.length() - 1);
+        }
+        return text;
+    }
+
+    /**
+     * Reads the scheme names of a flow-style requirement list, such as {@code [{api_key: []}]}.
+     */
+    private static Set<String> flowKeys(String value) {
+        Set<String> names = new LinkedHashSet<>();
+        Matcher m = FLOW_KEY.matcher(value);
+        while (m.find()) {
+            names.add(m.group(1));
+        }
+        return names;
+    }
+
+    /**
+     * Gathers security schemes and which operations require them.
+     */
+    private static final class SecurityCollector {
+        final Map<String, Map<String, String>> schemes = new LinkedHashMap<>();
+        final Set<String> global = new LinkedHashSet<>();
+        // Requirements by "METHOD path"; null until the operation declares its own
+        final Map<String, Set<String>> operations = new LinkedHashMap<>();
+
+        void scheme(String scheme, String property, String value) {
+            if (value != null) {
+                schemes.computeIfAbsent(scheme, k -> new HashMap<>()).put(property, value);
+            }
+        }
+
+        void globalSecurity(Set<String> names) {
+            global.addAll(names);
+        }
+
+        void operation(String path, String method) {
+            operations.putIfAbsent(method.toUpperCase(Locale.ROOT) + " " + path, null);
+        }
+
+        void operationSecurity(String path, String method, Set<String> names) {
+            Set<String> declared = operations.get(method.toUpperCase(Locale.ROOT) + " " + path);
+            if (declared == null) {
+                declared = new LinkedHashSet<>();
+                operations.put(method.toUpperCase(Locale.ROOT) + " " + path, declared);
+            }
+            declared.addAll(names);
+        }
+
+        List<Request> requests() {
+            List<Request> requests = new ArrayList<>();
+            if (operations.isEmpty()) {
+                // No operations to scope by: every scheme applies everywhere
+                Request request = new Request(null, null);
+                for (String scheme : schemes.keySet()) {
+                    addScheme(scheme, request);
+                }
+                requests.add(request);
+                return requests;
+            }
+            for (Map.Entry<String, Set<String>> operation : operations.entrySet()) {
+                int space = operation.getKey().indexOf(' ');
+                Request request = new Request(operation.getKey().substring(0, space),
+                        pathOf(operation.getKey().substring(space + 1)));
+                for (String scheme : operation.getValue() != null ? operation.getValue() : global) {
+                    addScheme(scheme, request);
+                }
+                requests.add(request);
+            }
+            return requests;
+        }
+
+        private void addScheme(String scheme, Request request) {
+            Map<String, String> properties = schemes.get(scheme);
+            if (properties == null) {
+                return;
+            }
+            String type = properties.getOrDefault("type", "").toLowerCase(Locale.ROOT);
+            String name = properties.getOrDefault("name", "");
+            switch (type) {
+                case "apikey": {
+                    String in = properties.getOrDefault("in", "header");
+                    InjectionTarget target = in.equals("query") ? InjectionTarget.URL_PARAMETER :
+                            in.equals("cookie") ? InjectionTarget.COOKIE : InjectionTarget.HEADER;
+                    request.values.add(new Sent(target, name, "", null));
+                    break;
+                }
+                case "http":
+                    if ("basic".equalsIgnoreCase(properties.get("scheme"))) {
+                        request.values.add(new Sent(InjectionTarget.HEADER, "Authorization", "Basic ", null));
+                    } else {
+                        request.values.add(new Sent(InjectionTarget.HEADER, "Authorization", "", BEARER_EXTRACTION));
+                    }
+                    break;
+                case "basic":
+                    request.values.add(new Sent(InjectionTarget.HEADER, "Authorization", "Basic ", null));
+                    break;
+                case "oauth2":
+                case "openidconnect":
+                    request.values.add(new Sent(InjectionTarget.HEADER, "Authorization", "", BEARER_EXTRACTION));
+                    break;
+                default:
+                    // Mutual TLS has no request-level value
+            }
+        }
+    }
+
+    /**
+     * Imports the headers, cookies and credentials of one or more curl commands, such
+     * as those copied from browser developer tools. Each command is one request.
+     *
+     * @param commands The commands, separated by newlines or ;
+     * @return The rules
+     * @throws IllegalArgumentException if the text holds no curl command
+     */
+    public static List<CustomHeadersConfig.CustomHeader> fromCurl(String commands) {
+        List<Request> requests = new ArrayList<>();
+        for (List<String> words : shellCommands(commands)) {
+            int start = words.indexOf("curl");
+            if (start >= 0) {
+                requests.add(curlRequest(words.subList(start + 1, words.size())));
+            }
+        }
+        if (requests.isEmpty()) {
+            throw new IllegalArgumentException("No curl command found");
+        }
+        return scopedRules(requests);
+    }
+
+    private static Request curlRequest(List<String> args) {
+        String method = null;
+        String url = null;
+        boolean hasData = false;
+        List<Sent> values = new ArrayList<>();
+        Request scratch = new Request(null, null);
+        for (int i = 0; i < args.size(); i++) {
+            String arg = args.get(i);
+            String option = arg;
+            String argument = null;
+            int eq = arg.indexOf('=');
+            if (arg.startsWith("--") && eq > 0) {
+                option = arg.substring(0, eq);
+                argument = arg.substring(eq + 1);
+            } else if (arg.length() > 2 && arg.charAt(0) == '-' && arg.charAt(1) != '-' && "HbuXAed".indexOf(arg.charAt(1)) >= 0) {
+                // Short option with its argument attached, such as -XPOST
+                option = arg.substring(0, 2);
+                argument = arg.substring(2);
+            }
+            boolean takesArgument = CURL_VALUE_OPTIONS.contains(option) || CURL_OPTIONS_WITH_ARGUMENT.contains(option);
+            if (takesArgument && argument == null) {
+                argument = i + 1 < args.size() ? args.get(++i) : "";
+            }
+            switch (option) {
+                case "-H":
+                case "--header": {
+                    int colon = argument.indexOf(':');
+                    // "Name:" removes a header and "Name;" sends it empty; neither is a value to import
+                    if (colon > 0 && !argument.substring(colon + 1).isBlank()) {
+                        scratch.header(argument.substring(0, colon).trim(), argument.substring(colon + 1).trim());
+                    }
+                    break;
+                }
+                case "-b":
+                case "--cookie":
+                    if (argument.contains("=")) {
+                        scratch.header("Cookie", argument);
+                    }
+                    break;
+                case "-u":
+                case "--user":
+                    values.add(new Sent(InjectionTarget.HEADER, "Authorization", "Basic " +
+                            Base64.getEncoder().encodeToString(argument.getBytes(StandardCharsets.UTF_8)), null));
+                    break;
+                case "--oauth2-bearer":
+                    values.add(new Sent(InjectionTarget.HEADER, "Authorization", "Bearer " + argument, null));
+                    break;
+                case "-A":
+                case "--user-agent":
+                    scratch.header("User-Agent", argument);
+                    break;
+                case "-e":
+                case "--referer":
+                    scratch.header("Referer", argument);
+                    break;
+                case "-X":
+                case "--request":
+                    method = argument.toUpperCase(Locale.ROOT);
+                    break;
+                case "--url":
+                    url = argument;
+                    break;
+                default:
+                    if (option.startsWith("-d") || option.startsWith("--data") || option.equals("--json") ||
+                            option.equals("-F") || option.startsWith("--form")) {
+                        hasData = true;
+                    } else if (!arg.startsWith("-") && url == null) {
+                        url = arg;
+                    }
+            }
+        }
+        Request request = new Request(method != null ? method : hasData ? "POST" : "GET", url != null ? pathOf(url) : null);
+        request.values.addAll(scratch.values);
+        request.values.addAll(values);
+        return request;
+    }
+
+    /**
+     * Splits shell text into commands and words, following single quotes, double
+     * quotes, $'...' strings and backslash line continuations.
+     */
+    private static List<List<String>> shellCommands(String text) {
+        List<List<String>> commands = new ArrayList<>();
+        List<String> words = new ArrayList<>();
+        StringBuilder word = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\' && i + 1 < text.length()) {
+                char next = text.charAt(++i);
+                if (next == '\r' && i + 1 < text.length() && text.charAt(i + 1) == '\n') {
+                    i++;
+                } else if (next != '\n') {
+                    word = append(word, next);
+                }
+            } else if (c == '\'' || (c == '$' && i + 1 < text.length() && text.charAt(i + 1) == '\'')) {
+                boolean ansi = c == '$';
+                i += ansi ? 2 : 1;
+                word = append(word, null);
+                for (; i < text.length() && text.charAt(i) != '\''; i++) {
+                    if (ansi && text.charAt(i) == '\\' && i + 1 < text.length()) {
+                        char e = text.charAt(++i);
+                        word.append(e == 'n' ? '\n' : e == 't' ? '\t' : e == 'r' ? '\r' : e);
+                    } else {
+                        word.append(text.charAt(i));
+                    }
+                }
+            } else if (c == '"') {
+                word = append(word, null);
+                for (i++; i < text.length() && text.charAt(i) != '"'; i++) {
+                    if (text.charAt(i) == '\\' && i + 1 < text.length() && "\"\\$`".indexOf(text.charAt(i + 1)) >= 0) {
+                        i++;
+                    }
+                    word.append(text.charAt(i));
+                }
+            } else if (c == ' ' || c == '\t' || c == '\r') {
+                if (word != null) {
+                    words.add(word.toString());
+                    word = null;
+                }
+            } else if (c == '\n' || c == ';' || (c == '&' && i + 1 < text.length() && text.charAt(i + 1) == '&')) {
+                if (word != null) {
+                    words.add(word.toString());
+                    word = null;
+                }
+                if (!words.isEmpty()) {
+                    commands.add(words);
+                    words = new ArrayList<>();
+                }
+                i += c == '&' ? 1 : 0;
+            } else {
+                word = append(word, c);
+            }
+        }
+        if (word != null) {
+            words.add(word.toString());
+        }
+        if (!words.isEmpty()) {
+            commands.add(words);
+        }
+        return commands;
+    }
+
+    private static StringBuilder append(StringBuilder word, Character c) {
+        StringBuilder result = word != null ? word : new StringBuilder();
+        if (c != null) {
+            result.append(c.charValue());
+        }
+        return result;
+    }
+
+    /**
+     * Turns the values sent by each request into rules: one per distinct value, or none
+     * if every request sends it. Otherwise the paths that send it with the same methods
+     * form one rule each, conditioned on those methods and paths, so no method is allowed
+     * on a path where the source did not send the value with it.
+     */
+    private static List<CustomHeadersConfig.CustomHeader> scopedRules(List<Request> requests) {
+        Map<String, Set<String>> allMethodsByPath = new LinkedHashMap<>();
+        for (Request request : requests) {
+            allMethodsByPath.computeIfAbsent(request.pathRegex, k -> new LinkedHashSet<>()).add(request.method);
+        }
+
+        Map<Sent, Usage> usages = new LinkedHashMap<>();
+        for (Request request : requests) {
+            Set<Sent> seen = new LinkedHashSet<>(request.values);
+            for (Sent sent : seen) {
+                Usage usage = usages.computeIfAbsent(sent, k -> new Usage());
+                usage.requests++;
+                usage.methodsByPath.computeIfAbsent(request.pathRegex, k -> new LinkedHashSet<>()).add(request.method);
+            }
+        }
+
+        List<CustomHeadersConfig.CustomHeader> rules = new ArrayList<>();
+        for (Map.Entry<Sent, Usage> entry : usages.entrySet()) {
+            Sent sent = entry.getKey();
+            Usage usage = entry.getValue();
+            if (usage.requests == requests.size()) {
+                rules.add(rule(sent, RuleCondition.ALWAYS));
+                continue;
+            }
+
+            Map<Set<String>, Set<String>> pathsByMethods = new LinkedHashMap<>();
+            for (Map.Entry<String, Set<String>> path : usage.methodsByPath.entrySet()) {
+                pathsByMethods.computeIfAbsent(path.getValue(), k -> new LinkedHashSet<>()).add(path.getKey());
+            }
+            for (Map.Entry<Set<String>, Set<String>> group : pathsByMethods.entrySet()) {
+                Set<String> methods = group.getKey();
+                Set<String> paths = group.getValue();
+                // A filter is left out when the source does not say, or when it would exclude nothing
+                boolean anyMethod = methods.contains(null);
+                if (!anyMethod) {
+                    anyMethod = true;
+                    for (String path : paths) {
+                        anyMethod &= methods.containsAll(allMethodsByPath.get(path));
+                    }
+                }
+                boolean anyPath = paths.contains(null);
+                if (!anyPath) {
+                    anyPath = true;
+                    for (Request request : requests) {
+                        if (anyMethod || methods.contains(request.method)) {
+                            anyPath &= paths.contains(request.pathRegex);
+                        }
+                    }
+                }
+                rules.add(rule(sent, RuleCondition.of(anyMethod ? "" : String.join(", ", methods), "",
+                        anyPath ? "" : String.join("|", paths), "")));
+            }
+        }
+        return rules;
+    }
+
+    private static CustomHeadersConfig.CustomHeader rule(Sent sent, RuleCondition condition) {
+        CustomHeadersConfig.CustomHeader.Builder builder =
+                CustomHeadersConfig.CustomHeader.builder(sent.name, sent.value)
+                        .target(sent.target)
+                        .condition(condition);
+        if (sent.extraction != null) {
+            builder.dynamic(true).pipeline(sent.extraction);
+        } else {
+            // A value still missing its secret (empty, or a bare "Basic " prefix) or an unresolved
+            // variable is imported disabled for the user to fill in
+            builder.enabled(!sent.value.isBlank() && !sent.value.endsWith(" ") && !VARIABLE.matcher(sent.value).find());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Reduces a URL to a regex for its path, with {id}, :id and {{var}} segments
+     * matching any single segment. The regex is anchored to match the whole path of
+     * either an origin-form target or a full URL, so /a does not match /api/a or /ab.
+     */
+    private static String pathOf(String url) {
+        String path = url;
+        int scheme = path.indexOf("://");
+        if (scheme >= 0) {
+            int slash = path.indexOf('/', scheme + 3);
+            path = slash >= 0 ? path.substring(slash) : "/";
+        } else if (path.startsWith("{{")) {
+            // Postman {{baseUrl}}/users
+            path = path.substring(path.indexOf("}}") + 2);
+        } else if (!path.startsWith("/")) {
+            // A host without a scheme, as curl accepts
+            int slash = path.indexOf('/');
+            path = slash >= 0 ? path.substring(slash) : "/";
+        }
+        int query = path.indexOf('?');
+        path = query >= 0 ? path.substring(0, query) : path;
+        int fragment = path.indexOf('#');
+        path = fragment >= 0 ? path.substring(0, fragment) : path;
+        if (!path.startsWith("/")) {
+            path = "/" + path;
+        }
+
+        StringBuilder regex = new StringBuilder();
+        for (String segment : path.split("/", -1)) {
+            if (regex.length() > 0 || !segment.isEmpty()) {
+                regex.append('/');
+            }
+            if (segment.startsWith(":") && segment.length() > 1 || segment.matches("\\{[^{}]+}|\\{\\{[^{}]+}}")) {
+                regex.append("[^/?#]+");
+            } else {
+                for (char c : segment.toCharArray()) {
+                    if ("\\.[]{}()*+?^$|".indexOf(c) >= 0) {
+                        regex.append('\\');
+                    }
+                    regex.append(c);
+                }
+            }
+        }
+        return "^(?:[A-Za-z][A-Za-z0-9+.-]*://[^/?#]*)?" + (regex.length() == 0 ? "/" : regex.toString()) +
+                "(?:[?#]|$)";
+    }
+
+    private static CharSequence orEmpty(CharSequence value) {
+        return value != null ? value : "";
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+
+    /**
+     * A request described by the source: its method, path regex and the values it sends.
+     * Either part of the scope may be null when the source does not say.
+     */
+    private static final class Request {
+        final String method;
+        final String pathRegex;
+        final List<Sent> values = new ArrayList<>();
+
+        Request(String method, String pathRegex) {
+            this.method = method;
+            this.pathRegex = pathRegex;
+        }
+
+        /**
+         * Adds a header, splitting a Cookie header into one rule per cookie.
+         */
+        void header(String name, String value) {
+            if (name == null || name.isBlank() || value == null || SKIPPED_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+                return;
+            }
+            if (!name.equalsIgnoreCase("Cookie")) {
+                values.add(new Sent(InjectionTarget.HEADER, name, value, null));
+                return;
+            }
+            for (String cookie : value.split(";")) {
+                int eq = cookie.indexOf('=');
+                if (eq > 0) {
+                    values.add(new Sent(InjectionTarget.COOKIE, cookie.substring(0, eq).trim(), cookie.substring(eq + 1).trim(), null));
+                }
+            }
+        }
+    }
+
+    /**
+     * One value a request sends: a fixed value, or an extractor spec for a dynamic rule.
+     */
+    private static final class Sent {
+        final InjectionTarget target;
+        final String name;
+        final String value;
+        final String extraction;
+
+        Sent(InjectionTarget target, String name, String value, String extraction) {
+            this.target = target;
+            this.name = name;
+            this.value = value;
+            this.extraction = extraction;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Sent)) {
+                return false;
+            }
+            Sent other = (Sent) o;
+            return target == other.target && name.equals(other.name) && value.equals(other.value) &&
+                    Objects.equals(extraction, other.extraction);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(target, name, value, extraction);
+        }
+    }
+
+    private static final class Usage {
+        int requests;
+        final Map<String, Set<String>> methodsByPath = new LinkedHashMap<>();
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * The part of a macro response body that a dynamic header's pattern is matched against.
+ * Tokens in login responses almost always sit near the start of the body, so bounding
+ * the scan keeps memory and latency flat for very large pages.
+ */
+public final class ScanWindow {
+
+    /** Scans the entire body; used for rules saved before scan windows existed. */
+    public static final ScanWindow WHOLE_BODY = new ScanWindow(0, false);
+
+    private final int maxBytes;
+    private final boolean fromTail;
+
+    /**
+     * Creates a scan window.
+     *
+     * @param maxBytes The number of body bytes to scan, or 0 for the whole body
+     * @param fromTail Whether to scan the last bytes of the body instead of the first
+     */
+    public ScanWindow(int maxBytes, boolean fromTail) {
+        this.maxBytes = Math.max(0, maxBytes);
+        this.fromTail = fromTail;
+    }
+
+    public int getMaxBytes() {
+        return maxBytes;
+    }
+
+    public boolean isFromTail() {
+        return fromTail;
+    }
+
+    public boolean isWholeBody() {
+        return maxBytes == 0;
+    }
+
+    /**
+     * Parses a persisted window such as {@code head:65536} or {@code tail:4096}.
+     *
+     * @param value The persisted value, or null
+     * @return The window, or {@link #WHOLE_BODY} for missing or malformed values
+     */
+    public static ScanWindow parse(String value) {
+        if (value == null) {
+            return WHOLE_BODY;
+        }
+        int colon = value.indexOf(':');
+        if (colon == -1) {
+            return WHOLE_BODY;
+        }
+        try {
+            int maxBytes = Integer.parseInt(value.substring(colon + 1).trim());
+            return maxBytes > 0 ? new ScanWindow(maxBytes, "tail".equals(value.substring(0, colon))) : WHOLE_BODY;
+        } catch (NumberFormatException e) {
+            return WHOLE_BODY;
+        }
+    }
+
+    /**
+     * Formats the window for persistence.
+     *
+     * @return The persisted form, e.g. {@code head:65536}
+     */
+    public String format() {
+        return (fromTail ? "tail:" : "head:") + maxBytes;
+    }
+
+    @Override
+    public String toString() {
+        return isWholeBody() ? "whole body" : (fromTail ? "last " : "first ") + maxBytes + " bytes";
+    }
+}
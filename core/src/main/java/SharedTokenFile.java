@@ -0,0 +1,300 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Token map shared between processes through a memory-mapped file.
+ * Several Burp instances (and the command-line rewriter) on one machine map the same
+ * file: one of them refreshes a token and the others see it on their next read,
+ * without running their own login macros.
+ *
+ * <p>Readers never lock. The header holds a sequence number used as a seqlock: a
+ * writer makes it odd, rewrites the payload and makes it even again, and a reader
+ * retries if the sequence was odd or changed while it copied the payload. Writers
+ * serialize with an exclusive {@link FileLock}, which the OS releases if a writer dies;
+ * the next writer then completes the sequence. Until then, a reader that finds the
+ * sequence stuck on the same odd value for its whole retry budget treats the payload as
+ * torn and returns the last good copy at that sequence, so callers that compare
+ * sequences stop retrying and a crash never wedges readers.
+ *
+ * <pre>
+ * offset  0: magic (long)
+ * offset  8: sequence (long, odd while a write is in progress)
+ * offset 16: version (long, incremented by every write)
+ * offset 24: payload length (long)
+ * offset 32: payload: count, then (name length, name, value length, value) in UTF-8
+ * </pre>
+ */
+public class SharedTokenFile implements AutoCloseable {
+
+    public static final int DEFAULT_SIZE = 256 * 1024;
+
+    private static final long MAGIC = 0x435548445a544b31L; // "CUHDZTK1"
+    private static final int MAGIC_OFFSET = 0;
+    private static final int SEQUENCE_OFFSET = 8;
+    private static final int VERSION_OFFSET = 16;
+    private static final int LENGTH_OFFSET = 24;
+    private static final int PAYLOAD_OFFSET = 32;
+    private static final int MAX_READ_ATTEMPTS = 10_000;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int size;
+
+    // The last consistent copy read or written by this process, served while a dead writer's sequence stays odd
+    private volatile Contents lastGood;
+
+    /**
+     * Opens or creates a shared token file.
+     *
+     * @param path The file shared by all participating processes
+     * @param size The mapped size in bytes; every process must use the same size
+     * @throws IOException if the file cannot be mapped or belongs to something else
+     */
+    public SharedTokenFile(Path path, int size) throws IOException {
+        this.path = path;
+        this.size = size;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            FileLock lock = channel.lock();
+            try {
+                if (channel.size() < size) {
+                    channel.write(ByteBuffer.wrap(new byte[1]), size - 1);
+                }
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                long magic = (long) LONGS.getVolatile(buffer, MAGIC_OFFSET);
+                if (magic == 0) {
+                    LONGS.setVolatile(buffer, MAGIC_OFFSET, MAGIC);
+                } else if (magic != MAGIC) {
+                    throw new IOException("Not a CustomHeaderZ token file: " + path);
+                }
+            } finally {
+                lock.release();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the current sequence number. Changes whenever another process writes, so
+     * comparing it against the last value seen is a single memory read.
+     *
+     * @return The sequence number
+     */
+    public long getSequence() {
+        return (long) LONGS.getAcquire(buffer, SEQUENCE_OFFSET);
+    }
+
+    /**
+     * Reads a consistent copy of the shared tokens without locking. Spins briefly and
+     * then yields while a write is in progress; callers must not hold locks other
+     * threads need meanwhile.
+     *
+     * @return The tokens and the sequence they were read at; the last good copy, at the
+     *         stuck sequence, if a writer died mid-write; or null if no stable copy could
+     *         be read because live writers kept interfering
+     */
+    public Contents read() {
+        long stuck = (long) LONGS.getAcquire(buffer, SEQUENCE_OFFSET);
+        for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+            long before = (long) LONGS.getAcquire(buffer, SEQUENCE_OFFSET);
+            if ((before & 1) != 0) {
+                if (attempt < MAX_READ_ATTEMPTS / 10) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+                continue;
+            }
+            long length = (long) LONGS.getAcquire(buffer, LENGTH_OFFSET);
+            long version = (long) LONGS.getAcquire(buffer, VERSION_OFFSET);
+            byte[] payload = length >= 0 && length <= size - PAYLOAD_OFFSET ? new byte[(int) length] : null;
+            if (payload != null) {
+                buffer.get(PAYLOAD_OFFSET, payload);
+            }
+            VarHandle.loadLoadFence();
+            if ((long) LONGS.getAcquire(buffer, SEQUENCE_OFFSET) != before || payload == null) {
+                continue;
+            }
+            Map<String, String> tokens = decode(payload);
+            if (tokens != null) {
+                Contents contents = new Contents(before, version, tokens);
+                lastGood = contents;
+                return contents;
+            }
+        }
+        if ((stuck & 1) != 0 && (long) LONGS.getAcquire(buffer, SEQUENCE_OFFSET) == stuck) {
+            // A writer died mid-write: the payload is torn until the next writer repairs it
+            Contents good = lastGood;
+            return new Contents(stuck, good != null ? good.getVersion() : 0,
+                    good != null ? good.getTokens() : Collections.emptyMap());
+        }
+        return null;
+    }
+
+    /**
+     * Merges values into the shared tokens under the file lock.
+     *
+     * @param updates The values to set
+     * @return The merged tokens as written
+     * @throws IOException if locking fails or the tokens no longer fit in the file
+     */
+    public synchronized Contents write(Map<String, String> updates) throws IOException {
+        FileLock lock = channel.lock();
+        try {
+            long sequence = (long) LONGS.getVolatile(buffer, SEQUENCE_OFFSET);
+            // An odd sequence here means a writer died mid-write; its payload is discarded below
+            Map<String, String> merged = new HashMap<>();
+            if ((sequence & 1) == 0) {
+                long length = (long) LONGS.getVolatile(buffer, LENGTH_OFFSET);
+                if (length > 0 && length <= size - PAYLOAD_OFFSET) {
+                    byte[] payload = new byte[(int) length];
+                    buffer.get(PAYLOAD_OFFSET, payload);
+                    Map<String, String> current = decode(payload);
+                    if (current != null) {
+                        merged.putAll(current);
+                    }
+                }
+            }
+            merged.putAll(updates);
+
+            byte[] payload = encode(merged);
+            if (payload.length > size - PAYLOAD_OFFSET) {
+                throw new IOException("Tokens need " + payload.length + " bytes but the shared file holds " +
+                        (size - PAYLOAD_OFFSET));
+            }
+
+            long writing = (sequence & 1) == 0 ? sequence + 1 : sequence;
+            LONGS.setVolatile(buffer, SEQUENCE_OFFSET, writing);
+            buffer.put(PAYLOAD_OFFSET, payload);
+            LONGS.setVolatile(buffer, LENGTH_OFFSET, (long) payload.length);
+            long version = (long) LONGS.getVolatile(buffer, VERSION_OFFSET) + 1;
+            LONGS.setVolatile(buffer, VERSION_OFFSET, version);
+            LONGS.setRelease(buffer, SEQUENCE_OFFSET, writing + 1);
+            Contents contents = new Contents(writing + 1, version, merged);
+            lastGood = contents;
+            return contents;
+        } finally {
+            lock.release();
+        }
+    }
+
+    /**
+     * Flushes the mapped contents to disk and closes the file. Other processes keep
+     * their own mappings and are not affected.
+     *
+     * @throws IOException if the file could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            buffer.force();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static byte[] encode(Map<String, String> tokens) {
+        List<byte[]> parts = new ArrayList<>(tokens.size() * 2);
+        int length = 4;
+        for (Map.Entry<String, String> entry : tokens.entrySet()) {
+            byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            byte[] value = entry.getValue().getBytes(StandardCharsets.UTF_8);
+            parts.add(name);
+            parts.add(value);
+            length += 8 + name.length + value.length;
+        }
+        ByteBuffer out = ByteBuffer.allocate(length);
+        out.putInt(tokens.size());
+        for (byte[] part : parts) {
+            out.putInt(part.length).put(part);
+        }
+        return out.array();
+    }
+
+    /**
+     * Decodes a payload, returning null for a torn or corrupt copy.
+     */
+    private static Map<String, String> decode(byte[] payload) {
+        if (payload.length == 0) {
+            return Collections.emptyMap();
+        }
+        ByteBuffer in = ByteBuffer.wrap(payload);
+        try {
+            int count = in.getInt();
+            Map<String, String> tokens = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                String name = readString(in);
+                String value = readString(in);
+                if (name == null || value == null) {
+                    return null;
+                }
+                tokens.put(name, value);
+            }
+            return tokens;
+        } catch (BufferUnderflowException e) {
+            return null;
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining()) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A consistent copy of the shared tokens.
+     */
+    public static final class Contents {
+        private final long sequence;
+        private final long version;
+        private final Map<String, String> tokens;
+
+        Contents(long sequence, long version, Map<String, String> tokens) {
+            this.sequence = sequence;
+            this.version = version;
+            this.tokens = Collections.unmodifiableMap(tokens);
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public Map<String, String> getTokens() {
+            return tokens;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Incremental token scanner for macro response bodies.
+ * Feeds the body to a matcher in geometrically growing chunks and stops at the
+ * first match, so a token in the first few KB of a 10MB page costs a few KB of
+ * work. Bodies are bounded by a {@link ScanWindow}, and gzip/deflate bodies are
+ * inflated on demand rather than all at once.
+ */
+public final class StreamingTokenScanner {
+
+    /**
+     * Returned by a {@link ChunkMatcher} when a match touches the end of the data
+     * seen so far and could change once more data arrives. Compared by identity.
+     */
+    public static final String NEED_MORE = new String("<need more>");
+
+    private static final int FIRST_CHUNK = 8 * 1024;
+
+    private StreamingTokenScanner() {
+    }
+
+    /**
+     * Matches a token in a prefix of the body.
+     */
+    public interface ChunkMatcher {
+        /**
+         * @param text     The body data seen so far
+         * @param complete Whether no more data will follow
+         * @return The token, null if there is no match yet, or {@link #NEED_MORE}
+         */
+        String match(CharSequence text, boolean complete);
+    }
+
+    /**
+     * Checks whether a body is compressed with a supported content encoding.
+     * A gzip encoding is only trusted if the body starts with the gzip magic bytes,
+     * since Burp may already have decoded it.
+     *
+     * @param contentEncoding The Content-Encoding header value, or null
+     * @param first           The first body byte
+     * @param second          The second body byte
+     * @return true if the body must be inflated before matching
+     */
+    public static boolean isCompressed(String contentEncoding, byte first, byte second) {
+        if (contentEncoding == null) {
+            return false;
+        }
+        String encoding = contentEncoding.trim().toLowerCase(Locale.ROOT);
+        if (encoding.equals("gzip") || encoding.equals("x-gzip")) {
+            return first == (byte) 0x1f && second == (byte) 0x8b;
+        }
+        return encoding.equals("deflate") && first == (byte) 0x78;
+    }
+
+    /**
+     * Scans a body region for a token.
+     *
+     * @param body            The buffer holding the body (not copied for plain bodies)
+     * @param offset          The body's start offset
+     * @param length          The body's length in bytes
+     * @param contentEncoding The Content-Encoding header value, or null
+     * @param window          The part of the (decoded) body to scan
+     * @param matcher         The token matcher
+     * @return The token, or null if none was found in the window
+     * @throws IOException if a compressed body is corrupt
+     */
+    public static String scan(byte[] body, int offset, int length, String contentEncoding,
+                              ScanWindow window, ChunkMatcher matcher) throws IOException {
+        if (length >= 2 && isCompressed(contentEncoding, body[offset], body[offset + 1])) {
+            InputStream raw = new ByteArrayInputStream(body, offset, length);
+            try (InputStream in = body[offset] == (byte) 0x1f ?
+                    new GZIPInputStream(raw, FIRST_CHUNK) : new InflaterInputStream(raw)) {
+                return window.isFromTail() && !window.isWholeBody() ?
+                        scanTail(in, window.getMaxBytes(), matcher) : scanHead(in, window.getMaxBytes(), matcher);
+            }
+        }
+
+        // Plain body: the window is just a narrower view on the same array
+        int max = window.getMaxBytes();
+        if (!window.isWholeBody() && length > max) {
+            if (window.isFromTail()) {
+                return result(matcher.match(new ByteCharSequence(body, offset + length - max, max), true));
+            }
+            length = max;
+        }
+
+        int limit = Math.min(length, FIRST_CHUNK);
+        while (true) {
+            boolean complete = limit == length;
+            String token = matcher.match(new ByteCharSequence(body, offset, limit), complete);
+            if (token != NEED_MORE && (token != null || complete)) {
+                return token;
+            }
+            limit = (int) Math.min(length, (long) limit * 2);
+        }
+    }
+
+    /**
+     * Inflates and scans the start of a stream, growing the buffer only as far as needed.
+     */
+    private static String scanHead(InputStream in, int maxBytes, ChunkMatcher matcher) throws IOException {
+        int cap = maxBytes > 0 ? maxBytes : Integer.MAX_VALUE - 8;
+        byte[] buf = new byte[Math.min(FIRST_CHUNK, cap)];
+        int filled = 0;
+        boolean eof = false;
+
+        while (true) {
+            while (filled < buf.length) {
+                int n = in.read(buf, filled, buf.length - filled);
+                if (n == -1) {
+                    eof = true;
+                    break;
+                }
+                filled += n;
+            }
+
+            boolean complete = eof || filled >= cap;
+            String token = matcher.match(new ByteCharSequence(buf, 0, filled), complete);
+            if (token != NEED_MORE && (token != null || complete)) {
+                return token;
+            }
+            buf = Arrays.copyOf(buf, (int) Math.min(cap, (long) buf.length * 2));
+        }
+    }
+
+    /**
+     * Inflates a whole stream, keeping only its last bytes in a ring buffer, then scans them.
+     */
+    private static String scanTail(InputStream in, int maxBytes, ChunkMatcher matcher) throws IOException {
+        byte[] ring = new byte[maxBytes];
+        byte[] chunk = new byte[FIRST_CHUNK];
+        long total = 0;
+        int n;
+        while ((n = in.read(chunk)) != -1) {
+            for (int i = 0; i < n; ) {
+                int pos = (int) (total % maxBytes);
+                int count = Math.min(n - i, maxBytes - pos);
+                System.arraycopy(chunk, i, ring, pos, count);
+                i += count;
+                total += count;
+            }
+        }
+
+        if (total <= maxBytes) {
+            return result(matcher.match(new ByteCharSequence(ring, 0, (int) total), true));
+        }
+        int start = (int) (total % maxBytes);
+        byte[] tail = new byte[maxBytes];
+        System.arraycopy(ring, start, tail, 0, maxBytes - start);
+        System.arraycopy(ring, 0, tail, maxBytes - start, start);
+        return result(matcher.match(new ByteCharSequence(tail, 0, maxBytes), true));
+    }
+
+    private static String result(String token) {
+        return token == NEED_MORE ? null : token;
+    }
+}
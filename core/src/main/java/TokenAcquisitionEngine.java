@@ -0,0 +1,406 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Runs {@link TokenFlow}s out of band and publishes their values to a {@link TokenStore}.
+ * Every run is a virtual thread, so a flow blocked on a slow token endpoint or sleeping
+ * through a retry backoff ties up no platform thread, and request threads never wait
+ * on token acquisition: they read whatever value the store holds.
+ *
+ * <p>Each flow has its own limit on requests in flight. Callers that ask for a run while
+ * one is still queued for a permit join that run instead of queueing another, so a burst
+ * of refresh requests costs one request to the token endpoint. Failed requests (I/O
+ * errors, 5xx and 429 responses) are retried with exponential backoff and jitter,
+ * honouring Retry-After; other 4xx responses fail at once.
+ */
+public class TokenAcquisitionEngine implements AutoCloseable {
+
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    /**
+     * Sends a raw request to a flow's token endpoint.
+     */
+    public interface Transport {
+        /**
+         * @param flow    The flow whose endpoint is addressed
+         * @param request The raw request bytes
+         * @return The raw response bytes
+         * @throws IOException if no response was received
+         */
+        byte[] send(TokenFlow flow, byte[] request) throws IOException;
+    }
+
+    private final TokenStore tokens;
+    private final Transport transport;
+    private final Consumer<String> log;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Runtimes by flow name; replaced wholesale when flows are reconfigured
+    private volatile Map<String, FlowRuntime> runtimes = Collections.emptyMap();
+    private volatile Set<String> providedRules = Collections.emptySet();
+    private Consumer<Set<String>> providedRulesListener = rules -> { };
+    private volatile boolean closed;
+
+    /**
+     * Constructs a new TokenAcquisitionEngine.
+     *
+     * @param tokens    The store that acquired values are published to
+     * @param transport Sends flow requests
+     * @param log       Receives progress and error messages
+     */
+    public TokenAcquisitionEngine(TokenStore tokens, Transport transport, Consumer<String> log) {
+        this.tokens = tokens;
+        this.transport = transport;
+        this.log = log;
+    }
+
+    /**
+     * Replaces the configured flows. Scheduled refreshes of removed or changed flows
+     * stop; runs already in flight finish and still publish their values.
+     *
+     * @param flows The flows, disabled ones included
+     */
+    public synchronized void setFlows(List<TokenFlow> flows) {
+        if (closed) {
+            return;
+        }
+        Map<String, FlowRuntime> updated = new LinkedHashMap<>();
+        Set<String> provided = new LinkedHashSet<>();
+        for (TokenFlow flow : flows) {
+            FlowRuntime runtime = new FlowRuntime(flow);
+            updated.put(flow.getName(), runtime);
+            if (flow.isEnabled()) {
+                provided.addAll(flow.getExtractions().keySet());
+            }
+        }
+        for (FlowRuntime old : runtimes.values()) {
+            old.stop();
+        }
+        runtimes = Collections.unmodifiableMap(updated);
+        providedRules = Collections.unmodifiableSet(provided);
+        providedRulesListener.accept(providedRules);
+        for (FlowRuntime runtime : updated.values()) {
+            if (runtime.flow.isEnabled() && runtime.flow.getRefreshSeconds() > 0) {
+                runtime.schedule();
+            }
+        }
+    }
+
+    /**
+     * Gets the names of the header rules filled by enabled flows.
+     *
+     * @return Immutable set of rule names
+     */
+    public Set<String> getProvidedRules() {
+        return providedRules;
+    }
+
+    /**
+     * Sets the listener told which rules the flows fill, now and after every reconfiguration.
+     *
+     * @param listener Receives the immutable set of rule names
+     */
+    public synchronized void setProvidedRulesListener(Consumer<Set<String>> listener) {
+        providedRulesListener = listener;
+        listener.accept(providedRules);
+    }
+
+    /**
+     * Runs a flow now, or joins a run that is already waiting for a permit.
+     *
+     * @param name The flow name
+     * @return The values published by the run; completes exceptionally if the flow
+     *         is unknown or every attempt failed
+     */
+    public CompletableFuture<Map<String, String>> acquire(String name) {
+        FlowRuntime runtime = runtimes.get(name);
+        if (runtime == null || closed) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("No flow named '" + name + "'"));
+        }
+        return runtime.acquire();
+    }
+
+    /**
+     * Gets the status of every configured flow.
+     *
+     * @return The statuses in configuration order
+     */
+    public List<FlowStatus> getStatuses() {
+        List<FlowStatus> statuses = new ArrayList<>();
+        for (FlowRuntime runtime : runtimes.values()) {
+            statuses.add(runtime.status.get());
+        }
+        return statuses;
+    }
+
+    /**
+     * Stops scheduled refreshes and interrupts runs in flight, waiting briefly for them to end.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            for (FlowRuntime runtime : runtimes.values()) {
+                runtime.stop();
+            }
+        }
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sends the flow's request with retries and extracts its values.
+     */
+    private Map<String, String> run(TokenFlow flow) throws IOException, InterruptedException {
+        IOException failure = null;
+        for (int attempt = 1; attempt <= flow.getMaxAttempts(); attempt++) {
+            byte[] response;
+            try {
+                response = transport.send(flow, flow.renderRequest(tokens.snapshot()));
+            } catch (InterruptedIOException e) {
+                // Interrupted by close(): stop instead of retrying
+                throw new InterruptedException(e.getMessage());
+            } catch (IOException e) {
+                failure = e;
+                response = null;
+            }
+
+            long retryAfter = 0;
+            if (response != null) {
+                int status = statusCode(response);
+                if (status >= 200 && status < 300) {
+                    return extract(flow, response);
+                }
+                failure = new IOException("Token endpoint returned HTTP " + status);
+                if (status != 429 && status < 500) {
+                    // Client errors such as bad credentials will not fix themselves
+                    throw failure;
+                }
+                retryAfter = retryAfterMillis(response);
+            }
+
+            if (attempt < flow.getMaxAttempts()) {
+                long delay = retryAfter > 0 ? retryAfter :
+                        Math.min(MAX_BACKOFF_MILLIS, flow.getBackoffMillis() * (1L << Math.min(attempt - 1, 16)));
+                long jittered = delay * (75 + ThreadLocalRandom.current().nextInt(51)) / 100;
+                log.accept("[CustomHeaderZ] Flow '" + flow.getName() + "' attempt " + attempt + " failed (" +
+                        failure.getMessage() + "); retrying in " + jittered + " ms");
+                Thread.sleep(jittered);
+            }
+        }
+        throw failure;
+    }
+
+    /**
+     * Applies the flow's extractors to a response and publishes the values as one change.
+     */
+    private Map<String, String> extract(TokenFlow flow, byte[] response) throws IOException {
+        int bodyOffset = CustomHeadersEngine.bodyOffset(response);
+        String encoding = bodyOffset > 0 ? CustomHeadersEngine.headerValue(response, bodyOffset, "Content-Encoding") : null;
+        Map<String, String> values = new LinkedHashMap<>();
+        for (Map.Entry<String, String> extraction : flow.getExtractions().entrySet()) {
+            String value = StreamingTokenScanner.scan(response, bodyOffset, response.length - bodyOffset, encoding,
+                    ScanWindow.WHOLE_BODY, TokenExtractors.compile(extraction.getValue()).matcher());
+            if (value != null) {
+                values.put(extraction.getKey(), value);
+            }
+        }
+        if (values.isEmpty() && !flow.getExtractions().isEmpty()) {
+            throw new IOException("No extractor matched the token endpoint's response");
+        }
+        try {
+            tokens.putAll(values);
+        } catch (UncheckedIOException e) {
+            log.accept("[CustomHeaderZ] Could not write shared token file: " + e.getCause().getMessage());
+        }
+        return values;
+    }
+
+    /**
+     * Parses the status code from a raw response's status line.
+     *
+     * @return The status code, or 0 if the status line is malformed
+     */
+    static int statusCode(byte[] response) {
+        int space = -1;
+        for (int i = 0; i < response.length && response[i] != '\n'; i++) {
+            if (response[i] == ' ') {
+                space = i;
+                break;
+            }
+        }
+        if (space == -1 || space + 4 > response.length) {
+            return 0;
+        }
+        int status = 0;
+        for (int i = space + 1; i < space + 4; i++) {
+            if (response[i] < '0' || response[i] > '9') {
+                return 0;
+            }
+            status = status * 10 + (response[i] - '0');
+        }
+        return status;
+    }
+
+    private static long retryAfterMillis(byte[] response) {
+        int bodyOffset = CustomHeadersEngine.bodyOffset(response);
+        String value = bodyOffset > 0 ? CustomHeadersEngine.headerValue(response, bodyOffset, "Retry-After") : null;
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Math.min(MAX_BACKOFF_MILLIS, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException e) {
+            // An HTTP date; fall back to the configured backoff
+            return 0;
+        }
+    }
+
+    /**
+     * A snapshot of a flow's last outcome.
+     */
+    public static final class FlowStatus {
+        private final String name;
+        private final long lastSuccessMillis;
+        private final String lastError;
+        private final int running;
+
+        FlowStatus(String name, long lastSuccessMillis, String lastError, int running) {
+            this.name = name;
+            this.lastSuccessMillis = lastSuccessMillis;
+            this.lastError = lastError;
+            this.running = running;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return The wall-clock time of the last successful run, or 0 if none succeeded
+         */
+        public long getLastSuccessMillis() {
+            return lastSuccessMillis;
+        }
+
+        /**
+         * @return The last run's error, or null if it succeeded
+         */
+        public String getLastError() {
+            return lastError;
+        }
+
+        public int getRunning() {
+            return running;
+        }
+
+        FlowStatus withRunning(int delta) {
+            return new FlowStatus(name, lastSuccessMillis, lastError, running + delta);
+        }
+    }
+
+    /**
+     * Per-flow concurrency limit, pending run and refresh schedule.
+     */
+    private final class FlowRuntime {
+        final TokenFlow flow;
+        final Semaphore permits;
+        final AtomicReference<CompletableFuture<Map<String, String>>> pending = new AtomicReference<>();
+        final AtomicReference<FlowStatus> status;
+        volatile Thread scheduler;
+
+        FlowRuntime(TokenFlow flow) {
+            this.flow = flow;
+            this.permits = new Semaphore(flow.getMaxConcurrent());
+            this.status = new AtomicReference<>(new FlowStatus(flow.getName(), 0, null, 0));
+        }
+
+        CompletableFuture<Map<String, String>> acquire() {
+            while (true) {
+                CompletableFuture<Map<String, String>> queued = pending.get();
+                if (queued != null) {
+                    return queued;
+                }
+                CompletableFuture<Map<String, String>> future = new CompletableFuture<>();
+                if (pending.compareAndSet(null, future)) {
+                    try {
+                        executor.execute(() -> runQueued(future));
+                    } catch (RuntimeException e) {
+                        pending.compareAndSet(future, null);
+                        future.completeExceptionally(e);
+                    }
+                    return future;
+                }
+            }
+        }
+
+        private void runQueued(CompletableFuture<Map<String, String>> future) {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                pending.compareAndSet(future, null);
+                future.completeExceptionally(e);
+                return;
+            }
+            // Holding a permit: later callers start a new run rather than joining this one
+            pending.compareAndSet(future, null);
+            status.updateAndGet(s -> s.withRunning(1));
+            try {
+                Map<String, String> values = run(flow);
+                status.updateAndGet(s -> new FlowStatus(s.name, System.currentTimeMillis(), null, s.running - 1));
+                log.accept("[CustomHeaderZ] Flow '" + flow.getName() + "' acquired " + values.keySet());
+                future.complete(values);
+            } catch (Exception e) {
+                String message = e instanceof InterruptedException ? "Interrupted" : e.getMessage();
+                status.updateAndGet(s -> new FlowStatus(s.name, s.lastSuccessMillis, message, s.running - 1));
+                log.accept("[CustomHeaderZ] Flow '" + flow.getName() + "' failed: " + message);
+                future.completeExceptionally(e);
+            } finally {
+                permits.release();
+            }
+        }
+
+        void schedule() {
+            scheduler = Thread.ofVirtual().name("customheaderz-flow-" + flow.getName()).start(() -> {
+                long interval = TimeUnit.SECONDS.toMillis(flow.getRefreshSeconds());
+                while (!Thread.currentThread().isInterrupted()) {
+                    try {
+                        acquire().exceptionally(e -> null).get();
+                        Thread.sleep(interval);
+                    } catch (InterruptedException e) {
+                        return;
+                    } catch (Exception e) {
+                        // Failures are recorded in the status; keep refreshing on schedule
+                    }
+                }
+            });
+        }
+
+        void stop() {
+            Thread thread = scheduler;
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+    }
+}
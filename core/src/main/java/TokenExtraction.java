@@ -0,0 +1,187 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Token extraction strategies shared by the Burp session action and the core engine.
+ * Works on any {@link CharSequence}, so callers can pass a decoded body or a
+ * zero-copy view over raw bytes.
+ */
+public final class TokenExtraction {
+
+    // Compiled patterns by source; rules are few, so the cache stays small
+    private static final Map<String, Pattern> PATTERNS = new ConcurrentHashMap<>();
+
+    private TokenExtraction() {
+    }
+
+    /**
+     * Compiles a DOTALL extraction pattern, reusing a previously compiled instance.
+     *
+     * @param regex The regex source
+     * @return The compiled pattern
+     * @throws java.util.regex.PatternSyntaxException if the regex is invalid
+     */
+    public static Pattern compile(String regex) {
+        Pattern pattern = PATTERNS.get(regex);
+        if (pattern == null) {
+            pattern = Pattern.compile(regex, Pattern.DOTALL);
+            PATTERNS.put(regex, pattern);
+        }
+        return pattern;
+    }
+
+    /**
+     * Extracts a token using a regex pattern: capture group 1 if the pattern has
+     * groups, otherwise the full match.
+     *
+     * @param pattern The compiled pattern
+     * @param text    The text to search in
+     * @return The extracted token, or null if no non-empty match was found
+     */
+    public static String extractWithRegex(Pattern pattern, CharSequence text) {
+        Matcher m = pattern.matcher(text);
+        if (!m.find()) {
+            return null;
+        }
+        String token = m.groupCount() > 0 ? m.group(1) : m.group(0);
+        return token != null && !token.isEmpty() ? token : null;
+    }
+
+    /**
+     * Resolves a rule's capture group to a group number.
+     *
+     * @param pattern The compiled pattern
+     * @param group   A group name, a group number, or empty for group 1 (the whole
+     *                match if the pattern has no groups)
+     * @return The group number
+     * @throws IllegalArgumentException if the pattern has no such group
+     */
+    public static int groupIndex(Pattern pattern, String group) {
+        int groupCount = pattern.matcher("").groupCount();
+        if (group == null || group.isEmpty()) {
+            return groupCount > 0 ? 1 : 0;
+        }
+        Integer index = pattern.namedGroups().get(group);
+        if (index == null) {
+            try {
+                index = Integer.parseInt(group);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("No group named '" + group + "' in pattern " + pattern);
+            }
+        }
+        if (index < 0 || index > groupCount) {
+            throw new IllegalArgumentException("No group " + group + " in pattern " + pattern);
+        }
+        return index;
+    }
+
+    /**
+     * Extracts the value immediately following a search string, up to the next
+     * whitespace or JSON delimiter.
+     *
+     * @param searchString The string to search for
+     * @param text         The text to search in
+     * @return The extracted token, or null if the string was not found or nothing follows it
+     */
+    public static String extractWithString(String searchString, CharSequence text) {
+        int index = indexOf(text, searchString);
+        if (index == -1) {
+            return null;
+        }
+
+        // Extract until next whitespace or delimiter
+        int startPos = index + searchString.length();
+        int endPos = valueEnd(text, startPos);
+        return endPos > startPos ? text.subSequence(startPos, endPos).toString() : null;
+    }
+
+    /**
+     * Creates an incremental matcher for {@link StreamingTokenScanner} using a regex pattern.
+     *
+     * @param pattern The compiled pattern
+     * @return A matcher that asks for more data while a match touches the end of the input
+     */
+    public static StreamingTokenScanner.ChunkMatcher regexMatcher(Pattern pattern) {
+        return (text, complete) -> {
+            Matcher m = pattern.matcher(text);
+            if (!m.find()) {
+                return null;
+            }
+            if (m.hitEnd() && !complete) {
+                return StreamingTokenScanner.NEED_MORE;
+            }
+            String token = m.groupCount() > 0 ? m.group(1) : m.group(0);
+            return token != null && !token.isEmpty() ? token : null;
+        };
+    }
+
+    /**
+     * Creates an incremental matcher for {@link StreamingTokenScanner} using a simple string search.
+     *
+     * @param searchString The string to search for
+     * @return A matcher that asks for more data while the value runs to the end of the input
+     */
+    public static StreamingTokenScanner.ChunkMatcher literalMatcher(String searchString) {
+        return (text, complete) -> {
+            int index = indexOf(text, searchString);
+            if (index == -1) {
+                return null;
+            }
+            int startPos = index + searchString.length();
+            int endPos = valueEnd(text, startPos);
+            if (endPos == text.length() && !complete) {
+                return StreamingTokenScanner.NEED_MORE;
+            }
+            return endPos > startPos ? text.subSequence(startPos, endPos).toString() : null;
+        };
+    }
+
+    /**
+     * Finds the end of a value: the next whitespace or JSON delimiter.
+     */
+    private static int valueEnd(CharSequence text, int start) {
+        int end = start;
+        while (end < text.length()) {
+            char c = text.charAt(end);
+            if (Character.isWhitespace(c) || c == ',' || c == '"' || c == '}' || c == ']') {
+                break;
+            }
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Finds a literal in a character sequence without converting it to a String.
+     *
+     * @param text   The text to search in
+     * @param search The literal to find
+     * @return The index of the first occurrence, or -1
+     */
+    static int indexOf(CharSequence text, String search) {
+        if (text instanceof String) {
+            return ((String) text).indexOf(search);
+        }
+        int n = search.length();
+        if (n == 0) {
+            return 0;
+        }
+        char first = search.charAt(0);
+        int max = text.length() - n;
+        for (int i = 0; i <= max; i++) {
+            if (text.charAt(i) != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < n && text.charAt(i + j) == search.charAt(j)) {
+                j++;
+            }
+            if (j == n) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
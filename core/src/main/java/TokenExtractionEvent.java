@@ -0,0 +1,41 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event for one extraction pass over one macro response.
+ * Disabled by default, and free while disabled like {@link HeaderInjectionEvent}.
+ * A pass covers every rule sharing a regex, so {@code rule} may list several names.
+ */
+@Name("customheaderz.TokenExtraction")
+@Label("Token Extraction")
+@Category({"CustomHeaderZ"})
+@Description("An extraction pass scanning one macro response for dynamic values")
+@Enabled(false)
+@StackTrace(false)
+public class TokenExtractionEvent extends Event {
+
+    @Label("Rule")
+    @Description("The rules filled by the pass, comma separated")
+    public String rule;
+
+    @Label("Macro Step")
+    @Description("The 1-based position of the response in the macro")
+    public int macroStep;
+
+    @Label("Body Size")
+    @DataAmount
+    public long bodySize;
+
+    @Label("Matched")
+    public boolean matched;
+
+    @Label("Cached")
+    @Description("Whether the values came from the extraction cache without scanning")
+    public boolean cached;
+}
@@ -0,0 +1,26 @@
+/**
+ * A compiled strategy for pulling a token out of text.
+ * Extractors are compiled once from their spec by {@link TokenExtractors} and
+ * shared across threads, so implementations must be thread-safe.
+ */
+public interface TokenExtractor {
+
+    /**
+     * Extracts a token.
+     *
+     * @param input The text to extract from: a response body, or the previous pipeline stage's output
+     * @return The token, or null if there is none
+     */
+    String extract(CharSequence input);
+
+    /**
+     * Creates a matcher for {@link StreamingTokenScanner}. The default waits for the
+     * whole scan window; extractors that can decide on a prefix override this so
+     * scanning stops at the first match.
+     *
+     * @return The incremental matcher
+     */
+    default StreamingTokenScanner.ChunkMatcher matcher() {
+        return (text, complete) -> complete ? extract(text) : StreamingTokenScanner.NEED_MORE;
+    }
+}
@@ -0,0 +1,25 @@
+/**
+ * Service provider interface for extractor types.
+ * Built-in types are registered by {@link TokenExtractors}; additional types are
+ * discovered with {@link java.util.ServiceLoader} from
+ * {@code META-INF/services/TokenExtractorFactory} or registered at runtime with
+ * {@link TokenExtractors#register}.
+ */
+public interface TokenExtractorFactory {
+
+    /**
+     * Gets the name used in extractor specs, such as {@code json} in {@code json:/data/token}.
+     *
+     * @return The lower-case type name
+     */
+    String getName();
+
+    /**
+     * Compiles an extractor.
+     *
+     * @param argument The text after the type name's colon, or an empty string
+     * @return The compiled extractor
+     * @throws IllegalArgumentException if the argument is invalid
+     */
+    TokenExtractor create(String argument);
+}
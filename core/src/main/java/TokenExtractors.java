@@ -0,0 +1,199 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry and compiler for token extractors.
+ * An extractor spec is a pipeline of stages separated by {@code |}, each stage being
+ * {@code type:argument} or a bare {@code type}, for example
+ * {@code json:/data/id_token | jwt:sub} or {@code after:"payload":" | b64 | json:user.id}.
+ * A literal {@code |} inside an argument is written as {@code \|}. Compiled extractors
+ * are cached by spec text, so each distinct configuration is compiled once and shared
+ * by every rule and thread that uses it.
+ */
+public final class TokenExtractors {
+
+    // Bounds the cache if specs are edited many times in one session
+    private static final int MAX_CACHED = 256;
+
+    private static final Map<String, TokenExtractorFactory> FACTORIES = new ConcurrentHashMap<>();
+    private static final Map<String, TokenExtractor> COMPILED = new ConcurrentHashMap<>();
+
+    static {
+        for (TokenExtractorFactory factory : BuiltInExtractors.factories()) {
+            FACTORIES.put(factory.getName(), factory);
+        }
+        try {
+            for (TokenExtractorFactory factory :
+                    ServiceLoader.load(TokenExtractorFactory.class, TokenExtractors.class.getClassLoader())) {
+                FACTORIES.putIfAbsent(factory.getName().toLowerCase(Locale.ROOT), factory);
+            }
+        } catch (ServiceConfigurationError e) {
+            // A broken third-party provider must not take the built-in extractors down with it
+        }
+    }
+
+    private TokenExtractors() {
+    }
+
+    /**
+     * Registers an extractor type, replacing any type of the same name.
+     *
+     * @param factory The extractor type
+     */
+    public static void register(TokenExtractorFactory factory) {
+        FACTORIES.put(factory.getName().toLowerCase(Locale.ROOT), factory);
+        COMPILED.clear();
+    }
+
+    /**
+     * Gets the names of all registered extractor types.
+     *
+     * @return The type names
+     */
+    public static List<String> getTypeNames() {
+        List<String> names = new ArrayList<>(FACTORIES.keySet());
+        names.sort(null);
+        return names;
+    }
+
+    /**
+     * Compiles an extractor pipeline, reusing a previously compiled instance.
+     *
+     * @param spec The pipeline spec
+     * @return The compiled extractor
+     * @throws IllegalArgumentException if a stage names an unknown type or has an invalid argument
+     */
+    public static TokenExtractor compile(String spec) {
+        TokenExtractor extractor = COMPILED.get(spec);
+        if (extractor == null) {
+            extractor = compileStages(spec);
+            cache(spec, extractor);
+        }
+        return extractor;
+    }
+
+    /**
+     * Gets the compiled extractor for a dynamic header rule: its pipeline spec, or a
+     * single regex or literal-after stage for rules using the classic pattern modes.
+     * Classic patterns are used verbatim, so they may contain {@code |} and edge spaces.
+     *
+     * @param header The header rule
+     * @return The compiled extractor
+     * @throws IllegalArgumentException if the rule's pattern or spec is invalid
+     */
+    public static TokenExtractor forRule(CustomHeadersConfig.CustomHeader header) {
+        if (header.isPipeline()) {
+            return compile(header.getPattern());
+        }
+        String type = header.isRegex() ? "regex" : "after";
+        // The NUL separator cannot occur in a typed spec, so classic keys never collide with pipelines
+        String key = type + '\0' + header.getPattern();
+        TokenExtractor extractor = COMPILED.get(key);
+        if (extractor == null) {
+            extractor = FACTORIES.get(type).create(header.getPattern());
+            cache(key, extractor);
+        }
+        return extractor;
+    }
+
+    private static void cache(String key, TokenExtractor extractor) {
+        if (COMPILED.size() >= MAX_CACHED) {
+            COMPILED.clear();
+        }
+        COMPILED.put(key, extractor);
+    }
+
+    private static TokenExtractor compileStages(String spec) {
+        List<TokenExtractor> stages = new ArrayList<>();
+        for (String stage : splitStages(spec)) {
+            if (stage.isEmpty()) {
+                throw new IllegalArgumentException("Empty stage in extractor: " + spec);
+            }
+            int colon = stage.indexOf(':');
+            String name = (colon == -1 ? stage : stage.substring(0, colon)).trim().toLowerCase(Locale.ROOT);
+            String argument = colon == -1 ? "" : stage.substring(colon + 1);
+            TokenExtractorFactory factory = FACTORIES.get(name);
+            if (factory == null) {
+                throw new IllegalArgumentException("Unknown extractor type '" + name + "'; expected one of " +
+                        getTypeNames());
+            }
+            stages.add(factory.create(argument));
+        }
+        return stages.size() == 1 ? stages.get(0) : new Pipeline(stages.toArray(new TokenExtractor[0]));
+    }
+
+    /**
+     * Splits a spec on unescaped {@code |}, unescaping {@code \|} and trimming
+     * the whitespace around each separator.
+     */
+    private static List<String> splitStages(String spec) {
+        List<String> stages = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < spec.length(); i++) {
+            char c = spec.charAt(i);
+            if (c == '\\' && i + 1 < spec.length() && spec.charAt(i + 1) == '|') {
+                current.append('|');
+                i++;
+            } else if (c == '|') {
+                stages.add(trimSeparator(current.toString()));
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        stages.add(trimSeparator(current.toString()));
+        return stages;
+    }
+
+    private static String trimSeparator(String stage) {
+        int start = 0;
+        int end = stage.length();
+        while (start < end && stage.charAt(start) == ' ') {
+            start++;
+        }
+        while (end > start && stage.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return stage.substring(start, end);
+    }
+
+    /**
+     * Runs stages in order, each on the previous stage's output. The first stage
+     * drives streaming, so a pipeline starting with a regex still stops scanning
+     * at the first match.
+     */
+    private static final class Pipeline implements TokenExtractor {
+        private final TokenExtractor[] stages;
+
+        Pipeline(TokenExtractor[] stages) {
+            this.stages = stages;
+        }
+
+        @Override
+        public String extract(CharSequence input) {
+            String value = stages[0].extract(input);
+            return value != null ? rest(value) : null;
+        }
+
+        @Override
+        public StreamingTokenScanner.ChunkMatcher matcher() {
+            StreamingTokenScanner.ChunkMatcher first = stages[0].matcher();
+            return (text, complete) -> {
+                String value = first.match(text, complete);
+                return value == null || value == StreamingTokenScanner.NEED_MORE ? value : rest(value);
+            };
+        }
+
+        private String rest(String value) {
+            for (int i = 1; i < stages.length && value != null; i++) {
+                value = stages[i].extract(value);
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An out-of-band auth flow: one raw HTTP request sent to a token endpoint, and the
+ * extractors that turn its response into values for dynamic header rules.
+ * Covers flows that are awkward as Burp macros, such as OAuth client credentials,
+ * refresh tokens and mTLS token endpoints. The request may reference current
+ * values as {@code {{Rule Name}}}, so a flow can exchange a refresh token produced
+ * by an earlier run.
+ */
+public class TokenFlow {
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{\\{([^{}]+)}}");
+
+    private final String name;
+    private final boolean enabled;
+    private final String url;
+    private final String host;
+    private final int port;
+    private final boolean secure;
+    private final String request;
+    private final Map<String, String> extractions;
+    private final int refreshSeconds;
+    private final int maxAttempts;
+    private final int backoffMillis;
+    private final int maxConcurrent;
+
+    private TokenFlow(Builder builder, URI uri) {
+        this.name = builder.name;
+        this.enabled = builder.enabled;
+        this.url = builder.url;
+        this.secure = "https".equalsIgnoreCase(uri.getScheme());
+        this.host = uri.getHost();
+        this.port = uri.getPort() != -1 ? uri.getPort() : (secure ? 443 : 80);
+        this.request = builder.request;
+        this.extractions = Collections.unmodifiableMap(new LinkedHashMap<>(builder.extractions));
+        this.refreshSeconds = builder.refreshSeconds;
+        this.maxAttempts = builder.maxAttempts;
+        this.backoffMillis = builder.backoffMillis;
+        this.maxConcurrent = builder.maxConcurrent;
+    }
+
+    /**
+     * Starts building an enabled flow with default retry and concurrency settings.
+     *
+     * @param name The flow name
+     * @param url  The token endpoint's origin, such as {@code https://auth.example.com}
+     * @return A new builder
+     */
+    public static Builder builder(String name, String url) {
+        return new Builder(name, url);
+    }
+
+    /**
+     * Starts building a copy of this flow.
+     *
+     * @return A builder initialized with this flow's settings
+     */
+    public Builder toBuilder() {
+        return new Builder(name, url).enabled(enabled).request(request).extractions(extractions)
+                .refreshSeconds(refreshSeconds).maxAttempts(maxAttempts).backoffMillis(backoffMillis)
+                .maxConcurrent(maxConcurrent);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public boolean isSecure() {
+        return secure;
+    }
+
+    public String getRequest() {
+        return request;
+    }
+
+    /**
+     * Gets the extractor specs applied to the response, by the name of the header rule they fill.
+     *
+     * @return Immutable map of extractor specs by rule name
+     */
+    public Map<String, String> getExtractions() {
+        return extractions;
+    }
+
+    /**
+     * Gets how often the flow runs on its own, in seconds.
+     *
+     * @return The refresh interval, or 0 if the flow only runs on demand
+     */
+    public int getRefreshSeconds() {
+        return refreshSeconds;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public int getBackoffMillis() {
+        return backoffMillis;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    /**
+     * Renders the raw request with placeholders replaced by current values.
+     * Header lines are normalized to CRLF and Content-Length is recomputed when the
+     * request has a body, so the request text can be edited freely.
+     *
+     * @param values The current values by rule name; unknown placeholders are left as-is
+     * @return The request bytes
+     */
+    public byte[] renderRequest(Map<String, String> values) {
+        Matcher m = PLACEHOLDER.matcher(request);
+        StringBuilder sb = new StringBuilder(request.length());
+        while (m.find()) {
+            String value = values.get(m.group(1).trim());
+            m.appendReplacement(sb, Matcher.quoteReplacement(value != null ? value : m.group()));
+        }
+        m.appendTail(sb);
+        String text = sb.toString();
+
+        // Split the header block from the body at the first blank line
+        String normalized = text.replace("\r\n", "\n");
+        int blank = normalized.indexOf("\n\n");
+        String head = (blank == -1 ? normalized : normalized.substring(0, blank)).trim();
+        byte[] body = blank == -1 ? new byte[0] : normalized.substring(blank + 2).getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(head.length() + body.length + 64);
+        boolean hasBody = body.length > 0;
+        for (String line : head.split("\n")) {
+            if (line.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                hasBody = true;
+                continue;
+            }
+            out.writeBytes((line + "\r\n").getBytes(StandardCharsets.UTF_8));
+        }
+        if (hasBody) {
+            out.writeBytes(("Content-Length: " + body.length + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        }
+        out.writeBytes("\r\n".getBytes(StandardCharsets.ISO_8859_1));
+        out.writeBytes(body);
+        return out.toByteArray();
+    }
+
+    /**
+     * Builder for flows.
+     */
+    public static final class Builder {
+        private final String name;
+        private final String url;
+        private boolean enabled = true;
+        private String request = "";
+        private Map<String, String> extractions = new LinkedHashMap<>();
+        private int refreshSeconds;
+        private int maxAttempts = 3;
+        private int backoffMillis = 500;
+        private int maxConcurrent = 1;
+
+        private Builder(String name, String url) {
+            this.name = name;
+            this.url = url;
+        }
+
+        public Builder enabled(boolean enabled) {
+            this.enabled = enabled;
+            return this;
+        }
+
+        /**
+         * Sets the raw HTTP request, which may contain {@code {{Rule Name}}} placeholders.
+         */
+        public Builder request(String request) {
+            this.request = request;
+            return this;
+        }
+
+        /**
+         * Sets the extractor specs, by the name of the header rule each one fills.
+         */
+        public Builder extractions(Map<String, String> extractions) {
+            this.extractions = new LinkedHashMap<>(extractions);
+            return this;
+        }
+
+        /**
+         * Sets how often the flow runs on its own, or 0 to run it only on demand.
+         */
+        public Builder refreshSeconds(int refreshSeconds) {
+            this.refreshSeconds = Math.max(0, refreshSeconds);
+            return this;
+        }
+
+        /**
+         * Sets how many times a failed request is tried in total.
+         */
+        public Builder maxAttempts(int maxAttempts) {
+            this.maxAttempts = Math.max(1, maxAttempts);
+            return this;
+        }
+
+        /**
+         * Sets the delay before the first retry; each further retry doubles it.
+         */
+        public Builder backoffMillis(int backoffMillis) {
+            this.backoffMillis = Math.max(0, backoffMillis);
+            return this;
+        }
+
+        /**
+         * Sets how many requests of this flow may be in flight at once.
+         */
+        public Builder maxConcurrent(int maxConcurrent) {
+            this.maxConcurrent = Math.max(1, maxConcurrent);
+            return this;
+        }
+
+        /**
+         * Builds the flow.
+         *
+         * @return The flow
+         * @throws IllegalArgumentException if the URL has no http(s) scheme or host
+         */
+        public TokenFlow build() {
+            URI uri;
+            try {
+                uri = new URI(url.trim());
+            } catch (URISyntaxException e) {
+                throw new IllegalArgumentException("Invalid URL '" + url + "': " + e.getMessage(), e);
+            }
+            if (uri.getHost() == null || !("http".equalsIgnoreCase(uri.getScheme()) ||
+                    "https".equalsIgnoreCase(uri.getScheme()))) {
+                throw new IllegalArgumentException("Expected an http:// or https:// URL, got '" + url + "'");
+            }
+            return new TokenFlow(this, uri);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * One published version of the dynamic values, by header rule name.
+ * Immutable: every change to the {@link TokenStore} publishes a new set with the next
+ * version through a single reference swap. A request reads the set once and takes all
+ * of its values from it, so it never pairs a fresh token with a stale one from an
+ * earlier extraction.
+ */
+public final class TokenSet {
+
+    /** The set before any value is published. */
+    public static final TokenSet EMPTY = new TokenSet(Collections.emptyMap(), 0);
+
+    private final Map<String, String> values;
+    private final long version;
+
+    /**
+     * Constructs a new TokenSet.
+     *
+     * @param values  Immutable map of values by header rule name
+     * @param version The number of changes published before and including this one
+     */
+    TokenSet(Map<String, String> values, long version) {
+        this.values = values;
+        this.version = version;
+    }
+
+    /**
+     * Gets the value for a header rule.
+     *
+     * @param name The header rule name
+     * @return The value, or null if none has been extracted yet
+     */
+    public String get(String name) {
+        return values.get(name);
+    }
+
+    /**
+     * Gets all values of this version.
+     *
+     * @return Immutable map of values by header rule name
+     */
+    public Map<String, String> asMap() {
+        return values;
+    }
+
+    public boolean isEmpty() {
+        return values.isEmpty();
+    }
+
+    /**
+     * Gets the version, shown in traces so requests can be matched to the extraction that fed them.
+     *
+     * @return The number of changes published up to this set
+     */
+    public long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,216 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Thread-safe store of the current dynamic values, by header rule name.
+ * Written by whatever extracts tokens (the session action, the engine) and read
+ * on every request and WebSocket frame. Each change publishes an immutable, versioned
+ * {@link TokenSet} through one volatile write, so a lookup never blocks or locks, and a
+ * reader that takes {@link #current()} once sees every value from the same version.
+ *
+ * <p>The store can optionally mirror a {@link SharedTokenFile}: writes go through to
+ * the file, and a read that sees the file's sequence number move reloads the map,
+ * so a token refreshed by another process is picked up on the next request.
+ */
+public class TokenStore {
+
+    // Current values and their version; replaced wholesale, never mutated
+    private volatile TokenSet current = TokenSet.EMPTY;
+
+    // Optional cross-process mirror and the file sequence the map was last synced at
+    private volatile SharedTokenFile shared;
+    private volatile long sharedSequence = -1;
+
+    /**
+     * Gets the current version of all values. Code that reads several values for one
+     * request should read them all from one set rather than call {@link #get} for each.
+     *
+     * @return The current token set
+     */
+    public TokenSet current() {
+        syncShared();
+        return current;
+    }
+
+    /**
+     * Gets the current value for a header rule.
+     *
+     * @param name The header rule name
+     * @return The value, or null if none has been extracted yet
+     */
+    public String get(String name) {
+        return current().get(name);
+    }
+
+    /**
+     * Gets all current values.
+     *
+     * @return Immutable map of values by header rule name
+     */
+    public Map<String, String> snapshot() {
+        return current().asMap();
+    }
+
+    /**
+     * Gets the number of changes published so far, for cheap staleness checks.
+     *
+     * @return The store version
+     */
+    public long getVersion() {
+        return current().getVersion();
+    }
+
+    /**
+     * Sets the value for a header rule.
+     *
+     * @param name  The header rule name
+     * @param value The new value
+     */
+    public void put(String name, String value) {
+        putAll(Collections.singletonMap(name, value));
+    }
+
+    /**
+     * Sets several values as one change, so readers never see half of an update.
+     * When sharing, the values are also merged into the shared file.
+     *
+     * @param values The new values by header rule name
+     * @return The set now current: the new version, or the unchanged one if no value changed
+     * @throws UncheckedIOException if the shared file could not be written; the
+     *         values are still applied locally
+     */
+    public synchronized TokenSet putAll(Map<String, String> values) {
+        syncShared();
+        TokenSet previous = current;
+        Map<String, String> changed = new HashMap<>();
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            if (entry.getValue() != null && !entry.getValue().equals(previous.get(entry.getKey()))) {
+                changed.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (changed.isEmpty()) {
+            return previous;
+        }
+        Map<String, String> updated = new HashMap<>(previous.asMap());
+        updated.putAll(changed);
+        current = new TokenSet(Collections.unmodifiableMap(updated), previous.getVersion() + 1);
+
+        // Only the changed values are merged, so other processes' newer tokens are kept
+        SharedTokenFile file = shared;
+        if (file != null) {
+            try {
+                apply(file.write(changed));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Starts mirroring a shared token file. Local values are merged into the file,
+     * and the file's values (including other processes' tokens) become current.
+     *
+     * @param file The shared file
+     * @throws IOException if the local values could not be written to the file
+     */
+    public synchronized void share(SharedTokenFile file) throws IOException {
+        apply(file.write(current.asMap()));
+        shared = file;
+    }
+
+    /**
+     * Stops mirroring the shared file. The current values are kept locally.
+     *
+     * @return The file that was shared, for the caller to close, or null
+     */
+    public synchronized SharedTokenFile unshare() {
+        SharedTokenFile file = shared;
+        shared = null;
+        sharedSequence = -1;
+        return file;
+    }
+
+    public SharedTokenFile getSharedFile() {
+        return shared;
+    }
+
+    /**
+     * Writes all values to a properties file.
+     *
+     * @param path The file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void exportTo(Path path) throws IOException {
+        Properties properties = new Properties();
+        properties.putAll(snapshot());
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            properties.store(writer, "CustomHeaderZ tokens");
+        }
+    }
+
+    /**
+     * Reads values from a properties file written by {@link #exportTo} and sets them as one change.
+     *
+     * @param path The file to read
+     * @return The number of values read
+     * @throws IOException if the file cannot be read
+     */
+    public int importFrom(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        Map<String, String> values = new HashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            values.put(name, properties.getProperty(name));
+        }
+        putAll(values);
+        return values.size();
+    }
+
+    /**
+     * Reloads from the shared file if another process has written since the last sync.
+     * Costs one memory read of the mapped sequence number when nothing changed. The
+     * file is read, including any waiting on a writer, before taking the lock; a
+     * sequence left odd by a dead writer is recorded like any other, so later requests
+     * return on the compare until the file is written again.
+     */
+    private void syncShared() {
+        SharedTokenFile file = shared;
+        if (file == null || file.getSequence() == sharedSequence) {
+            return;
+        }
+        SharedTokenFile.Contents contents = file.read();
+        if (contents == null) {
+            return;
+        }
+        synchronized (this) {
+            // A newer copy may have been applied while this one was read
+            if (shared == file && contents.getSequence() != sharedSequence &&
+                    file.getSequence() == contents.getSequence()) {
+                apply(contents);
+            }
+        }
+    }
+
+    /**
+     * Makes shared file contents current. Must hold this store's lock.
+     */
+    private void apply(SharedTokenFile.Contents contents) {
+        TokenSet previous = current;
+        if (!contents.getTokens().equals(previous.asMap())) {
+            current = new TokenSet(contents.getTokens(), previous.getVersion() + 1);
+        }
+        sharedSequence = contents.getSequence();
+    }
+}
@@ -0,0 +1,334 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A pool of values that a static rule rotates through, such as API keys that are each
+ * rate limited by the target. Every request takes the next value by round robin,
+ * weight or least recent use, and an optional per-value rate limit holds a request
+ * back until some value has capacity again. The wait blocks the sending thread, which
+ * for Burp's Proxy is the thread the browser is waiting on, so it is bounded by a short,
+ * configurable maximum; a request that still finds no capacity is sent without the value,
+ * and every value that is handed out is counted against its limit.
+ *
+ * <p>Lock-free: selection is a single atomic increment (or a compare-and-set for
+ * least-recently-used), and each value's rate limit is a GCRA token bucket kept as one
+ * theoretical-arrival-time per value, claimed with a compare-and-set. Scanner threads
+ * never contend on a lock, only on the cache line of the value they take.
+ */
+public final class ValuePool {
+
+    /** How long a request waits for capacity unless configured otherwise. */
+    public static final int DEFAULT_MAX_WAIT_MILLIS = 250;
+
+    /** The longest wait that can be configured, since it holds up one of Burp's sending threads. */
+    public static final int MAX_WAIT_MILLIS = 5000;
+
+    // Weighted schedules are expanded into an array, so weights are kept small
+    private static final int MAX_WEIGHT = 100;
+
+    /**
+     * How the next value is chosen.
+     */
+    public enum Selection {
+        ROUND_ROBIN("Round robin"),
+        WEIGHTED("Weighted round robin"),
+        LEAST_RECENTLY_USED("Least recently used");
+
+        private final String displayName;
+
+        Selection(String displayName) {
+            this.displayName = displayName;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+
+        /**
+         * Resolves a persisted selection name, falling back to {@link #ROUND_ROBIN}.
+         *
+         * @param name The persisted enum name
+         * @return The matching selection, or ROUND_ROBIN
+         */
+        public static Selection fromName(String name) {
+            if (name != null) {
+                for (Selection selection : values()) {
+                    if (selection.name().equals(name)) {
+                        return selection;
+                    }
+                }
+            }
+            return ROUND_ROBIN;
+        }
+    }
+
+    private final String[] values;
+    private final int[] weights;
+    private final Selection selection;
+    private final double ratePerSecond;
+    private final int burst;
+    private final int maxWaitMillis;
+
+    // Round-robin order of value indexes; weighted values appear once per unit of weight
+    private final int[] schedule;
+    private final AtomicLong cursor = new AtomicLong();
+
+    // Least-recently-used bookkeeping: the use sequence at which each value was last taken
+    private final AtomicLong useSequence = new AtomicLong();
+    private final AtomicLongArray lastUsed;
+
+    // GCRA state: the time each value's bucket is next fully drained, in System.nanoTime units
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final AtomicLongArray arrival;
+
+    /**
+     * Constructs a new ValuePool.
+     *
+     * @param values        The values, in order
+     * @param weights       The weight of each value (1 to 100), or null for equal weights
+     * @param selection     How the next value is chosen
+     * @param ratePerSecond The requests per second allowed for each value, or 0 for no limit
+     * @param burst         The requests each value may send back to back before the rate applies
+     * @param maxWaitMillis How long a request may wait for a value to free up, clamped to
+     *                      {@link #MAX_WAIT_MILLIS}; 0 never waits
+     * @throws IllegalArgumentException if there are no values or a weight is out of range
+     */
+    public ValuePool(List<String> values, List<Integer> weights, Selection selection, double ratePerSecond, int burst,
+                     int maxWaitMillis) {
+        if (values.isEmpty()) {
+            throw new IllegalArgumentException("A value pool needs at least one value");
+        }
+        this.values = values.toArray(new String[0]);
+        this.weights = new int[this.values.length];
+        for (int i = 0; i < this.values.length; i++) {
+            int weight = weights != null ? weights.get(i) : 1;
+            if (weight < 1 || weight > MAX_WEIGHT) {
+                throw new IllegalArgumentException("Weights must be between 1 and " + MAX_WEIGHT + ", got " + weight);
+            }
+            this.weights[i] = weight;
+        }
+        this.selection = selection;
+        this.ratePerSecond = Math.max(0, ratePerSecond);
+        this.burst = Math.max(1, burst);
+        this.maxWaitMillis = Math.max(0, Math.min(MAX_WAIT_MILLIS, maxWaitMillis));
+        this.schedule = selection == Selection.WEIGHTED ? smoothSchedule(this.weights) : identity(this.values.length);
+        this.lastUsed = new AtomicLongArray(this.values.length);
+
+        this.intervalNanos = this.ratePerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / this.ratePerSecond) : 0;
+        this.toleranceNanos = intervalNanos * (this.burst - 1);
+        this.arrival = new AtomicLongArray(this.values.length);
+        long now = System.nanoTime();
+        for (int i = 0; i < this.values.length; i++) {
+            arrival.set(i, now);
+        }
+    }
+
+    /**
+     * Parses a pool from its persisted form.
+     *
+     * @param text          One value per line, each optionally followed by a tab and its weight
+     * @param selection     The persisted selection name
+     * @param ratePerSecond The requests per second allowed for each value, or 0 for no limit
+     * @param burst         The requests each value may send back to back
+     * @param maxWaitMillis How long a request may wait for a value to free up
+     * @return The pool
+     * @throws IllegalArgumentException if there are no values or a weight is invalid
+     */
+    public static ValuePool parse(String text, String selection, double ratePerSecond, int burst, int maxWaitMillis) {
+        List<String> values = new ArrayList<>();
+        List<Integer> weights = new ArrayList<>();
+        for (String line : text.split("\r?\n")) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            int tab = line.lastIndexOf('\t');
+            if (tab > 0) {
+                try {
+                    weights.add(Integer.parseInt(line.substring(tab + 1).trim()));
+                    values.add(line.substring(0, tab));
+                    continue;
+                } catch (NumberFormatException e) {
+                    // Not a weight; the tab is part of the value
+                }
+            }
+            values.add(line);
+            weights.add(1);
+        }
+        return new ValuePool(values, weights, Selection.fromName(selection), ratePerSecond, burst, maxWaitMillis);
+    }
+
+    /**
+     * Formats the values and weights for persistence.
+     *
+     * @return One value per line, followed by a tab and its weight when it is not 1
+     */
+    public String format() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sb.append('\n');
+            }
+            sb.append(values[i]);
+            if (weights[i] != 1) {
+                sb.append('\t').append(weights[i]);
+            }
+        }
+        return sb.toString();
+    }
+
+    public List<String> getValues() {
+        return Collections.unmodifiableList(Arrays.asList(values));
+    }
+
+    public Selection getSelection() {
+        return selection;
+    }
+
+    public double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    public int getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /**
+     * Checks if another pool has the same values and settings, so its rotation and
+     * rate-limit state can be kept when rules are republished.
+     *
+     * @param other The other pool, or null
+     * @return true if both pools would behave the same
+     */
+    public boolean hasSameSettings(ValuePool other) {
+        return other != null && other.selection == selection && other.ratePerSecond == ratePerSecond &&
+                other.burst == burst && other.maxWaitMillis == maxWaitMillis && other.format().equals(format());
+    }
+
+    /**
+     * Takes the next value. When every value is at its rate limit, parks the calling
+     * thread until the first one has capacity, for at most the configured wait.
+     *
+     * @return The value to send, or null if every value stayed at its limit for the whole
+     *         wait, in which case the rule is left out rather than exceed the limit
+     */
+    public String next() {
+        long deadline = 0;
+        while (true) {
+            long now = System.nanoTime();
+            int preferred = pick();
+            int n = values.length;
+            for (int k = 0; k < n; k++) {
+                int i = (preferred + k) % n;
+                if (tryAcquire(i, now)) {
+                    return values[i];
+                }
+            }
+
+            // Every value is throttled: wait for the earliest one to free up
+            if (deadline == 0) {
+                deadline = now + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+            }
+            long wait = earliestCapacity(now);
+            if (now + wait - deadline > 0) {
+                return null;
+            }
+            LockSupport.parkNanos(this, wait);
+        }
+    }
+
+    /**
+     * Chooses the preferred value for the next request.
+     */
+    private int pick() {
+        if (selection != Selection.LEAST_RECENTLY_USED) {
+            return schedule[(int) Math.floorMod(cursor.getAndIncrement(), (long) schedule.length)];
+        }
+        while (true) {
+            int oldest = 0;
+            long oldestUse = lastUsed.get(0);
+            for (int i = 1; i < values.length; i++) {
+                long use = lastUsed.get(i);
+                if (use < oldestUse) {
+                    oldest = i;
+                    oldestUse = use;
+                }
+            }
+            // Claim it; if another thread took it first, look again
+            if (lastUsed.compareAndSet(oldest, oldestUse, useSequence.incrementAndGet())) {
+                return oldest;
+            }
+        }
+    }
+
+    /**
+     * Takes one request from a value's bucket (GCRA), without locking.
+     */
+    private boolean tryAcquire(int i, long now) {
+        if (intervalNanos == 0) {
+            return true;
+        }
+        while (true) {
+            long tat = arrival.get(i);
+            long start = tat - now > 0 ? tat : now;
+            if (start - now > toleranceNanos) {
+                return false;
+            }
+            if (arrival.compareAndSet(i, tat, start + intervalNanos)) {
+                return true;
+            }
+        }
+    }
+
+    private long earliestCapacity(long now) {
+        long wait = Long.MAX_VALUE;
+        for (int i = 0; i < values.length; i++) {
+            wait = Math.min(wait, arrival.get(i) - toleranceNanos - now);
+        }
+        return Math.max(wait, 1000);
+    }
+
+    private static int[] identity(int n) {
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        return order;
+    }
+
+    /**
+     * Expands weights into an interleaved schedule (smooth weighted round robin), so
+     * a value with weight 3 is spread across the cycle instead of taken three times in a row.
+     */
+    private static int[] smoothSchedule(int[] weights) {
+        int total = 0;
+        for (int weight : weights) {
+            total += weight;
+        }
+        int[] schedule = new int[total];
+        int[] current = new int[weights.length];
+        for (int step = 0; step < total; step++) {
+            int best = 0;
+            for (int i = 0; i < weights.length; i++) {
+                current[i] += weights[i];
+                if (current[i] > current[best]) {
+                    best = i;
+                }
+            }
+            current[best] -= total;
+            schedule[step] = best;
+        }
+        return schedule;
+    }
+}
@@ -0,0 +1,190 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * The XXH64 non-cryptographic hash. Fast enough to fingerprint a macro response
+ * for a fraction of the cost of decoding and matching it. {@link Hasher} computes
+ * the same hash over data that arrives in pieces.
+ */
+public final class XxHash64 {
+
+    private static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME64_3 = 0x165667B19E3779F9L;
+    private static final long PRIME64_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME64_5 = 0x27D4EB2F165667C5L;
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INTS = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private XxHash64() {
+    }
+
+    /**
+     * Hashes a range of bytes.
+     *
+     * @param data   The buffer
+     * @param offset The start offset
+     * @param length The number of bytes to hash
+     * @param seed   The seed
+     * @return The 64-bit hash
+     */
+    public static long hash(byte[] data, int offset, int length, long seed) {
+        int end = offset + length;
+        int p = offset;
+        long h;
+
+        if (length >= 32) {
+            long v1 = seed + PRIME64_1 + PRIME64_2;
+            long v2 = seed + PRIME64_2;
+            long v3 = seed;
+            long v4 = seed - PRIME64_1;
+            int limit = end - 32;
+            do {
+                v1 = round(v1, (long) LONGS.get(data, p));
+                v2 = round(v2, (long) LONGS.get(data, p + 8));
+                v3 = round(v3, (long) LONGS.get(data, p + 16));
+                v4 = round(v4, (long) LONGS.get(data, p + 24));
+                p += 32;
+            } while (p <= limit);
+
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = merge(h, v1);
+            h = merge(h, v2);
+            h = merge(h, v3);
+            h = merge(h, v4);
+        } else {
+            h = seed + PRIME64_5;
+        }
+
+        return finish(h + length, data, p, end);
+    }
+
+    /**
+     * Mixes in the last bytes, fewer than 32, and avalanches the result.
+     */
+    private static long finish(long h, byte[] data, int p, int end) {
+        while (p + 8 <= end) {
+            h ^= round(0, (long) LONGS.get(data, p));
+            h = Long.rotateLeft(h, 27) * PRIME64_1 + PRIME64_4;
+            p += 8;
+        }
+        if (p + 4 <= end) {
+            h ^= ((int) INTS.get(data, p) & 0xFFFFFFFFL) * PRIME64_1;
+            h = Long.rotateLeft(h, 23) * PRIME64_2 + PRIME64_3;
+            p += 4;
+        }
+        while (p < end) {
+            h ^= (data[p] & 0xFFL) * PRIME64_5;
+            h = Long.rotateLeft(h, 11) * PRIME64_1;
+            p++;
+        }
+
+        h ^= h >>> 33;
+        h *= PRIME64_2;
+        h ^= h >>> 29;
+        h *= PRIME64_3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    /**
+     * Hashes data fed in pieces, giving the same result as {@link #hash} over the
+     * pieces joined together. Not thread-safe.
+     */
+    public static final class Hasher {
+        private final long seed;
+        private final byte[] buffer = new byte[32];
+        private long v1;
+        private long v2;
+        private long v3;
+        private long v4;
+        private int buffered;
+        private long total;
+
+        /**
+         * Constructs a new Hasher.
+         *
+         * @param seed The seed
+         */
+        public Hasher(long seed) {
+            this.seed = seed;
+            this.v1 = seed + PRIME64_1 + PRIME64_2;
+            this.v2 = seed + PRIME64_2;
+            this.v3 = seed;
+            this.v4 = seed - PRIME64_1;
+        }
+
+        /**
+         * Adds the next piece of data.
+         *
+         * @param data   The buffer
+         * @param offset The start offset
+         * @param length The number of bytes to add
+         * @return This hasher
+         */
+        public Hasher update(byte[] data, int offset, int length) {
+            int end = offset + length;
+            int p = offset;
+            total += length;
+
+            if (buffered > 0) {
+                int count = Math.min(32 - buffered, length);
+                System.arraycopy(data, p, buffer, buffered, count);
+                buffered += count;
+                p += count;
+                if (buffered < 32) {
+                    return this;
+                }
+                stripe(buffer, 0);
+                buffered = 0;
+            }
+            while (p + 32 <= end) {
+                stripe(data, p);
+                p += 32;
+            }
+            System.arraycopy(data, p, buffer, 0, end - p);
+            buffered = end - p;
+            return this;
+        }
+
+        /**
+         * Gets the hash of everything added so far.
+         *
+         * @return The 64-bit hash
+         */
+        public long digest() {
+            long h;
+            if (total >= 32) {
+                h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) +
+                        Long.rotateLeft(v4, 18);
+                h = merge(h, v1);
+                h = merge(h, v2);
+                h = merge(h, v3);
+                h = merge(h, v4);
+            } else {
+                h = seed + PRIME64_5;
+            }
+            return finish(h + total, buffer, 0, buffered);
+        }
+
+        private void stripe(byte[] data, int p) {
+            v1 = round(v1, (long) LONGS.get(data, p));
+            v2 = round(v2, (long) LONGS.get(data, p + 8));
+            v3 = round(v3, (long) LONGS.get(data, p + 16));
+            v4 = round(v4, (long) LONGS.get(data, p + 24));
+        }
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME64_2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME64_1;
+    }
+
+    private static long merge(long acc, long value) {
+        acc ^= round(0, value);
+        return acc * PRIME64_1 + PRIME64_4;
+    }
+}
@@ -0,0 +1,46 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CustomHeadersCliTest {
+
+    @Test
+    public void rewritesBackToBackRequests() throws IOException {
+        String stream = "POST /a HTTP/1.1\r\nContent-Length: 3\r\n\r\nabc" +
+                "GET /b HTTP/1.1\r\nHost: h\r\n\r\n";
+        assertEquals("POST /a HTTP/1.1\r\nContent-Length: 3\r\nX-A: 1\r\n\r\nabc" +
+                "GET /b HTTP/1.1\r\nHost: h\r\nX-A: 1\r\n\r\n", run(stream, "-H", "X-A: 1"));
+    }
+
+    @Test
+    public void badContentLengthIsAnInputError() {
+        for (String value : new String[] {"+3", "-1", "3 3", "x", "99999999999"}) {
+            IOException e = assertThrows(IOException.class,
+                    () -> run("POST / HTTP/1.1\r\nContent-Length: " + value + "\r\n\r\nabc", "-H", "X-A: 1"));
+            assertTrue(e.getMessage().startsWith("invalid Content-Length"), e.getMessage());
+        }
+    }
+
+    @Test
+    public void truncatedBodyIsAnInputError() {
+        assertThrows(IOException.class, () -> run("POST / HTTP/1.1\r\nContent-Length: 9\r\n\r\nabc", "-H", "X-A: 1"));
+    }
+
+    @Test
+    public void malformedArgumentsAreUsageErrors() {
+        assertThrows(IllegalArgumentException.class, () -> run("", "-H", "no colon"));
+    }
+
+    private static String run(String stream, String... args) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CustomHeadersCli.run(args, new ByteArrayInputStream(stream.getBytes(StandardCharsets.ISO_8859_1)), out);
+        return out.toString(StandardCharsets.ISO_8859_1);
+    }
+}
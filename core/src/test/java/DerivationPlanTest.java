@@ -0,0 +1,93 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class DerivationPlanTest {
+
+    @Test
+    public void hashesReferencedValuesAndLeavesCyclesOut() {
+        DerivationPlan plan = DerivationPlan.forRules(List.of(
+                rule("Authorization", "Bearer x"),
+                derived("X-Hash", "{{Authorization}} | hash:sha256"),
+                derived("A", "{{B}}"),
+                derived("B", "{{A}}")));
+
+        assertEquals(List.of("A", "B", "A"), plan.getCycle());
+        assertEquals(Map.of("X-Hash", "b937a6fd6074f3650930dd9a8c3ea51fa502846a5301d74c252c768aef76dcda"),
+                plan.resolve(new TokenStore().current(), new HashMap<>()));
+    }
+
+    @Test
+    public void derivedValuesCanReadEachOther() {
+        DerivationPlan plan = DerivationPlan.forRules(List.of(
+                derived("Outer", "[{{Inner}}]"),
+                derived("Inner", "{{Key}}-{{Key}}"),
+                rule("Key", "k")));
+        assertEquals(List.of(), plan.getCycle());
+        assertEquals(Map.of("Inner", "k-k", "Outer", "[k-k]"), plan.resolve(TokenSet.EMPTY, new HashMap<>()));
+    }
+
+    @Test
+    public void dynamicReferencesFollowTheTokenSet() {
+        DerivationPlan plan = DerivationPlan.forRules(List.of(
+                CustomHeadersConfig.CustomHeader.builder("Authorization", "").dynamic(true).build(),
+                derived("X-Sig", "sig:{{Authorization}}")));
+        TokenStore tokens = new TokenStore();
+        assertEquals(Map.of(), plan.resolve(tokens.current(), new HashMap<>()));
+
+        tokens.put("Authorization", "one");
+        TokenSet first = tokens.current();
+        Map<String, String> values = plan.resolve(first, new HashMap<>());
+        assertEquals(Map.of("X-Sig", "sig:one"), values);
+        assertSame(values, plan.resolve(first, new HashMap<>()));
+
+        tokens.put("Authorization", "two");
+        assertEquals(Map.of("X-Sig", "sig:two"), plan.resolve(tokens.current(), new HashMap<>()));
+    }
+
+    @Test
+    public void pooledReferencesUseTheValueTheRequestDrew() {
+        ValuePool pool = new ValuePool(List.of("k1", "k2"), null, ValuePool.Selection.ROUND_ROBIN, 0, 1, 0);
+        CustomHeadersConfig.CustomHeader key = CustomHeadersConfig.CustomHeader.builder("X-Key", "").pool(pool).build();
+        DerivationPlan plan = DerivationPlan.forRules(List.of(key, derived("X-Sig", "{{X-Key}}!")));
+
+        for (String expected : List.of("k1", "k2", "k1")) {
+            Map<String, String> drawn = new HashMap<>();
+            assertEquals(Map.of("X-Sig", expected + "!"), plan.resolve(TokenSet.EMPTY, drawn));
+            // The header itself is sent with the same draw
+            assertEquals(expected, key.nextValue(drawn));
+        }
+    }
+
+    @Test
+    public void validatesDerivations() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> DerivationPlan.validate("no refs"));
+        assertEquals("A derived value must reference a rule as {{Rule Name}}", e.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> DerivationPlan.validate("{{A}} | nosuchtype:x"));
+        DerivationPlan.validate("{{A}} | hash:sha256");
+    }
+
+    @Test
+    public void firstRuleOfANameIsTheOneReferenced() {
+        DerivationPlan plan = DerivationPlan.forRules(List.of(rule("Key", "first"), rule("Key", "second"),
+                derived("X", "{{Key}}")));
+        assertEquals("first", plan.resolve(TokenSet.EMPTY, new HashMap<>()).get("X"));
+        assertFalse(plan.getSource().isEmpty());
+    }
+
+    private static CustomHeadersConfig.CustomHeader rule(String name, String value) {
+        return CustomHeadersConfig.CustomHeader.builder(name, value).build();
+    }
+
+    private static CustomHeadersConfig.CustomHeader derived(String name, String derivation) {
+        return CustomHeadersConfig.CustomHeader.builder(name, "").derivation(derivation).build();
+    }
+}
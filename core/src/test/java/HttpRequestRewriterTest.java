@@ -0,0 +1,135 @@
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HttpRequestRewriterTest {
+
+    private static final String FORM = "POST /a?x=1 HTTP/1.1\r\nHost: h\r\n" +
+            "Content-Type: application/x-www-form-urlencoded\r\nContent-Length: 3\r\n\r\na=1";
+
+    private static final String CHUNKED = "POST /a HTTP/1.1\r\nHost: h\r\nTransfer-Encoding: chunked\r\n" +
+            "Content-Type: application/x-www-form-urlencoded\r\n\r\n3\r\na=1\r\n0\r\n\r\n";
+
+    @Test
+    public void setsHeadersInPlaceOrAtTheEnd() {
+        String request = "GET / HTTP/1.1\r\nHost: h\r\nX-A: old\r\nAccept: */*\r\n\r\n";
+        assertEquals("GET / HTTP/1.1\r\nHost: h\r\nX-A: new\r\nAccept: */*\r\n\r\n",
+                rewrite(request, r -> r.setHeader("X-A", "new")));
+        assertEquals("GET / HTTP/1.1\r\nHost: h\r\nX-A: old\r\nAccept: */*\r\nX-B: 1\r\n\r\n",
+                rewrite(request, r -> r.setHeader("X-B", "1")));
+    }
+
+    @Test
+    public void unchangedRequestsAreNotCopied() {
+        assertNull(rewrite("GET / HTTP/1.1\r\nHost: h\r\nX-A: 1\r\n\r\n", r -> r.setHeader("X-A", "1")));
+    }
+
+    @Test
+    public void settingAnEqualValueStillRemovesDuplicates() {
+        assertEquals("GET / HTTP/1.1\r\nHost: h\r\nX-A: 1\r\n\r\n",
+                rewrite("GET / HTTP/1.1\r\nHost: h\r\nX-A: 1\r\nX-A: 2\r\n\r\n", r -> r.setHeader("X-A", "1")));
+    }
+
+    @Test
+    public void controlCharactersCannotInjectHeaders() {
+        assertEquals("GET / HTTP/1.1\r\nHost: h\r\nX-A: vEvil: 1\r\n\r\n",
+                rewrite("GET / HTTP/1.1\r\nHost: h\r\n\r\n", r -> r.setHeader("X-A", "v\r\nEvil: 1")));
+        assertEquals("GET / HTTP/1.1\r\nHost: h\r\nX-AB: v\r\n\r\n",
+                rewrite("GET / HTTP/1.1\r\nHost: h\r\n\r\n", r -> r.setHeader("X-A\nB", "v")));
+    }
+
+    @Test
+    public void placesNewHeaders() {
+        String request = "GET / HTTP/1.1\r\nHost: h\r\nAccept: */*\r\n\r\n";
+        assertEquals("GET / HTTP/1.1\r\nX-New: 1\r\nHost: h\r\nAccept: */*\r\n\r\n", rewrite(request, r -> {
+            r.setPlacement(HeaderPlacement.START);
+            r.setHeader("X-New", "1");
+        }));
+        assertEquals("GET / HTTP/1.1\r\nHost: h\r\nX-New: 1\r\nAccept: */*\r\n\r\n", rewrite(request, r -> {
+            r.setPlacement(HeaderPlacement.after("Host"));
+            r.setHeader("X-New", "1");
+        }));
+    }
+
+    @Test
+    public void http2HeaderNamesAreLowercase() {
+        String request = "GET / HTTP/2\r\nhost: h\r\n\r\n";
+        assertEquals("GET / HTTP/2\r\nhost: h\r\nx-new: 1\r\n\r\n", rewrite(request, r -> {
+            assertTrue(r.isHttp2());
+            r.setHeader("X-New", "1");
+        }));
+    }
+
+    @Test
+    public void injectsParametersCookiesAndJson() {
+        assertEquals(FORM.replace("3\r\n\r\na=1", "4\r\n\r\na=22"),
+                rewrite(FORM, r -> r.inject(InjectionTarget.BODY_PARAMETER, "a", "22")));
+        assertEquals(FORM.replace("3\r\n\r\na=1", "9\r\n\r\na=1&b=x+y"),
+                rewrite(FORM, r -> r.inject(InjectionTarget.BODY_PARAMETER, "b", "x y")));
+        assertEquals(FORM.replace("?x=1", "?x=9"),
+                rewrite(FORM, r -> r.inject(InjectionTarget.URL_PARAMETER, "x", "9")));
+        assertEquals("GET / HTTP/1.1\r\nCookie: a=1; b=3\r\n\r\n",
+                rewrite("GET / HTTP/1.1\r\nCookie: a=1; b=2\r\n\r\n", r -> r.inject(InjectionTarget.COOKIE, "b", "3")));
+
+        String json = "POST / HTTP/1.1\r\nContent-Type: application/json\r\nContent-Length: 7\r\n\r\n{\"k\":1}";
+        assertEquals("POST / HTTP/1.1\r\nContent-Type: application/json\r\nContent-Length: 11\r\n\r\n{\"k\":\"tok\"}",
+                rewrite(json, r -> r.inject(InjectionTarget.JSON_POINTER, "/k", "tok")));
+    }
+
+    @Test
+    public void jsonBodyWithInvalidEscapeIsStillPatched() {
+        String body = "{\"\\uZZZZ\":1,\"k\":\"x\"}";
+        String request = "POST / HTTP/1.1\r\nContent-Type: application/json\r\nContent-Length: " + body.length() +
+                "\r\n\r\n" + body;
+        String patched = rewrite(request, r -> assertTrue(r.inject(InjectionTarget.JSON_POINTER, "/k", "t")));
+        assertTrue(patched.endsWith("\r\n\r\n{\"\\uZZZZ\":1,\"k\":\"t\"}"));
+    }
+
+    @Test
+    public void transferCodedBodiesAreNeverRewritten() {
+        assertNull(rewrite(CHUNKED, r -> assertFalse(r.inject(InjectionTarget.BODY_PARAMETER, "csrf", "t"))));
+        String json = CHUNKED.replace("x-www-form-urlencoded", "json").replace("3\r\na=1", "7\r\n{\"k\":1}");
+        assertNull(rewrite(json, r -> assertFalse(r.inject(InjectionTarget.JSON_POINTER, "/k", "t"))));
+    }
+
+    @Test
+    public void transferCodedRequestsNeverGainAContentLength() {
+        String rewritten = rewrite(CHUNKED, r -> {
+            r.inject(InjectionTarget.URL_PARAMETER, "q", "t");
+            r.inject(InjectionTarget.BODY_PARAMETER, "csrf", "t");
+        });
+        assertEquals(CHUNKED.replace("/a", "/a?q=t"), rewritten);
+        assertFalse(rewritten.contains("Content-Length"));
+    }
+
+    @Test
+    public void conditionsReadTheRequest() {
+        byte[] bytes = FORM.getBytes(StandardCharsets.ISO_8859_1);
+        HttpRequestRewriter request = new HttpRequestRewriter(bytes, 0, bytes.length);
+        assertTrue(RuleCondition.of("POST", "form", "/a\\?", "a=1").matches(request));
+        assertFalse(RuleCondition.of("GET", "", "", "").matches(request));
+        assertFalse(RuleCondition.of("", "", "", "b=").matches(request));
+    }
+
+    @Test
+    public void rejectsRequestsWithoutAHeaderTerminator() {
+        byte[] bytes = "GET / HTTP/1.1\r\nHost: h".getBytes(StandardCharsets.ISO_8859_1);
+        assertThrows(IllegalArgumentException.class, () -> new HttpRequestRewriter(bytes, 0, bytes.length));
+    }
+
+    private static String rewrite(String request, Consumer<HttpRequestRewriter> change) {
+        // Surround the request so offsets other than 0 are exercised
+        byte[] raw = ("xx" + request + "yy").getBytes(StandardCharsets.ISO_8859_1);
+        HttpRequestRewriter rewriter = new HttpRequestRewriter(raw, 2, raw.length - 4);
+        change.accept(rewriter);
+        byte[] rewritten = rewriter.toByteArray();
+        return rewritten != null ? new String(rewritten, StandardCharsets.ISO_8859_1) : null;
+    }
+}
@@ -0,0 +1,130 @@
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class JsonPointerPatcherTest {
+
+    @Test
+    public void replacesNestedValues() {
+        assertEquals("{\"data\":{\"csrf\":\"new\"},\"n\":1}",
+                patch("{\"data\":{\"csrf\":\"old\"},\"n\":1}", "/data/csrf", "new"));
+        assertEquals("{\"items\":[1,\"t\"]}", patch("{\"items\":[1,{\"a\":[2]}]}", "/items/1", "t"));
+        assertEquals("{ \"k\" : \"v\" }", patch("{ \"k\" : [1, 2] }", "/k", "v"));
+        assertEquals("\"whole\"", patch("{\"k\":1}", "", "whole"));
+    }
+
+    @Test
+    public void insertsMissingMembersAndAppends() {
+        assertEquals("{\"a\":{\"new\":\"t\"}}", patch("{\"a\":{}}", "/a/new", "t"));
+        assertEquals("{\"new\":\"t\",\"b\":1}", patch("{\"b\":1}", "/new", "t"));
+        assertEquals("{\"a\":[1,\"t\"]}", patch("{\"a\":[1]}", "/a/-", "t"));
+        assertEquals("{\"a\":[\"t\"]}", patch("{\"a\":[]}", "/a/-", "t"));
+    }
+
+    @Test
+    public void unresolvablePointersLeaveTheDocumentAlone() {
+        assertNull(patch("{\"a\":[1]}", "/a/5", "t"));
+        assertNull(patch("{\"a\":1}", "/missing/deeper", "t"));
+        assertNull(patch("{\"a\":\"s\"}", "/a/b", "t"));
+        assertNull(patch("{\"a\" 1}", "/a", "t"));
+        assertNull(patch("   ", "/a", "t"));
+    }
+
+    @Test
+    public void decodesPointerAndMemberNameEscapes() {
+        assertEquals("{\"a~b\":1,\"c/d\":\"t\"}", patch("{\"a~b\":1,\"c/d\":2}", "/c~1d", "t"));
+        assertEquals("{\"a~b\":\"t\"}", patch("{\"a~b\":1}", "/a~0b", "t"));
+        assertEquals("{\"caf\\u00e9\":\"t\"}", patch("{\"caf\\u00e9\":1}", "/caf\u00e9", "t"));
+    }
+
+    @Test
+    public void surrogatePairEscapesMatchOneCharacter() {
+        assertEquals("{\"\\ud83d\\ude00\":\"t\"}", patch("{\"\\ud83d\\ude00\":1}", "/\ud83d\ude00", "t"));
+    }
+
+    @Test
+    public void invalidUnicodeEscapeInAMemberNameDoesNotMatch() {
+        // The scanner payload from the review: must neither throw nor match the broken name
+        assertEquals("{\"\\uZZZZ\":1,\"k\":\"t\"}", patch("{\"\\uZZZZ\":1,\"k\":\"x\"}", "/k", "t"));
+        assertEquals("{\"k\":\"t\",\"\\u12\":1}", patch("{\"\\u12\":1}", "/k", "t"));
+    }
+
+    @Test
+    public void quotesValues() {
+        assertEquals("{\"k\":\"a\\\"b\\\\c\\n\\u0001\"}", patch("{\"k\":1}", "/k", "a\"b\\c\n\u0001"));
+    }
+
+    @Test
+    public void rejectsRelativePointers() {
+        assertThrows(IllegalArgumentException.class, () -> new JsonPointerPatcher("k"));
+    }
+
+    @Test
+    public void batchMatchesApplyingEachPointerInOrder() {
+        String json = "{\"a\":{\"x\":1,\"y\":[1,2]},\"b\":\"s\",\"list\":[]}";
+        List<String> pointers = List.of("/a/x", "/a/y/1", "/missing", "/list/-", "/a/x", "/list/-", "/b/deeper");
+        String[] values = {"1st", "y1", "m", "e1", "2nd", "e2", "lost"};
+
+        assertEquals(sequential(json, pointers, values), batch(json, pointers, values));
+        assertEquals("{\"missing\":\"m\",\"a\":{\"x\":\"2nd\",\"y\":[1,\"y1\"]},\"b\":\"s\",\"list\":[\"e1\",\"e2\"]}",
+                batch(json, pointers, values));
+    }
+
+    @Test
+    public void batchDropsPointersInsideAReplacedValue() {
+        String json = "{\"a\":{\"b\":1}}";
+        List<String> pointers = List.of("/a/b", "/a");
+        String[] values = {"inner", "outer"};
+        assertEquals("{\"a\":\"outer\"}", batch(json, pointers, values));
+        assertEquals(sequential(json, pointers, values), batch(json, pointers, values));
+    }
+
+    @Test
+    public void batchInsertsMissingMembersInTheOrderSequentialInsertsWould() {
+        String json = "{\"k\":1}";
+        List<String> pointers = List.of("/x", "/y", "/x");
+        String[] values = {"1", "2", "3"};
+        assertEquals("{\"y\":\"2\",\"x\":\"3\",\"k\":1}", batch(json, pointers, values));
+        assertEquals(sequential(json, pointers, values), batch(json, pointers, values));
+    }
+
+    @Test
+    public void batchSkipsNullValuesAndReportsNoChange() {
+        List<String> pointers = List.of("/a", "/missing/deeper");
+        assertNull(batch("{\"a\":1}", pointers, new String[] {null, "v"}));
+        assertEquals("{\"a\":\"v\"}", batch("{\"a\":1}", pointers, new String[] {"v", null}));
+    }
+
+    private static String patch(String json, String pointer, String value) {
+        byte[] patched = JsonPointerPatcher.patch(json.getBytes(StandardCharsets.UTF_8), pointer, value);
+        return patched != null ? new String(patched, StandardCharsets.UTF_8) : null;
+    }
+
+    private static String batch(String json, List<String> pointers, String[] values) {
+        JsonPointerPatcher.Batch batch = new JsonPointerPatcher.Batch(
+                pointers.stream().map(JsonPointerPatcher::new).toList());
+        byte[] patched = batch.apply(json.getBytes(StandardCharsets.UTF_8), values);
+        return patched != null ? new String(patched, StandardCharsets.UTF_8) : null;
+    }
+
+    private static String sequential(String json, List<String> pointers, String[] values) {
+        byte[] current = json.getBytes(StandardCharsets.UTF_8);
+        boolean changed = false;
+        for (int i = 0; i < pointers.size(); i++) {
+            if (values[i] == null) {
+                continue;
+            }
+            byte[] patched = new JsonPointerPatcher(pointers.get(i)).apply(current, values[i]);
+            if (patched != null) {
+                current = patched;
+                changed = true;
+            }
+        }
+        return changed ? new String(current, StandardCharsets.UTF_8) : null;
+    }
+}
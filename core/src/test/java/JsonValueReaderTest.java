@@ -0,0 +1,55 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class JsonValueReaderTest {
+
+    private static final String DOCUMENT =
+            "{\"data\": {\"items\": [{\"t\": 1}, {\"t\": \"two\"}], \"ok\": true}, \"n\": null}";
+
+    @Test
+    public void readsPointerAndDottedPaths() {
+        assertEquals("two", new JsonValueReader("/data/items/1/t").read(DOCUMENT));
+        assertEquals("two", new JsonValueReader("$.data.items[1].t").read(DOCUMENT));
+        assertEquals("two", new JsonValueReader("data.items[1].t").read(DOCUMENT));
+        assertEquals("1", new JsonValueReader("data.items[0].t").read(DOCUMENT));
+        assertEquals("true", new JsonValueReader("/data/ok").read(DOCUMENT));
+        assertEquals("{\"t\": 1}", new JsonValueReader("/data/items/0").read(DOCUMENT));
+    }
+
+    @Test
+    public void missingPathsAndNullsReadAsNull() {
+        assertNull(new JsonValueReader("/data/items/5/t").read(DOCUMENT));
+        assertNull(new JsonValueReader("/data/none").read(DOCUMENT));
+        assertNull(new JsonValueReader("/n").read(DOCUMENT));
+        assertNull(new JsonValueReader("/data").read("not json"));
+    }
+
+    @Test
+    public void decodesEscapesAndSurrogatePairs() {
+        assertEquals("a\"b\\c\n\u00e9", new JsonValueReader("/k").read("{\"k\": \"a\\\"b\\\\c\\n\\u00e9\"}"));
+        assertEquals("\ud83d\ude00", new JsonValueReader("/k").read("{\"k\": \"\\ud83d\\ude00\"}"));
+    }
+
+    @Test
+    public void invalidUnicodeEscapesAreRejectedNotThrown() {
+        // A broken value reads as null; a broken member name before the wanted one is skipped
+        assertNull(new JsonValueReader("/k").read("{\"k\": \"a\\uZZ\"}"));
+        assertNull(new JsonValueReader("/k").read("{\"k\": \"\\u12\"}"));
+        assertEquals("x", new JsonValueReader("/k").read("{\"\\uZZZZ\": 1, \"k\": \"x\"}"));
+        assertNull(JsonValueReader.decode("\"\\uGGGG\""));
+    }
+
+    @Test
+    public void listsMembersAndElements() {
+        Map<String, CharSequence> members = JsonValueReader.members("{\"a\": \"x\", \"b\": [1, 2]}");
+        assertEquals("x", JsonValueReader.decode(members.get("a")));
+        List<CharSequence> elements = JsonValueReader.elements(members.get("b"));
+        assertEquals(2, elements.size());
+        assertEquals("2", JsonValueReader.decode(elements.get(1)));
+    }
+}
@@ -0,0 +1,65 @@
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RuleImporterTest {
+
+    @Test
+    public void sharedValuesApplyEverywhereAndOthersArePathScoped() {
+        List<CustomHeadersConfig.CustomHeader> rules = RuleImporter.fromCurl(
+                "curl 'https://api.example.com/a' -H 'X-Common: 1' -H 'X-Only-A: a'\n" +
+                "curl https://api.example.com/b?q=1 -H 'X-Common: 1'");
+
+        assertEquals(2, rules.size());
+        assertEquals("X-Common", rules.get(0).getName());
+        assertSame(RuleCondition.ALWAYS, rules.get(0).getCondition());
+
+        RuleCondition onlyA = rules.get(1).getCondition();
+        assertTrue(onlyA.matches(request("GET /a HTTP/1.1")));
+        assertTrue(onlyA.matches(request("GET https://api.example.com/a?x=1 HTTP/1.1")));
+        assertFalse(onlyA.matches(request("GET /admin/a HTTP/1.1")));
+        assertFalse(onlyA.matches(request("GET /ab HTTP/1.1")));
+        assertFalse(onlyA.matches(request("GET /b HTTP/1.1")));
+    }
+
+    @Test
+    public void methodsAreScopedWhenAPathIsSentWithSeveral() {
+        List<CustomHeadersConfig.CustomHeader> rules = RuleImporter.fromCurl(
+                "curl https://h/a -H 'X-Read: r'; curl -X POST https://h/a -H 'X-Write: w'");
+
+        assertEquals(List.of("X-Read", "X-Write"),
+                rules.stream().map(CustomHeadersConfig.CustomHeader::getName).toList());
+        assertTrue(rules.get(0).getCondition().matches(request("GET /a HTTP/1.1")));
+        assertFalse(rules.get(0).getCondition().matches(request("POST /a HTTP/1.1")));
+        assertTrue(rules.get(1).getCondition().matches(request("POST /a HTTP/1.1")));
+    }
+
+    @Test
+    public void importsCredentialsAndSkipsRemovedHeaders() {
+        List<CustomHeadersConfig.CustomHeader> rules = RuleImporter.fromCurl(
+                "curl -u user:pw --oauth2-bearer tok -H 'Accept:' \\\n  -H $'X-Esc: a\\tb' https://h/");
+
+        assertEquals(List.of("X-Esc", "Authorization", "Authorization"),
+                rules.stream().map(CustomHeadersConfig.CustomHeader::getName).toList());
+        assertEquals("a\tb", rules.get(0).getValue());
+        assertEquals("Basic dXNlcjpwdw==", rules.get(1).getValue());
+        assertEquals("Bearer tok", rules.get(2).getValue());
+    }
+
+    @Test
+    public void rejectsTextWithoutACurlCommand() {
+        assertThrows(IllegalArgumentException.class, () -> RuleImporter.fromCurl("wget https://h/"));
+    }
+
+    private static HttpRequestRewriter request(String requestLine) {
+        byte[] bytes = (requestLine + "\r\nHost: h\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        return new HttpRequestRewriter(bytes, 0, bytes.length);
+    }
+}
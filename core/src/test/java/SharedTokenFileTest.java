@@ -0,0 +1,118 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SharedTokenFileTest {
+
+    private static final int SIZE = 4096;
+    private static final int SEQUENCE_OFFSET = 8;
+    private static final int PAYLOAD_OFFSET = 32;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void writesAreVisibleThroughAnotherMapping() throws IOException {
+        Path path = dir.resolve("tokens");
+        try (SharedTokenFile writer = new SharedTokenFile(path, SIZE);
+             SharedTokenFile reader = new SharedTokenFile(path, SIZE)) {
+            long before = reader.getSequence();
+            writer.write(Map.of("Authorization", "Bearer a"));
+            writer.write(Map.of("X-Csrf", "c"));
+
+            SharedTokenFile.Contents contents = reader.read();
+            assertEquals(Map.of("Authorization", "Bearer a", "X-Csrf", "c"), contents.getTokens());
+            assertEquals(2, contents.getVersion());
+            assertEquals(before + 4, contents.getSequence());
+            assertEquals(contents.getSequence(), reader.getSequence());
+        }
+    }
+
+    @Test
+    public void deadWriterLeavesReadersOnTheLastGoodCopy() throws IOException {
+        Path path = dir.resolve("tokens");
+        try (SharedTokenFile reader = new SharedTokenFile(path, SIZE)) {
+            reader.write(Map.of("Authorization", "Bearer a"));
+            long good = reader.getSequence();
+
+            // Another process dies mid-write: odd sequence, half-written payload
+            long stuck = killWriterMidWrite(path);
+            assertEquals(good + 1, stuck);
+
+            long start = System.nanoTime();
+            SharedTokenFile.Contents contents = reader.read();
+            assertTrue(System.nanoTime() - start < 5_000_000_000L, "read() must not wedge on a dead writer");
+            assertNotNull(contents);
+            assertEquals(stuck, contents.getSequence());
+            assertEquals(Map.of("Authorization", "Bearer a"), contents.getTokens());
+        }
+    }
+
+    @Test
+    public void readerWithoutAGoodCopySeesNoTokensUntilRepaired() throws IOException {
+        Path path = dir.resolve("tokens");
+        try (SharedTokenFile first = new SharedTokenFile(path, SIZE)) {
+            first.write(Map.of("Authorization", "Bearer a"));
+        }
+        long stuck = killWriterMidWrite(path);
+
+        try (SharedTokenFile reader = new SharedTokenFile(path, SIZE)) {
+            SharedTokenFile.Contents torn = reader.read();
+            assertEquals(stuck, torn.getSequence());
+            assertEquals(Map.of(), torn.getTokens());
+
+            // The next writer completes the sequence and discards the torn payload
+            reader.write(Map.of("X-Csrf", "c"));
+            assertEquals(0, reader.getSequence() & 1);
+            assertEquals(stuck + 1, reader.getSequence());
+            assertEquals(Map.of("X-Csrf", "c"), reader.read().getTokens());
+        }
+    }
+
+    @Test
+    public void rejectsTokensThatDoNotFit() throws IOException {
+        try (SharedTokenFile file = new SharedTokenFile(dir.resolve("tokens"), 64)) {
+            assertThrows(IOException.class, () -> file.write(Map.of("Authorization", "x".repeat(100))));
+        }
+    }
+
+    @Test
+    public void rejectsFilesThatAreNotTokenFiles() throws IOException {
+        Path path = dir.resolve("other");
+        Files.write(path, new byte[SIZE]);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(java.nio.ByteBuffer.wrap("not a token file".getBytes()), 0);
+        }
+        assertThrows(IOException.class, () -> new SharedTokenFile(path, SIZE));
+    }
+
+    /**
+     * Does what a writer that crashes between the two sequence updates leaves behind.
+     *
+     * @return The odd sequence left in the file
+     */
+    private static long killWriterMidWrite(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, SIZE);
+            buffer.order(ByteOrder.nativeOrder());
+            long odd = buffer.getLong(SEQUENCE_OFFSET) + 1;
+            buffer.putLong(SEQUENCE_OFFSET, odd);
+            buffer.put(PAYLOAD_OFFSET, (byte) 0x7f);
+            buffer.force();
+            return odd;
+        }
+    }
+}
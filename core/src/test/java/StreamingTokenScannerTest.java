@@ -0,0 +1,84 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StreamingTokenScannerTest {
+
+    // The token sits 100 KiB into the body, past the scanner's first chunk
+    private static final String BODY = "{\"pad\": \"" + "x".repeat(100 * 1024) + "\", \"token\": \"abc\"}";
+
+    @Test
+    public void findsTokensInPlainAndCompressedBodies() throws IOException {
+        byte[] plain = BODY.getBytes(StandardCharsets.UTF_8);
+        assertEquals("abc", scan(plain, null, ScanWindow.WHOLE_BODY, "json:$.token"));
+        assertEquals("abc", scan(gzip(plain), "gzip", ScanWindow.WHOLE_BODY, "json:$.token"));
+        assertEquals("abc", scan(deflate(plain), "deflate", ScanWindow.WHOLE_BODY, "json:$.token"));
+        assertEquals("abc", scan(gzip(plain), "gzip", ScanWindow.WHOLE_BODY, "regex:\"token\": \"(\\w+)\""));
+    }
+
+    @Test
+    public void windowsBoundTheScannedBytes() throws IOException {
+        byte[] plain = BODY.getBytes(StandardCharsets.UTF_8);
+        String regex = "regex:\"token\": \"(\\w+)\"";
+        for (String encoding : new String[] {null, "gzip"}) {
+            byte[] body = encoding == null ? plain : gzip(plain);
+            assertNull(scan(body, encoding, new ScanWindow(64 * 1024, false), regex));
+            assertEquals("abc", scan(body, encoding, new ScanWindow(4096, true), regex));
+        }
+    }
+
+    @Test
+    public void alreadyDecodedBodiesAreScannedAsIs() throws IOException {
+        // Content-Encoding says gzip, but the body no longer starts with the gzip magic bytes
+        byte[] plain = BODY.getBytes(StandardCharsets.UTF_8);
+        assertFalse(StreamingTokenScanner.isCompressed("gzip", plain[0], plain[1]));
+        assertTrue(StreamingTokenScanner.isCompressed(" GZIP ", (byte) 0x1f, (byte) 0x8b));
+        assertEquals("abc", scan(plain, "gzip", ScanWindow.WHOLE_BODY, "json:$.token"));
+    }
+
+    @Test
+    public void scansOnlyTheGivenRegion() throws IOException {
+        byte[] framed = ("junk{\"token\": \"abc\"}junk").getBytes(StandardCharsets.UTF_8);
+        assertEquals("abc", StreamingTokenScanner.scan(framed, 4, framed.length - 8, null, ScanWindow.WHOLE_BODY,
+                TokenExtractors.compile("json:$.token").matcher()));
+    }
+
+    @Test
+    public void corruptCompressedBodiesFail() throws IOException {
+        byte[] body = gzip(BODY.getBytes(StandardCharsets.UTF_8));
+        byte[] truncated = Arrays.copyOf(body, body.length / 2);
+        assertThrows(IOException.class, () -> scan(truncated, "gzip", ScanWindow.WHOLE_BODY, "json:$.token"));
+    }
+
+    private static String scan(byte[] body, String encoding, ScanWindow window, String spec) throws IOException {
+        return StreamingTokenScanner.scan(body, 0, body.length, encoding, window,
+                TokenExtractors.compile(spec).matcher());
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflate = new DeflaterOutputStream(out)) {
+            deflate.write(data);
+        }
+        return out.toByteArray();
+    }
+}
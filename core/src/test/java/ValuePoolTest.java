@@ -0,0 +1,89 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ValuePoolTest {
+
+    @Test
+    public void roundRobinCyclesThroughTheValues() {
+        ValuePool pool = new ValuePool(List.of("a", "b", "c"), null, ValuePool.Selection.ROUND_ROBIN, 0, 1, 0);
+        assertEquals(List.of("a", "b", "c", "a", "b"), draw(pool, 5));
+    }
+
+    @Test
+    public void weightedScheduleIsSmooth() {
+        ValuePool pool = new ValuePool(List.of("a", "b", "c"), List.of(2, 1, 1), ValuePool.Selection.WEIGHTED, 0, 1, 0);
+        assertEquals(List.of("a", "b", "c", "a", "a", "b", "c", "a"), draw(pool, 8));
+    }
+
+    @Test
+    public void leastRecentlyUsedTakesTheOldestValue() {
+        ValuePool pool = new ValuePool(List.of("a", "b", "c"), null, ValuePool.Selection.LEAST_RECENTLY_USED, 0, 1, 0);
+        assertEquals(List.of("a", "b", "c", "a"), draw(pool, 4));
+    }
+
+    @Test
+    public void burstThenLimitedWithoutWaiting() {
+        ValuePool pool = new ValuePool(List.of("a"), null, ValuePool.Selection.ROUND_ROBIN, 1, 2, 0);
+        assertEquals("a", pool.next());
+        assertEquals("a", pool.next());
+        assertNull(pool.next());
+    }
+
+    @Test
+    public void limitedValueFallsOverToTheNextOne() {
+        ValuePool pool = new ValuePool(List.of("a", "b"), null, ValuePool.Selection.ROUND_ROBIN, 1, 1, 0);
+        assertEquals("a", pool.next());
+        assertEquals("b", pool.next());
+        assertNull(pool.next());
+    }
+
+    @Test
+    public void waitsForCapacityWithinTheMaximumWait() {
+        // 20 per second: the second request waits about 50 ms, well within the 250 ms allowed
+        ValuePool pool = new ValuePool(List.of("a"), null, ValuePool.Selection.ROUND_ROBIN, 20, 1, 250);
+        assertEquals("a", pool.next());
+        long start = System.nanoTime();
+        assertEquals("a", pool.next());
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(30));
+    }
+
+    @Test
+    public void parsesAndFormatsThePersistedForm() {
+        ValuePool pool = ValuePool.parse("k1\nk2", "ROUND_ROBIN", 1, 1, 0);
+        assertEquals(List.of("k1", "k2"), pool.getValues());
+        assertEquals("k1\nk2", pool.format());
+        assertEquals(List.of("k1", "k2"), draw(pool, 2));
+        assertNull(pool.next());
+
+        ValuePool weighted = ValuePool.parse("a\t3\nb", "WEIGHTED", 0, 1, ValuePool.MAX_WAIT_MILLIS * 2);
+        assertEquals(ValuePool.Selection.WEIGHTED, weighted.getSelection());
+        assertEquals(ValuePool.MAX_WAIT_MILLIS, weighted.getMaxWaitMillis());
+        assertTrue(weighted.hasSameSettings(ValuePool.parse(weighted.format(), "WEIGHTED", 0, 1, 5000)));
+    }
+
+    @Test
+    public void rejectsEmptyPoolsAndBadWeights() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ValuePool(List.of(), null, ValuePool.Selection.ROUND_ROBIN, 0, 1, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ValuePool(List.of("a"), List.of(0), ValuePool.Selection.WEIGHTED, 0, 1, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ValuePool(List.of("a"), List.of(101), ValuePool.Selection.WEIGHTED, 0, 1, 0));
+    }
+
+    private static List<String> draw(ValuePool pool, int count) {
+        List<String> drawn = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            drawn.add(pool.next());
+        }
+        return drawn;
+    }
+}
@@ -0,0 +1,45 @@
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class XxHash64Test {
+
+    @Test
+    public void matchesReferenceVectors() {
+        assertEquals(0xef46db3751d8e999L, hash("", 0));
+        assertEquals(0xd24ec4f1a98c6e5bL, hash("a", 0));
+        assertEquals(0x44bc2cf5ad770999L, hash("abc", 0));
+        assertNotEquals(hash("abc", 0), hash("abc", 1));
+    }
+
+    @Test
+    public void streamingMatchesOneShotForAnySplit() {
+        Random random = new Random(42);
+        for (int length : new int[] {0, 1, 3, 4, 7, 8, 31, 32, 33, 63, 64, 100, 1000, 70_000}) {
+            byte[] data = new byte[length + 10];
+            random.nextBytes(data);
+            long expected = XxHash64.hash(data, 5, length, 7);
+            for (int trial = 0; trial < 20; trial++) {
+                XxHash64.Hasher hasher = new XxHash64.Hasher(7);
+                int offset = 5;
+                int remaining = length;
+                while (remaining > 0) {
+                    int piece = Math.min(remaining, random.nextInt(40));
+                    hasher.update(data, offset, piece);
+                    offset += piece;
+                    remaining -= piece;
+                }
+                assertEquals(expected, hasher.digest(), "length " + length);
+            }
+        }
+    }
+
+    private static long hash(String text, long seed) {
+        byte[] data = text.getBytes(StandardCharsets.UTF_8);
+        return XxHash64.hash(data, 0, data.length, seed);
+    }
+}
@@ -0,0 +1,189 @@
+import burp.api.montoya.BurpExtension;
+import burp.api.montoya.MontoyaApi;
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.http.HttpService;
+import burp.api.montoya.http.message.HttpRequestResponse;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.persistence.Preferences;
+import burp.api.montoya.logging.Logging;
+import burp.api.montoya.ui.hotkey.HotKeyContext;
+
+import javax.swing.JPanel;
+import javax.swing.JTabbedPane;
+import java.awt.BorderLayout;
+import java.awt.event.HierarchyEvent;
+import java.awt.event.HierarchyListener;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Main extension class for AddCustomHeaderZ.
+ * This Burp Suite extension allows adding custom headers to HTTP requests,
+ * with support for dynamic values extracted from macro responses.
+ */
+public class AddCustomHeaderZ implements BurpExtension {
+    private MontoyaApi api;
+    private CustomHeadersConfig config;
+    private CustomHeadersEditor editor;
+    private Logging logging;
+
+    @Override
+    public void initialize(MontoyaApi api) {
+        long start = System.nanoTime();
+        this.api = api;
+        this.logging = api.logging();
+
+        // Set extension name
+        api.extension().setName("AddCustomHeaderZ");
+
+        // Log initialization
+        logging.logToOutput("[AddCustomHeaderZ] Extension loading...");
+        logging.raiseInfoEvent("AddCustomHeaderZ extension is initializing");
+
+        try {
+            // Initialize components
+            initializeComponents();
+            logging.logToOutput("[AddCustomHeaderZ] Extension loaded successfully in " +
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms with " +
+                    config.getHeaders().size() + " active rules");
+            logging.raiseInfoEvent("AddCustomHeaderZ extension loaded successfully");
+        } catch (Exception e) {
+            logging.logToError("[AddCustomHeaderZ] Error during initialization: " + e.getMessage());
+            logging.raiseErrorEvent("AddCustomHeaderZ failed to initialize: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Initializes all extension components. Rules are loaded straight into the
+     * request-path snapshot and the handlers registered before any Swing code runs;
+     * the tabs are only built when Burp first shows them.
+     */
+    private void initializeComponents() {
+        // Get preferences for persistent storage
+        Preferences preferences = api.persistence().preferences();
+
+        // Release everything registered below when Burp unloads the extension
+        CustomHeadersLifecycle lifecycle = new CustomHeadersLifecycle(logging);
+        api.extension().registerUnloadingHandler(() -> {
+            lifecycle.shutdown(CustomHeadersLifecycle.DEFAULT_TIMEOUT_MILLIS);
+            logging.logToOutput("[AddCustomHeaderZ] Extension unloaded");
+        });
+
+        // Load the rules into the rule repository; the editor publishes later edits to it
+        config = new CustomHeadersConfig();
+        CustomHeadersPreferences store = new CustomHeadersPreferences(preferences);
+        config.setEnabled(store.loadEnabled());
+        config.setHeaderPlacement(store.loadHeaderPlacement());
+        // Publishes the active profile's rules now and prepares the other profiles in the background
+        CustomHeadersProfiles profiles = new CustomHeadersProfiles(config, store, logging);
+        lifecycle.register("rule profiles", profiles);
+        RequestJournal journal = new RequestJournal(RequestJournal.DEFAULT_CAPACITY);
+        lifecycle.register("request journal", journal::clear);
+
+        // Reconnect to the shared token file before any request can read tokens
+        TokenStore tokens = new TokenStore();
+        CustomHeadersTokensPanel.restoreSharing(tokens, store, logging);
+
+        lifecycle.register("shared token file", () -> {
+            SharedTokenFile file = tokens.unshare();
+            if (file != null) {
+                file.close();
+            }
+        });
+
+        // Start the out-of-band token flows; they send through Burp so upstream proxies and TLS settings apply
+        TokenAcquisitionEngine flows = new TokenAcquisitionEngine(tokens, this::sendFlowRequest, logging::logToOutput);
+        flows.setFlows(store.loadFlows());
+        flows.setProvidedRulesListener(config::setFlowRules);
+        lifecycle.register("token flows", flows);
+
+        CustomHeadersInjector injector = new CustomHeadersInjector(config, logging);
+        CustomHeadersHandler handler = new CustomHeadersHandler(config, injector, tokens, journal, logging);
+
+        // Register the HTTP handler
+        api.http().registerHttpHandler(handler);
+        logging.logToOutput("[AddCustomHeaderZ] HTTP handler registered");
+
+        // Create and register the session handling action
+        CustomHeadersSessionAction sessionAction = new CustomHeadersSessionAction(config, injector, tokens, journal, logging);
+        api.http().registerSessionHandlingAction(sessionAction);
+        lifecycle.register("extraction cache", sessionAction::clearCache);
+        logging.logToOutput("[AddCustomHeaderZ] Session handling action registered");
+
+        // Register the WebSocket handler that shares the session action's tokens
+        api.websockets().registerWebSocketCreatedHandler(
+                new CustomHeadersWebSocketHandler(config, injector, tokens, logging));
+        logging.logToOutput("[AddCustomHeaderZ] WebSocket handler registered");
+
+        // Register an empty container now and fill it on the EDT the first time it is shown
+        JPanel container = new JPanel(new BorderLayout());
+        container.addHierarchyListener(new HierarchyListener() {
+            @Override
+            public void hierarchyChanged(HierarchyEvent e) {
+                if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0 && container.isShowing()) {
+                    container.removeHierarchyListener(this);
+                    container.add(createTabs(store, profiles, tokens, flows, journal, lifecycle), BorderLayout.CENTER);
+                    container.revalidate();
+                }
+            }
+        });
+        api.userInterface().registerSuiteTab("Custom HeaderZ", container);
+
+        // Cycle through the rule profiles without leaving Repeater or the proxy history
+        api.userInterface().registerHotKeyHandler(HotKeyContext.HTTP_MESSAGE_EDITOR, CustomHeadersProfiles.HOTKEY,
+                event -> profiles.next());
+        logging.logToOutput("[AddCustomHeaderZ] UI component registered");
+    }
+
+    /**
+     * Builds the extension's tabs. Called on the EDT.
+     *
+     * @param store     The preferences-backed store
+     * @param profiles  The rule set profiles edited in the Rules tab
+     * @param tokens    The dynamic values shown in the Tokens tab
+     * @param flows     The engine behind the Flows tab
+     * @param journal   The journal shown in the Journal tab
+     * @param lifecycle The lifecycle that stops the tabs' timers on unload
+     * @return The tabbed pane
+     */
+    private JTabbedPane createTabs(CustomHeadersPreferences store, CustomHeadersProfiles profiles, TokenStore tokens,
+                                   TokenAcquisitionEngine flows, RequestJournal journal,
+                                   CustomHeadersLifecycle lifecycle) {
+        long start = System.nanoTime();
+        JTabbedPane tabs = new JTabbedPane();
+        editor = new CustomHeadersEditor(config, profiles);
+        tabs.addTab("Rules", editor.getPanel());
+        CustomHeadersTokensPanel tokensPanel = new CustomHeadersTokensPanel(tokens, store, logging);
+        CustomHeadersFlowsPanel flowsPanel = new CustomHeadersFlowsPanel(flows, store, logging);
+        CustomHeadersJournalPanel journalPanel = new CustomHeadersJournalPanel(journal);
+        tabs.addTab("Tokens", tokensPanel.getPanel());
+        tabs.addTab("Flows", flowsPanel.getPanel());
+        tabs.addTab("Journal", journalPanel.getPanel());
+
+        // Swing timers keep firing (and keep the panels reachable) until stopped
+        lifecycle.register("tokens refresh timer", tokensPanel::dispose);
+        lifecycle.register("flows refresh timer", flowsPanel::dispose);
+        lifecycle.register("journal refresh timer", journalPanel::dispose);
+        logging.logToOutput("[AddCustomHeaderZ] UI built in " +
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        return tabs;
+    }
+
+    /**
+     * Sends a token flow's request through Burp. Called on the flow's virtual thread.
+     *
+     * @param flow    The flow whose endpoint is addressed
+     * @param request The raw request bytes
+     * @return The raw response bytes
+     * @throws IOException if Burp received no response
+     */
+    private byte[] sendFlowRequest(TokenFlow flow, byte[] request) throws IOException {
+        HttpService service = HttpService.httpService(flow.getHost(), flow.getPort(), flow.isSecure());
+        HttpRequestResponse result = api.http().sendRequest(HttpRequest.httpRequest(service, ByteArray.byteArray(request)));
+        if (result == null || !result.hasResponse()) {
+            throw new IOException("No response from " + flow.getUrl());
+        }
+        return result.response().toByteArray().getBytes();
+    }
+}
@@ -0,0 +1,1380 @@
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableCellRenderer;
+import java.awt.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import burp.api.montoya.core.ToolType;
+
+/**
+ * Custom headers configuration panel.
+ * Provides UI for adding, editing, and configuring custom HTTP headers
+ * with support for static and dynamic values. All interaction happens on the
+ * EDT; every edit is published to the {@link CustomHeadersConfig} rule
+ * repository as a new snapshot, which is all the request path ever reads.
+ * The table holds the rows of the active {@link CustomHeadersProfiles profile}
+ * and is reloaded when another profile is switched to.
+ */
+public class CustomHeadersEditor {
+
+    // Constants
+    private static final int MAX_HEADERS = 100;
+    // Imported files larger than this are not shown in the import dialog's text area
+    private static final int MAX_SHOWN_CHARS = 256 * 1024;
+    // Header placement choices, in the order of their spec prefixes
+    private static final String[] PLACEMENT_NAMES = {"Move replaced headers to the end",
+            "Keep order, add new headers last", "Keep order, add new headers first",
+            "Keep order, add new headers after", "Keep order, add new headers before"};
+    private static final String[] PLACEMENT_SPECS = {"move", "end", "start", "after:", "before:"};
+
+    // UI Components
+    private JPanel mainPanel;
+    private JTable headersTable;
+    private DefaultTableModel tableModel;
+    private JButton addButton;
+    private JButton removeButton;
+    private JButton saveButton;
+    private JButton importButton;
+    private JCheckBox enableHeadersCheckbox;
+    private JComboBox<String> placementCombo;
+    private JComboBox<String> profileCombo;
+    private JTextField anchorField;
+
+    // Data storage
+    private final CustomHeadersConfig config;
+    private final CustomHeadersProfiles profiles;
+    // The active profile's store and id; replaced when another profile is switched to
+    private CustomHeadersPreferences store;
+    private int profileId;
+    private final Map<String, Color> colorMap = new HashMap<>();
+    private final Map<Integer, Color> rowColors = new HashMap<>();
+
+    // Set while rows are added in bulk, so they are published as one snapshot
+    private boolean bulkUpdate;
+
+    /**
+     * Constructs a new CustomHeadersEditor. Must be called on the EDT, after the
+     * saved rules have been published to the config.
+     *
+     * @param config   The rule repository holding the global settings
+     * @param profiles The rule set profiles; the table edits the active one
+     */
+    public CustomHeadersEditor(CustomHeadersConfig config, CustomHeadersProfiles profiles) {
+        this.config = config;
+        this.profiles = profiles;
+        this.store = profiles.getActiveStore();
+        this.profileId = profiles.getActiveId();
+
+        // Initialize color map
+        initializeColorMap();
+
+        // Initialize UI components
+        initializeUI();
+
+        // Load saved headers from preferences; the extension has already published them
+        loadSavedHeaders();
+
+        // Publish every later edit to the request path. Registered after loading, so
+        // requests never see the partially filled table
+        headersTable.getModel().addTableModelListener(e -> {
+            if (!bulkUpdate) {
+                publishHeaders();
+            }
+        });
+        profiles.addListener(this::showActiveProfile);
+    }
+
+    /**
+     * Initializes the color map with predefined colors.
+     */
+    private void initializeColorMap() {
+        colorMap.put("None", null);
+        colorMap.put("Red", new Color(205, 3, 3));
+        colorMap.put("Green", new Color(15, 189, 15));
+        colorMap.put("Blue", new Color(16, 80, 200));
+        colorMap.put("Yellow", new Color(179, 130, 7));
+        colorMap.put("Orange", new Color(255, 152, 48));
+        colorMap.put("Purple", new Color(112, 24, 230));
+        colorMap.put("Pink", new Color(193, 17, 102));
+        colorMap.put("Teal", new Color(5, 184, 184));
+    }
+
+    /**
+     * Updates the help text in the pattern dialog based on the selected match type.
+     *
+     * @param helpText   The help text component to update
+     * @param isRegex    Whether regex mode is selected
+     * @param isPipeline Whether extractor pipeline mode is selected
+     */
+    private void updateHelpText(JTextArea helpText, boolean isRegex, boolean isPipeline) {
+        if (isPipeline) {
+            helpText.setText("Extractor stages separated by |, each run on the previous stage's output. Types: " +
+                    String.join(", ", TokenExtractors.getTypeNames()) + ". Example: json:/data/id_token | jwt:sub");
+        } else if (isRegex) {
+            helpText.setText("Regex pattern to extract value from the macro's responses. Use capturing groups () " +
+                    "for precise extraction. Example: Authorization:\\s*Bearer\\s+([\\w.-]+). Rules with the same " +
+                    "pattern share one scan; name a group, e.g. (?<csrf>...), to read a different value per rule.");
+        } else {
+            helpText.setText("Simple string to search for in the macro's responses. The value immediately " +
+                    "following this string will be used. Example: \"access_token\":\"");
+        }
+    }
+
+    /**
+     * Initializes all UI components.
+     */
+    private void initializeUI() {
+        mainPanel = new JPanel(new BorderLayout());
+
+        // Create top panel with checkbox
+        JPanel topPanel = createTopPanel();
+
+        // Create table for headers
+        JScrollPane tableScrollPane = createHeadersTable();
+
+        // Create the button panel
+        JPanel buttonPanel = createButtonPanel();
+
+        // Assemble the main panel
+        mainPanel.add(topPanel, BorderLayout.NORTH);
+        mainPanel.add(tableScrollPane, BorderLayout.CENTER);
+        mainPanel.add(buttonPanel, BorderLayout.SOUTH);
+
+        // Set border and size
+        mainPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+    }
+
+    /**
+     * Creates and returns the top panel with enable checkbox and header placement.
+     *
+     * @return The configured top panel
+     */
+    private JPanel createTopPanel() {
+        JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        enableHeadersCheckbox = new JCheckBox("Enable Custom Headers", true);
+
+        // Load enabled state from preferences
+        enableHeadersCheckbox.setSelected(store.loadEnabled());
+        config.setEnabled(enableHeadersCheckbox.isSelected());
+
+        // Add listener to save and publish state changes
+        enableHeadersCheckbox.addActionListener(e -> {
+            store.saveEnabled(enableHeadersCheckbox.isSelected());
+            config.setEnabled(enableHeadersCheckbox.isSelected());
+        });
+
+        topPanel.add(enableHeadersCheckbox);
+
+        // Header placement; the anchor field only applies to the after and before choices
+        placementCombo = new JComboBox<>(PLACEMENT_NAMES);
+        anchorField = new JTextField(12);
+        String spec = config.getHeaderPlacement().toSpec();
+        for (int i = 0; i < PLACEMENT_SPECS.length; i++) {
+            if (spec.startsWith(PLACEMENT_SPECS[i])) {
+                placementCombo.setSelectedIndex(i);
+                anchorField.setText(spec.substring(PLACEMENT_SPECS[i].length()));
+            }
+        }
+        anchorField.setEnabled(PLACEMENT_SPECS[placementCombo.getSelectedIndex()].endsWith(":"));
+        placementCombo.setToolTipText("Moving replaced headers to the end matches Burp's own editing. Keeping " +
+                "the order patches existing headers at their position and rebuilds the request only when a value " +
+                "changes; new header names are lowercased in HTTP/2 requests.");
+        placementCombo.addActionListener(e -> publishPlacement());
+        anchorField.addActionListener(e -> publishPlacement());
+        anchorField.addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                publishPlacement();
+            }
+        });
+
+        // Rule set profiles; switching applies a profile prepared in the background
+        profileCombo = new JComboBox<>();
+        profileCombo.setToolTipText("Switch rule sets between targets. " + CustomHeadersProfiles.HOTKEY +
+                " in any message editor switches to the next profile. Edits are saved shortly after you stop editing.");
+        refreshProfileCombo();
+        profileCombo.addActionListener(e -> {
+            int index = profileCombo.getSelectedIndex();
+            if (index >= 0 && index != profiles.getActiveIndex()) {
+                profiles.switchTo(index);
+            }
+        });
+        JButton newProfileButton = new JButton("New Profile...");
+        JButton renameProfileButton = new JButton("Rename...");
+        JButton deleteProfileButton = new JButton("Delete Profile");
+        newProfileButton.addActionListener(e -> newProfile());
+        renameProfileButton.addActionListener(e -> renameProfile());
+        deleteProfileButton.addActionListener(e -> deleteProfile());
+
+        topPanel.add(new JLabel("Profile:"));
+        topPanel.add(profileCombo);
+        topPanel.add(newProfileButton);
+        topPanel.add(renameProfileButton);
+        topPanel.add(deleteProfileButton);
+        topPanel.add(new JLabel("Header order:"));
+        topPanel.add(placementCombo);
+        topPanel.add(anchorField);
+        return topPanel;
+    }
+
+    /**
+     * Shows a dialog for a new profile, optionally starting from the current rows.
+     */
+    private void newProfile() {
+        JTextField nameField = new JTextField(20);
+        JCheckBox copyCheckbox = new JCheckBox("Start with a copy of the current rules", true);
+
+        JPanel fieldsPanel = new JPanel(new GridLayout(0, 1, 5, 5));
+        fieldsPanel.add(new JLabel("Profile name:"));
+        fieldsPanel.add(nameField);
+        fieldsPanel.add(copyCheckbox);
+
+        int result = JOptionPane.showConfirmDialog(
+                mainPanel,
+                fieldsPanel,
+                "New Rule Profile",
+                JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.PLAIN_MESSAGE);
+        if (result != JOptionPane.OK_OPTION) {
+            return;
+        }
+        try {
+            profiles.add(nameField.getText(), copyCheckbox.isSelected() ? collectHeaders() : null);
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(mainPanel, e.getMessage(), "Invalid Profile", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * Renames the active profile.
+     */
+    private void renameProfile() {
+        int index = profiles.getActiveIndex();
+        String name = (String) JOptionPane.showInputDialog(mainPanel, "Profile name:", "Rename Rule Profile",
+                JOptionPane.PLAIN_MESSAGE, null, null, profiles.getNames().get(index));
+        if (name == null) {
+            return;
+        }
+        try {
+            profiles.rename(index, name);
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(mainPanel, e.getMessage(), "Invalid Profile", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * Deletes the active profile and its saved rows after confirmation.
+     */
+    private void deleteProfile() {
+        int index = profiles.getActiveIndex();
+        int result = JOptionPane.showConfirmDialog(mainPanel,
+                "Delete profile '" + profiles.getNames().get(index) + "' and all of its rules?",
+                "Delete Rule Profile", JOptionPane.OK_CANCEL_OPTION, JOptionPane.WARNING_MESSAGE);
+        if (result != JOptionPane.OK_OPTION) {
+            return;
+        }
+        try {
+            profiles.remove(index);
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(mainPanel, e.getMessage(), "Delete Rule Profile", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * Reloads the table after a profile switch or a change to the profile list.
+     */
+    private void showActiveProfile() {
+        refreshProfileCombo();
+        if (profiles.getActiveId() == profileId) {
+            return;
+        }
+        store = profiles.getActiveStore();
+        profileId = profiles.getActiveId();
+        // The profile's rules are already published; reloading the table must not publish them again
+        bulkUpdate = true;
+        try {
+            loadSavedHeaders();
+        } finally {
+            bulkUpdate = false;
+        }
+        headersTable.repaint();
+    }
+
+    private void refreshProfileCombo() {
+        List<String> names = profiles.getNames();
+        ActionListener[] actionListeners = profileCombo.getActionListeners();
+        for (ActionListener listener : actionListeners) {
+            profileCombo.removeActionListener(listener);
+        }
+        profileCombo.removeAllItems();
+        for (String name : names) {
+            profileCombo.addItem(name);
+        }
+        profileCombo.setSelectedIndex(profiles.getActiveIndex());
+        for (ActionListener listener : actionListeners) {
+            profileCombo.addActionListener(listener);
+        }
+    }
+
+    /**
+     * Saves and publishes the header placement chosen in the top panel. An after or
+     * before choice waits for a header name before it is published.
+     */
+    private void publishPlacement() {
+        String prefix = PLACEMENT_SPECS[placementCombo.getSelectedIndex()];
+        boolean anchored = prefix.endsWith(":");
+        anchorField.setEnabled(anchored);
+        HeaderPlacement placement;
+        try {
+            placement = HeaderPlacement.parse(anchored ? prefix + anchorField.getText().trim() : prefix);
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        if (!placement.toSpec().equals(config.getHeaderPlacement().toSpec())) {
+            store.saveHeaderPlacement(placement);
+            config.setHeaderPlacement(placement);
+        }
+    }
+
+    /**
+     * Creates the headers table and returns it in a scroll pane.
+     *
+     * @return ScrollPane containing the headers table
+     */
+    private JScrollPane createHeadersTable() {
+        // Create table model with column definitions
+        String[] columnNames = {"Header Name", "Header Value", "Enabled", "Dynamic"};
+        tableModel = new DefaultTableModel(columnNames, 0) {
+            @Override
+            public Class<?> getColumnClass(int column) {
+                return column == 2 || column == 3 ? Boolean.class : String.class;
+            }
+
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                // Make the Value column non-editable if Dynamic is checked
+                if (column == 1) {
+                    Boolean isDynamic = (Boolean) getValueAt(row, 3);
+                    return !isDynamic;
+                }
+                return true;
+            }
+        };
+
+        // Create and configure the table
+        headersTable = new JTable(tableModel);
+        headersTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        headersTable.getColumnModel().getColumn(0).setPreferredWidth(150);
+        headersTable.getColumnModel().getColumn(1).setPreferredWidth(300);
+        headersTable.getColumnModel().getColumn(2).setPreferredWidth(60);
+        headersTable.getColumnModel().getColumn(3).setPreferredWidth(60);
+
+        // Configure custom renderers for normal and boolean cells
+        configureTableRenderers();
+
+        // Add listener for Dynamic checkbox
+        configureTableModelListener();
+
+        // Create and configure popup menu
+        JPopupMenu popupMenu = createPopupMenu();
+        addPopupMenuMouseListener(popupMenu);
+
+        // Create and return a scroll pane containing the table
+        JScrollPane scrollPane = new JScrollPane(headersTable);
+        scrollPane.setPreferredSize(new Dimension(600, 300));
+        return scrollPane;
+    }
+
+    /**
+     * Configures custom cell renderers for the table.
+     */
+    private void configureTableRenderers() {
+        // Create a custom cell renderer to show row colors for normal cells
+        TableCellRenderer defaultRenderer = headersTable.getDefaultRenderer(Object.class);
+        headersTable.setDefaultRenderer(Object.class, new TableCellRenderer() {
+            @Override
+            public Component getTableCellRendererComponent(JTable table, Object value,
+                                                           boolean isSelected, boolean hasFocus,
+                                                           int row, int column) {
+                Component c = defaultRenderer.getTableCellRendererComponent(
+                        table, value, isSelected, hasFocus, row, column);
+
+                // Gray out the value cell if Dynamic is checked
+                if (column == 1 && row < tableModel.getRowCount()) {
+                    Boolean isDynamic = (Boolean) tableModel.getValueAt(row, 3);
+                    if (isDynamic) {
+                        c.setForeground(Color.GRAY);
+                        if (c instanceof JComponent) {
+                            ((JComponent) c).setToolTipText("Value will be extracted dynamically");
+                        }
+                    } else {
+                        c.setForeground(table.getForeground());
+                    }
+                }
+
+                // Apply row colors
+                applyRowColor(c, table, isSelected, row);
+                return c;
+            }
+        });
+
+        // Custom renderer for boolean cells (checkbox columns)
+        TableCellRenderer booleanRenderer = headersTable.getDefaultRenderer(Boolean.class);
+        headersTable.setDefaultRenderer(Boolean.class, new TableCellRenderer() {
+            @Override
+            public Component getTableCellRendererComponent(JTable table, Object value,
+                                                           boolean isSelected, boolean hasFocus,
+                                                           int row, int column) {
+                Component c = booleanRenderer.getTableCellRendererComponent(
+                        table, value, isSelected, hasFocus, row, column);
+
+                // Apply row colors
+                applyRowColor(c, table, isSelected, row);
+
+                // Add tooltip for Dynamic checkbox
+                if (column == 3 && c instanceof JComponent) {
+                    ((JComponent) c).setToolTipText("Extract value from macro response");
+                }
+
+                return c;
+            }
+        });
+    }
+
+    /**
+     * Applies row color to a component if defined.
+     *
+     * @param c The component to apply color to
+     * @param table The table containing the component
+     * @param isSelected Whether the component is selected
+     * @param row The row index
+     */
+    private void applyRowColor(Component c, JTable table, boolean isSelected, int row) {
+        if (!isSelected && rowColors.containsKey(row)) {
+            c.setBackground(rowColors.get(row));
+        } else if (isSelected) {
+            c.setBackground(table.getSelectionBackground());
+        } else {
+            c.setBackground(table.getBackground());
+        }
+    }
+
+    /**
+     * Configures the table model listener for dynamic checkbox interaction.
+     */
+    private void configureTableModelListener() {
+        headersTable.getModel().addTableModelListener(e -> {
+            if (e.getColumn() == 3) {  // Dynamic column
+                int row = e.getFirstRow();
+                boolean isDynamic = (Boolean) tableModel.getValueAt(row, 3);
+
+                if (isDynamic) {
+                    // If dynamic is checked, store the current value as a placeholder
+                    String currentValue = (String) tableModel.getValueAt(row, 1);
+                    store.setDynamicPlaceholder(row, currentValue);
+
+                    // Set to a placeholder value
+                    tableModel.setValueAt("Dynamic", row, 1);
+                } else {
+                    // If dynamic is unchecked, restore the placeholder value if available
+                    String placeholder = store.getDynamicPlaceholder(row);
+                    if (placeholder != null) {
+                        tableModel.setValueAt(placeholder, row, 1);
+                    }
+                }
+
+                // Repaint to show UI changes
+                headersTable.repaint();
+            }
+        });
+    }
+
+    /**
+     * Creates and configures the popup menu for right-click actions.
+     *
+     * @return The configured popup menu
+     */
+    private JPopupMenu createPopupMenu() {
+        JPopupMenu popupMenu = new JPopupMenu();
+
+        // Add color menu
+        JMenu colorMenu = new JMenu("Set Row Color");
+        for (Map.Entry<String, Color> entry : colorMap.entrySet()) {
+            JMenuItem colorItem = createColorMenuItem(entry.getKey(), entry.getValue());
+            colorMenu.add(colorItem);
+        }
+        popupMenu.add(colorMenu);
+
+        // Add extraction pattern menu item
+        JMenuItem patternItem = new JMenuItem("Set Extraction Pattern...");
+        patternItem.addActionListener(e -> showExtractionPatternDialog());
+        popupMenu.add(patternItem);
+
+        // Add injection target menu item
+        JMenuItem targetItem = new JMenuItem("Set Injection Target...");
+        targetItem.addActionListener(e -> showInjectionTargetDialog());
+        popupMenu.add(targetItem);
+
+        // Add tool scope menu item
+        JMenuItem toolsItem = new JMenuItem("Set Tool Scope...");
+        toolsItem.addActionListener(e -> showToolScopeDialog());
+        popupMenu.add(toolsItem);
+
+        // Add conditions menu item
+        JMenuItem conditionItem = new JMenuItem("Set Conditions...");
+        conditionItem.addActionListener(e -> showConditionDialog());
+        popupMenu.add(conditionItem);
+
+        // Add value pool menu item
+        JMenuItem poolItem = new JMenuItem("Set Value Pool...");
+        poolItem.addActionListener(e -> showValuePoolDialog());
+        popupMenu.add(poolItem);
+
+        // Add derivation menu item
+        JMenuItem deriveItem = new JMenuItem("Set Derivation...");
+        deriveItem.addActionListener(e -> showDerivationDialog());
+        popupMenu.add(deriveItem);
+
+        return popupMenu;
+    }
+
+    /**
+     * Creates a color menu item.
+     *
+     * @param colorName The name of the color
+     * @param color The color value
+     * @return The configured menu item
+     */
+    private JMenuItem createColorMenuItem(String colorName, Color color) {
+        JMenuItem colorItem = new JMenuItem(colorName);
+        // Set background color for the menu item itself to provide visual cue
+        if (color != null) {
+            colorItem.setBackground(color);
+        }
+
+        colorItem.addActionListener(e -> {
+            int selectedRow = headersTable.getSelectedRow();
+            if (selectedRow != -1) {
+                if ("None".equals(colorName)) {
+                    rowColors.remove(selectedRow);
+                } else {
+                    rowColors.put(selectedRow, color);
+                }
+                // Save row color to preferences
+                store.setColorName(selectedRow, colorName);
+                publishHeaders();
+                // Repaint the table to show the new color
+                headersTable.repaint();
+            }
+        });
+
+        return colorItem;
+    }
+
+    /**
+     * Adds a mouse listener to show the popup menu on right-click.
+     *
+     * @param popupMenu The popup menu to show
+     */
+    private void addPopupMenuMouseListener(JPopupMenu popupMenu) {
+        headersTable.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                handlePopupTrigger(e, popupMenu);
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                handlePopupTrigger(e, popupMenu);
+            }
+        });
+    }
+
+    /**
+     * Handles popup trigger events.
+     *
+     * @param e The mouse event
+     * @param popupMenu The popup menu to show
+     */
+    private void handlePopupTrigger(MouseEvent e, JPopupMenu popupMenu) {
+        if (e.isPopupTrigger() || e.getButton() == MouseEvent.BUTTON3) {
+            int row = headersTable.rowAtPoint(e.getPoint());
+            if (row >= 0 && row < headersTable.getRowCount()) {
+                headersTable.setRowSelectionInterval(row, row);
+                popupMenu.show(e.getComponent(), e.getX(), e.getY());
+            }
+        }
+    }
+
+    /**
+     * Shows the extraction pattern configuration dialog.
+     */
+    private void showExtractionPatternDialog() {
+        int selectedRow = headersTable.getSelectedRow();
+        if (selectedRow == -1) {
+            return;
+        }
+
+        Boolean isDynamic = (Boolean) tableModel.getValueAt(selectedRow, 3);
+        if (!isDynamic) {
+            JOptionPane.showMessageDialog(
+                    mainPanel,
+                    "Please check the 'Dynamic' option first to enable extraction.",
+                    "Dynamic Extraction",
+                    JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        // Get current configuration
+        String currentPattern = store.getSavedPattern(selectedRow);
+        boolean isPipeline = store.isPipelineExtraction(selectedRow);
+        boolean isRegex = !isPipeline && store.isRegexExtraction(selectedRow);
+
+        // Create dialog for pattern settings
+        JPanel dialogPanel = new JPanel(new BorderLayout(0, 10));
+
+        // Add radio buttons for match type
+        JPanel radioPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        ButtonGroup group = new ButtonGroup();
+        JRadioButton regexButton = new JRadioButton("Regex Pattern", isRegex);
+        JRadioButton stringButton = new JRadioButton("Simple String", !isRegex && !isPipeline);
+        JRadioButton pipelineButton = new JRadioButton("Extractor Pipeline", isPipeline);
+        group.add(regexButton);
+        group.add(stringButton);
+        group.add(pipelineButton);
+        radioPanel.add(regexButton);
+        radioPanel.add(stringButton);
+        radioPanel.add(pipelineButton);
+
+        // Add text field for pattern
+        JTextField patternField = new JTextField(30);
+        patternField.setText(currentPattern != null ? currentPattern :
+                (isRegex ? CustomHeadersConfig.DEFAULT_REGEX : ""));
+
+        // Add help text
+        JTextArea helpText = new JTextArea(4, 30);
+        helpText.setEditable(false);
+        helpText.setLineWrap(true);
+        helpText.setWrapStyleWord(true);
+        helpText.setBackground(new Color(240, 240, 240));
+        updateHelpText(helpText, regexButton.isSelected(), pipelineButton.isSelected());
+
+        // Add capture controls, which only apply to regex patterns
+        JPanel capturePanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        JTextField groupField = new JTextField(store.getCaptureGroup(selectedRow), 8);
+        JComboBox<MatchAggregation> aggregationCombo = new JComboBox<>(MatchAggregation.values());
+        aggregationCombo.setSelectedItem(store.getAggregation(selectedRow));
+        groupField.setEnabled(isRegex);
+        aggregationCombo.setEnabled(isRegex);
+        capturePanel.add(new JLabel("Group:"));
+        capturePanel.add(groupField);
+        capturePanel.add(new JLabel("Use:"));
+        capturePanel.add(aggregationCombo);
+
+        // Add listener to update help text
+        regexButton.addActionListener(radioEvent -> {
+            updateHelpText(helpText, true, false);
+            groupField.setEnabled(true);
+            aggregationCombo.setEnabled(true);
+        });
+        stringButton.addActionListener(radioEvent -> {
+            updateHelpText(helpText, false, false);
+            groupField.setEnabled(false);
+            aggregationCombo.setEnabled(false);
+        });
+        pipelineButton.addActionListener(radioEvent -> {
+            updateHelpText(helpText, false, true);
+            groupField.setEnabled(false);
+            aggregationCombo.setEnabled(false);
+        });
+
+        // Add scan window controls
+        ScanWindow currentWindow = store.getScanWindow(selectedRow);
+        JPanel windowPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        JComboBox<String> windowCombo = new JComboBox<>(new String[]{"Whole body", "First", "Last"});
+        windowCombo.setSelectedIndex(currentWindow.isWholeBody() ? 0 : (currentWindow.isFromTail() ? 2 : 1));
+        JSpinner sizeSpinner = new JSpinner(new SpinnerNumberModel(
+                currentWindow.isWholeBody() ? 64 : Math.max(1, currentWindow.getMaxBytes() / 1024), 1, 1024 * 1024, 16));
+        sizeSpinner.setEnabled(windowCombo.getSelectedIndex() != 0);
+        windowCombo.addActionListener(comboEvent -> sizeSpinner.setEnabled(windowCombo.getSelectedIndex() != 0));
+        windowPanel.add(new JLabel("Scan:"));
+        windowPanel.add(windowCombo);
+        windowPanel.add(sizeSpinner);
+        windowPanel.add(new JLabel("KB of the response body"));
+
+        JPanel centerPanel = new JPanel(new BorderLayout(0, 5));
+        centerPanel.add(patternField, BorderLayout.NORTH);
+        centerPanel.add(capturePanel, BorderLayout.CENTER);
+        centerPanel.add(windowPanel, BorderLayout.SOUTH);
+
+        // Assemble dialog
+        dialogPanel.add(radioPanel, BorderLayout.NORTH);
+        dialogPanel.add(centerPanel, BorderLayout.CENTER);
+        dialogPanel.add(helpText, BorderLayout.SOUTH);
+
+        // Show dialog
+        int result = JOptionPane.showConfirmDialog(
+                mainPanel,
+                dialogPanel,
+                "Extraction Pattern",
+                JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.PLAIN_MESSAGE);
+
+        if (result == JOptionPane.OK_OPTION) {
+            String pattern = patternField.getText();
+            if (pattern != null && !pattern.trim().isEmpty()) {
+                if (pipelineButton.isSelected()) {
+                    // Compile now so a typo is reported here rather than on the next macro run
+                    try {
+                        TokenExtractors.compile(pattern);
+                    } catch (IllegalArgumentException e) {
+                        JOptionPane.showMessageDialog(mainPanel, e.getMessage(), "Invalid Extractor",
+                                JOptionPane.ERROR_MESSAGE);
+                        return;
+                    }
+                    store.setPipeline(selectedRow, pattern);
+                } else if (regexButton.isSelected()) {
+                    // Check the group against the pattern now rather than on the next macro run
+                    try {
+                        TokenExtraction.groupIndex(TokenExtraction.compile(pattern), groupField.getText().trim());
+                    } catch (IllegalArgumentException e) {
+                        JOptionPane.showMessageDialog(mainPanel, e.getMessage(), "Invalid Pattern",
+                                JOptionPane.ERROR_MESSAGE);
+                        return;
+                    }
+                    store.setPattern(selectedRow, pattern, true);
+                    store.setCapture(selectedRow, groupField.getText(),
+                            (MatchAggregation) aggregationCombo.getSelectedItem());
+                } else {
+                    store.setPattern(selectedRow, pattern, false);
+                }
+                int windowMode = windowCombo.getSelectedIndex();
+                store.setScanWindow(selectedRow, windowMode == 0 ? ScanWindow.WHOLE_BODY :
+                        new ScanWindow((Integer) sizeSpinner.getValue() * 1024, windowMode == 2));
+                publishHeaders();
+            }
+        }
+    }
+
+    /**
+     * Shows the injection target configuration dialog.
+     */
+    private void showInjectionTargetDialog() {
+        int selectedRow = headersTable.getSelectedRow();
+        if (selectedRow == -1) {
+            return;
+        }
+
+        // Create dialog for target settings
+        JPanel dialogPanel = new JPanel(new BorderLayout(0, 10));
+        JComboBox<InjectionTarget> targetCombo = new JComboBox<>(InjectionTarget.values());
+        targetCombo.setSelectedItem(store.getInjectionTarget(selectedRow));
+
+        // Add help text
+        JTextArea helpText = new JTextArea(4, 30);
+        helpText.setEditable(false);
+        helpText.setLineWrap(true);
+        helpText.setWrapStyleWord(true);
+        helpText.setBackground(new Color(240, 240, 240));
+        helpText.setText("The Header Name column is used as the parameter name, cookie name or " +
+                "JSON Pointer for non-header targets. Example JSON Pointer: /data/csrf_token. " +
+                "WebSocket Message targets patch outgoing JSON text frames. Response Header sets a header on " +
+                "responses; Strip Response Header removes it, or only values containing the Header Value.");
+
+        dialogPanel.add(targetCombo, BorderLayout.NORTH);
+        dialogPanel.add(helpText, BorderLayout.SOUTH);
+
+        int result = JOptionPane.showConfirmDialog(
+                mainPanel,
+                dialogPanel,
+                "Injection Target",
+                JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.PLAIN_MESSAGE);
+
+        if (result == JOptionPane.OK_OPTION) {
+            InjectionTarget target = (InjectionTarget) targetCombo.getSelectedItem();
+            store.setInjectionTarget(selectedRow, target);
+            publishHeaders();
+        }
+    }
+
+    /**
+     * Shows the tool scope configuration dialog.
+     */
+    private void showToolScopeDialog() {
+        int selectedRow = headersTable.getSelectedRow();
+        if (selectedRow == -1) {
+            return;
+        }
+
+        // Create one checkbox per Burp tool
+        Set<ToolType> selected = ToolScope.toSet(store.getToolMask(selectedRow));
+        JPanel checkboxPanel = new JPanel(new GridLayout(0, 3));
+        Map<ToolType, JCheckBox> checkboxes = new EnumMap<>(ToolType.class);
+        for (ToolType tool : ToolType.values()) {
+            JCheckBox checkbox = new JCheckBox(tool.toolName(), selected.contains(tool));
+            checkboxes.put(tool, checkbox);
+            checkboxPanel.add(checkbox);
+        }
+
+        // Add help text
+        JTextArea helpText = new JTextArea(3, 30);
+        helpText.setEditable(false);
+        helpText.setLineWrap(true);
+        helpText.setWrapStyleWord(true);
+        helpText.setBackground(new Color(240, 240, 240));
+        helpText.setText("Static values are only added to traffic from the selected tools. " +
+                "Dynamic values follow the tool scope of the Burp session handling rule that runs the macro.");
+
+        JPanel dialogPanel = new JPanel(new BorderLayout(0, 10));
+        dialogPanel.add(checkboxPanel, BorderLayout.CENTER);
+        dialogPanel.add(helpText, BorderLayout.SOUTH);
+
+        int result = JOptionPane.showConfirmDialog(
+                mainPanel,
+                dialogPanel,
+                "Tool Scope",
+                JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.PLAIN_MESSAGE);
+
+        if (result == JOptionPane.OK_OPTION) {
+            Set<ToolType> tools = EnumSet.noneOf(ToolType.class);
+            for (Map.Entry<ToolType, JCheckBox> entry : checkboxes.entrySet()) {
+                if (entry.getValue().isSelected()) {
+                    tools.add(entry.getKey());
+                }
+            }
+            store.setToolMask(selectedRow, ToolScope.toMask(tools));
+            publishHeaders();
+        }
+    }
+
+    /**
+     * Shows the request condition configuration dialog.
+     */
+    private void showConditionDialog() {
+        int selectedRow = headersTable.getSelectedRow();
+        if (selectedRow == -1) {
+            return;
+        }
+
+        // Create one field per condition
+        RuleCondition current = store.getCondition(selectedRow);
+        JTextField methodsField = new JTextField(current.getMethods(), 20);
+        JTextField typeField = new JTextField(current.getContentType(), 20);
+        JTextField urlField = new JTextField(current.getUrlRegex(), 20);
+        JTextField bodyField = new JTextField(current.getBodyLiteral(), 20);
+
+        JPanel fieldsPanel = new JPanel(new GridLayout(0, 2, 5, 5));
+        fieldsPanel.add(new JLabel("Methods:"));
+        fieldsPanel.add(methodsField);
+        fieldsPanel.add(new JLabel("Content-Type contains:"));
+        fieldsPanel.add(typeField);
+        fieldsPanel.add(new JLabel("URL regex:"));
+        fieldsPanel.add(urlField);
+        fieldsPanel.add(new JLabel("Body contains:"));
+        fieldsPanel.add(bodyField);
+
+        // Add help text
+        JTextArea helpText = new JTextArea(4, 30);
+        helpText.setEditable(false);
+        helpText.setLineWrap(true);
+        helpText.setWrapStyleWord(true);
+        helpText.setBackground(new Color(240, 240, 240));
+        helpText.setText("The rule is only applied to requests meeting every filled-in condition, e.g. methods " +
+                "POST, PUT, DELETE with content type json. Conditions are checked in this order and stop at the " +
+                "first mismatch, so the body is only searched when the cheaper checks pass. Leave all empty to apply always.");
+
+        JPanel dialogPanel = new JPanel(new BorderLayout(0, 10));
+        dialogPanel.add(fieldsPanel, BorderLayout.CENTER);
+        dialogPanel.add(helpText, BorderLayout.SOUTH);
+
+        int result = JOptionPane.showConfirmDialog(
+                mainPanel,
+                dialogPanel,
+                "Rule Conditions",
+                JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.PLAIN_MESSAGE);
+
+        if (result == JOptionPane.OK_OPTION) {
+            RuleCondition condition;
+            try {
+                condition = RuleCondition.of(methodsField.getText(), typeField.getText(),
+                        urlField.getText(), bodyField.getText());
+            } catch (IllegalArgumentException e) {
+                JOptionPane.showMessageDialog(mainPanel, "Invalid URL regex:\n" + e.getMessage(),
+                        "Invalid Conditions", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            store.setCondition(selectedRow, condition);
+            publishHeaders();
+        }
+    }
+
+    /**
+     * Shows the value pool configuration dialog.
+     */
+    private void showValuePoolDialog() {
+        int selectedRow = headersTable.getSelectedRow();
+        if (selectedRow == -1) {
+            return;
+        }
+
+        // Create fields for the pool settings
+        ValuePool current = store.getPool(selectedRow);
+        JTextArea valuesArea = new JTextArea(current != null ? current.format() : "", 6, 40);
+        JComboBox<ValuePool.Selection> selectionCombo = new JComboBox<>(ValuePool.Selection.values());
+        selectionCombo.setSelectedItem(current != null ? current.getSelection() : ValuePool.Selection.ROUND_ROBIN);
+        JSpinner rateSpinner = new JSpinner(new SpinnerNumberModel(
+                current != null ? current.getRatePerSecond() : 0.0, 0.0, 10000.0, 0.5));
+        JSpinner burstSpinner = new JSpinner(new SpinnerNumberModel(
+                current != null ? current.getBurst() : 1, 1, 1000, 1));
+        JSpinner waitSpinner = new JSpinner(new SpinnerNumberModel(
+                current != null ? current.getMaxWaitMillis() : ValuePool.DEFAULT_MAX_WAIT_MILLIS,
+                0, ValuePool.MAX_WAIT_MILLIS, 50));
+
+        JPanel fieldsPanel = new JPanel(new GridLayout(0, 2, 5, 5));
+        fieldsPanel.add(new JLabel("Selection:"));
+        fieldsPanel.add(selectionCombo);
+        fieldsPanel.add(new JLabel("Requests per second per value (0 = unlimited):"));
+        fieldsPanel.add(rateSpinner);
+        fieldsPanel.add(new JLabel("Burst:"));
+        fieldsPanel.add(burstSpinner);
+        fieldsPanel.add(new JLabel("Max wait for a free value (ms):"));
+        fieldsPanel.add(waitSpinner);
+
+        // Add help text
+        JTextArea helpText = new JTextArea(4, 30);
+        helpText.setEditable(false);
+        helpText.setLineWrap(true);
+        helpText.setWrapStyleWord(true);
+        helpText.setBackground(new Color(240, 240, 240));
+        helpText.setText("One value per line, optionally followed by a tab and a weight for weighted selection. " +
+                "Each request takes the next value. When every value has reached its rate, the request " +
+                "waits up to the max wait for one to free up, holding up the tool that sends it (in the " +
+                "Proxy, the browser), and is then sent without this rule. Clear the list to send the " +
+                "Header Value column again.");
+
+        JPanel dialogPanel = new JPanel(new BorderLayout(0, 10));
+        dialogPanel.add(new JScrollPane(valuesArea), BorderLayout.NORTH);
+        dialogPanel.add(fieldsPanel, BorderLayout.CENTER);
+        dialogPanel.add(helpText, BorderLayout.SOUTH);
+
+        int result = JOptionPane.showConfirmDialog(
+                mainPanel,
+                dialogPanel,
+                "Value Pool",
+                JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.PLAIN_MESSAGE);
+
+        if (result == JOptionPane.OK_OPTION) {
+            ValuePool pool = null;
+            if (!valuesArea.getText().trim().isEmpty()) {
+                try {
+                    pool = ValuePool.parse(valuesArea.getText(),
+                            ((ValuePool.Selection) selectionCombo.getSelectedItem()).name(),
+                            ((Number) rateSpinner.getValue()).doubleValue(), (Integer) burstSpinner.getValue(),
+                            (Integer) waitSpinner.getValue());
+                } catch (IllegalArgumentException e) {
+                    JOptionPane.showMessageDialog(mainPanel, e.getMessage(), "Invalid Value Pool",
+                            JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+            }
+            store.setPool(selectedRow, pool);
+            publishHeaders();
+        }
+    }
+
+    /**
+     * Shows the derived value configuration dialog.
+     */
+    private void showDerivationDialog() {
+        int selectedRow = headersTable.getSelectedRow();
+        if (selectedRow == -1) {
+            return;
+        }
+
+        JTextField derivationField = new JTextField(store.getDerivation(selectedRow), 40);
+
+        // Add help text
+        JTextArea helpText = new JTextArea(4, 30);
+        helpText.setEditable(false);
+        helpText.setLineWrap(true);
+        helpText.setWrapStyleWord(true);
+        helpText.setBackground(new Color(240, 240, 240));
+        helpText.setText("Computes this static row's value from other rules, referenced as {{Rule Name}}, " +
+                "optionally followed by extractor stages, e.g. {{Authorization}} | hash:sha256 or " +
+                "{{Authorization}} | regex:Bearer (.+) | jwt:tenant. Values are recomputed only when a " +
+                "token changes. Leave empty to send the Header Value column.");
+
+        JPanel dialogPanel = new JPanel(new BorderLayout(0, 10));
+        dialogPanel.add(derivationField, BorderLayout.NORTH);
+        dialogPanel.add(helpText, BorderLayout.SOUTH);
+
+        int result = JOptionPane.showConfirmDialog(
+                mainPanel,
+                dialogPanel,
+                "Derived Value",
+                JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.PLAIN_MESSAGE);
+
+        if (result == JOptionPane.OK_OPTION) {
+            String derivation = derivationField.getText().trim();
+            if (!derivation.isEmpty()) {
+                try {
+                    DerivationPlan.validate(derivation);
+                } catch (IllegalArgumentException e) {
+                    JOptionPane.showMessageDialog(mainPanel, e.getMessage(), "Invalid Derivation",
+                            JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                // Reject the change if it closes a reference cycle
+                List<CustomHeadersConfig.CustomHeader> headers = collectHeaders();
+                headers.set(selectedRow, headers.get(selectedRow).toBuilder().derivation(derivation).build());
+                List<String> cycle = DerivationPlan.forRules(headers).getCycle();
+                if (!cycle.isEmpty()) {
+                    JOptionPane.showMessageDialog(mainPanel, "Derived rules reference each other in a cycle:\n" +
+                            String.join(" \u2192 ", cycle), "Invalid Derivation", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+            }
+            store.setDerivation(selectedRow, derivation);
+            publishHeaders();
+        }
+    }
+
+    /**
+     * Shows the rule import dialog for Postman collections, OpenAPI specs and curl commands.
+     */
+    private void showImportDialog() {
+        JTextArea sourceArea = new JTextArea(12, 60);
+        // Holds a loaded file too large to show in the text area
+        String[] loadedSource = {null};
+        Map<String, String> variables = new HashMap<>();
+        JLabel environmentLabel = new JLabel("No Postman environment");
+
+        JButton loadButton = new JButton("Load File...");
+        loadButton.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser();
+            if (chooser.showOpenDialog(mainPanel) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            try {
+                String text = Files.readString(chooser.getSelectedFile().toPath());
+                boolean large = text.length() > MAX_SHOWN_CHARS;
+                loadedSource[0] = large ? text : null;
+                sourceArea.setText(large ? "(" + chooser.getSelectedFile().getName() + ", " + text.length() / 1024 +
+                        " KB loaded)" : text);
+                sourceArea.setEditable(!large);
+            } catch (IOException | UncheckedIOException ex) {
+                JOptionPane.showMessageDialog(mainPanel, "Could not read file:\n" + ex.getMessage(),
+                        "Import Rules", JOptionPane.ERROR_MESSAGE);
+            }
+        });
+        JButton environmentButton = new JButton("Postman Environment...");
+        environmentButton.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser();
+            if (chooser.showOpenDialog(mainPanel) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            try {
+                variables.clear();
+                variables.putAll(RuleImporter.postmanVariables(Files.readString(chooser.getSelectedFile().toPath())));
+                environmentLabel.setText(chooser.getSelectedFile().getName() + " (" + variables.size() + " variables)");
+            } catch (IOException | UncheckedIOException ex) {
+                JOptionPane.showMessageDialog(mainPanel, "Could not read file:\n" + ex.getMessage(),
+                        "Import Rules", JOptionPane.ERROR_MESSAGE);
+            }
+        });
+
+        JPanel filePanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        filePanel.add(loadButton);
+        filePanel.add(environmentButton);
+        filePanel.add(environmentLabel);
+
+        // Add help text
+        JTextArea helpText = new JTextArea(4, 30);
+        helpText.setEditable(false);
+        helpText.setLineWrap(true);
+        helpText.setWrapStyleWord(true);
+        helpText.setBackground(new Color(240, 240, 240));
+        helpText.setText("Paste curl commands, or load a Postman collection or an OpenAPI/Swagger spec (JSON or YAML). " +
+                "Values sent by every request become rules for all requests; others are limited by conditions to " +
+                "the methods and paths that send them. Tokens set from responses become dynamic rules, and values " +
+                "still needing a secret are added disabled. Rules are appended to the table.");
+
+        JPanel dialogPanel = new JPanel(new BorderLayout(0, 10));
+        dialogPanel.add(filePanel, BorderLayout.NORTH);
+        dialogPanel.add(new JScrollPane(sourceArea), BorderLayout.CENTER);
+        dialogPanel.add(helpText, BorderLayout.SOUTH);
+
+        int result = JOptionPane.showConfirmDialog(
+                mainPanel,
+                dialogPanel,
+                "Import Rules",
+                JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.PLAIN_MESSAGE);
+        if (result != JOptionPane.OK_OPTION) {
+            return;
+        }
+
+        List<CustomHeadersConfig.CustomHeader> imported;
+        try {
+            imported = RuleImporter.importRules(loadedSource[0] != null ? loadedSource[0] : sourceArea.getText(), variables);
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(mainPanel, e.getMessage(), "Import Rules", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        if (tableModel.getRowCount() + imported.size() > MAX_HEADERS) {
+            JOptionPane.showMessageDialog(mainPanel,
+                    "Importing " + imported.size() + " rules would exceed the maximum of " + MAX_HEADERS + " headers.",
+                    "Limit Reached",
+                    JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        importHeaders(imported);
+        JOptionPane.showMessageDialog(mainPanel, "Imported " + imported.size() + " rules.",
+                "Import Rules", JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    /**
+     * Appends rules to the table and publishes them together, so requests see either
+     * none or all of them.
+     *
+     * @param headers The rules to append
+     */
+    private void importHeaders(List<CustomHeadersConfig.CustomHeader> headers) {
+        bulkUpdate = true;
+        try {
+            for (CustomHeadersConfig.CustomHeader header : headers) {
+                store.saveRowSettings(tableModel.getRowCount(), header);
+                tableModel.addRow(new Object[]{header.getName(), header.isDynamic() ? "Dynamic" : header.getValue(),
+                        header.isEnabled(), header.isDynamic()});
+            }
+        } finally {
+            bulkUpdate = false;
+        }
+        publishHeaders();
+    }
+
+    /**
+     * Creates and configures the button panel.
+     *
+     * @return The configured button panel
+     */
+    private JPanel createButtonPanel() {
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        addButton = new JButton("Add Header");
+        removeButton = new JButton("Remove Header");
+        saveButton = new JButton("Save Configuration");
+        importButton = new JButton("Import Rules...");
+
+        // Add action listeners
+        addButton.addActionListener(e -> addHeader());
+        removeButton.addActionListener(e -> removeHeader());
+        saveButton.addActionListener(e -> saveHeaders());
+        importButton.addActionListener(e -> showImportDialog());
+
+        buttonPanel.add(addButton);
+        buttonPanel.add(removeButton);
+        buttonPanel.add(saveButton);
+        buttonPanel.add(importButton);
+
+        // Add help button
+        JButton helpButton = new JButton("?");
+        helpButton.setMargin(new Insets(0, 4, 0, 4));
+        helpButton.addActionListener(e -> showHelpDialog());
+        buttonPanel.add(helpButton);
+
+        return buttonPanel;
+    }
+
+    /**
+     * Shows the help dialog.
+     */
+    private void showHelpDialog() {
+        JOptionPane.showMessageDialog(mainPanel,
+                "CustomHeaderZ Configuration Help\n\n" +
+                        "Header Configuration:\n" +
+                        "- Header Name: Name of the HTTP header to add (Static)\n" +
+                        "- Enabled: Check to include this header in requests\n" +
+                        "- Dynamic: Check to extract value from macro responses (Optional)\n\n" +
+                        "Additional Features:\n" +
+                        "- Row Colors: Right-click any row to set its color\n" +
+                        "- Extraction Pattern: Right-click a dynamic row to set regex pattern\n" +
+                        "- Injection Target: Right-click a row to write the value to a URL parameter,\n" +
+                        "  body parameter, cookie, JSON body pointer or WebSocket message pointer,\n" +
+                        "  or to set or strip a response header\n" +
+                        "- Tool Scope: Right-click a row to choose which Burp tools receive it\n" +
+                        "- Conditions: Right-click a row to apply it only to some methods, content types,\n" +
+                        "  URLs or bodies\n" +
+                        "- Value Pool: Right-click a static row to rotate through several values,\n" +
+                        "  optionally rate limited per value\n" +
+                        "- Derivation: Right-click a static row to compute its value from other rules,\n" +
+                        "  e.g. {{Authorization}} | hash:sha256\n" +
+                        "- Import Rules: Create scoped rules from curl commands, a Postman collection\n" +
+                        "  or an OpenAPI spec\n\n" +
+                        "To extract values from the macros previous responses in Burp, you must:\n" +
+                        "1. Check the 'Dynamic' option for the header\n" +
+                        "2. Set an extraction pattern via right-click menu\n" +
+                        "3. Configure a Burp session handling rule with a macro\n\n" +
+                        "Pattern Extraction:\n" +
+                        "- Regex Pattern: Use capturing groups () to extract specific values\n" +
+                        "- Simple String: Extracts text after the search string up to next delimiter\n" +
+                        "- Extractor Pipeline: Chains extractors, e.g. json:/data/id_token | jwt:sub\n" +
+                        "- Scan: Limit matching to the first or last KB of large responses\n\n",
+                "Configuration Help",
+                JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    /**
+     * Adds a new header to the table.
+     */
+    private void addHeader() {
+        if (tableModel.getRowCount() < MAX_HEADERS) {
+            tableModel.addRow(new Object[]{"", "", true, false});
+        } else {
+            JOptionPane.showMessageDialog(mainPanel,
+                    "Maximum of " + MAX_HEADERS + " headers allowed.",
+                    "Limit Reached",
+                    JOptionPane.WARNING_MESSAGE);
+        }
+    }
+
+    /**
+     * Removes the selected header from the table.
+     */
+    private void removeHeader() {
+        int selectedRow = headersTable.getSelectedRow();
+        if (selectedRow == -1) {
+            JOptionPane.showMessageDialog(mainPanel,
+                    "Please select a header to remove.",
+                    "No Selection",
+                    JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        // Remove the color information for the row
+        rowColors.remove(selectedRow);
+
+        // Remove the row's settings and move those of the rows below it up with them
+        store.removeRowSettings(selectedRow, tableModel.getRowCount());
+
+        // Remove the row from the table
+        tableModel.removeRow(selectedRow);
+
+        // Update rowColors map for remaining rows
+        Map<Integer, Color> updatedRowColors = new HashMap<>();
+        for (Map.Entry<Integer, Color> entry : rowColors.entrySet()) {
+            int row = entry.getKey();
+            if (row > selectedRow) {
+                updatedRowColors.put(row - 1, entry.getValue());
+            } else if (row < selectedRow) {
+                updatedRowColors.put(row, entry.getValue());
+            }
+        }
+        rowColors.clear();
+        rowColors.putAll(updatedRowColors);
+    }
+
+    /**
+     * Saves the current headers configuration to preferences.
+     */
+    private void saveHeaders() {
+        profiles.save(profileId, collectHeaders());
+
+        JOptionPane.showMessageDialog(mainPanel,
+                "Headers configuration saved successfully!",
+                "Save Complete",
+                JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    /**
+     * Loads saved headers from preferences.
+     */
+    private void loadSavedHeaders() {
+        // Clear the current table
+        while (tableModel.getRowCount() > 0) {
+            tableModel.removeRow(0);
+        }
+
+        // Clear the row colors map
+        rowColors.clear();
+
+        // Load headers from preferences, or edits not saved yet
+        List<CustomHeadersConfig.CustomHeader> headers = profiles.getRows(profileId);
+
+        for (int i = 0; i < headers.size(); i++) {
+            CustomHeadersConfig.CustomHeader header = headers.get(i);
+            tableModel.addRow(new Object[]{header.getName(), header.getValue(), header.isEnabled(), header.isDynamic()});
+
+            // Load row color if available
+            String colorName = header.getColorName();
+            if (colorMap.containsKey(colorName) && !colorName.equals("None")) {
+                rowColors.put(i, colorMap.get(colorName));
+            }
+        }
+    }
+
+    /**
+     * Gets the main panel for UI display.
+     *
+     * @return The main configuration panel
+     */
+    public JPanel getPanel() {
+        return mainPanel;
+    }
+
+    /**
+     * Builds the complete list of header rows from the table and each row's saved settings.
+     *
+     * @return List of CustomHeader objects in row order, including disabled rows
+     */
+    private List<CustomHeadersConfig.CustomHeader> collectHeaders() {
+        List<CustomHeadersConfig.CustomHeader> headers = new ArrayList<>();
+
+        for (int i = 0; i < tableModel.getRowCount(); i++) {
+            String name = (String) tableModel.getValueAt(i, 0);
+            String value = (String) tableModel.getValueAt(i, 1);
+            boolean enabled = (Boolean) tableModel.getValueAt(i, 2);
+            boolean dynamic = (Boolean) tableModel.getValueAt(i, 3);
+            String colorName = "None";
+
+            // Find color name for this row if it has a color
+            if (rowColors.containsKey(i)) {
+                for (Map.Entry<String, Color> entry : colorMap.entrySet()) {
+                    if (entry.getValue() != null && entry.getValue().equals(rowColors.get(i))) {
+                        colorName = entry.getKey();
+                        break;
+                    }
+                }
+            }
+
+            headers.add(store.readHeader(i, name, value, enabled, dynamic, colorName));
+        }
+
+        return headers;
+    }
+
+    /**
+     * Publishes the current table contents to the rule repository.
+     */
+    private void publishHeaders() {
+        profiles.publish(profileId, collectHeaders());
+    }
+}
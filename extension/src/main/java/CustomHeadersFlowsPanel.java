@@ -0,0 +1,304 @@
+import burp.api.montoya.logging.Logging;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Token acquisition flow editor.
+ * Lists the out-of-band auth flows run by the {@link TokenAcquisitionEngine}, with
+ * their last outcome, and lets them be added, edited, removed and run on demand.
+ * Every change is saved and handed to the engine immediately.
+ */
+public class CustomHeadersFlowsPanel {
+
+    // Constants
+    private static final int REFRESH_MILLIS = 1000;
+
+    // UI Components
+    private JPanel mainPanel;
+    private JTable flowsTable;
+    private DefaultTableModel tableModel;
+    private Timer refreshTimer;
+
+    // Data storage
+    private final TokenAcquisitionEngine engine;
+    private final CustomHeadersPreferences store;
+    private final Logging logging;
+    private final List<TokenFlow> flows;
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss");
+
+    /**
+     * Constructs a new CustomHeadersFlowsPanel. Must be called on the EDT.
+     *
+     * @param engine  The engine that runs the flows
+     * @param store   The preferences-backed store the flows are saved to
+     * @param logging The logging service
+     */
+    public CustomHeadersFlowsPanel(TokenAcquisitionEngine engine, CustomHeadersPreferences store, Logging logging) {
+        this.engine = engine;
+        this.store = store;
+        this.logging = logging;
+        this.flows = new ArrayList<>(store.loadFlows());
+        initializeUI();
+    }
+
+    /**
+     * Gets the main panel for this UI.
+     *
+     * @return The main panel
+     */
+    public JPanel getPanel() {
+        return mainPanel;
+    }
+
+    /**
+     * Stops the refresh timer so the panel can be garbage collected after unload.
+     */
+    public void dispose() {
+        refreshTimer.stop();
+    }
+
+    /**
+     * Initializes all UI components.
+     */
+    private void initializeUI() {
+        mainPanel = new JPanel(new BorderLayout());
+
+        // Create table for flows
+        tableModel = new DefaultTableModel(new String[]{"Enabled", "Flow", "Endpoint", "Refresh (s)", "Rules", "Status"}, 0) {
+            @Override
+            public Class<?> getColumnClass(int columnIndex) {
+                return columnIndex == 0 ? Boolean.class : String.class;
+            }
+
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return column == 0;
+            }
+        };
+        tableModel.addTableModelListener(e -> {
+            int row = e.getFirstRow();
+            if (e.getColumn() == 0 && row >= 0 && row < flows.size()) {
+                boolean enabled = (Boolean) tableModel.getValueAt(row, 0);
+                if (enabled != flows.get(row).isEnabled()) {
+                    flows.set(row, flows.get(row).toBuilder().enabled(enabled).build());
+                    publishFlows();
+                }
+            }
+        });
+        flowsTable = new JTable(tableModel);
+        flowsTable.getColumnModel().getColumn(0).setPreferredWidth(60);
+        flowsTable.getColumnModel().getColumn(1).setPreferredWidth(120);
+        flowsTable.getColumnModel().getColumn(2).setPreferredWidth(200);
+        flowsTable.getColumnModel().getColumn(3).setPreferredWidth(80);
+        flowsTable.getColumnModel().getColumn(4).setPreferredWidth(150);
+        flowsTable.getColumnModel().getColumn(5).setPreferredWidth(250);
+        JScrollPane scrollPane = new JScrollPane(flowsTable);
+        scrollPane.setPreferredSize(new Dimension(600, 300));
+
+        // Create the button panel
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        JButton addButton = new JButton("Add Flow");
+        JButton editButton = new JButton("Edit Flow");
+        JButton removeButton = new JButton("Remove Flow");
+        JButton runButton = new JButton("Run Now");
+        addButton.addActionListener(e -> editFlow(-1));
+        editButton.addActionListener(e -> {
+            if (flowsTable.getSelectedRow() != -1) {
+                editFlow(flowsTable.getSelectedRow());
+            }
+        });
+        removeButton.addActionListener(e -> removeFlow());
+        runButton.addActionListener(e -> runFlow());
+        buttonPanel.add(addButton);
+        buttonPanel.add(editButton);
+        buttonPanel.add(removeButton);
+        buttonPanel.add(runButton);
+
+        // Assemble the main panel
+        mainPanel.add(scrollPane, BorderLayout.CENTER);
+        mainPanel.add(buttonPanel, BorderLayout.SOUTH);
+        mainPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+        rebuildTable();
+        refreshTimer = new Timer(REFRESH_MILLIS, e -> refreshStatus());
+        refreshTimer.start();
+    }
+
+    /**
+     * Shows the flow dialog for a new flow (row -1) or an existing one.
+     */
+    private void editFlow(int row) {
+        TokenFlow current = row >= 0 ? flows.get(row) : null;
+
+        JTextField nameField = new JTextField(current != null ? current.getName() : "", 20);
+        JTextField urlField = new JTextField(current != null ? current.getUrl() : "https://", 30);
+        JTextArea requestArea = new JTextArea(current != null ? current.getRequest() :
+                "POST /oauth/token HTTP/1.1\nHost: \nContent-Type: application/x-www-form-urlencoded\n\n" +
+                        "grant_type=client_credentials&client_id=&client_secret=", 10, 50);
+        JTextArea extractArea = new JTextArea(current != null ?
+                CustomHeadersPreferences.formatExtractions(current.getExtractions()) : "Authorization=json:access_token", 3, 50);
+        JSpinner refreshSpinner = new JSpinner(new SpinnerNumberModel(
+                current != null ? current.getRefreshSeconds() : 300, 0, 86400, 30));
+        JSpinner attemptsSpinner = new JSpinner(new SpinnerNumberModel(
+                current != null ? current.getMaxAttempts() : 3, 1, 20, 1));
+        JSpinner concurrencySpinner = new JSpinner(new SpinnerNumberModel(
+                current != null ? current.getMaxConcurrent() : 1, 1, 64, 1));
+
+        JPanel fieldsPanel = new JPanel(new GridLayout(0, 2, 5, 5));
+        fieldsPanel.add(new JLabel("Flow name:"));
+        fieldsPanel.add(nameField);
+        fieldsPanel.add(new JLabel("Endpoint (scheme://host[:port]):"));
+        fieldsPanel.add(urlField);
+        fieldsPanel.add(new JLabel("Refresh every (s, 0 = on demand):"));
+        fieldsPanel.add(refreshSpinner);
+        fieldsPanel.add(new JLabel("Attempts:"));
+        fieldsPanel.add(attemptsSpinner);
+        fieldsPanel.add(new JLabel("Max concurrent requests:"));
+        fieldsPanel.add(concurrencySpinner);
+
+        JPanel textPanel = new JPanel(new BorderLayout(0, 5));
+        textPanel.add(new JScrollPane(requestArea), BorderLayout.CENTER);
+        textPanel.add(new JScrollPane(extractArea), BorderLayout.SOUTH);
+
+        // Add help text
+        JTextArea helpText = new JTextArea(4, 30);
+        helpText.setEditable(false);
+        helpText.setLineWrap(true);
+        helpText.setWrapStyleWord(true);
+        helpText.setBackground(new Color(240, 240, 240));
+        helpText.setText("The request is sent as-is with {{Rule Name}} replaced by that rule's current value, " +
+                "so a flow can exchange a refresh token. Each extraction line is Rule Name=extractor spec; " +
+                "enabled dynamic rules filled by a flow are added to matching requests without a session rule.");
+
+        JPanel dialogPanel = new JPanel(new BorderLayout(0, 10));
+        dialogPanel.add(fieldsPanel, BorderLayout.NORTH);
+        dialogPanel.add(textPanel, BorderLayout.CENTER);
+        dialogPanel.add(helpText, BorderLayout.SOUTH);
+
+        int result = JOptionPane.showConfirmDialog(
+                mainPanel,
+                dialogPanel,
+                row >= 0 ? "Edit Token Flow" : "Add Token Flow",
+                JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.PLAIN_MESSAGE);
+        if (result != JOptionPane.OK_OPTION) {
+            return;
+        }
+
+        TokenFlow flow;
+        try {
+            String name = nameField.getText().trim();
+            if (name.isEmpty()) {
+                throw new IllegalArgumentException("The flow needs a name");
+            }
+            for (int i = 0; i < flows.size(); i++) {
+                if (i != row && flows.get(i).getName().equals(name)) {
+                    throw new IllegalArgumentException("A flow named '" + name + "' already exists");
+                }
+            }
+            // Compile the extractors now so a typo is reported here rather than on the first run
+            Map<String, String> extractions = CustomHeadersPreferences.parseExtractions(extractArea.getText());
+            for (String spec : extractions.values()) {
+                TokenExtractors.compile(spec);
+            }
+            flow = TokenFlow.builder(name, urlField.getText().trim())
+                    .enabled(current == null || current.isEnabled())
+                    .request(requestArea.getText())
+                    .extractions(extractions)
+                    .refreshSeconds((Integer) refreshSpinner.getValue())
+                    .maxAttempts((Integer) attemptsSpinner.getValue())
+                    .maxConcurrent((Integer) concurrencySpinner.getValue())
+                    .build();
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(mainPanel, e.getMessage(), "Invalid Flow", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        if (row >= 0) {
+            flows.set(row, flow);
+        } else {
+            flows.add(flow);
+        }
+        publishFlows();
+        rebuildTable();
+    }
+
+    /**
+     * Removes the selected flow.
+     */
+    private void removeFlow() {
+        int row = flowsTable.getSelectedRow();
+        if (row == -1) {
+            return;
+        }
+        flows.remove(row);
+        publishFlows();
+        rebuildTable();
+    }
+
+    /**
+     * Runs the selected flow now, reporting failures in a dialog.
+     */
+    private void runFlow() {
+        int row = flowsTable.getSelectedRow();
+        if (row == -1) {
+            return;
+        }
+        String name = flows.get(row).getName();
+        engine.acquire(name).whenComplete((values, error) -> {
+            if (error != null) {
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(mainPanel,
+                        "Flow '" + name + "' failed:\n" + error.getMessage(), "Token Flow", JOptionPane.ERROR_MESSAGE));
+            }
+        });
+    }
+
+    /**
+     * Saves the flows and hands them to the engine.
+     */
+    private void publishFlows() {
+        store.saveFlows(flows);
+        engine.setFlows(new ArrayList<>(flows));
+        logging.logToOutput("[CustomHeaderZ] Saved " + flows.size() + " token flows");
+    }
+
+    private void rebuildTable() {
+        tableModel.setRowCount(0);
+        for (TokenFlow flow : flows) {
+            tableModel.addRow(new Object[]{flow.isEnabled(), flow.getName(), flow.getUrl(),
+                    flow.getRefreshSeconds() > 0 ? String.valueOf(flow.getRefreshSeconds()) : "On demand",
+                    String.join(", ", flow.getExtractions().keySet()), ""});
+        }
+        refreshStatus();
+    }
+
+    /**
+     * Updates the status column from the engine's latest outcomes.
+     */
+    private void refreshStatus() {
+        List<TokenAcquisitionEngine.FlowStatus> statuses = engine.getStatuses();
+        for (int row = 0; row < tableModel.getRowCount() && row < statuses.size(); row++) {
+            TokenAcquisitionEngine.FlowStatus status = statuses.get(row);
+            String text;
+            if (status.getRunning() > 0) {
+                text = "Running";
+            } else if (status.getLastError() != null) {
+                text = "Failed: " + status.getLastError();
+            } else if (status.getLastSuccessMillis() > 0) {
+                text = "Acquired at " + timeFormat.format(new Date(status.getLastSuccessMillis()));
+            } else {
+                text = "Not run yet";
+            }
+            if (!text.equals(tableModel.getValueAt(row, 5))) {
+                tableModel.setValueAt(text, row, 5);
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.http.handler.HttpHandler;
+import burp.api.montoya.http.handler.HttpRequestToBeSent;
+import burp.api.montoya.http.handler.HttpResponseReceived;
+import burp.api.montoya.http.handler.RequestToBeSentAction;
+import burp.api.montoya.http.handler.ResponseReceivedAction;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import burp.api.montoya.logging.Logging;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Handles HTTP requests by adding configured static headers, and dynamic headers
+ * whose values are acquired out of band by token flows.
+ * Other dynamic headers are handled separately by the session handling action.
+ * Responses are passed through untouched unless a response rule applies to the tool.
+ */
+public class CustomHeadersHandler implements HttpHandler {
+
+    private final CustomHeadersConfig config;
+    private final CustomHeadersInjector injector;
+    private final TokenStore tokens;
+    private final RequestJournal journal;
+    private final Logging logging;
+
+    /**
+     * Constructs a new CustomHeadersHandler.
+     *
+     * @param config   The configuration containing header settings
+     * @param injector The injector that writes values to each rule's target
+     * @param tokens   The store holding flow-acquired values, whose version is recorded in the journal
+     * @param journal  The journal that traces which rules matched each request
+     * @param logging  The logging service
+     */
+    public CustomHeadersHandler(CustomHeadersConfig config, CustomHeadersInjector injector, TokenStore tokens,
+                                RequestJournal journal, Logging logging) {
+        this.config = config;
+        this.injector = injector;
+        this.tokens = tokens;
+        this.journal = journal;
+        this.logging = logging;
+    }
+
+    @Override
+    public RequestToBeSentAction handleHttpRequestToBeSent(HttpRequestToBeSent requestToBeSent) {
+        // Fast reject: one AND against the precomputed mask of every enabled static header
+        // and flow-filled dynamic header. The mask is zero when custom headers are disabled.
+        int toolBit = ToolScope.bit(requestToBeSent.toolSource().toolType());
+        if ((config.getActiveToolMask() & toolBit) == 0) {
+            return RequestToBeSentAction.continueWith(requestToBeSent);
+        }
+        Set<String> flowRules = config.getFlowRules();
+
+        // Get the list of custom headers from the config
+        List<CustomHeadersConfig.CustomHeader> headers = config.getHeaders();
+
+        // Trace only while the journal is open; otherwise no timing or change lists are built
+        boolean tracing = journal.isEnabled();
+        long start = tracing ? System.nanoTime() : 0;
+        List<String> rules = tracing ? new ArrayList<>() : null;
+        List<String> changes = tracing ? new ArrayList<>() : null;
+
+        // Start with the original request; with an in-place placement it is rebuilt once, at the end
+        CustomHeadersInjector.Writer writer = injector.writer(requestToBeSent);
+        CustomHeadersRequestView view = null;
+
+        // Every dynamic and derived value comes from one token version, even if a macro publishes meanwhile,
+        // and derived rules read the pooled values this request carries
+        TokenSet current = tokens.current();
+        Map<String, String> drawn = new HashMap<>();
+
+        // Add each enabled header that applies to this tool: static values, and dynamic values
+        // acquired by token flows. Other dynamic headers are handled by the session handling action,
+        // WebSocket targets by the WebSocket handler
+        for (CustomHeadersConfig.CustomHeader header : headers) {
+            if (!header.isEnabled() || header.getTarget().isWebSocket() || header.getTarget().isResponse() ||
+                    (header.getToolMask() & toolBit) == 0) {
+                continue;
+            }
+            // Conditions are checked against the original request, cheapest part first
+            if (!header.getCondition().isAlways()) {
+                if (view == null) {
+                    view = new CustomHeadersRequestView(requestToBeSent);
+                }
+                if (!header.getCondition().matches(view)) {
+                    continue;
+                }
+            }
+            String value = header.isDerived() ?
+                    config.getDerivationPlan().resolve(current, drawn).get(header.getName()) :
+                    !header.isDynamic() ? header.nextValue(drawn) :
+                    flowRules.contains(header.getName()) ? current.get(header.getName()) : null;
+            if (value != null) {
+                HeaderInjectionEvent event = new HeaderInjectionEvent();
+                event.begin();
+                writer.inject(header, value, changes);
+                event.end();
+                if (event.shouldCommit()) {
+                    event.rule = header.getName();
+                    event.tool = requestToBeSent.toolSource().toolType().toolName();
+                    event.target = header.getTarget().getDisplayName();
+                    event.bytesCopied = writer.bytesCopied();
+                    event.tokenVersion = current.getVersion();
+                    event.commit();
+                }
+                if (tracing) {
+                    rules.add(header.getName());
+                }
+            }
+        }
+
+        if (tracing) {
+            journal.record(requestToBeSent.toolSource().toolType().toolName(), requestToBeSent.url(),
+                    rules, changes, System.nanoTime() - start, current.getVersion());
+        }
+
+        // Return the modified request
+        return RequestToBeSentAction.continueWith(writer.build());
+    }
+
+    @Override
+    public ResponseReceivedAction handleHttpResponseReceived(HttpResponseReceived responseReceived) {
+        // Fast no-op: one AND against the mask of every enabled response rule, zero when there are none
+        int toolBit = ToolScope.bit(responseReceived.toolSource().toolType());
+        if ((config.getResponseToolMask() & toolBit) == 0) {
+            return ResponseReceivedAction.continueWith(responseReceived);
+        }
+
+        boolean tracing = journal.isEnabled();
+        long start = tracing ? System.nanoTime() : 0;
+        List<String> rules = tracing ? new ArrayList<>() : null;
+        List<String> changes = tracing ? new ArrayList<>() : null;
+
+        // Collect every response rule's change, then rebuild the header block once
+        HttpRequestRewriter rewriter = null;
+        CustomHeadersRequestView view = null;
+        TokenSet current = tokens.current();
+        Map<String, String> drawn = new HashMap<>();
+        for (CustomHeadersConfig.CustomHeader header : config.getHeaders()) {
+            if (!header.isEnabled() || !header.getTarget().isResponse() || (header.getToolMask() & toolBit) == 0) {
+                continue;
+            }
+            // Conditions describe the request that produced the response
+            if (!header.getCondition().isAlways()) {
+                if (view == null) {
+                    view = new CustomHeadersRequestView(responseReceived.initiatingRequest());
+                }
+                if (!header.getCondition().matches(view)) {
+                    continue;
+                }
+            }
+            String value = header.isDerived() ?
+                    config.getDerivationPlan().resolve(current, drawn).get(header.getName()) :
+                    header.isDynamic() ? current.get(header.getName()) : header.nextValue(drawn);
+            if (value == null) {
+                continue;
+            }
+            if (rewriter == null) {
+                byte[] raw = responseReceived.toByteArray().getBytes();
+                try {
+                    rewriter = new HttpRequestRewriter(raw, 0, raw.length);
+                } catch (IllegalArgumentException e) {
+                    return ResponseReceivedAction.continueWith(responseReceived);
+                }
+            }
+            if (rewriter.inject(header.getTarget(), header.getName(), value) && tracing) {
+                rules.add(header.getName());
+                changes.add((header.getTarget() == InjectionTarget.STRIP_RESPONSE_HEADER ? "Stripped response header '" :
+                        "Set response header '") + header.getName() + "'");
+            }
+        }
+
+        byte[] rewritten = rewriter != null ? rewriter.toByteArray() : null;
+        if (tracing && rewritten != null) {
+            journal.record(responseReceived.toolSource().toolType().toolName() + " (response)",
+                    responseReceived.initiatingRequest().url(), rules, changes, System.nanoTime() - start,
+                    current.getVersion());
+        }
+        if (rewritten == null) {
+            return ResponseReceivedAction.continueWith(responseReceived);
+        }
+        return ResponseReceivedAction.continueWith(HttpResponse.httpResponse(ByteArray.byteArray(rewritten)),
+                responseReceived.annotations());
+    }
+}
\ No newline at end of file
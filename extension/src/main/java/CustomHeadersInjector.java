@@ -0,0 +1,292 @@
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.http.message.HttpHeader;
+import burp.api.montoya.http.message.params.HttpParameter;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.logging.Logging;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writes header rule values into requests according to each rule's injection target.
+ * Shared by the HTTP handler (static values) and the session action (extracted tokens).
+ * Changes are reported to the caller for the request journal rather than logged per request.
+ * With an in-place {@link HeaderPlacement}, a {@link Writer} collects every rule's change
+ * and rebuilds the request once, keeping the original header order.
+ */
+public class CustomHeadersInjector {
+
+    private static final String HTTP_2 = "HTTP/2";
+
+    private final CustomHeadersConfig config;
+    private final Logging logging;
+    private final Map<String, JsonPointerPatcher> patchers = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new CustomHeadersInjector.
+     *
+     * @param config  The configuration holding the header placement
+     * @param logging The logging service
+     */
+    public CustomHeadersInjector(CustomHeadersConfig config, Logging logging) {
+        this.config = config;
+        this.logging = logging;
+    }
+
+    /**
+     * Starts writing rules into one request with the configured header placement.
+     *
+     * @param request The original HTTP request
+     * @return A writer that applies each injection and builds the modified request
+     */
+    public Writer writer(HttpRequest request) {
+        HeaderPlacement placement = config.getHeaderPlacement();
+        return placement.isInPlace() ? new InPlaceWriter(request, placement) : new Writer(request);
+    }
+
+    /**
+     * Injects a value into the request at the header rule's target.
+     *
+     * @param request The original HTTP request
+     * @param header  The header rule describing where to inject
+     * @param value   The value to inject
+     * @return The modified HTTP request, or the original if the target could not be written
+     */
+    public HttpRequest inject(HttpRequest request, CustomHeadersConfig.CustomHeader header, String value) {
+        return inject(request, header, value, null);
+    }
+
+    /**
+     * Injects a value into the request at the header rule's target, describing the change.
+     *
+     * @param request The original HTTP request
+     * @param header  The header rule describing where to inject
+     * @param value   The value to inject
+     * @param changes Receives a short description of what changed, or null
+     * @return The modified HTTP request, or the original if the target could not be written
+     */
+    public HttpRequest inject(HttpRequest request, CustomHeadersConfig.CustomHeader header, String value,
+                              List<String> changes) {
+        String name = header.getName();
+
+        switch (header.getTarget()) {
+            case URL_PARAMETER:
+                describe(changes, "Set URL parameter '" + name + "'");
+                return request.withParameter(HttpParameter.urlParameter(name, urlEncode(value)));
+            case BODY_PARAMETER:
+                describe(changes, "Set body parameter '" + name + "'");
+                return request.withParameter(HttpParameter.bodyParameter(name, urlEncode(value)));
+            case COOKIE:
+                describe(changes, "Set cookie '" + name + "'");
+                return request.withParameter(HttpParameter.cookieParameter(name, value));
+            case JSON_POINTER:
+                return patchJsonBody(request, name, value, changes);
+            case WEBSOCKET_JSON:
+                // Written to WebSocket messages by CustomHeadersWebSocketHandler
+                return request;
+            case HEADER:
+            default:
+                return addOrReplaceHeader(request, name, value, changes);
+        }
+    }
+
+    /**
+     * Adds or replaces a header in the HTTP request.
+     *
+     * @param request The original HTTP request
+     * @param name    The header name
+     * @param value   The header value
+     * @param changes Receives a short description of what changed, or null
+     * @return The modified HTTP request
+     */
+    private HttpRequest addOrReplaceHeader(HttpRequest request, String name, String value, List<String> changes) {
+        HttpRequest modifiedRequest = request;
+
+        // First check if the header already exists
+        if (modifiedRequest.hasHeader(name)) {
+            // An identical value leaves the request as it is rather than rebuilding it
+            if (value.equals(modifiedRequest.headerValue(name))) {
+                describe(changes, "Header '" + name + "' unchanged");
+                return request;
+            }
+            // If it exists, remove it first
+            modifiedRequest = modifiedRequest.withRemovedHeader(name);
+            describe(changes, "Replaced header '" + name + "'");
+        } else {
+            describe(changes, "Added header '" + name + "'");
+        }
+
+        // Then add the new header; HTTP/2 forbids uppercase field names
+        String addedName = HTTP_2.equals(request.httpVersion()) ? name.toLowerCase(Locale.ROOT) : name;
+        return modifiedRequest.withAddedHeader(HttpHeader.httpHeader(addedName, value));
+    }
+
+    /**
+     * Writes the value at a JSON Pointer in the request body by patching the body bytes in place.
+     *
+     * @param request The original HTTP request
+     * @param pointer The JSON Pointer to write to
+     * @param value   The value to write
+     * @param changes Receives a short description of what changed, or null
+     * @return The modified HTTP request, or the original if the body has no such location
+     */
+    private HttpRequest patchJsonBody(HttpRequest request, String pointer, String value, List<String> changes) {
+        JsonPointerPatcher patcher = patcher(pointer);
+        if (patcher == null) {
+            return request;
+        }
+
+        byte[] patched = patcher.apply(request.body().getBytes(), value);
+        if (patched == null) {
+            describe(changes, "JSON Pointer '" + pointer + "' not found in body");
+            return request;
+        }
+
+        describe(changes, "Patched JSON body at '" + pointer + "'");
+        return request.withBody(ByteArray.byteArray(patched));
+    }
+
+    /**
+     * Gets the compiled patcher for a JSON Pointer, compiling it on first use.
+     *
+     * @param pointer The JSON Pointer expression
+     * @return The compiled patcher, or null if the pointer is invalid
+     */
+    public JsonPointerPatcher patcher(String pointer) {
+        try {
+            return patchers.computeIfAbsent(pointer, JsonPointerPatcher::new);
+        } catch (IllegalArgumentException e) {
+            logging.logToError("[CustomHeaderZ] Invalid JSON Pointer: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Applies injections to one request, one Montoya copy per change, as Burp's
+     * message editing does. Not thread-safe; each request gets its own writer.
+     */
+    public class Writer {
+        HttpRequest request;
+
+        Writer(HttpRequest request) {
+            this.request = request;
+        }
+
+        /**
+         * Injects a value at the header rule's target.
+         *
+         * @param header  The header rule describing where to inject
+         * @param value   The value to inject
+         * @param changes Receives a short description of what changed, or null
+         */
+        public void inject(CustomHeadersConfig.CustomHeader header, String value, List<String> changes) {
+            request = CustomHeadersInjector.this.inject(request, header, value, changes);
+        }
+
+        /**
+         * Gets the number of bytes the last injection copied, for profiling.
+         *
+         * @return The size of the request after the last injection
+         */
+        public long bytesCopied() {
+            return request.toByteArray().length();
+        }
+
+        /**
+         * Gets the request with every injection applied.
+         *
+         * @return The modified request, or the original if nothing changed
+         */
+        public HttpRequest build() {
+            return request;
+        }
+    }
+
+    /**
+     * Collects injections into one {@link HttpRequestRewriter} pass over the raw request,
+     * so existing headers are patched at their position and the request is rebuilt at
+     * most once, only if a value changed.
+     */
+    private final class InPlaceWriter extends Writer {
+        private final HeaderPlacement placement;
+        private HttpRequestRewriter rewriter;
+        private boolean failed;
+
+        InPlaceWriter(HttpRequest request, HeaderPlacement placement) {
+            super(request);
+            this.placement = placement;
+        }
+
+        @Override
+        public void inject(CustomHeadersConfig.CustomHeader header, String value, List<String> changes) {
+            if (header.getTarget().isWebSocket() || header.getTarget().isResponse()) {
+                return;
+            }
+            if (rewriter == null && !failed) {
+                byte[] raw = request.toByteArray().getBytes();
+                try {
+                    rewriter = new HttpRequestRewriter(raw, 0, raw.length);
+                    rewriter.setPlacement(placement);
+                } catch (IllegalArgumentException e) {
+                    logging.logToError("[CustomHeaderZ] Could not parse request for in-place injection: " +
+                            e.getMessage());
+                    failed = true;
+                }
+            }
+            if (failed) {
+                // Fall back to Burp's message editing for a request the rewriter cannot parse
+                super.inject(header, value, changes);
+                return;
+            }
+
+            String name = header.getName();
+            if (header.getTarget() == InjectionTarget.JSON_POINTER && patcher(name) == null) {
+                return;
+            }
+            if (header.getTarget() == InjectionTarget.HEADER) {
+                String existing = changes != null ? rewriter.headerValue(name) : null;
+                rewriter.setHeader(name, value);
+                describe(changes, existing == null ? "Added header '" + name + "' (" + placement + ")" :
+                        existing.equals(value) ? "Header '" + name + "' unchanged" :
+                        "Replaced header '" + name + "' in place");
+            } else if (rewriter.inject(header.getTarget(), name, value)) {
+                describe(changes, "Set " + header.getTarget().getDisplayName() + " '" + name + "'");
+            } else if (header.getTarget() == InjectionTarget.JSON_POINTER) {
+                describe(changes, "JSON Pointer '" + name + "' not found in body");
+            }
+        }
+
+        /**
+         * The raw request is copied once for the whole writer, not per injection.
+         *
+         * @return Zero
+         */
+        @Override
+        public long bytesCopied() {
+            return 0;
+        }
+
+        @Override
+        public HttpRequest build() {
+            byte[] rewritten = rewriter != null ? rewriter.toByteArray() : null;
+            if (rewritten == null) {
+                return request;
+            }
+            return HttpRequest.httpRequest(request.httpService(), ByteArray.byteArray(rewritten));
+        }
+    }
+
+    private static void describe(List<String> changes, String change) {
+        if (changes != null) {
+            changes.add(change);
+        }
+    }
+
+    private static String urlEncode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
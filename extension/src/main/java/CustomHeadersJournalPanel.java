@@ -0,0 +1,168 @@
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Request journal viewer.
+ * Shows which rules matched the last N requests, what they changed, how long it
+ * took and which token version was used. Recording is off until enabled here, and
+ * the table is refreshed from a snapshot on a timer rather than by request threads.
+ */
+public class CustomHeadersJournalPanel {
+
+    // Constants
+    private static final int REFRESH_MILLIS = 1000;
+
+    // UI Components
+    private JPanel mainPanel;
+    private JTable journalTable;
+    private DefaultTableModel tableModel;
+    private JTextField filterField;
+    private JCheckBox recordCheckbox;
+    private Timer refreshTimer;
+
+    // Data storage
+    private final RequestJournal journal;
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss.SSS");
+
+    /**
+     * Constructs a new CustomHeadersJournalPanel. Must be called on the EDT.
+     *
+     * @param journal The journal to display
+     */
+    public CustomHeadersJournalPanel(RequestJournal journal) {
+        this.journal = journal;
+        initializeUI();
+    }
+
+    /**
+     * Gets the main panel for this UI.
+     *
+     * @return The main panel
+     */
+    public JPanel getPanel() {
+        return mainPanel;
+    }
+
+    /**
+     * Stops the refresh timer so the panel can be garbage collected after unload.
+     */
+    public void dispose() {
+        refreshTimer.stop();
+    }
+
+    /**
+     * Initializes all UI components.
+     */
+    private void initializeUI() {
+        mainPanel = new JPanel(new BorderLayout());
+
+        // Create top panel with recording toggle and filter
+        JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        recordCheckbox = new JCheckBox("Record last " + journal.getCapacity() + " requests", journal.isEnabled());
+        recordCheckbox.addActionListener(e -> {
+            journal.setEnabled(recordCheckbox.isSelected());
+            updateTimer();
+        });
+
+        filterField = new JTextField(25);
+        filterField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                refresh();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                refresh();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                refresh();
+            }
+        });
+
+        JButton clearButton = new JButton("Clear");
+        clearButton.addActionListener(e -> {
+            journal.clear();
+            refresh();
+        });
+
+        topPanel.add(recordCheckbox);
+        topPanel.add(new JLabel("Filter:"));
+        topPanel.add(filterField);
+        topPanel.add(clearButton);
+
+        // Create table for journal entries
+        String[] columnNames = {"Time", "Source", "URL", "Rules", "Changes", "Duration (us)", "Token Version"};
+        tableModel = new DefaultTableModel(columnNames, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        journalTable = new JTable(tableModel);
+        journalTable.getColumnModel().getColumn(0).setPreferredWidth(90);
+        journalTable.getColumnModel().getColumn(1).setPreferredWidth(90);
+        journalTable.getColumnModel().getColumn(2).setPreferredWidth(300);
+        journalTable.getColumnModel().getColumn(3).setPreferredWidth(150);
+        journalTable.getColumnModel().getColumn(4).setPreferredWidth(300);
+        journalTable.getColumnModel().getColumn(5).setPreferredWidth(70);
+        journalTable.getColumnModel().getColumn(6).setPreferredWidth(90);
+
+        JScrollPane scrollPane = new JScrollPane(journalTable);
+        scrollPane.setPreferredSize(new Dimension(600, 300));
+
+        // Assemble the main panel
+        mainPanel.add(topPanel, BorderLayout.NORTH);
+        mainPanel.add(scrollPane, BorderLayout.CENTER);
+        mainPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+        // Refresh only while recording
+        refreshTimer = new Timer(REFRESH_MILLIS, e -> refresh());
+        updateTimer();
+    }
+
+    /**
+     * Starts or stops the refresh timer to match the recording state.
+     */
+    private void updateTimer() {
+        if (journal.isEnabled()) {
+            refreshTimer.start();
+        } else {
+            refreshTimer.stop();
+        }
+        refresh();
+    }
+
+    /**
+     * Reloads the table from a journal snapshot, applying the filter.
+     */
+    private void refresh() {
+        String filter = filterField.getText().trim().toLowerCase(Locale.ROOT);
+        List<RequestJournal.Entry> entries = journal.snapshot();
+
+        tableModel.setRowCount(0);
+        for (RequestJournal.Entry entry : entries) {
+            if (!entry.matches(filter)) {
+                continue;
+            }
+            tableModel.addRow(new Object[]{
+                    timeFormat.format(new Date(entry.getTimestamp())),
+                    entry.getSource(),
+                    entry.getUrl(),
+                    String.join(", ", entry.getRules()),
+                    String.join("; ", entry.getChanges()),
+                    entry.getNanos() / 1000,
+                    entry.getTokenVersion()
+            });
+        }
+    }
+}
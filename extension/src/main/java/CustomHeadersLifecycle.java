@@ -0,0 +1,111 @@
+import burp.api.montoya.logging.Logging;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Tracks the extension's background resources (executors, timers, caches, file
+ * handles) and releases them when Burp unloads the extension.
+ * Resources are closed in reverse registration order on one background thread, and
+ * the unload waits at most a bounded time for them, so a stuck resource cannot hang
+ * Burp. Resources registered after shutdown, such as tabs built late, are closed
+ * immediately.
+ */
+public class CustomHeadersLifecycle {
+
+    public static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+
+    private final Logging logging;
+    private final Deque<Resource> resources = new ArrayDeque<>();
+    private boolean closed;
+
+    // Name of the resource being closed, reported if shutdown times out
+    private volatile String closing;
+
+    /**
+     * Constructs a new CustomHeadersLifecycle.
+     *
+     * @param logging The logging service
+     */
+    public CustomHeadersLifecycle(Logging logging) {
+        this.logging = logging;
+    }
+
+    /**
+     * Registers a resource to close on unload.
+     *
+     * @param name     The name reported in the log
+     * @param resource The resource
+     */
+    public void register(String name, AutoCloseable resource) {
+        synchronized (this) {
+            if (!closed) {
+                resources.push(new Resource(name, resource));
+                return;
+            }
+        }
+        close(new Resource(name, resource));
+    }
+
+    /**
+     * Closes every registered resource, newest first, waiting at most the given time.
+     * Later calls do nothing.
+     *
+     * @param timeoutMillis The maximum time to wait for the resources to close
+     * @return true if every resource closed in time
+     */
+    public boolean shutdown(long timeoutMillis) {
+        Resource[] pending;
+        synchronized (this) {
+            if (closed) {
+                return true;
+            }
+            closed = true;
+            pending = resources.toArray(new Resource[0]);
+            resources.clear();
+        }
+
+        long start = System.nanoTime();
+        Thread closer = Thread.ofVirtual().name("CustomHeaderZ-unload").start(() -> {
+            for (Resource resource : pending) {
+                closing = resource.name;
+                close(resource);
+            }
+            closing = null;
+        });
+        try {
+            closer.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (closer.isAlive()) {
+            // Read before interrupting: an interrupted resource may return and clear it at once
+            String stuck = closing;
+            closer.interrupt();
+            logging.logToError("[CustomHeaderZ] Unload timed out after " + timeoutMillis + " ms closing " + stuck);
+            return false;
+        }
+        logging.logToOutput("[CustomHeaderZ] Released " + pending.length + " resources in " +
+                (System.nanoTime() - start) / 1_000_000 + " ms");
+        return true;
+    }
+
+    private void close(Resource resource) {
+        try {
+            resource.resource.close();
+        } catch (Exception e) {
+            logging.logToError("[CustomHeaderZ] Could not close " + resource.name + ": " + e.getMessage());
+        }
+    }
+
+    private static final class Resource {
+        final String name;
+        final AutoCloseable resource;
+
+        Resource(String name, AutoCloseable resource) {
+            this.name = name;
+            this.resource = resource;
+        }
+    }
+}
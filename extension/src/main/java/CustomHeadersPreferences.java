@@ -0,0 +1,800 @@
+import burp.api.montoya.persistence.Preferences;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persists custom header rules in Burp's preferences.
+ * Rows are stored under indexed keys; per-row settings edited through dialogs
+ * (extraction pattern, injection target, tool scope) are written immediately,
+ * while the table columns are written on save. Each rule set profile keeps its rows
+ * under its own key prefix, so switching profiles rewrites no rows; the default
+ * profile uses the original {@code header_} keys.
+ */
+public class CustomHeadersPreferences {
+
+    // Row key prefix of the default profile, which predates profiles
+    private static final String DEFAULT_ROW_PREFIX = "header_";
+
+    // Per-row settings edited in dialogs, by preference type, moved together when a row is removed
+    private static final String[] ROW_STRING_KEYS = {"regex_", "dynamic_placeholder_", "target_", "tools_", "window_",
+            "group_", "aggregation_", "pool_", "pool_mode_", "pool_rate_", "cond_methods_", "cond_type_", "cond_url_",
+            "cond_body_", "derive_"};
+    private static final String[] ROW_BOOLEAN_KEYS = {"isregex_", "pipeline_"};
+    private static final String[] ROW_INTEGER_KEYS = {"pool_burst_", "pool_wait_"};
+
+    private final Preferences preferences;
+    private final String rowPrefix;
+
+    // Live pools by row, kept while their settings are unchanged so rotation and rate
+    // limits survive rules being republished after an unrelated edit
+    private final Map<Integer, ValuePool> pools = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new CustomHeadersPreferences.
+     *
+     * @param preferences The preferences used to store configuration
+     */
+    public CustomHeadersPreferences(Preferences preferences) {
+        this(preferences, DEFAULT_ROW_PREFIX);
+    }
+
+    private CustomHeadersPreferences(Preferences preferences, String rowPrefix) {
+        this.preferences = preferences;
+        this.rowPrefix = rowPrefix;
+    }
+
+    /**
+     * Gets a store for the rows of a rule set profile. Global settings are shared
+     * with this store; only the rows and their settings are kept apart.
+     *
+     * @param id The profile's id; 0 is the default profile
+     * @return The profile's store
+     */
+    public CustomHeadersPreferences forProfile(int id) {
+        return new CustomHeadersPreferences(preferences, id == 0 ? DEFAULT_ROW_PREFIX : "profile" + id + "_header_");
+    }
+
+    /**
+     * Loads the rule set profiles.
+     *
+     * @return Profile names by id, in display order; only the default profile if none are saved
+     */
+    public Map<Integer, String> loadProfiles() {
+        Map<Integer, String> profiles = new LinkedHashMap<>();
+        int count = getInt("profile_count", 0);
+        for (int i = 0; i < count; i++) {
+            Integer id = preferences.getInteger("profile_id_" + i);
+            String name = preferences.getString("profile_name_" + i);
+            if (id != null && name != null) {
+                profiles.put(id, name);
+            }
+        }
+        if (profiles.isEmpty()) {
+            profiles.put(0, "Default");
+        }
+        return profiles;
+    }
+
+    /**
+     * Saves the rule set profile list. Rows are saved separately through each profile's store.
+     *
+     * @param profiles Profile names by id, in display order
+     */
+    public void saveProfiles(Map<Integer, String> profiles) {
+        int previous = getInt("profile_count", 0);
+        int i = 0;
+        for (Map.Entry<Integer, String> profile : profiles.entrySet()) {
+            preferences.setInteger("profile_id_" + i, profile.getKey());
+            preferences.setString("profile_name_" + i, profile.getValue());
+            i++;
+        }
+        for (; i < previous; i++) {
+            preferences.deleteInteger("profile_id_" + i);
+            preferences.deleteString("profile_name_" + i);
+        }
+        preferences.setInteger("profile_count", profiles.size());
+    }
+
+    /**
+     * Loads the id of the profile whose rules are applied.
+     *
+     * @return The active profile's id, defaulting to the default profile
+     */
+    public int loadActiveProfile() {
+        return getInt("active_profile", 0);
+    }
+
+    /**
+     * Saves the id of the profile whose rules are applied; the only write a profile switch makes.
+     *
+     * @param id The active profile's id
+     */
+    public void saveActiveProfile(int id) {
+        preferences.setInteger("active_profile", id);
+    }
+
+    /**
+     * Removes every row of this store's profile and the rows' settings.
+     */
+    public void deleteRows() {
+        int count = getInt(rowPrefix + "count", 0);
+        clearSavedHeaders();
+        for (int row = 0; row < count; row++) {
+            deleteRowSettings(row);
+            preferences.deleteBoolean(rowPrefix + "isregex_" + row);
+        }
+        preferences.deleteInteger(rowPrefix + "count");
+    }
+
+    /**
+     * Loads the global enabled state.
+     *
+     * @return true if custom headers are enabled, defaulting to true
+     */
+    public boolean loadEnabled() {
+        Boolean enabled = preferences.getBoolean("enable_headers");
+        return enabled == null || enabled;
+    }
+
+    /**
+     * Saves the global enabled state.
+     *
+     * @param enabled Whether custom headers are enabled
+     */
+    public void saveEnabled(boolean enabled) {
+        preferences.setBoolean("enable_headers", enabled);
+    }
+
+    /**
+     * Loads how header rules are written into the header block.
+     *
+     * @return The saved placement, defaulting to moving replaced headers to the end
+     */
+    public HeaderPlacement loadHeaderPlacement() {
+        try {
+            return HeaderPlacement.parse(preferences.getString("header_placement"));
+        } catch (IllegalArgumentException e) {
+            return HeaderPlacement.MOVE_TO_END;
+        }
+    }
+
+    /**
+     * Saves how header rules are written into the header block.
+     *
+     * @param placement The header placement
+     */
+    public void saveHeaderPlacement(HeaderPlacement placement) {
+        preferences.setString("header_placement", placement.toSpec());
+    }
+
+    /**
+     * Loads whether tokens are shared with other instances through a file.
+     *
+     * @return true if token sharing is enabled, defaulting to false
+     */
+    public boolean loadTokenSharing() {
+        Boolean sharing = preferences.getBoolean("token_share_enabled");
+        return sharing != null && sharing;
+    }
+
+    /**
+     * Loads the shared token file path.
+     *
+     * @return The path, or null if none is set
+     */
+    public String loadTokenSharePath() {
+        return preferences.getString("token_share_path");
+    }
+
+    /**
+     * Saves the token sharing settings.
+     *
+     * @param enabled Whether tokens are shared
+     * @param path    The shared token file path
+     */
+    public void saveTokenSharing(boolean enabled, String path) {
+        preferences.setBoolean("token_share_enabled", enabled);
+        preferences.setString("token_share_path", path);
+    }
+
+    /**
+     * Loads all saved token acquisition flows. Flows whose URL no longer parses are skipped.
+     *
+     * @return The saved flows in order, or an empty list if none are saved
+     */
+    public List<TokenFlow> loadFlows() {
+        List<TokenFlow> flows = new ArrayList<>();
+        Integer flowCount = preferences.getInteger("flow_count");
+        if (flowCount == null) {
+            return flows;
+        }
+
+        for (int i = 0; i < flowCount; i++) {
+            String name = preferences.getString("flow_name_" + i);
+            String url = preferences.getString("flow_url_" + i);
+            if (name == null || url == null) {
+                continue;
+            }
+            Boolean enabled = preferences.getBoolean("flow_enabled_" + i);
+            String request = preferences.getString("flow_request_" + i);
+            try {
+                flows.add(TokenFlow.builder(name, url)
+                        .enabled(enabled == null || enabled)
+                        .request(request != null ? request : "")
+                        .extractions(parseExtractions(preferences.getString("flow_extract_" + i)))
+                        .refreshSeconds(getInt("flow_refresh_" + i, 0))
+                        .maxAttempts(getInt("flow_attempts_" + i, 3))
+                        .maxConcurrent(getInt("flow_concurrency_" + i, 1))
+                        .build());
+            } catch (IllegalArgumentException e) {
+                // Leave an unparseable flow out rather than failing the whole load
+            }
+        }
+        return flows;
+    }
+
+    /**
+     * Saves all token acquisition flows, replacing any previously saved flows.
+     *
+     * @param flows The flows in order
+     */
+    public void saveFlows(List<TokenFlow> flows) {
+        Integer oldCount = preferences.getInteger("flow_count");
+        for (int i = flows.size(); oldCount != null && i < oldCount; i++) {
+            for (String key : new String[]{"name", "url", "request", "extract"}) {
+                preferences.deleteString("flow_" + key + "_" + i);
+            }
+            preferences.deleteBoolean("flow_enabled_" + i);
+            preferences.deleteInteger("flow_refresh_" + i);
+            preferences.deleteInteger("flow_attempts_" + i);
+            preferences.deleteInteger("flow_concurrency_" + i);
+        }
+
+        preferences.setInteger("flow_count", flows.size());
+        for (int i = 0; i < flows.size(); i++) {
+            TokenFlow flow = flows.get(i);
+            preferences.setString("flow_name_" + i, flow.getName());
+            preferences.setString("flow_url_" + i, flow.getUrl());
+            preferences.setBoolean("flow_enabled_" + i, flow.isEnabled());
+            preferences.setString("flow_request_" + i, flow.getRequest());
+            preferences.setString("flow_extract_" + i, formatExtractions(flow.getExtractions()));
+            preferences.setInteger("flow_refresh_" + i, flow.getRefreshSeconds());
+            preferences.setInteger("flow_attempts_" + i, flow.getMaxAttempts());
+            preferences.setInteger("flow_concurrency_" + i, flow.getMaxConcurrent());
+        }
+    }
+
+    /**
+     * Parses extractions written one per line as {@code Rule Name=extractor spec}.
+     *
+     * @param text The extraction lines, or null
+     * @return The extractor specs by rule name
+     */
+    public static Map<String, String> parseExtractions(String text) {
+        Map<String, String> extractions = new LinkedHashMap<>();
+        if (text == null) {
+            return extractions;
+        }
+        for (String line : text.split("\r?\n")) {
+            int eq = line.indexOf('=');
+            if (eq > 0 && !line.substring(eq + 1).trim().isEmpty()) {
+                extractions.put(line.substring(0, eq).trim(), line.substring(eq + 1).trim());
+            }
+        }
+        return extractions;
+    }
+
+    /**
+     * Formats extractions one per line as {@code Rule Name=extractor spec}.
+     *
+     * @param extractions The extractor specs by rule name
+     * @return The extraction lines
+     */
+    public static String formatExtractions(Map<String, String> extractions) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> entry : extractions.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append('\n');
+            }
+            sb.append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        return sb.toString();
+    }
+
+    private int getInt(String key, int defaultValue) {
+        Integer value = preferences.getInteger(key);
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * Loads all saved header rows, including disabled ones.
+     *
+     * @return The saved headers in row order, or an empty list if none are saved
+     */
+    public List<CustomHeadersConfig.CustomHeader> loadHeaders() {
+        List<CustomHeadersConfig.CustomHeader> headers = new ArrayList<>();
+
+        Integer headerCount = preferences.getInteger(rowPrefix + "count");
+        if (headerCount == null) {
+            return headers;
+        }
+
+        for (int i = 0; i < headerCount; i++) {
+            String name = preferences.getString(rowPrefix + "name_" + i);
+            String value = preferences.getString(rowPrefix + "value_" + i);
+            Boolean enabled = preferences.getBoolean(rowPrefix + "enabled_" + i);
+            Boolean dynamic = preferences.getBoolean(rowPrefix + "dynamic_" + i);
+            String colorName = preferences.getString(rowPrefix + "color_" + i);
+
+            if (name != null && value != null && enabled != null) {
+                // If dynamic was null (for backward compatibility), default to false
+                if (dynamic == null) dynamic = false;
+                if (colorName == null) colorName = "None";
+
+                headers.add(readHeader(i, name, value, enabled, dynamic, colorName));
+            }
+        }
+        return headers;
+    }
+
+    /**
+     * Loads all saved header rows, or the example row shown to first-time users if none are saved.
+     *
+     * @return The saved headers in row order, or a list with the default header
+     */
+    public List<CustomHeadersConfig.CustomHeader> loadHeadersOrDefault() {
+        List<CustomHeadersConfig.CustomHeader> headers = loadHeaders();
+        if (headers.isEmpty()) {
+            headers.add(readHeader(0, "X-Custom-Header", "CustomValue", true, false, "None"));
+        }
+        return headers;
+    }
+
+    /**
+     * Saves the table columns of every header row, replacing any previously saved rows.
+     *
+     * @param headers The headers in row order
+     */
+    public void saveHeaders(List<CustomHeadersConfig.CustomHeader> headers) {
+        // First, clear any existing saved headers
+        clearSavedHeaders();
+
+        preferences.setInteger(rowPrefix + "count", headers.size());
+        for (int i = 0; i < headers.size(); i++) {
+            CustomHeadersConfig.CustomHeader header = headers.get(i);
+            preferences.setString(rowPrefix + "name_" + i, header.getName());
+            preferences.setString(rowPrefix + "value_" + i, header.getValue());
+            preferences.setBoolean(rowPrefix + "enabled_" + i, header.isEnabled());
+            preferences.setBoolean(rowPrefix + "dynamic_" + i, header.isDynamic());
+            preferences.setString(rowPrefix + "color_" + i, header.getColorName());
+        }
+    }
+
+    /**
+     * Clears saved headers from preferences.
+     */
+    private void clearSavedHeaders() {
+        Integer headerCount = preferences.getInteger(rowPrefix + "count");
+        if (headerCount == null) {
+            return;
+        }
+
+        for (int i = 0; i < headerCount; i++) {
+            preferences.deleteString(rowPrefix + "name_" + i);
+            preferences.deleteString(rowPrefix + "value_" + i);
+            preferences.deleteBoolean(rowPrefix + "enabled_" + i);
+            preferences.deleteBoolean(rowPrefix + "dynamic_" + i);
+            preferences.deleteString(rowPrefix + "color_" + i);
+            // We don't delete regex patterns here to allow for reuse if headers are readded
+        }
+    }
+
+    /**
+     * Builds a header from its table columns and the row's saved settings.
+     *
+     * @param row       The row index of the header
+     * @param name      The header name
+     * @param value     The header value
+     * @param enabled   Whether the header is enabled
+     * @param dynamic   Whether the header value is dynamically extracted
+     * @param colorName The color name for UI display
+     * @return The complete header
+     */
+    public CustomHeadersConfig.CustomHeader readHeader(int row, String name, String value, boolean enabled,
+                                                       boolean dynamic, String colorName) {
+        String pattern = dynamic ? getPattern(row) : "";
+        CustomHeadersConfig.CustomHeader.Builder builder = CustomHeadersConfig.CustomHeader.builder(name, value)
+                .enabled(enabled)
+                .dynamic(dynamic)
+                .colorName(colorName)
+                .pattern(pattern, isRegexExtraction(row))
+                .target(getInjectionTarget(row))
+                .toolMask(getToolMask(row))
+                .scanWindow(getScanWindow(row))
+                .captureGroup(getCaptureGroup(row))
+                .aggregation(getAggregation(row))
+                .pool(dynamic ? null : getPool(row))
+                .condition(getCondition(row))
+                .derivation(dynamic ? "" : getDerivation(row));
+        if (dynamic && isPipelineExtraction(row)) {
+            builder.pipeline(pattern);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Removes a row's dialog-edited settings and moves those of every later row down one
+     * index, so each rule keeps its own target, tool scope, pool and condition when a row
+     * above it is deleted.
+     *
+     * @param row   The index of the removed row
+     * @param count The number of rows before the removal
+     */
+    public void removeRowSettings(int row, int count) {
+        for (int i = row; i < count - 1; i++) {
+            moveRowSettings(i + 1, i);
+        }
+        deleteRowSettings(count - 1);
+        preferences.deleteBoolean(rowPrefix + "isregex_" + (count - 1));
+    }
+
+    private void moveRowSettings(int from, int to) {
+        for (String key : ROW_STRING_KEYS) {
+            String value = preferences.getString(rowPrefix + key + from);
+            if (value != null) {
+                preferences.setString(rowPrefix + key + to, value);
+            } else {
+                preferences.deleteString(rowPrefix + key + to);
+            }
+        }
+        for (String key : ROW_BOOLEAN_KEYS) {
+            Boolean value = preferences.getBoolean(rowPrefix + key + from);
+            if (value != null) {
+                preferences.setBoolean(rowPrefix + key + to, value);
+            } else {
+                preferences.deleteBoolean(rowPrefix + key + to);
+            }
+        }
+        for (String key : ROW_INTEGER_KEYS) {
+            Integer value = preferences.getInteger(rowPrefix + key + from);
+            if (value != null) {
+                preferences.setInteger(rowPrefix + key + to, value);
+            } else {
+                preferences.deleteInteger(rowPrefix + key + to);
+            }
+        }
+        // The live pool moves with its row, keeping its rotation and rate limit state
+        ValuePool pool = pools.remove(from);
+        if (pool != null) {
+            pools.put(to, pool);
+        } else {
+            pools.remove(to);
+        }
+    }
+
+    /**
+     * Removes the dialog-edited settings of a row.
+     *
+     * @param row The row index of the header
+     */
+    public void deleteRowSettings(int row) {
+        preferences.deleteString(rowPrefix + "regex_" + row);
+        preferences.deleteBoolean(rowPrefix + "pipeline_" + row);
+        preferences.deleteString(rowPrefix + "dynamic_placeholder_" + row);
+        preferences.deleteString(rowPrefix + "target_" + row);
+        preferences.deleteString(rowPrefix + "tools_" + row);
+        preferences.deleteString(rowPrefix + "window_" + row);
+        preferences.deleteString(rowPrefix + "group_" + row);
+        preferences.deleteString(rowPrefix + "aggregation_" + row);
+        setPool(row, null);
+        setCondition(row, RuleCondition.ALWAYS);
+        setDerivation(row, "");
+    }
+
+    /**
+     * Saves the dialog-edited settings of a row from a complete header, such as an
+     * imported one, replacing any settings left at that row index.
+     *
+     * @param row    The row index of the header
+     * @param header The header
+     */
+    public void saveRowSettings(int row, CustomHeadersConfig.CustomHeader header) {
+        deleteRowSettings(row);
+        if (header.isPipeline()) {
+            setPipeline(row, header.getPattern());
+        } else if (header.isDynamic()) {
+            setPattern(row, header.getPattern(), header.isRegex());
+        }
+        setInjectionTarget(row, header.getTarget());
+        setToolMask(row, header.getToolMask());
+        setScanWindow(row, header.getScanWindow());
+        setCapture(row, header.getCaptureGroup(), header.getAggregation());
+        setPool(row, header.getPool());
+        setCondition(row, header.getCondition());
+        setDerivation(row, header.getDerivation());
+    }
+
+    /**
+     * Gets the saved extraction pattern for a row without applying the default.
+     *
+     * @param row The row index of the header
+     * @return The pattern string, or null if none is set
+     */
+    public String getSavedPattern(int row) {
+        return preferences.getString(rowPrefix + "regex_" + row);
+    }
+
+    /**
+     * Gets the extraction pattern for a specific header row.
+     *
+     * @param row The row index of the header
+     * @return The pattern string, or the default pattern if none is set
+     */
+    public String getPattern(int row) {
+        String pattern = getSavedPattern(row);
+        return pattern != null ? pattern : CustomHeadersConfig.DEFAULT_REGEX;
+    }
+
+    /**
+     * Checks if a row uses regex extraction (as opposed to simple string matching).
+     *
+     * @param row The row index of the header
+     * @return True if regex extraction is used, false for simple string matching
+     */
+    public boolean isRegexExtraction(int row) {
+        Boolean isRegex = preferences.getBoolean(rowPrefix + "isregex_" + row);
+        // Default to regex for backward compatibility
+        return isRegex == null || isRegex;
+    }
+
+    /**
+     * Saves the extraction pattern for a row.
+     *
+     * @param row     The row index of the header
+     * @param pattern The extraction pattern
+     * @param isRegex Whether the pattern is a regex or simple string
+     */
+    public void setPattern(int row, String pattern, boolean isRegex) {
+        preferences.setString(rowPrefix + "regex_" + row, pattern);
+        preferences.setBoolean(rowPrefix + "isregex_" + row, isRegex);
+        preferences.deleteBoolean(rowPrefix + "pipeline_" + row);
+    }
+
+    /**
+     * Checks if a row's pattern is an extractor pipeline spec.
+     *
+     * @param row The row index of the header
+     * @return True if the pattern is compiled as an extractor pipeline
+     */
+    public boolean isPipelineExtraction(int row) {
+        Boolean pipeline = preferences.getBoolean(rowPrefix + "pipeline_" + row);
+        return pipeline != null && pipeline;
+    }
+
+    /**
+     * Saves an extractor pipeline spec as a row's pattern.
+     *
+     * @param row  The row index of the header
+     * @param spec The pipeline spec, such as json:/data/token | jwt:sub
+     */
+    public void setPipeline(int row, String spec) {
+        preferences.setString(rowPrefix + "regex_" + row, spec);
+        preferences.setBoolean(rowPrefix + "isregex_" + row, false);
+        preferences.setBoolean(rowPrefix + "pipeline_" + row, true);
+    }
+
+    /**
+     * Gets where a header row's value is injected.
+     *
+     * @param row The row index of the header
+     * @return The injection target, defaulting to a request header
+     */
+    public InjectionTarget getInjectionTarget(int row) {
+        return InjectionTarget.fromName(preferences.getString(rowPrefix + "target_" + row));
+    }
+
+    public void setInjectionTarget(int row, InjectionTarget target) {
+        preferences.setString(rowPrefix + "target_" + row, target.name());
+    }
+
+    /**
+     * Gets the tools a header row applies to.
+     *
+     * @param row The row index of the header
+     * @return The tool mask, defaulting to all tools
+     */
+    public int getToolMask(int row) {
+        return ToolScope.parse(preferences.getString(rowPrefix + "tools_" + row));
+    }
+
+    public void setToolMask(int row, int toolMask) {
+        preferences.setString(rowPrefix + "tools_" + row, ToolScope.format(toolMask));
+    }
+
+    /**
+     * Gets the part of each macro response body a row's pattern is matched against.
+     *
+     * @param row The row index of the header
+     * @return The scan window, defaulting to the whole body
+     */
+    public ScanWindow getScanWindow(int row) {
+        return ScanWindow.parse(preferences.getString(rowPrefix + "window_" + row));
+    }
+
+    public void setScanWindow(int row, ScanWindow window) {
+        if (window.isWholeBody()) {
+            preferences.deleteString(rowPrefix + "window_" + row);
+        } else {
+            preferences.setString(rowPrefix + "window_" + row, window.format());
+        }
+    }
+
+    /**
+     * Gets the regex capture group a row's value is read from.
+     *
+     * @param row The row index of the header
+     * @return The group name or number, or empty for the default group
+     */
+    public String getCaptureGroup(int row) {
+        String group = preferences.getString(rowPrefix + "group_" + row);
+        return group != null ? group : "";
+    }
+
+    /**
+     * Gets how a row combines values from several regex matches.
+     *
+     * @param row The row index of the header
+     * @return The aggregation, defaulting to the first match
+     */
+    public MatchAggregation getAggregation(int row) {
+        return MatchAggregation.fromName(preferences.getString(rowPrefix + "aggregation_" + row));
+    }
+
+    /**
+     * Saves a row's capture group and aggregation, removing the keys for the defaults.
+     *
+     * @param row         The row index of the header
+     * @param group       The group name or number, or empty for the default group
+     * @param aggregation How values from several matches are combined
+     */
+    public void setCapture(int row, String group, MatchAggregation aggregation) {
+        if (group == null || group.trim().isEmpty()) {
+            preferences.deleteString(rowPrefix + "group_" + row);
+        } else {
+            preferences.setString(rowPrefix + "group_" + row, group.trim());
+        }
+        if (aggregation == MatchAggregation.FIRST) {
+            preferences.deleteString(rowPrefix + "aggregation_" + row);
+        } else {
+            preferences.setString(rowPrefix + "aggregation_" + row, aggregation.name());
+        }
+    }
+
+    /**
+     * Gets the value pool a static row rotates through. The same pool object is
+     * returned while its saved settings are unchanged.
+     *
+     * @param row The row index of the header
+     * @return The pool, or null if the row has none or its saved settings are invalid
+     */
+    public ValuePool getPool(int row) {
+        String values = preferences.getString(rowPrefix + "pool_" + row);
+        if (values == null) {
+            pools.remove(row);
+            return null;
+        }
+        ValuePool pool;
+        try {
+            String rate = preferences.getString(rowPrefix + "pool_rate_" + row);
+            pool = ValuePool.parse(values, preferences.getString(rowPrefix + "pool_mode_" + row),
+                    rate != null ? Double.parseDouble(rate) : 0, getInt(rowPrefix + "pool_burst_" + row, 1),
+                    getInt(rowPrefix + "pool_wait_" + row, ValuePool.DEFAULT_MAX_WAIT_MILLIS));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        ValuePool current = pools.get(row);
+        if (pool.hasSameSettings(current)) {
+            return current;
+        }
+        pools.put(row, pool);
+        return pool;
+    }
+
+    /**
+     * Saves the value pool for a row, or removes it.
+     *
+     * @param row  The row index of the header
+     * @param pool The pool, or null to send the fixed value
+     */
+    public void setPool(int row, ValuePool pool) {
+        if (pool == null) {
+            preferences.deleteString(rowPrefix + "pool_" + row);
+            preferences.deleteString(rowPrefix + "pool_mode_" + row);
+            preferences.deleteString(rowPrefix + "pool_rate_" + row);
+            preferences.deleteInteger(rowPrefix + "pool_burst_" + row);
+            preferences.deleteInteger(rowPrefix + "pool_wait_" + row);
+            pools.remove(row);
+            return;
+        }
+        preferences.setString(rowPrefix + "pool_" + row, pool.format());
+        preferences.setString(rowPrefix + "pool_mode_" + row, pool.getSelection().name());
+        preferences.setString(rowPrefix + "pool_rate_" + row, String.valueOf(pool.getRatePerSecond()));
+        preferences.setInteger(rowPrefix + "pool_burst_" + row, pool.getBurst());
+        preferences.setInteger(rowPrefix + "pool_wait_" + row, pool.getMaxWaitMillis());
+    }
+
+    /**
+     * Gets the request conditions of a row.
+     *
+     * @param row The row index of the header
+     * @return The condition, or {@link RuleCondition#ALWAYS} if none is set or the saved URL regex is invalid
+     */
+    public RuleCondition getCondition(int row) {
+        try {
+            return RuleCondition.of(preferences.getString(rowPrefix + "cond_methods_" + row),
+                    preferences.getString(rowPrefix + "cond_type_" + row),
+                    preferences.getString(rowPrefix + "cond_url_" + row),
+                    preferences.getString(rowPrefix + "cond_body_" + row));
+        } catch (IllegalArgumentException e) {
+            return RuleCondition.ALWAYS;
+        }
+    }
+
+    /**
+     * Saves the request conditions of a row, removing the keys of empty settings.
+     *
+     * @param row       The row index of the header
+     * @param condition The condition
+     */
+    public void setCondition(int row, RuleCondition condition) {
+        setOrDelete(rowPrefix + "cond_methods_" + row, condition.getMethods());
+        setOrDelete(rowPrefix + "cond_type_" + row, condition.getContentType());
+        setOrDelete(rowPrefix + "cond_url_" + row, condition.getUrlRegex());
+        setOrDelete(rowPrefix + "cond_body_" + row, condition.getBodyLiteral());
+    }
+
+    /**
+     * Gets the expression a row's value is derived from.
+     *
+     * @param row The row index of the header
+     * @return The derivation, or empty if the row sends its own value
+     */
+    public String getDerivation(int row) {
+        String derivation = preferences.getString(rowPrefix + "derive_" + row);
+        return derivation != null ? derivation : "";
+    }
+
+    /**
+     * Saves the expression a row's value is derived from, removing it when empty.
+     *
+     * @param row        The row index of the header
+     * @param derivation The derivation
+     */
+    public void setDerivation(int row, String derivation) {
+        setOrDelete(rowPrefix + "derive_" + row, derivation.trim());
+    }
+
+    private void setOrDelete(String key, String value) {
+        if (value.isEmpty()) {
+            preferences.deleteString(key);
+        } else {
+            preferences.setString(key, value);
+        }
+    }
+
+    public String getDynamicPlaceholder(int row) {
+        return preferences.getString(rowPrefix + "dynamic_placeholder_" + row);
+    }
+
+    public void setDynamicPlaceholder(int row, String value) {
+        preferences.setString(rowPrefix + "dynamic_placeholder_" + row, value);
+    }
+
+    public void setColorName(int row, String colorName) {
+        preferences.setString(rowPrefix + "color_" + row, colorName);
+    }
+}
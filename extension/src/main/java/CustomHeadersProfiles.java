@@ -0,0 +1,334 @@
+import burp.api.montoya.logging.Logging;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Named rule set profiles, for switching between targets.
+ * Each profile keeps its rows under its own preferences keys and is prepared as a
+ * {@link CustomHeadersConfig.RuleSet} on a background thread, so a switch from the
+ * editor or the hotkey only swaps the published rule set and saves the active
+ * profile's id: the next request sees the new rules, and no rows are written.
+ * Edits are saved on the same background thread once they pause for
+ * {@link #SAVE_DELAY_MILLIS}, so a burst of edits costs one write. Thread-safe;
+ * listeners are notified on the EDT.
+ */
+public class CustomHeadersProfiles implements AutoCloseable {
+
+    /** Switches to the next profile from any HTTP message editor; Burp's own hotkeys leave it free. */
+    public static final String HOTKEY = "Ctrl+Alt+Shift+P";
+
+    /** How long edits must pause before they are saved. */
+    public static final long SAVE_DELAY_MILLIS = 1000;
+
+    private final CustomHeadersConfig config;
+    private final CustomHeadersPreferences store;
+    private final Logging logging;
+    // Prepares profiles and saves edits in the background
+    private final ScheduledExecutorService preparer = Executors.newSingleThreadScheduledExecutor(
+            r -> Thread.ofVirtual().name("customheaderz-profiles").unstarted(r));
+
+    // Profile names by id, in display order; guarded by this
+    private final Map<Integer, String> profiles;
+    private int activeId;
+    // Published rows not saved yet, by profile id; guarded by this
+    private final Map<Integer, List<CustomHeadersConfig.CustomHeader>> unsaved = new HashMap<>();
+    private ScheduledFuture<?> pendingSave;
+    private boolean closed;
+
+    // One store per profile, so its value pools survive republishing
+    private final Map<Integer, CustomHeadersPreferences> stores = new ConcurrentHashMap<>();
+    private final Map<Integer, CustomHeadersConfig.RuleSet> prepared = new ConcurrentHashMap<>();
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Constructs a new CustomHeadersProfiles. Publishes the active profile's rules
+     * before returning and prepares the others in the background.
+     *
+     * @param config  The rule repository the active profile is published to
+     * @param store   The preferences-backed store holding the profile list
+     * @param logging The logging service
+     */
+    public CustomHeadersProfiles(CustomHeadersConfig config, CustomHeadersPreferences store, Logging logging) {
+        this.config = config;
+        this.store = store;
+        this.logging = logging;
+        this.profiles = store.loadProfiles();
+        int saved = store.loadActiveProfile();
+        this.activeId = profiles.containsKey(saved) ? saved : profiles.keySet().iterator().next();
+
+        CustomHeadersConfig.RuleSet rules = CustomHeadersConfig.RuleSet.of(storeFor(activeId).loadHeadersOrDefault());
+        prepared.put(activeId, rules);
+        config.apply(rules);
+        for (int id : profiles.keySet()) {
+            if (id != activeId) {
+                prepare(id);
+            }
+        }
+    }
+
+    /**
+     * Registers a listener called on the EDT after the active profile or the profile list changes.
+     *
+     * @param listener The listener
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Gets the profile names.
+     *
+     * @return The names in display order
+     */
+    public synchronized List<String> getNames() {
+        return new ArrayList<>(profiles.values());
+    }
+
+    /**
+     * Gets the position of the active profile.
+     *
+     * @return The index of the active profile in {@link #getNames}
+     */
+    public synchronized int getActiveIndex() {
+        return new ArrayList<>(profiles.keySet()).indexOf(activeId);
+    }
+
+    /**
+     * Gets the id of the active profile.
+     *
+     * @return The id the editor's rows belong to
+     */
+    public synchronized int getActiveId() {
+        return activeId;
+    }
+
+    /**
+     * Gets the store holding the active profile's rows.
+     *
+     * @return The active profile's store
+     */
+    public synchronized CustomHeadersPreferences getActiveStore() {
+        return storeFor(activeId);
+    }
+
+    /**
+     * Gets a profile's rows, including edits that are published but not saved yet.
+     *
+     * @param id The profile id
+     * @return The profile's rows, in order
+     */
+    public synchronized List<CustomHeadersConfig.CustomHeader> getRows(int id) {
+        List<CustomHeadersConfig.CustomHeader> rows = unsaved.get(id);
+        return rows != null ? rows : storeFor(id).loadHeadersOrDefault();
+    }
+
+    /**
+     * Publishes an edit of a profile's rules. The rows are saved once edits pause for
+     * {@link #SAVE_DELAY_MILLIS}, or sooner by {@link #save} or {@link #close}. Edits of
+     * a profile that is no longer active, made before the editor caught up with a
+     * switch, are ignored.
+     *
+     * @param id      The profile the rows belong to
+     * @param headers The profile's rows, in order
+     */
+    public synchronized void publish(int id, List<CustomHeadersConfig.CustomHeader> headers) {
+        if (id != activeId) {
+            return;
+        }
+        CustomHeadersConfig.RuleSet rules = CustomHeadersConfig.RuleSet.of(headers);
+        prepared.put(id, rules);
+        config.apply(rules);
+        unsaved.put(id, headers);
+        if (closed) {
+            return;
+        }
+        if (pendingSave != null) {
+            pendingSave.cancel(false);
+        }
+        pendingSave = preparer.schedule(this::saveUnsaved, SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Saves a profile's rows now.
+     *
+     * @param id      The profile the rows belong to
+     * @param headers The profile's rows, in order
+     */
+    public synchronized void save(int id, List<CustomHeadersConfig.CustomHeader> headers) {
+        storeFor(id).saveHeaders(headers);
+        unsaved.remove(id);
+    }
+
+    /**
+     * Makes a profile active. Its prepared rule set is applied at once and only the
+     * active profile's id is written; unsaved edits of the previous profile stay in
+     * its prepared rule set and are saved on their own schedule.
+     *
+     * @param index The profile's index in {@link #getNames}
+     */
+    public synchronized void switchTo(int index) {
+        int id = new ArrayList<>(profiles.keySet()).get(index);
+        if (closed || id == activeId) {
+            return;
+        }
+        CustomHeadersConfig.RuleSet rules = prepared.get(id);
+        if (rules == null) {
+            // Still being prepared; loading it here is slower but gives the same result
+            rules = CustomHeadersConfig.RuleSet.of(getRows(id));
+            prepared.put(id, rules);
+        }
+        config.apply(rules);
+        activeId = id;
+        store.saveActiveProfile(id);
+        logging.logToOutput("[CustomHeaderZ] Switched to rule profile '" + profiles.get(id) + "' (" +
+                rules.getHeaders().size() + " active rules)");
+        notifyListeners();
+    }
+
+    /**
+     * Makes the next profile active, wrapping around after the last.
+     */
+    public synchronized void next() {
+        if (profiles.size() > 1) {
+            switchTo((getActiveIndex() + 1) % profiles.size());
+        }
+    }
+
+    /**
+     * Adds a profile and makes it active.
+     *
+     * @param name    The profile name
+     * @param headers The rows to start with, saved with their settings, or null for the example row
+     * @throws IllegalArgumentException if the name is empty or taken
+     */
+    public synchronized void add(String name, List<CustomHeadersConfig.CustomHeader> headers) {
+        String trimmed = checkName(name, -1);
+        int id = 0;
+        for (int existing : profiles.keySet()) {
+            id = Math.max(id, existing + 1);
+        }
+        if (headers != null) {
+            CustomHeadersPreferences profileStore = storeFor(id);
+            profileStore.saveHeaders(headers);
+            for (int row = 0; row < headers.size(); row++) {
+                profileStore.saveRowSettings(row, headers.get(row));
+            }
+        }
+        profiles.put(id, trimmed);
+        store.saveProfiles(profiles);
+        switchTo(profiles.size() - 1);
+    }
+
+    /**
+     * Renames a profile.
+     *
+     * @param index The profile's index in {@link #getNames}
+     * @param name  The new name
+     * @throws IllegalArgumentException if the name is empty or taken
+     */
+    public synchronized void rename(int index, String name) {
+        int id = new ArrayList<>(profiles.keySet()).get(index);
+        profiles.put(id, checkName(name, id));
+        store.saveProfiles(profiles);
+        notifyListeners();
+    }
+
+    /**
+     * Deletes a profile and its rows, switching to another one first if it is active.
+     *
+     * @param index The profile's index in {@link #getNames}
+     * @throws IllegalArgumentException if it is the only profile
+     */
+    public synchronized void remove(int index) {
+        if (profiles.size() == 1) {
+            throw new IllegalArgumentException("The last profile cannot be deleted");
+        }
+        int id = new ArrayList<>(profiles.keySet()).get(index);
+        if (id == activeId) {
+            switchTo(index == 0 ? 1 : index - 1);
+        }
+        // Its rows are about to be deleted; saving its edits later would bring them back
+        unsaved.remove(id);
+        String name = profiles.remove(id);
+        store.saveProfiles(profiles);
+        storeFor(id).deleteRows();
+        stores.remove(id);
+        prepared.remove(id);
+        logging.logToOutput("[CustomHeaderZ] Deleted rule profile '" + name + "'");
+        notifyListeners();
+    }
+
+    /**
+     * Saves unsaved edits and stops preparing profiles in the background. Later
+     * switches, such as a hotkey pressed while the extension unloads, are ignored.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        saveUnsaved();
+        closed = true;
+        preparer.shutdownNow();
+    }
+
+    private String checkName(String name, int id) {
+        String trimmed = name != null ? name.trim() : "";
+        if (trimmed.isEmpty()) {
+            throw new IllegalArgumentException("The profile needs a name");
+        }
+        for (Map.Entry<Integer, String> profile : profiles.entrySet()) {
+            if (profile.getKey() != id && profile.getValue().equals(trimmed)) {
+                throw new IllegalArgumentException("A profile named '" + trimmed + "' already exists");
+            }
+        }
+        return trimmed;
+    }
+
+    /**
+     * Writes every profile's unsaved rows.
+     */
+    private synchronized void saveUnsaved() {
+        for (Map.Entry<Integer, List<CustomHeadersConfig.CustomHeader>> rows : unsaved.entrySet()) {
+            storeFor(rows.getKey()).saveHeaders(rows.getValue());
+        }
+        unsaved.clear();
+    }
+
+    private CustomHeadersPreferences storeFor(int id) {
+        return stores.computeIfAbsent(id, store::forProfile);
+    }
+
+    /**
+     * Loads and compiles a profile's saved rules off the calling thread.
+     */
+    private void prepare(int id) {
+        if (closed) {
+            return;
+        }
+        prepared.remove(id);
+        preparer.execute(() -> {
+            CustomHeadersConfig.RuleSet rules = CustomHeadersConfig.RuleSet.of(storeFor(id).loadHeadersOrDefault());
+            synchronized (this) {
+                // A profile switched to, edited or deleted meanwhile already has newer rules, or none
+                if (id != activeId && profiles.containsKey(id)) {
+                    prepared.putIfAbsent(id, rules);
+                }
+            }
+        });
+    }
+
+    private void notifyListeners() {
+        SwingUtilities.invokeLater(() -> listeners.forEach(Runnable::run));
+    }
+}
@@ -0,0 +1,52 @@
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.http.message.requests.HttpRequest;
+
+/**
+ * Presents a Burp request to {@link RuleCondition} checks.
+ * Created only when a rule has conditions; the content type is looked up once and
+ * the body is searched in place in the request's byte array, never decoded.
+ */
+public class CustomHeadersRequestView implements RuleCondition.Request {
+
+    private final HttpRequest request;
+    private String contentType;
+    private boolean contentTypeRead;
+
+    /**
+     * Constructs a new CustomHeadersRequestView.
+     *
+     * @param request The request as it was before any rule changed it
+     */
+    public CustomHeadersRequestView(HttpRequest request) {
+        this.request = request;
+    }
+
+    @Override
+    public String method() {
+        return request.method();
+    }
+
+    @Override
+    public String contentType() {
+        if (!contentTypeRead) {
+            contentType = request.headerValue("Content-Type");
+            contentTypeRead = true;
+        }
+        return contentType;
+    }
+
+    @Override
+    public String url() {
+        return request.url();
+    }
+
+    @Override
+    public boolean bodyContains(byte[] literal) {
+        ByteArray bytes = request.toByteArray();
+        int bodyOffset = request.bodyOffset();
+        if (bytes.length() - bodyOffset < literal.length) {
+            return false;
+        }
+        return bytes.indexOf(ByteArray.byteArray(literal), true, bodyOffset, bytes.length()) >= 0;
+    }
+}
@@ -0,0 +1,376 @@
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.http.message.HttpRequestResponse;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import burp.api.montoya.http.sessions.ActionResult;
+import burp.api.montoya.http.sessions.SessionHandlingAction;
+import burp.api.montoya.http.sessions.SessionHandlingActionData;
+import burp.api.montoya.logging.Logging;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Session handling action that processes macro responses, extracts tokens using regex,
+ * and dynamically updates headers with the extracted tokens. Rules sharing a regex are
+ * filled from one match pass, each from its own capture group. All tokens extracted by
+ * one run are published to the shared {@link TokenStore} together as a new
+ * {@link TokenSet} version, and the request is built from that one version, so no
+ * request mixes a new token with one from an earlier run. Live WebSocket connections
+ * pick the new version up too.
+ */
+public class CustomHeadersSessionAction implements SessionHandlingAction {
+
+    // Bodies larger than this are fingerprinted in pieces of this size
+    private static final int FINGERPRINT_CHUNK = 64 * 1024;
+
+    private final CustomHeadersConfig config;
+    private final CustomHeadersInjector injector;
+    private final TokenStore tokens;
+    private final RequestJournal journal;
+    private final Logging logging;
+
+    // Values extracted from recently seen response bytes, by pass
+    private final ExtractionCache cache = new ExtractionCache(ExtractionCache.DEFAULT_CAPACITY);
+
+    /**
+     * Constructs a new CustomHeadersSessionAction.
+     *
+     * @param config   The configuration containing header settings
+     * @param injector The injector that writes extracted tokens to each rule's target
+     * @param tokens   The store that extracted tokens are published to
+     * @param journal  The journal that traces which rules matched each request
+     * @param logging  The logging service
+     */
+    public CustomHeadersSessionAction(CustomHeadersConfig config, CustomHeadersInjector injector,
+                                      TokenStore tokens, RequestJournal journal, Logging logging) {
+        this.config = config;
+        this.injector = injector;
+        this.tokens = tokens;
+        this.journal = journal;
+        this.logging = logging;
+    }
+
+    /**
+     * Drops all cached extraction results.
+     */
+    public void clearCache() {
+        cache.clear();
+    }
+
+    @Override
+    public String name() {
+        return "CustomHeaderZ Extract Token";
+    }
+
+    @Override
+    public ActionResult performAction(SessionHandlingActionData actionData) {
+        // If custom headers are disabled or no dynamic header is enabled, return the original request unchanged.
+        // The action data carries no tool source; tool selection for dynamic headers is the
+        // scope of the Burp session handling rule that invokes this action.
+        if (!config.hasActiveDynamicRules()) {
+            return ActionResult.actionResult(actionData.request());
+        }
+
+        HttpRequest request = actionData.request();
+        List<HttpRequestResponse> macroItems = actionData.macroRequestResponses();
+
+        // Without macro responses, inject the stored values; with a shared token file these
+        // may have been refreshed by another Burp instance running the login macro
+        if (macroItems.isEmpty()) {
+            if (tokens.current().isEmpty()) {
+                logging.logToOutput("[CustomHeaderZ] No macro configured or macro did not return any response");
+                logging.raiseInfoEvent("CustomHeaderZ: No macro responses available for token extraction");
+                return ActionResult.actionResult(request);
+            }
+            logging.logToOutput("[CustomHeaderZ] No macro responses; using stored token values");
+        } else {
+            logging.logToOutput("[CustomHeaderZ] Processing " + macroItems.size() + " macro responses");
+        }
+
+        boolean tracing = journal.isEnabled();
+        long start = tracing ? System.nanoTime() : 0;
+        List<String> rules = tracing ? new ArrayList<>() : null;
+        List<String> changes = tracing ? new ArrayList<>() : null;
+
+        // Extract every rule's value first, so rules sharing a regex cost one scan per response
+        Map<String, String> extracted = macroItems.isEmpty() ? Collections.emptyMap() : extractTokens(macroItems);
+
+        // Publish the whole run as one version, then build the request from that version only
+        TokenSet current = publish(extracted);
+
+        // Process each dynamic header; values are stored even for rules whose conditions skip this request
+        List<CustomHeadersConfig.CustomHeader> headers = config.getHeaders();
+        CustomHeadersRequestView view = new CustomHeadersRequestView(actionData.request());
+        CustomHeadersInjector.Writer writer = injector.writer(request);
+        for (CustomHeadersConfig.CustomHeader header : headers) {
+            if (header.isEnabled() && header.isDynamic()) {
+                if (!header.getCondition().isAlways() && !header.getCondition().matches(view)) {
+                    continue;
+                }
+                processHeader(writer, header, current, extracted.containsKey(header.getName()), changes);
+                if (tracing) {
+                    rules.add(header.getName());
+                }
+            }
+        }
+
+        request = writer.build();
+        if (tracing) {
+            journal.record("Session action", request.url(), rules, changes, System.nanoTime() - start,
+                    current.getVersion());
+        }
+
+        return ActionResult.actionResult(request);
+    }
+
+    /**
+     * Processes a single header, injecting its value from the run's token set.
+     *
+     * @param writer    The writer building the request
+     * @param header    The header configuration to process
+     * @param current   The token set published by this run
+     * @param extracted Whether this run's macro responses yielded the value
+     * @param changes   Receives a short description of what changed, or null
+     */
+    private void processHeader(CustomHeadersInjector.Writer writer, CustomHeadersConfig.CustomHeader header,
+                               TokenSet current, boolean extracted, List<String> changes) {
+        logging.logToOutput("[CustomHeaderZ] Processing dynamic header: " + header.getName());
+
+        // Without a fresh value, the set holds the last known one, possibly refreshed by another instance
+        String token = current.get(header.getName());
+        if (token == null) {
+            logging.logToOutput("[CustomHeaderZ] No token found for header: " + header.getName());
+            if (changes != null) {
+                changes.add("No token found for '" + header.getName() + "'");
+            }
+            return;
+        }
+        if (!extracted) {
+            logging.logToOutput("[CustomHeaderZ] Using stored value for header: " + header.getName());
+        }
+
+        if (header.getTarget().isWebSocket()) {
+            logging.logToOutput("[CustomHeaderZ] Updated WebSocket value for: " + header.getName());
+            if (changes != null) {
+                changes.add("Updated WebSocket value '" + header.getName() + "'");
+            }
+            return;
+        }
+        if (header.getTarget().isResponse()) {
+            logging.logToOutput("[CustomHeaderZ] Updated response value for: " + header.getName());
+            if (changes != null) {
+                changes.add("Updated response value '" + header.getName() + "'");
+            }
+            return;
+        }
+
+        // Update the request at the rule's injection target
+        writer.inject(header, token, changes);
+        logging.raiseInfoEvent("CustomHeaderZ: Injected dynamic value for '" + header.getName() + "' (" +
+                header.getTarget().getDisplayName() + ")");
+    }
+
+    /**
+     * Publishes a run's extracted values as one token set version, so later requests
+     * and other instances use them together.
+     *
+     * @param extracted The values extracted by this run, by header name
+     * @return The token set the request is built from
+     */
+    private TokenSet publish(Map<String, String> extracted) {
+        if (extracted.isEmpty()) {
+            return tokens.current();
+        }
+        try {
+            TokenSet current = tokens.putAll(extracted);
+            logging.logToOutput("[CustomHeaderZ] Published " + extracted.size() + " values as token version " +
+                    current.getVersion());
+            return current;
+        } catch (UncheckedIOException e) {
+            // The values were still published locally
+            logging.logToError("[CustomHeaderZ] Could not write shared token file: " + e.getCause().getMessage());
+            return tokens.current();
+        }
+    }
+
+    /**
+     * Extracts the values of all enabled dynamic rules from macro responses.
+     * Each pass of the extraction plan scans response bodies incrementally within its
+     * scan window, stopping at the first response that yields all of its rules' values.
+     *
+     * @param macroItems The macro responses to extract values from
+     * @return The extracted values by header name
+     */
+    private Map<String, String> extractTokens(List<HttpRequestResponse> macroItems) {
+        Map<String, String> extracted = new HashMap<>();
+        for (ExtractionPlan.Pass pass : config.getExtractionPlan().getPasses()) {
+            logging.logToOutput("[CustomHeaderZ] Using pattern: " + pass.getRules().get(0).getPattern() +
+                    (pass.isShared() ? " (shared by " + pass.getRules().size() + " rules)" : ""));
+
+            Map<String, String> found = new HashMap<>();
+            Map<String, String> scanned = new HashMap<>();
+            StreamingTokenScanner.ChunkMatcher matcher;
+            try {
+                // Patterns and pipeline specs are compiled once and cached across requests
+                matcher = pass.matcher(scanned);
+            } catch (PatternSyntaxException e) {
+                logging.logToError("[CustomHeaderZ] Syntax error in regular expression: " + e.toString());
+                logging.raiseErrorEvent("CustomHeaderZ: Invalid regex pattern - " + e.getMessage());
+                continue;
+            } catch (IllegalArgumentException e) {
+                logging.logToError("[CustomHeaderZ] Invalid extractor: " + e.getMessage());
+                logging.raiseErrorEvent("CustomHeaderZ: Invalid extractor - " + e.getMessage());
+                continue;
+            }
+
+            for (int i = 0; i < macroItems.size() && found.size() < pass.getRules().size(); i++) {
+                HttpResponse response = macroItems.get(i).response();
+                if (response == null) {
+                    logging.logToOutput("[CustomHeaderZ] Response " + (i+1) + " is null");
+                    continue;
+                }
+
+                int before = found.size();
+                TokenExtractionEvent event = new TokenExtractionEvent();
+                event.begin();
+                try {
+                    scanned.clear();
+                    // Values from earlier responses win; later responses only fill in the rest
+                    scanResponse(response, pass, matcher, scanned, event).forEach(found::putIfAbsent);
+                } catch (IOException e) {
+                    logging.logToError("[CustomHeaderZ] Could not decode response " + (i+1) + ": " + e.getMessage());
+                    continue;
+                } catch (RuntimeException e) {
+                    // A bad response must not stop the other responses and passes from being extracted
+                    logging.logToError("[CustomHeaderZ] Could not extract from response " + (i+1) + ": " + e);
+                    continue;
+                } finally {
+                    event.end();
+                    if (event.shouldCommit()) {
+                        event.rule = ruleNames(pass);
+                        event.macroStep = i + 1;
+                        event.bodySize = response.body().length();
+                        event.matched = found.size() > before;
+                        event.commit();
+                    }
+                }
+
+                if (found.size() > before) {
+                    for (CustomHeadersConfig.CustomHeader header : pass.getRules()) {
+                        if (found.containsKey(header.getName()) && !extracted.containsKey(header.getName())) {
+                            logging.logToOutput("[CustomHeaderZ] Extracted '" + header.getName() + "' from response " +
+                                    (i+1) + ": " + found.get(header.getName()));
+                        }
+                    }
+                    extracted.putAll(found);
+                } else {
+                    logging.logToOutput("[CustomHeaderZ] No match found in response " + (i+1) +
+                            " (" + pass.getWindow() + ")");
+                    logResponseSample(response.body());
+                }
+            }
+        }
+        return extracted;
+    }
+
+    private static String ruleNames(ExtractionPlan.Pass pass) {
+        StringBuilder sb = new StringBuilder();
+        for (CustomHeadersConfig.CustomHeader header : pass.getRules()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(header.getName());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Scans one response body for a pass, copying only the scanned window out of Burp's
+     * byte array. Bytes identical to an earlier scan by the same pass are answered from
+     * the extraction cache without copying, decoding or matching them.
+     *
+     * @param response The macro response
+     * @param pass     The extraction pass
+     * @param matcher  The pass's matcher, which writes into {@code scanned}
+     * @param scanned  Receives the values found by the matcher; empty on entry
+     * @param event    The flight recorder event, marked when the cache answers
+     * @return The values found, by rule name
+     * @throws IOException if a compressed body is corrupt
+     */
+    private Map<String, String> scanResponse(HttpResponse response, ExtractionPlan.Pass pass,
+                                             StreamingTokenScanner.ChunkMatcher matcher,
+                                             Map<String, String> scanned,
+                                             TokenExtractionEvent event) throws IOException {
+        ScanWindow window = pass.getWindow();
+        ByteArray body = response.body();
+        int length = body.length();
+        String encoding = response.headerValue("Content-Encoding");
+        boolean compressed = length >= 2 &&
+                StreamingTokenScanner.isCompressed(encoding, body.getByte(0), body.getByte(1));
+
+        // The bytes the scanner needs: a plain body's window, or all of a compressed body
+        int from = 0;
+        int to = length;
+        if (!compressed && !window.isWholeBody() && length > window.getMaxBytes()) {
+            if (window.isFromTail()) {
+                from = length - window.getMaxBytes();
+            } else {
+                to = window.getMaxBytes();
+            }
+        }
+
+        // Fingerprint them in pieces, so a cache hit never copies a large body out of Burp
+        String scanEncoding = compressed ? encoding : null;
+        XxHash64.Hasher hasher = ExtractionCache.fingerprinter(scanEncoding);
+        byte[] bytes = null;
+        if (to - from <= FINGERPRINT_CHUNK) {
+            bytes = copy(body, from, to);
+            hasher.update(bytes, 0, bytes.length);
+        } else {
+            for (int chunk = from; chunk < to; chunk += FINGERPRINT_CHUNK) {
+                byte[] piece = body.subArray(chunk, Math.min(to, chunk + FINGERPRINT_CHUNK)).getBytes();
+                hasher.update(piece, 0, piece.length);
+            }
+        }
+        long fingerprint = hasher.digest();
+        Map<String, String> cached = cache.get(pass, fingerprint, to - from);
+        if (cached != null) {
+            event.cached = true;
+            logging.logToOutput("[CustomHeaderZ] Response unchanged since an earlier scan; reusing its values");
+            return cached;
+        }
+        if (bytes == null) {
+            bytes = copy(body, from, to);
+        }
+        StreamingTokenScanner.scan(bytes, 0, bytes.length, scanEncoding, window, matcher);
+        cache.put(pass, fingerprint, bytes.length, scanned);
+        return scanned;
+    }
+
+    private static byte[] copy(ByteArray body, int from, int to) {
+        return from == 0 && to == body.length() ? body.getBytes() : body.subArray(from, to).getBytes();
+    }
+
+    /**
+     * Logs a sample of the response for debugging purposes.
+     *
+     * @param body The response body to sample
+     */
+    private void logResponseSample(ByteArray body) {
+        if (body.length() > 0) {
+            int sampleLength = Math.min(body.length(), 200);
+            String sample = new String(body.subArray(0, sampleLength).getBytes(), StandardCharsets.ISO_8859_1);
+            logging.logToOutput("[CustomHeaderZ] Response sample: " + sample + (body.length() > 200 ? "..." : ""));
+        } else {
+            logging.logToOutput("[CustomHeaderZ] Response body is empty");
+        }
+    }
+}
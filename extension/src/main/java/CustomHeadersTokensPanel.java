@@ -0,0 +1,254 @@
+import burp.api.montoya.logging.Logging;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Token store viewer and sharing settings.
+ * Shows the current dynamic values, exports and imports them, and connects the
+ * store to a shared token file so several Burp instances on one machine use the
+ * tokens refreshed by whichever instance ran its login macro last.
+ */
+public class CustomHeadersTokensPanel {
+
+    // Constants
+    private static final int REFRESH_MILLIS = 1000;
+    private static final String DEFAULT_SHARE_FILE = "customheaderz-tokens.bin";
+
+    // UI Components
+    private JPanel mainPanel;
+    private Timer refreshTimer;
+    private DefaultTableModel tableModel;
+    private JCheckBox shareCheckbox;
+    private JTextField pathField;
+    private JLabel statusLabel;
+
+    // Data storage
+    private final TokenStore tokens;
+    private final CustomHeadersPreferences store;
+    private final Logging logging;
+    private long shownVersion = -1;
+
+    /**
+     * Constructs a new CustomHeadersTokensPanel. Must be called on the EDT.
+     *
+     * @param tokens  The token store to display and share
+     * @param store   The preferences-backed store holding the sharing settings
+     * @param logging The logging service
+     */
+    public CustomHeadersTokensPanel(TokenStore tokens, CustomHeadersPreferences store, Logging logging) {
+        this.tokens = tokens;
+        this.store = store;
+        this.logging = logging;
+        initializeUI();
+    }
+
+    /**
+     * Gets the main panel for this UI.
+     *
+     * @return The main panel
+     */
+    public JPanel getPanel() {
+        return mainPanel;
+    }
+
+    /**
+     * Stops the refresh timer so the panel can be garbage collected after unload.
+     */
+    public void dispose() {
+        refreshTimer.stop();
+    }
+
+    /**
+     * Connects the token store to the saved shared file if sharing is enabled.
+     * Called once at startup, before any request is processed.
+     *
+     * @param tokens  The token store
+     * @param store   The preferences-backed store holding the sharing settings
+     * @param logging The logging service
+     */
+    public static void restoreSharing(TokenStore tokens, CustomHeadersPreferences store, Logging logging) {
+        if (!store.loadTokenSharing()) {
+            return;
+        }
+        String path = store.loadTokenSharePath();
+        try {
+            tokens.share(new SharedTokenFile(Paths.get(path != null ? path : defaultSharePath()),
+                    SharedTokenFile.DEFAULT_SIZE));
+            logging.logToOutput("[CustomHeaderZ] Sharing tokens through " + tokens.getSharedFile().getPath());
+        } catch (IOException | RuntimeException e) {
+            logging.logToError("[CustomHeaderZ] Could not open shared token file: " + e.getMessage());
+            logging.raiseErrorEvent("CustomHeaderZ: Token sharing disabled - " + e.getMessage());
+        }
+    }
+
+    /**
+     * Initializes all UI components.
+     */
+    private void initializeUI() {
+        mainPanel = new JPanel(new BorderLayout());
+
+        // Create top panel with sharing settings
+        JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        SharedTokenFile shared = tokens.getSharedFile();
+        shareCheckbox = new JCheckBox("Share tokens with other Burp instances via", shared != null);
+        String savedPath = store.loadTokenSharePath();
+        pathField = new JTextField(shared != null ? shared.getPath().toString() :
+                (savedPath != null ? savedPath : defaultSharePath()), 30);
+        JButton browseButton = new JButton("Browse...");
+        statusLabel = new JLabel();
+
+        shareCheckbox.addActionListener(e -> updateSharing());
+        browseButton.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setSelectedFile(new File(pathField.getText()));
+            if (chooser.showSaveDialog(mainPanel) == JFileChooser.APPROVE_OPTION) {
+                pathField.setText(chooser.getSelectedFile().getPath());
+                if (shareCheckbox.isSelected()) {
+                    updateSharing();
+                }
+            }
+        });
+
+        topPanel.add(shareCheckbox);
+        topPanel.add(pathField);
+        topPanel.add(browseButton);
+        topPanel.add(statusLabel);
+
+        // Create table for current tokens
+        tableModel = new DefaultTableModel(new String[]{"Header Name", "Current Value"}, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable tokensTable = new JTable(tableModel);
+        tokensTable.getColumnModel().getColumn(0).setPreferredWidth(150);
+        tokensTable.getColumnModel().getColumn(1).setPreferredWidth(450);
+        JScrollPane scrollPane = new JScrollPane(tokensTable);
+        scrollPane.setPreferredSize(new Dimension(600, 300));
+
+        // Create the button panel
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        JButton exportButton = new JButton("Export Tokens...");
+        JButton importButton = new JButton("Import Tokens...");
+        exportButton.addActionListener(e -> exportTokens());
+        importButton.addActionListener(e -> importTokens());
+        buttonPanel.add(exportButton);
+        buttonPanel.add(importButton);
+
+        // Assemble the main panel
+        mainPanel.add(topPanel, BorderLayout.NORTH);
+        mainPanel.add(scrollPane, BorderLayout.CENTER);
+        mainPanel.add(buttonPanel, BorderLayout.SOUTH);
+        mainPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+        // Refresh the table when the store changes, including writes by other instances
+        refreshTimer = new Timer(REFRESH_MILLIS, e -> refresh());
+        refreshTimer.start();
+        updateStatus();
+        refresh();
+    }
+
+    /**
+     * Connects to or disconnects from the shared file to match the checkbox.
+     */
+    private void updateSharing() {
+        closeQuietly(tokens.unshare());
+        String path = pathField.getText().trim();
+        if (shareCheckbox.isSelected()) {
+            try {
+                tokens.share(new SharedTokenFile(Paths.get(path), SharedTokenFile.DEFAULT_SIZE));
+                logging.logToOutput("[CustomHeaderZ] Sharing tokens through " + path);
+            } catch (IOException | RuntimeException e) {
+                shareCheckbox.setSelected(false);
+                logging.logToError("[CustomHeaderZ] Could not open shared token file: " + e.getMessage());
+                JOptionPane.showMessageDialog(mainPanel, "Could not open shared token file:\n" + e.getMessage(),
+                        "Token Sharing", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+        store.saveTokenSharing(shareCheckbox.isSelected(), path);
+        updateStatus();
+        refresh();
+    }
+
+    private void updateStatus() {
+        statusLabel.setText(tokens.getSharedFile() != null ? "(connected)" : "");
+    }
+
+    /**
+     * Reloads the table if the token store changed since it was last shown.
+     */
+    private void refresh() {
+        TokenSet current = tokens.current();
+        if (current.getVersion() == shownVersion) {
+            return;
+        }
+        shownVersion = current.getVersion();
+        tableModel.setRowCount(0);
+        for (Map.Entry<String, String> entry : new TreeMap<>(current.asMap()).entrySet()) {
+            tableModel.addRow(new Object[]{entry.getKey(), entry.getValue()});
+        }
+    }
+
+    /**
+     * Exports the current tokens to a properties file chosen by the user.
+     */
+    private void exportTokens() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File("customheaderz-tokens.properties"));
+        if (chooser.showSaveDialog(mainPanel) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        try {
+            tokens.exportTo(chooser.getSelectedFile().toPath());
+            JOptionPane.showMessageDialog(mainPanel, "Exported " + tokens.snapshot().size() + " tokens.",
+                    "Export Tokens", JOptionPane.INFORMATION_MESSAGE);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(mainPanel, "Could not export tokens:\n" + e.getMessage(),
+                    "Export Tokens", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * Imports tokens from a properties file chosen by the user.
+     */
+    private void importTokens() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(mainPanel) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path path = chooser.getSelectedFile().toPath();
+        try {
+            int count = tokens.importFrom(path);
+            logging.logToOutput("[CustomHeaderZ] Imported " + count + " tokens from " + path);
+            refresh();
+        } catch (IOException | UncheckedIOException e) {
+            JOptionPane.showMessageDialog(mainPanel, "Could not import tokens:\n" + e.getMessage(),
+                    "Import Tokens", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void closeQuietly(SharedTokenFile file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            file.close();
+        } catch (IOException e) {
+            logging.logToError("[CustomHeaderZ] Could not close shared token file: " + e.getMessage());
+        }
+    }
+
+    private static String defaultSharePath() {
+        return Paths.get(System.getProperty("java.io.tmpdir"), DEFAULT_SHARE_FILE).toString();
+    }
+}
@@ -0,0 +1,155 @@
+import burp.api.montoya.logging.Logging;
+import burp.api.montoya.websocket.BinaryMessage;
+import burp.api.montoya.websocket.BinaryMessageAction;
+import burp.api.montoya.websocket.Direction;
+import burp.api.montoya.websocket.MessageHandler;
+import burp.api.montoya.websocket.TextMessage;
+import burp.api.montoya.websocket.TextMessageAction;
+import burp.api.montoya.websocket.WebSocketCreated;
+import burp.api.montoya.websocket.WebSocketCreatedHandler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Injects header rule values into outgoing WebSocket text messages.
+ * Rules with the {@link InjectionTarget#WEBSOCKET_JSON} target write their static
+ * value, or the latest token from the shared {@link TokenStore}, at a JSON Pointer in
+ * each client-to-server frame. Tokens are read per frame, so a rotation by the
+ * session action applies to already open sockets immediately. All rules' pointers
+ * are resolved in one {@link JsonPointerPatcher.Batch} scan per frame.
+ */
+public class CustomHeadersWebSocketHandler implements WebSocketCreatedHandler {
+
+    private final CustomHeadersConfig config;
+    private final CustomHeadersInjector injector;
+    private final TokenStore tokens;
+    private final Logging logging;
+
+    // Compiled rules for the header list they were built from; rebuilt when the editor publishes
+    private volatile CompiledRules compiled = new CompiledRules(null, new ArrayList<>());
+
+    /**
+     * Constructs a new CustomHeadersWebSocketHandler.
+     *
+     * @param config   The configuration containing header settings
+     * @param injector The injector whose compiled JSON Pointers are reused
+     * @param tokens   The store holding the current dynamic values
+     * @param logging  The logging service
+     */
+    public CustomHeadersWebSocketHandler(CustomHeadersConfig config, CustomHeadersInjector injector,
+                                         TokenStore tokens, Logging logging) {
+        this.config = config;
+        this.injector = injector;
+        this.tokens = tokens;
+        this.logging = logging;
+    }
+
+    @Override
+    public void handleWebSocketCreated(WebSocketCreated webSocketCreated) {
+        int toolBit = ToolScope.bit(webSocketCreated.toolSource().toolType());
+        webSocketCreated.webSocket().registerMessageHandler(new MessageHandler() {
+            @Override
+            public TextMessageAction handleTextMessage(TextMessage textMessage) {
+                return TextMessageAction.continueWith(patch(textMessage, toolBit));
+            }
+
+            @Override
+            public BinaryMessageAction handleBinaryMessage(BinaryMessage binaryMessage) {
+                return BinaryMessageAction.continueWith(binaryMessage.payload());
+            }
+        });
+    }
+
+    /**
+     * Applies every matching WebSocket rule to a text message.
+     *
+     * @param message The message
+     * @param toolBit The tool bit of the socket's originating tool
+     * @return The patched payload, or the original payload if nothing applied
+     */
+    private String patch(TextMessage message, int toolBit) {
+        String payload = message.payload();
+        // Fast reject: one AND against the precomputed mask of every enabled WebSocket rule
+        if (message.direction() != Direction.CLIENT_TO_SERVER || (config.getWebSocketToolMask() & toolBit) == 0) {
+            return payload;
+        }
+
+        CompiledRules rules = rules();
+        String[] values = new String[rules.rules.size()];
+        boolean any = false;
+        TokenSet current = tokens.current();
+        Map<String, String> drawn = new HashMap<>();
+        for (int i = 0; i < values.length; i++) {
+            CustomHeadersConfig.CustomHeader header = rules.rules.get(i).header;
+            if ((header.getToolMask() & toolBit) == 0) {
+                continue;
+            }
+            values[i] = header.isDerived() ?
+                    config.getDerivationPlan().resolve(current, drawn).get(header.getName()) :
+                    header.isDynamic() ? current.get(header.getName()) : header.nextValue(drawn);
+            any |= values[i] != null;
+        }
+        if (!any) {
+            return payload;
+        }
+        byte[] patched = rules.batch.apply(payload.getBytes(StandardCharsets.UTF_8), values);
+        return patched != null ? new String(patched, StandardCharsets.UTF_8) : payload;
+    }
+
+    /**
+     * Gets the compiled WebSocket rules and their pointer batch for the current header
+     * list, compiling them once per published configuration rather than once per frame.
+     */
+    private CompiledRules rules() {
+        List<CustomHeadersConfig.CustomHeader> headers = config.getHeaders();
+        CompiledRules current = compiled;
+        if (current.source == headers) {
+            return current;
+        }
+
+        List<CompiledRule> rules = new ArrayList<>();
+        for (CustomHeadersConfig.CustomHeader header : headers) {
+            if (header.getTarget().isWebSocket()) {
+                JsonPointerPatcher patcher = injector.patcher(header.getName());
+                if (patcher != null) {
+                    rules.add(new CompiledRule(header, patcher));
+                }
+            }
+        }
+        logging.logToOutput("[CustomHeaderZ] Compiled " + rules.size() + " WebSocket message rules");
+        current = new CompiledRules(headers, rules);
+        compiled = current;
+        return current;
+    }
+
+    private static final class CompiledRules {
+        final List<CustomHeadersConfig.CustomHeader> source;
+        final List<CompiledRule> rules;
+        // Every rule's pointer, by rule position
+        final JsonPointerPatcher.Batch batch;
+
+        CompiledRules(List<CustomHeadersConfig.CustomHeader> source, List<CompiledRule> rules) {
+            this.source = source;
+            this.rules = rules;
+            List<JsonPointerPatcher> patchers = new ArrayList<>();
+            for (CompiledRule rule : rules) {
+                patchers.add(rule.patcher);
+            }
+            this.batch = new JsonPointerPatcher.Batch(patchers);
+        }
+    }
+
+    private static final class CompiledRule {
+        final CustomHeadersConfig.CustomHeader header;
+        final JsonPointerPatcher patcher;
+
+        CompiledRule(CustomHeadersConfig.CustomHeader header, JsonPointerPatcher patcher) {
+            this.header = header;
+            this.patcher = patcher;
+        }
+    }
+}
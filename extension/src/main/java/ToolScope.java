@@ -0,0 +1,100 @@
+import burp.api.montoya.core.ToolType;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Bitmask helpers for per-rule tool selection.
+ * Each Burp tool maps to one bit, so the request path can test a rule set
+ * against the originating tool with a single AND and no allocation.
+ */
+public final class ToolScope {
+
+    /** Mask matching every tool; used for rules saved before tool selection existed. */
+    public static final int ALL = CustomHeadersConfig.ALL_TOOLS;
+
+    private ToolScope() {
+    }
+
+    /**
+     * Returns the bit for a tool.
+     *
+     * @param toolType The tool
+     * @return The tool's single-bit mask
+     */
+    public static int bit(ToolType toolType) {
+        return 1 << toolType.ordinal();
+    }
+
+    /**
+     * Builds a mask from a set of tools.
+     *
+     * @param tools The selected tools
+     * @return The combined mask
+     */
+    public static int toMask(Set<ToolType> tools) {
+        if (tools.size() == ToolType.values().length) {
+            return ALL;
+        }
+        int mask = 0;
+        for (ToolType tool : tools) {
+            mask |= bit(tool);
+        }
+        return mask;
+    }
+
+    /**
+     * Expands a mask into the set of tools it selects.
+     *
+     * @param mask The mask
+     * @return The selected tools
+     */
+    public static EnumSet<ToolType> toSet(int mask) {
+        EnumSet<ToolType> tools = EnumSet.noneOf(ToolType.class);
+        for (ToolType tool : ToolType.values()) {
+            if ((mask & bit(tool)) != 0) {
+                tools.add(tool);
+            }
+        }
+        return tools;
+    }
+
+    /**
+     * Parses a persisted comma-separated list of tool names.
+     * Unknown names are ignored so preferences survive Burp API changes.
+     *
+     * @param names The persisted names, or null
+     * @return The mask, or {@link #ALL} if nothing was persisted
+     */
+    public static int parse(String names) {
+        if (names == null) {
+            return ALL;
+        }
+        EnumSet<ToolType> tools = EnumSet.noneOf(ToolType.class);
+        for (String name : names.split(",")) {
+            for (ToolType tool : ToolType.values()) {
+                if (tool.name().equals(name.trim())) {
+                    tools.add(tool);
+                }
+            }
+        }
+        return toMask(tools);
+    }
+
+    /**
+     * Formats a mask as a comma-separated list of tool names for persistence.
+     *
+     * @param mask The mask
+     * @return The tool names
+     */
+    public static String format(int mask) {
+        StringBuilder sb = new StringBuilder();
+        for (ToolType tool : toSet(mask)) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(tool.name());
+        }
+        return sb.toString();
+    }
+}
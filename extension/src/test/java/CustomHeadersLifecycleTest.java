@@ -0,0 +1,195 @@
+import burp.api.montoya.logging.Logging;
+import burp.api.montoya.persistence.Preferences;
+import com.sun.management.UnixOperatingSystemMXBean;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InterruptedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Loads and unloads the extension's background resources the way Burp does on
+ * repeated extension reloads, and checks that nothing outlives an unload.
+ */
+public class CustomHeadersLifecycleTest {
+
+    private static final int RELOADS = 20;
+
+    private final List<String> errors = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void repeatedReloadsReleaseEverything(@TempDir Path dir) throws Exception {
+        Map<String, Object> saved = Collections.synchronizedMap(new HashMap<>());
+        Set<Thread> senders = ConcurrentHashMap.newKeySet();
+        AtomicInteger sends = new AtomicInteger();
+        Set<String> threadsBefore = platformThreads();
+        long descriptorsBefore = openDescriptors();
+
+        for (int reload = 0; reload < RELOADS; reload++) {
+            CustomHeadersLifecycle lifecycle = new CustomHeadersLifecycle(logging());
+            CustomHeadersPreferences store = new CustomHeadersPreferences(preferences(saved));
+
+            CustomHeadersProfiles profiles = new CustomHeadersProfiles(new CustomHeadersConfig(), store, logging());
+            lifecycle.register("rule profiles", profiles);
+            profiles.publish(profiles.getActiveId(),
+                    List.of(CustomHeadersConfig.CustomHeader.builder("X-Reload", String.valueOf(reload)).build()));
+
+            TokenStore tokens = new TokenStore();
+            tokens.share(new SharedTokenFile(dir.resolve("tokens"), SharedTokenFile.DEFAULT_SIZE));
+            lifecycle.register("shared token file", () -> {
+                SharedTokenFile file = tokens.unshare();
+                if (file != null) {
+                    file.close();
+                }
+            });
+
+            // A token endpoint that never answers, so every unload interrupts a run in flight
+            CountDownLatch sending = new CountDownLatch(1);
+            TokenAcquisitionEngine flows = new TokenAcquisitionEngine(tokens, (flow, request) -> {
+                senders.add(Thread.currentThread());
+                sends.incrementAndGet();
+                sending.countDown();
+                try {
+                    Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException("Interrupted");
+                }
+                return new byte[0];
+            }, message -> { });
+            flows.setFlows(List.of(TokenFlow.builder("login", "https://auth.example.com").refreshSeconds(1).build()));
+            lifecycle.register("token flows", flows);
+            assertTrue(sending.await(5, TimeUnit.SECONDS));
+
+            assertTrue(lifecycle.shutdown(CustomHeadersLifecycle.DEFAULT_TIMEOUT_MILLIS));
+            for (Thread sender : senders) {
+                sender.join(1000);
+                assertFalse(sender.isAlive(), "Token flow run survived the unload");
+            }
+            assertNull(tokens.getSharedFile());
+            // The edit published just before the unload is saved by it
+            List<CustomHeadersConfig.CustomHeader> reloaded = new CustomHeadersPreferences(preferences(saved))
+                    .forProfile(profiles.getActiveId()).loadHeadersOrDefault();
+            assertEquals(String.valueOf(reload), reloaded.get(0).getValue());
+        }
+
+        // Refresh schedules would have sent again by now if any survived
+        int sent = sends.get();
+        Thread.sleep(1500);
+        assertEquals(sent, sends.get());
+        assertEquals(RELOADS, sent);
+        assertEquals(threadsBefore, platformThreads());
+        if (descriptorsBefore >= 0) {
+            assertEquals(descriptorsBefore, openDescriptors());
+        }
+        assertEquals(List.of(), errors);
+    }
+
+    @Test
+    public void closesNewestFirstAndLateRegistrationsAtOnce() {
+        CustomHeadersLifecycle lifecycle = new CustomHeadersLifecycle(logging());
+        List<String> closed = new CopyOnWriteArrayList<>();
+        lifecycle.register("first", () -> closed.add("first"));
+        lifecycle.register("second", () -> closed.add("second"));
+
+        assertTrue(lifecycle.shutdown(1000));
+        assertEquals(List.of("second", "first"), closed);
+
+        lifecycle.register("late", () -> closed.add("late"));
+        assertEquals(List.of("second", "first", "late"), closed);
+        assertTrue(lifecycle.shutdown(1000));
+        assertEquals(3, closed.size());
+    }
+
+    @Test
+    public void stuckResourceDoesNotHangTheUnload() throws Exception {
+        CustomHeadersLifecycle lifecycle = new CustomHeadersLifecycle(logging());
+        CountDownLatch interrupted = new CountDownLatch(1);
+        lifecycle.register("stuck", () -> {
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+        });
+
+        long start = System.nanoTime();
+        assertFalse(lifecycle.shutdown(100));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).contains("closing stuck"), errors.get(0));
+    }
+
+    /**
+     * Names of the live platform threads, leaving out the pool that carries virtual threads.
+     */
+    private static Set<String> platformThreads() {
+        Set<String> names = new TreeSet<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (!thread.getName().startsWith("ForkJoinPool")) {
+                names.add(thread.getName());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * @return The number of open file descriptors, or -1 if the platform does not report it
+     */
+    private static long openDescriptors() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        return os instanceof UnixOperatingSystemMXBean unix ? unix.getOpenFileDescriptorCount() : -1;
+    }
+
+    private Logging logging() {
+        return (Logging) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Logging.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("logToError")) {
+                        errors.add(String.valueOf(args[0]));
+                    }
+                    return null;
+                });
+    }
+
+    /**
+     * Burp's preferences, kept in a map.
+     */
+    private static Preferences preferences(Map<String, Object> values) {
+        return (Preferences) Proxy.newProxyInstance(CustomHeadersLifecycleTest.class.getClassLoader(),
+                new Class<?>[] {Preferences.class}, (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (name.startsWith("get")) {
+                        return values.get((String) args[0]);
+                    }
+                    if (name.startsWith("set")) {
+                        values.put((String) args[0], args[1]);
+                        return null;
+                    }
+                    if (name.startsWith("delete")) {
+                        values.remove((String) args[0]);
+                        return null;
+                    }
+                    return new HashSet<>(values.keySet());
+                });
+    }
+}